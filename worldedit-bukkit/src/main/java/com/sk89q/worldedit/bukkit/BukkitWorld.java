@@ -31,10 +31,13 @@
 import com.sk89q.worldedit.blocks.LazyBlock;
 import com.sk89q.worldedit.bukkit.adapter.BukkitImplAdapter;
 import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.TreeGenerator;
+import com.sk89q.worldedit.world.ChunkRegenerator;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import com.sk89q.worldedit.world.registry.WorldData;
+import org.bukkit.Chunk;
 import org.bukkit.Effect;
 import org.bukkit.Material;
 import org.bukkit.TreeType;
@@ -156,48 +159,26 @@ public int getBlockLightLevel(Vector pt) {
 
     @Override
     public boolean regenerate(Region region, EditSession editSession) {
-        BaseBlock[] history = new BaseBlock[16 * 16 * (getMaxY() + 1)];
-
-        for (Vector2D chunk : region.getChunks()) {
-            Vector min = new Vector(chunk.getBlockX() * 16, 0, chunk.getBlockZ() * 16);
-
-            // First save all the blocks inside
-            for (int x = 0; x < 16; ++x) {
-                for (int y = 0; y < (getMaxY() + 1); ++y) {
-                    for (int z = 0; z < 16; ++z) {
-                        Vector pt = min.add(x, y, z);
-                        int index = y * 16 * 16 + z * 16 + x;
-                        history[index] = editSession.getBlock(pt);
-                    }
-                }
-            }
-
-            try {
-                getWorld().regenerateChunk(chunk.getBlockX(), chunk.getBlockZ());
-            } catch (Throwable t) {
-                logger.log(Level.WARNING, "Chunk generation via Bukkit raised an error", t);
-            }
+        ChunkRegenerator regenerator = createRegeneration(region, editSession);
+        Operations.completeBlindly(regenerator);
+        return !regenerator.hasFailed();
+    }
 
-            // Then restore
-            for (int x = 0; x < 16; ++x) {
-                for (int y = 0; y < (getMaxY() + 1); ++y) {
-                    for (int z = 0; z < 16; ++z) {
-                        Vector pt = min.add(x, y, z);
-                        int index = y * 16 * 16 + z * 16 + x;
-
-                        // We have to restore the block if it was outside
-                        if (!region.contains(pt)) {
-                            editSession.smartSetBlock(pt, history[index]);
-                        } else { // Otherwise fool with history
-                            editSession.rememberChange(pt, history[index],
-                                    editSession.rawGetBlock(pt));
-                        }
+    @Override
+    public ChunkRegenerator createRegeneration(Region region, EditSession editSession) {
+        return new ChunkRegenerator(this, region, editSession) {
+            @Override
+            protected boolean regenerateChunks(List<Vector2D> chunks) {
+                for (Vector2D chunk : chunks) {
+                    try {
+                        getWorld().regenerateChunk(chunk.getBlockX(), chunk.getBlockZ());
+                    } catch (Throwable t) {
+                        logger.log(Level.WARNING, "Chunk generation via Bukkit raised an error", t);
                     }
                 }
+                return true;
             }
-        }
-
-        return true;
+        };
     }
 
     /**
@@ -428,6 +409,21 @@ public BaseBlock getLazyBlock(Vector position) {
         return new LazyBlock(bukkitBlock.getTypeId(), bukkitBlock.getData(), this, position);
     }
 
+    @Override
+    public void getBlockColumn(int x, int z, int minY, int maxY, int[] blocks) {
+        World world = getWorld();
+        Chunk chunk = world.getChunkAt(x >> 4, z >> 4);
+        int height = world.getMaxHeight();
+        for (int y = minY; y <= maxY; ++y) {
+            if (y < 0 || y >= height) {
+                blocks[y - minY] = 0;
+            } else {
+                Block bukkitBlock = chunk.getBlock(x & 15, y, z & 15);
+                blocks[y - minY] = (bukkitBlock.getTypeId() << 4) | bukkitBlock.getData();
+            }
+        }
+    }
+
     @Override
     public BaseBiome getBiome(Vector2D position) {
         BukkitImplAdapter adapter = WorldEditPlugin.getInstance().getBukkitImplAdapter();
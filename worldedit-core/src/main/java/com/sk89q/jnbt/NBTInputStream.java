@@ -32,6 +32,9 @@
  * This class reads <strong>NBT</strong>, or <strong>Named Binary Tag</strong>
  * streams, and produces an object graph of subclasses of the {@code Tag}
  * object.
+ *
+ * <p>Streams can also be read one tag at a time, without building an
+ * object graph, starting with {@link #readTagType()}.</p>
  * 
  * <p>The NBT format was created by Markus Persson, and the specification may be
  * found at <a href="http://www.minecraft.net/docs/NBT.txt">
@@ -70,14 +73,11 @@ public NamedTag readNamedTag() throws IOException {
      * @throws IOException if an I/O error occurs.
      */
     private NamedTag readNamedTag(int depth) throws IOException {
-        int type = is.readByte() & 0xFF;
+        int type = readTagType();
 
         String name;
         if (type != NBTConstants.TYPE_END) {
-            int nameLength = is.readShort() & 0xFFFF;
-            byte[] nameBytes = new byte[nameLength];
-            is.readFully(nameBytes);
-            name = new String(nameBytes, NBTConstants.CHARSET);
+            name = readTagName();
         } else {
             name = "";
         }
@@ -85,6 +85,158 @@ private NamedTag readNamedTag(int depth) throws IOException {
         return new NamedTag(name, readTagPayload(type, depth));
     }
 
+    /**
+     * Reads the type of the next tag.
+     *
+     * <p>Unless the type is {@code TAG_End}, the name of the tag must be
+     * read next with {@link #readTagName()}, followed by its payload, which
+     * can be read with {@link #readTagPayload(int)}, skipped with
+     * {@link #skipTagPayload(int)}, or read piece by piece with the
+     * primitive read methods.</p>
+     *
+     * @return the type
+     * @throws IOException if an I/O error occurs.
+     */
+    public int readTagType() throws IOException {
+        return is.readByte() & 0xFF;
+    }
+
+    /**
+     * Reads the name of a tag, following its type.
+     *
+     * @return the name
+     * @throws IOException if an I/O error occurs.
+     */
+    public String readTagName() throws IOException {
+        int nameLength = is.readShort() & 0xFFFF;
+        byte[] nameBytes = new byte[nameLength];
+        is.readFully(nameBytes);
+        return new String(nameBytes, NBTConstants.CHARSET);
+    }
+
+    /**
+     * Reads the payload of a tag that is within a compound tag.
+     *
+     * @param type the type
+     * @return the tag
+     * @throws IOException if an I/O error occurs.
+     */
+    public Tag readTagPayload(int type) throws IOException {
+        return readTagPayload(type, 1);
+    }
+
+    /**
+     * Skips the payload of a tag without creating any tags.
+     *
+     * @param type the type
+     * @throws IOException if an I/O error occurs.
+     */
+    public void skipTagPayload(int type) throws IOException {
+        switch (type) {
+        case NBTConstants.TYPE_END:
+            break;
+        case NBTConstants.TYPE_BYTE:
+            skipFully(1);
+            break;
+        case NBTConstants.TYPE_SHORT:
+            skipFully(2);
+            break;
+        case NBTConstants.TYPE_INT:
+        case NBTConstants.TYPE_FLOAT:
+            skipFully(4);
+            break;
+        case NBTConstants.TYPE_LONG:
+        case NBTConstants.TYPE_DOUBLE:
+            skipFully(8);
+            break;
+        case NBTConstants.TYPE_BYTE_ARRAY:
+            skipFully(is.readInt());
+            break;
+        case NBTConstants.TYPE_STRING:
+            skipFully(is.readShort() & 0xFFFF);
+            break;
+        case NBTConstants.TYPE_LIST:
+            int childType = is.readByte();
+            int length = is.readInt();
+            for (int i = 0; i < length; ++i) {
+                skipTagPayload(childType);
+            }
+            break;
+        case NBTConstants.TYPE_COMPOUND:
+            while (true) {
+                int childTagType = readTagType();
+                if (childTagType == NBTConstants.TYPE_END) {
+                    break;
+                }
+                skipFully(is.readShort() & 0xFFFF);
+                skipTagPayload(childTagType);
+            }
+            break;
+        case NBTConstants.TYPE_INT_ARRAY:
+            skipFully(is.readInt() * 4L);
+            break;
+        default:
+            throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+
+    /**
+     * Reads a byte, such as the payload of a {@code TAG_Byte}.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs.
+     */
+    public byte readByte() throws IOException {
+        return is.readByte();
+    }
+
+    /**
+     * Reads a short, such as the payload of a {@code TAG_Short}.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs.
+     */
+    public short readShort() throws IOException {
+        return is.readShort();
+    }
+
+    /**
+     * Reads an int, such as the payload of a {@code TAG_Int} or the length
+     * of a {@code TAG_Byte_Array}.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs.
+     */
+    public int readInt() throws IOException {
+        return is.readInt();
+    }
+
+    /**
+     * Reads bytes until the given range of the array has been filled.
+     *
+     * @param bytes the array to read into
+     * @param offset the offset in the array
+     * @param length the number of bytes to read
+     * @throws IOException if an I/O error occurs.
+     */
+    public void readFully(byte[] bytes, int offset, int length) throws IOException {
+        is.readFully(bytes, offset, length);
+    }
+
+    private void skipFully(long length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Negative length: " + length);
+        }
+        while (length > 0) {
+            int skipped = is.skipBytes((int) Math.min(length, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                is.readByte(); // Throws EOFException at the end of the stream
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
     /**
      * Reads the payload of a tag given the type.
      * 
@@ -69,6 +69,25 @@ public void writeNamedTag(String name, Tag tag) throws IOException {
         checkNotNull(tag);
 
         int type = NBTUtils.getTypeCode(tag.getClass());
+        writeTagHeader(type, name);
+        writeTagPayload(tag);
+    }
+
+    /**
+     * Writes the type and name of a tag, which must then be followed by
+     * its payload.
+     *
+     * <p>This can be used with the primitive write methods to write large
+     * tags without creating {@code Tag} objects for them.</p>
+     *
+     * @param type the type of the tag
+     * @param name the name of the tag
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void writeTagHeader(int type, String name) throws IOException {
+        checkNotNull(name);
+
         byte[] nameBytes = name.getBytes(NBTConstants.CHARSET);
 
         os.writeByte(type);
@@ -78,8 +97,43 @@ public void writeNamedTag(String name, Tag tag) throws IOException {
         if (type == NBTConstants.TYPE_END) {
             throw new IOException("Named TAG_End not permitted.");
         }
+    }
 
-        writeTagPayload(tag);
+    /**
+     * Writes a {@code TAG_End}, which closes a compound tag whose payload is
+     * being written tag by tag.
+     *
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void writeEndTag() throws IOException {
+        os.writeByte(NBTConstants.TYPE_END);
+    }
+
+    /**
+     * Writes an int, such as the payload of a {@code TAG_Int} or the length
+     * of a {@code TAG_Byte_Array}.
+     *
+     * @param value the value
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void writeInt(int value) throws IOException {
+        os.writeInt(value);
+    }
+
+    /**
+     * Writes a range of bytes, such as part of the payload of a
+     * {@code TAG_Byte_Array}.
+     *
+     * @param bytes the bytes
+     * @param offset the offset of the range
+     * @param length the length of the range
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        os.write(bytes, offset, length);
     }
 
     /**
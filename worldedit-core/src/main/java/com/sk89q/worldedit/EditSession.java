@@ -30,6 +30,7 @@
 import com.sk89q.worldedit.extent.MaskingExtent;
 import com.sk89q.worldedit.extent.NullExtent;
 import com.sk89q.worldedit.extent.buffer.ForgetfulExtentBuffer;
+import com.sk89q.worldedit.extent.cache.ColumnCache;
 import com.sk89q.worldedit.extent.cache.LastAccessExtentCache;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.extent.inventory.BlockBagExtent;
@@ -37,13 +38,13 @@
 import com.sk89q.worldedit.extent.validation.BlockChangeLimiter;
 import com.sk89q.worldedit.extent.validation.DataValidatorExtent;
 import com.sk89q.worldedit.extent.world.BlockQuirkExtent;
-import com.sk89q.worldedit.extent.world.ChunkLoadingExtent;
+import com.sk89q.worldedit.extent.world.ChunkBatchingExtent;
 import com.sk89q.worldedit.extent.world.FastModeExtent;
 import com.sk89q.worldedit.extent.world.SurvivalModeExtent;
 import com.sk89q.worldedit.function.GroundFunction;
 import com.sk89q.worldedit.function.RegionMaskingFilter;
+import com.sk89q.worldedit.function.analysis.RegionScanner;
 import com.sk89q.worldedit.function.block.BlockReplace;
-import com.sk89q.worldedit.function.block.Counter;
 import com.sk89q.worldedit.function.block.Naturalizer;
 import com.sk89q.worldedit.function.generator.GardenPatchGenerator;
 import com.sk89q.worldedit.function.mask.*;
@@ -54,8 +55,8 @@
 import com.sk89q.worldedit.function.visitor.*;
 import com.sk89q.worldedit.history.UndoContext;
 import com.sk89q.worldedit.history.change.BlockChange;
-import com.sk89q.worldedit.history.changeset.BlockOptimizedHistory;
 import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.PackedBlockHistory;
 import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
@@ -69,6 +70,7 @@
 import com.sk89q.worldedit.regions.*;
 import com.sk89q.worldedit.regions.shape.ArbitraryBiomeShape;
 import com.sk89q.worldedit.regions.shape.ArbitraryShape;
+import com.sk89q.worldedit.regions.shape.PathRasterizer;
 import com.sk89q.worldedit.regions.shape.RegionShape;
 import com.sk89q.worldedit.regions.shape.WorldEditExpressionEnvironment;
 import com.sk89q.worldedit.util.*;
@@ -112,11 +114,11 @@ public enum Stage {
 
     @SuppressWarnings("ProtectedField")
     protected final World world;
-    private final ChangeSet changeSet = new BlockOptimizedHistory();
+    private final ChangeSet changeSet = new PackedBlockHistory();
 
     private @Nullable FastModeExtent fastModeExtent;
     private final SurvivalModeExtent survivalExtent;
-    private @Nullable ChunkLoadingExtent chunkLoadingExtent;
+    private @Nullable ChunkBatchingExtent chunkBatchingExtent;
     private @Nullable LastAccessExtentCache cacheExtent;
     private @Nullable BlockQuirkExtent quirkExtent;
     private @Nullable DataValidatorExtent validator;
@@ -180,9 +182,10 @@ public EditSession(LocalWorld world, int maxBlocks, @Nullable BlockBag blockBag)
 
             // These extents are ALWAYS used
             extent = fastModeExtent = new FastModeExtent(world, false);
+            extent = ColumnCache.watch(extent, world);
             extent = survivalExtent = new SurvivalModeExtent(extent, world);
             extent = quirkExtent = new BlockQuirkExtent(extent, world);
-            extent = chunkLoadingExtent = new ChunkLoadingExtent(extent, world);
+            extent = chunkBatchingExtent = new ChunkBatchingExtent(extent, world, false);
             extent = cacheExtent = new LastAccessExtentCache(extent);
             extent = wrapExtent(extent, eventBus, event, Stage.BEFORE_CHANGE);
             extent = validator = new DataValidatorExtent(extent, world);
@@ -272,6 +275,9 @@ public boolean isQueueEnabled() {
      */
     public void enableQueue() {
         reorderExtent.setEnabled(true);
+        if (chunkBatchingExtent != null) {
+            chunkBatchingExtent.setEnabled(true);
+        }
     }
 
     /**
@@ -281,7 +287,10 @@ public void disableQueue() {
         if (isQueueEnabled()) {
             flushQueue();
         }
-        reorderExtent.setEnabled(true);
+        reorderExtent.setEnabled(false);
+        if (chunkBatchingExtent != null) {
+            chunkBatchingExtent.setEnabled(false);
+        }
     }
 
     /**
@@ -331,6 +340,17 @@ public SurvivalModeExtent getSurvivalExtent() {
         return survivalExtent;
     }
 
+    /**
+     * Get the {@link ChunkBatchingExtent}, which groups block changes by
+     * chunk while the queue is enabled and keeps counts of the blocks
+     * written per chunk.
+     *
+     * @return the chunk batching extent, or null if there is no world
+     */
+    public @Nullable ChunkBatchingExtent getChunkBatchingExtent() {
+        return chunkBatchingExtent;
+    }
+
     /**
      * Set whether fast mode is enabled.
      *
@@ -416,6 +436,20 @@ public BaseBlock getBlock(Vector position) {
         return world.getBlock(position);
     }
 
+    /**
+     * Get the type IDs and data values of a column of blocks at once.
+     *
+     * @param x the X coordinate of the column
+     * @param z the Z coordinate of the column
+     * @param minY the lowest Y coordinate to read
+     * @param maxY the highest Y coordinate to read
+     * @param blocks an array of at least {@code maxY - minY + 1} entries
+     * @see World#getBlockColumn(int, int, int, int, int[])
+     */
+    public void getBlockColumn(int x, int z, int minY, int maxY, int[] blocks) {
+        world.getBlockColumn(x, z, minY, maxY, blocks);
+    }
+
     /**
      * Get a block type at the given position.
      *
@@ -477,9 +511,9 @@ public int getHighestTerrainBlock(int x, int z, int minY, int maxY) {
      */
     public int getHighestTerrainBlock(int x, int z, int minY, int maxY, boolean naturalOnly) {
         for (int y = maxY; y >= minY; --y) {
-            Vector pt = new Vector(x, y, z);
-            int id = getBlockType(pt);
-            int data = getBlockData(pt);
+            BaseBlock block = getLazyBlock(new Vector(x, y, z));
+            int id = block.getType();
+            int data = block.getData();
             if (naturalOnly ? BlockType.isNaturalTerrainBlock(id, data) : !BlockType.canPassThrough(id, data)) {
                 return y;
             }
@@ -564,24 +598,6 @@ public boolean setBlock(Vector position, Pattern pattern) throws MaxChangedBlock
         return setBlock(position, pattern.next(position));
     }
 
-    /**
-     * Set blocks that are in a set of positions and return the number of times
-     * that the block set calls returned true.
-     *
-     * @param vset a set of positions
-     * @param pattern the pattern
-     * @return the number of changed blocks
-     * @throws MaxChangedBlocksException thrown if too many blocks are changed
-     */
-    @SuppressWarnings("deprecation")
-    private int setBlocks(Set<Vector> vset, Pattern pattern) throws MaxChangedBlocksException {
-        int affected = 0;
-        for (Vector v : vset) {
-            affected += setBlock(v, pattern) ? 1 : 0;
-        }
-        return affected;
-    }
-
     /**
      * Set a block (only if a previous block was not there) if {@link Math#random()}
      * returns a number less than the given probability.
@@ -637,10 +653,7 @@ public void rememberChange(Vector position, BaseBlock existing, BaseBlock block)
      * @param editSession a new {@link EditSession} to perform the undo in
      */
     public void undo(EditSession editSession) {
-        UndoContext context = new UndoContext();
-        context.setExtent(editSession.bypassHistory);
-        Operations.completeBlindly(ChangeSetExecutor.createUndo(changeSet, context));
-        editSession.flushQueue();
+        editSession.replay(changeSet, ChangeSetExecutor.Type.UNDO);
     }
 
     /**
@@ -649,10 +662,28 @@ public void undo(EditSession editSession) {
      * @param editSession a new {@link EditSession} to perform the redo in
      */
     public void redo(EditSession editSession) {
+        editSession.replay(changeSet, ChangeSetExecutor.Type.REDO);
+    }
+
+    /**
+     * Undo or redo the changes of the given change set in this edit session,
+     * without recording them to this edit session's history.
+     *
+     * @param changeSet the change set
+     * @param type whether to undo or redo
+     */
+    public void replay(ChangeSet changeSet, ChangeSetExecutor.Type type) {
+        checkNotNull(changeSet);
+        checkNotNull(type);
+
         UndoContext context = new UndoContext();
-        context.setExtent(editSession.bypassHistory);
-        Operations.completeBlindly(ChangeSetExecutor.createRedo(changeSet, context));
-        editSession.flushQueue();
+        context.setExtent(bypassHistory);
+        if (type == ChangeSetExecutor.Type.UNDO) {
+            Operations.completeBlindly(ChangeSetExecutor.createUndo(changeSet, context));
+        } else {
+            Operations.completeBlindly(ChangeSetExecutor.createRedo(changeSet, context));
+        }
+        flushQueue();
     }
 
     /**
@@ -719,12 +750,7 @@ public int countBlock(Region region, Set<Integer> searchIDs) {
      * @return the number of blocks that matched the pattern
      */
     public int countBlocks(Region region, Set<BaseBlock> searchBlocks) {
-        FuzzyBlockMask mask = new FuzzyBlockMask(this, searchBlocks);
-        Counter count = new Counter();
-        RegionMaskingFilter filter = new RegionMaskingFilter(mask, count);
-        RegionVisitor visitor = new RegionVisitor(region, filter);
-        Operations.completeBlindly(visitor); // We can't throw exceptions, nor do we expect any
-        return count.getCount();
+        return new RegionScanner(this, region).getHistogram().getCount(searchBlocks);
     }
 
     /**
@@ -1251,6 +1277,7 @@ public int drainArea(Vector origin, double radius) throws MaxChangedBlocksExcept
 
         BlockReplace replace = new BlockReplace(this, new BlockPattern(new BaseBlock(BlockID.AIR)));
         RecursiveVisitor visitor = new RecursiveVisitor(mask, replace);
+        visitor.setTrimVisited(true); // Draining large lakes would otherwise remember every block
 
         // Around the origin in a 3x3 block
         for (BlockVector position : CuboidRegion.fromCenter(origin, 1)) {
@@ -1830,55 +1857,7 @@ public int makeForest(Vector basePosition, int size, double density, TreeGenerat
      * @return the results
      */
     public List<Countable<Integer>> getBlockDistribution(Region region) {
-        List<Countable<Integer>> distribution = new ArrayList<Countable<Integer>>();
-        Map<Integer, Countable<Integer>> map = new HashMap<Integer, Countable<Integer>>();
-
-        if (region instanceof CuboidRegion) {
-            // Doing this for speed
-            Vector min = region.getMinimumPoint();
-            Vector max = region.getMaximumPoint();
-
-            int minX = min.getBlockX();
-            int minY = min.getBlockY();
-            int minZ = min.getBlockZ();
-            int maxX = max.getBlockX();
-            int maxY = max.getBlockY();
-            int maxZ = max.getBlockZ();
-
-            for (int x = minX; x <= maxX; ++x) {
-                for (int y = minY; y <= maxY; ++y) {
-                    for (int z = minZ; z <= maxZ; ++z) {
-                        Vector pt = new Vector(x, y, z);
-
-                        int id = getBlockType(pt);
-
-                        if (map.containsKey(id)) {
-                            map.get(id).increment();
-                        } else {
-                            Countable<Integer> c = new Countable<Integer>(id, 1);
-                            map.put(id, c);
-                            distribution.add(c);
-                        }
-                    }
-                }
-            }
-        } else {
-            for (Vector pt : region) {
-                int id = getBlockType(pt);
-
-                if (map.containsKey(id)) {
-                    map.get(id).increment();
-                } else {
-                    Countable<Integer> c = new Countable<Integer>(id, 1);
-                    map.put(id, c);
-                }
-            }
-        }
-
-        Collections.sort(distribution);
-        // Collections.reverse(distribution);
-
-        return distribution;
+        return new RegionScanner(this, region).getHistogram().getDistribution();
     }
 
     /**
@@ -1887,90 +1866,82 @@ public List<Countable<Integer>> getBlockDistribution(Region region) {
      * @param region a region
      * @return the results
      */
-    // TODO reduce code duplication - probably during ops-redux
     public List<Countable<BaseBlock>> getBlockDistributionWithData(Region region) {
-        List<Countable<BaseBlock>> distribution = new ArrayList<Countable<BaseBlock>>();
-        Map<BaseBlock, Countable<BaseBlock>> map = new HashMap<BaseBlock, Countable<BaseBlock>>();
+        return new RegionScanner(this, region).getHistogram().getDistributionWithData();
+    }
 
-        if (region instanceof CuboidRegion) {
-            // Doing this for speed
-            Vector min = region.getMinimumPoint();
-            Vector max = region.getMaximumPoint();
-
-            int minX = min.getBlockX();
-            int minY = min.getBlockY();
-            int minZ = min.getBlockZ();
-            int maxX = max.getBlockX();
-            int maxY = max.getBlockY();
-            int maxZ = max.getBlockZ();
-
-            for (int x = minX; x <= maxX; ++x) {
-                for (int y = minY; y <= maxY; ++y) {
-                    for (int z = minZ; z <= maxZ; ++z) {
-                        Vector pt = new Vector(x, y, z);
-
-                        BaseBlock blk = new BaseBlock(getBlockType(pt), getBlockData(pt));
-
-                        if (map.containsKey(blk)) {
-                            map.get(blk).increment();
-                        } else {
-                            Countable<BaseBlock> c = new Countable<BaseBlock>(blk, 1);
-                            map.put(blk, c);
-                            distribution.add(c);
-                        }
-                    }
+    public int makeShape(final Region region, final Vector zero, final Vector unit, final Pattern pattern, final String expressionString, final boolean hollow) throws ExpressionException, MaxChangedBlocksException {
+        final ShapeExpression first = new ShapeExpression(expressionString, zero, unit);
+
+        // Stateless expressions can be evaluated by worker threads, each with its own copy
+        final boolean concurrent = first.expression.isStateless();
+        final ThreadLocal<ShapeExpression> expressions = new ThreadLocal<ShapeExpression>() {
+            @Override
+            protected ShapeExpression initialValue() {
+                try {
+                    return new ShapeExpression(expressionString, zero, unit);
+                } catch (ExpressionException e) {
+                    throw new IllegalStateException("Expression failed to compile a second time", e);
                 }
             }
-        } else {
-            for (Vector pt : region) {
-                BaseBlock blk = new BaseBlock(getBlockType(pt), getBlockData(pt));
+        };
 
-                if (map.containsKey(blk)) {
-                    map.get(blk).increment();
-                } else {
-                    Countable<BaseBlock> c = new Countable<BaseBlock>(blk, 1);
-                    map.put(blk, c);
-                }
+        final ArbitraryShape shape = new ArbitraryShape(region) {
+            @Override
+            protected BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial) {
+                return (concurrent ? expressions.get() : first).getMaterial(x, y, z, defaultMaterial);
             }
-        }
 
-        Collections.sort(distribution);
-        // Collections.reverse(distribution);
+            @Override
+            protected boolean isConcurrent() {
+                return concurrent;
+            }
+        };
 
-        return distribution;
+        return shape.generate(this, pattern, hollow);
     }
 
-    public int makeShape(final Region region, final Vector zero, final Vector unit, final Pattern pattern, final String expressionString, final boolean hollow) throws ExpressionException, MaxChangedBlocksException {
-        final Expression expression = Expression.compile(expressionString, "x", "y", "z", "type", "data");
-        expression.optimize();
+    /**
+     * An expression that returns the material of a shape made with
+     * {@link #makeShape(Region, Vector, Vector, Pattern, String, boolean)}.
+     */
+    private class ShapeExpression {
+        private final Expression expression;
+        private final RValue typeVariable;
+        private final RValue dataVariable;
+        private final WorldEditExpressionEnvironment environment;
+        private final Vector zero;
+        private final Vector unit;
 
-        final RValue typeVariable = expression.getVariable("type", false);
-        final RValue dataVariable = expression.getVariable("data", false);
+        private ShapeExpression(String expressionString, Vector zero, Vector unit) throws ExpressionException {
+            expression = Expression.compile(expressionString, "x", "y", "z", "type", "data");
+            expression.optimize();
 
-        final WorldEditExpressionEnvironment environment = new WorldEditExpressionEnvironment(this, unit, zero);
-        expression.setEnvironment(environment);
+            typeVariable = expression.getVariable("type", false);
+            dataVariable = expression.getVariable("data", false);
 
-        final ArbitraryShape shape = new ArbitraryShape(region) {
-            @Override
-            protected BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial) {
-                final Vector current = new Vector(x, y, z);
-                environment.setCurrentBlock(current);
-                final Vector scaled = current.subtract(zero).divide(unit);
+            environment = new WorldEditExpressionEnvironment(EditSession.this, unit, zero);
+            expression.setEnvironment(environment);
+            this.zero = zero;
+            this.unit = unit;
+        }
 
-                try {
-                    if (expression.evaluate(scaled.getX(), scaled.getY(), scaled.getZ(), defaultMaterial.getType(), defaultMaterial.getData()) <= 0) {
-                        return null;
-                    }
+        private BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial) {
+            final Vector current = new Vector(x, y, z);
+            environment.setCurrentBlock(current);
+            final Vector scaled = current.subtract(zero).divide(unit);
 
-                    return new BaseBlock((int) typeVariable.getValue(), (int) dataVariable.getValue());
-                } catch (Exception e) {
-                    log.log(Level.WARNING, "Failed to create shape", e);
+            try {
+                if (expression.evaluate(scaled.getX(), scaled.getY(), scaled.getZ(), defaultMaterial.getType(), defaultMaterial.getData()) <= 0) {
                     return null;
                 }
-            }
-        };
 
-        return shape.generate(this, pattern, hollow);
+                return new BaseBlock((int) typeVariable.getValue(), (int) dataVariable.getValue());
+            } catch (Exception e) {
+                log.log(Level.WARNING, "Failed to create shape", e);
+                return null;
+            }
+        }
     }
 
     public int deformRegion(final Region region, final Vector zero, final Vector unit, final String expressionString) throws ExpressionException, MaxChangedBlocksException {
@@ -2028,66 +1999,107 @@ public int deformRegion(final Region region, final Vector zero, final Vector uni
      * @throws MaxChangedBlocksException thrown if too many blocks are changed
      */
     public int hollowOutRegion(Region region, int thickness, Pattern pattern) throws MaxChangedBlocksException {
-        int affected = 0;
-
-        final Set<BlockVector> outside = new HashSet<BlockVector>();
-
         final Vector min = region.getMinimumPoint();
         final Vector max = region.getMaximumPoint();
 
-        final int minX = min.getBlockX();
-        final int minY = min.getBlockY();
-        final int minZ = min.getBlockZ();
-        final int maxX = max.getBlockX();
-        final int maxY = max.getBlockY();
-        final int maxZ = max.getBlockZ();
-
-        for (int x = minX; x <= maxX; ++x) {
-            for (int y = minY; y <= maxY; ++y) {
-                recurseHollow(region, new BlockVector(x, y, minZ), outside);
-                recurseHollow(region, new BlockVector(x, y, maxZ), outside);
-            }
-        }
-
-        for (int y = minY; y <= maxY; ++y) {
-            for (int z = minZ; z <= maxZ; ++z) {
-                recurseHollow(region, new BlockVector(minX, y, z), outside);
-                recurseHollow(region, new BlockVector(maxX, y, z), outside);
+        // The grid has a margin of one block, because the outside may leak past the region
+        final int minX = min.getBlockX() - 1;
+        final int minY = min.getBlockY() - 1;
+        final int minZ = min.getBlockZ() - 1;
+        final int sizeX = max.getBlockX() - minX + 2;
+        final int sizeY = max.getBlockY() - minY + 2;
+        final int sizeZ = max.getBlockZ() - minZ + 2;
+        checkArgument((long) sizeX * sizeY * sizeZ <= Integer.MAX_VALUE, "region is too large to hollow out");
+
+        final int strideZ = sizeX;
+        final int strideY = sizeX * sizeZ;
+        final BitSet passable = new BitSet(strideY * sizeY);
+        final BitSet inside = new BitSet(strideY * sizeY);
+        final BitSet outside = new BitSet(strideY * sizeY);
+
+        int[] column = new int[sizeY];
+        for (int z = 0; z < sizeZ; ++z) {
+            for (int x = 0; x < sizeX; ++x) {
+                getBlockColumn(minX + x, minZ + z, minY, minY + sizeY - 1, column);
+                for (int y = 0; y < sizeY; ++y) {
+                    if (BlockType.canPassThrough(column[y] >> 4, column[y] & 0xf)) {
+                        passable.set(y * strideY + z * strideZ + x);
+                    }
+                }
             }
         }
 
-        for (int z = minZ; z <= maxZ; ++z) {
-            for (int x = minX; x <= maxX; ++x) {
-                recurseHollow(region, new BlockVector(x, minY, z), outside);
-                recurseHollow(region, new BlockVector(x, maxY, z), outside);
+        for (int y = 1; y < sizeY - 1; ++y) {
+            for (int z = 1; z < sizeZ - 1; ++z) {
+                int[] spans = Regions.getSpans(region, minY + y, minZ + z);
+                for (int i = 0; i < spans.length; i += 2) {
+                    int row = y * strideY + z * strideZ - minX;
+                    inside.set(row + spans[i], row + spans[i + 1] + 1);
+                }
             }
         }
 
-        for (int i = 1; i < thickness; ++i) {
-            final Set<BlockVector> newOutside = new HashSet<BlockVector>();
-            outer: for (BlockVector position : region) {
-                for (Vector recurseDirection: recurseDirections) {
-                    BlockVector neighbor = position.add(recurseDirection).toBlockVector();
-
-                    if (outside.contains(neighbor)) {
-                        newOutside.add(position);
-                        continue outer;
+        // Flood the outside from the faces of the bounding box. Blocks are
+        // added to the queue once, and it keeps every outside block in the
+        // order in which it was reached.
+        HollowQueue queue = new HollowQueue();
+        for (int y = 1; y < sizeY - 1; ++y) {
+            for (int z = 1; z < sizeZ - 1; ++z) {
+                int row = y * strideY + z * strideZ;
+                if (y == 1 || y == sizeY - 2 || z == 1 || z == sizeZ - 2) {
+                    for (int x = 1; x < sizeX - 1; ++x) {
+                        queue.offerOutside(row + x, passable, outside);
                     }
+                } else {
+                    queue.offerOutside(row + 1, passable, outside);
+                    queue.offerOutside(row + sizeX - 2, passable, outside);
                 }
             }
+        }
 
-            outside.addAll(newOutside);
+        for (int head = 0; head < queue.size; ++head) {
+            int index = queue.elements[head];
+            if (!inside.get(index)) {
+                continue;
+            }
+            queue.offerOutside(index + 1, passable, outside);
+            queue.offerOutside(index - 1, passable, outside);
+            queue.offerOutside(index + strideZ, passable, outside);
+            queue.offerOutside(index - strideZ, passable, outside);
+            queue.offerOutside(index + strideY, passable, outside);
+            queue.offerOutside(index - strideY, passable, outside);
         }
 
-        outer: for (BlockVector position : region) {
-            for (Vector recurseDirection: recurseDirections) {
-                BlockVector neighbor = position.add(recurseDirection).toBlockVector();
+        // Each further layer of the shell is the part of the region next
+        // to the previous one, as with a distance transform
+        int layerStart = 0;
+        for (int i = 1; i < thickness; ++i) {
+            int layerEnd = queue.size;
+            for (int head = layerStart; head < layerEnd; ++head) {
+                int index = queue.elements[head];
+                queue.offerLayer(index + 1, inside, outside);
+                queue.offerLayer(index - 1, inside, outside);
+                queue.offerLayer(index + strideZ, inside, outside);
+                queue.offerLayer(index - strideZ, inside, outside);
+                queue.offerLayer(index + strideY, inside, outside);
+                queue.offerLayer(index - strideY, inside, outside);
+            }
+            layerStart = layerEnd;
+        }
+        queue = null;
 
-                if (outside.contains(neighbor)) {
-                    continue outer;
-                }
+        int affected = 0;
+        for (int index = inside.nextSetBit(0); index >= 0; index = inside.nextSetBit(index + 1)) {
+            if (outside.get(index + 1) || outside.get(index - 1)
+                    || outside.get(index + strideZ) || outside.get(index - strideZ)
+                    || outside.get(index + strideY) || outside.get(index - strideY)) {
+                continue;
             }
 
+            BlockVector position = new BlockVector(
+                    minX + index % strideZ,
+                    minY + index / strideY,
+                    minZ + (index % strideY) / strideZ);
             if (setBlock(position, pattern.next(position))) {
                 ++affected;
             }
@@ -2111,7 +2123,7 @@ public int hollowOutRegion(Region region, int thickness, Pattern pattern) throws
     public int drawLine(Pattern pattern, Vector pos1, Vector pos2, double radius, boolean filled)
             throws MaxChangedBlocksException {
 
-        Set<Vector> vset = new HashSet<Vector>();
+        PathRasterizer rasterizer = new PathRasterizer(radius);
         boolean notdrawn = true;
 
         int x1 = pos1.getBlockX(), y1 = pos1.getBlockY(), z1 = pos1.getBlockZ();
@@ -2120,7 +2132,7 @@ public int drawLine(Pattern pattern, Vector pos1, Vector pos2, double radius, bo
         int dx = Math.abs(x2 - x1), dy = Math.abs(y2 - y1), dz = Math.abs(z2 - z1);
 
         if (dx + dy + dz == 0) {
-            vset.add(new Vector(tipx, tipy, tipz));
+            rasterizer.addPoint(tipx, tipy, tipz);
             notdrawn = false;
         }
 
@@ -2130,7 +2142,7 @@ public int drawLine(Pattern pattern, Vector pos1, Vector pos2, double radius, bo
                 tipy = (int) Math.round(y1 + domstep * ((double) dy) / ((double) dx) * (y2 - y1 > 0 ? 1 : -1));
                 tipz = (int) Math.round(z1 + domstep * ((double) dz) / ((double) dx) * (z2 - z1 > 0 ? 1 : -1));
 
-                vset.add(new Vector(tipx, tipy, tipz));
+                rasterizer.addPoint(tipx, tipy, tipz);
             }
             notdrawn = false;
         }
@@ -2141,7 +2153,7 @@ public int drawLine(Pattern pattern, Vector pos1, Vector pos2, double radius, bo
                 tipx = (int) Math.round(x1 + domstep * ((double) dx) / ((double) dy) * (x2 - x1 > 0 ? 1 : -1));
                 tipz = (int) Math.round(z1 + domstep * ((double) dz) / ((double) dy) * (z2 - z1 > 0 ? 1 : -1));
 
-                vset.add(new Vector(tipx, tipy, tipz));
+                rasterizer.addPoint(tipx, tipy, tipz);
             }
             notdrawn = false;
         }
@@ -2152,16 +2164,12 @@ public int drawLine(Pattern pattern, Vector pos1, Vector pos2, double radius, bo
                 tipy = (int) Math.round(y1 + domstep * ((double) dy) / ((double) dz) * (y2-y1>0 ? 1 : -1));
                 tipx = (int) Math.round(x1 + domstep * ((double) dx) / ((double) dz) * (x2-x1>0 ? 1 : -1));
 
-                vset.add(new Vector(tipx, tipy, tipz));
+                rasterizer.addPoint(tipx, tipy, tipz);
             }
             notdrawn = false;
         }
 
-        vset = getBallooned(vset, radius);
-        if (!filled) {
-            vset = getHollowed(vset);
-        }
-        return setBlocks(vset, pattern);
+        return rasterizer.generate(this, Patterns.wrap(pattern), !filled);
     }
 
     /**
@@ -2182,7 +2190,7 @@ public int drawLine(Pattern pattern, Vector pos1, Vector pos2, double radius, bo
     public int drawSpline(Pattern pattern, List<Vector> nodevectors, double tension, double bias, double continuity, double quality, double radius, boolean filled)
             throws MaxChangedBlocksException {
 
-        Set<Vector> vset = new HashSet<Vector>();
+        PathRasterizer rasterizer = new PathRasterizer(radius);
         List<Node> nodes = new ArrayList<Node>(nodevectors.size());
 
         Interpolation interpol = new KochanekBartelsInterpolation();
@@ -2198,87 +2206,10 @@ public int drawSpline(Pattern pattern, List<Vector> nodevectors, double tension,
         interpol.setNodes(nodes);
         double splinelength = interpol.arcLength(0, 1);
         for (double loop = 0; loop <= 1; loop += 1D / splinelength / quality) {
-            Vector tipv = interpol.getPosition(loop);
-            int tipx = (int) Math.round(tipv.getX());
-            int tipy = (int) Math.round(tipv.getY());
-            int tipz = (int) Math.round(tipv.getZ());
-
-            vset.add(new Vector(tipx, tipy, tipz));
+            rasterizer.addPoint(interpol.getPosition(loop));
         }
 
-        vset = getBallooned(vset, radius);
-        if (!filled) {
-            vset = getHollowed(vset);
-        }
-        return setBlocks(vset, pattern);
-    }
-
-    private static double hypot(double... pars) {
-        double sum = 0;
-        for (double d : pars) {
-            sum += Math.pow(d, 2);
-        }
-        return Math.sqrt(sum);
-    }
-
-    private static Set<Vector> getBallooned(Set<Vector> vset, double radius) {
-        Set<Vector> returnset = new HashSet<Vector>();
-        int ceilrad = (int) Math.ceil(radius);
-
-        for (Vector v : vset) {
-            int tipx = v.getBlockX(), tipy = v.getBlockY(), tipz = v.getBlockZ();
-
-            for (int loopx = tipx - ceilrad; loopx <= tipx + ceilrad; loopx++) {
-                for (int loopy = tipy - ceilrad; loopy <= tipy + ceilrad; loopy++) {
-                    for (int loopz = tipz - ceilrad; loopz <= tipz + ceilrad; loopz++) {
-                        if (hypot(loopx - tipx, loopy - tipy, loopz - tipz) <= radius) {
-                            returnset.add(new Vector(loopx, loopy, loopz));
-                        }
-                    }
-                }
-            }
-        }
-        return returnset;
-    }
-
-    private static Set<Vector> getHollowed(Set<Vector> vset) {
-        Set<Vector> returnset = new HashSet<Vector>();
-        for (Vector v : vset) {
-            double x = v.getX(), y = v.getY(), z = v.getZ();
-            if (!(vset.contains(new Vector(x + 1, y, z)) &&
-            vset.contains(new Vector(x - 1, y, z)) &&
-            vset.contains(new Vector(x, y + 1, z)) &&
-            vset.contains(new Vector(x, y - 1, z)) &&
-            vset.contains(new Vector(x, y, z + 1)) &&
-            vset.contains(new Vector(x, y, z - 1)))) {
-                returnset.add(v);
-            }
-        }
-        return returnset;
-    }
-
-    private void recurseHollow(Region region, BlockVector origin, Set<BlockVector> outside) {
-        final LinkedList<BlockVector> queue = new LinkedList<BlockVector>();
-        queue.addLast(origin);
-
-        while (!queue.isEmpty()) {
-            final BlockVector current = queue.removeFirst();
-            if (!BlockType.canPassThrough(getBlockType(current), getBlockData(current))) {
-                continue;
-            }
-
-            if (!outside.add(current)) {
-                continue;
-            }
-
-            if (!region.contains(current)) {
-                continue;
-            }
-
-            for (Vector recurseDirection: recurseDirections) {
-                queue.addLast(current.add(recurseDirection).toBlockVector());
-            }
-        } // while
+        return rasterizer.generate(this, Patterns.wrap(pattern), !filled);
     }
 
     public int makeBiomeShape(final Region region, final Vector zero, final Vector unit, final BaseBiome biomeType, final String expressionString, final boolean hollow) throws ExpressionException, MaxChangedBlocksException {
@@ -2316,15 +2247,6 @@ protected BaseBiome getBiome(int x, int z, BaseBiome defaultBiomeType) {
         return shape.generate(this, biomeType, hollow);
     }
 
-    private static final Vector[] recurseDirections = {
-            PlayerDirection.NORTH.vector(),
-            PlayerDirection.EAST.vector(),
-            PlayerDirection.SOUTH.vector(),
-            PlayerDirection.WEST.vector(),
-            PlayerDirection.UP.vector(),
-            PlayerDirection.DOWN.vector(),
-    };
-
     private static double lengthSq(double x, double y, double z) {
         return (x * x) + (y * y) + (z * z);
     }
@@ -2333,4 +2255,42 @@ private static double lengthSq(double x, double z) {
         return (x * x) + (z * z);
     }
 
+    /**
+     * The blocks that {@link #hollowOutRegion(Region, int, Pattern)} has
+     * found to be outside, as indices into its grid.
+     */
+    private static class HollowQueue {
+        private int[] elements = new int[1024];
+        private int size;
+
+        /**
+         * Add a block that the outside flows into if it can be passed through.
+         */
+        private void offerOutside(int index, BitSet passable, BitSet outside) {
+            if (passable.get(index) && !outside.get(index)) {
+                outside.set(index);
+                add(index);
+            }
+        }
+
+        /**
+         * Add a block of the region to the next layer of the shell. The
+         * index may be outside of the grid, or wrap around to another row
+         * of it, when the layer is next to a block on the margin.
+         */
+        private void offerLayer(int index, BitSet inside, BitSet outside) {
+            if (index >= 0 && inside.get(index) && !outside.get(index)) {
+                outside.set(index);
+                add(index);
+            }
+        }
+
+        private void add(int index) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size * 2);
+            }
+            elements[size++] = index;
+        }
+    }
+
 }
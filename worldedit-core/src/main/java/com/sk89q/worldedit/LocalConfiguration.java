@@ -111,6 +111,9 @@ public abstract class LocalConfiguration {
     public int butcherDefaultRadius = -1;
     public int butcherMaxRadius = -1;
     public boolean allowSymlinks = false;
+    public int historyMemoryBudget = -1;
+    public int operationTickBudget = -1;
+    public int schematicCompressionLevel = -1;
 
     /**
      * Load the configuration.
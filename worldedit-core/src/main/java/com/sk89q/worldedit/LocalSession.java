@@ -41,6 +41,7 @@
 import com.sk89q.worldedit.regions.selector.CuboidRegionSelector;
 import com.sk89q.worldedit.regions.selector.RegionSelectorType;
 import com.sk89q.worldedit.session.ClipboardHolder;
+import com.sk89q.worldedit.session.SessionHistory;
 import com.sk89q.worldedit.session.request.Request;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.snapshot.Snapshot;
@@ -48,7 +49,6 @@
 import javax.annotation.Nullable;
 import java.util.Calendar;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -69,8 +69,7 @@ public class LocalSession {
     // Session related
     private transient RegionSelector selector = new CuboidRegionSelector();
     private transient boolean placeAtPos1 = false;
-    private transient LinkedList<EditSession> history = new LinkedList<EditSession>();
-    private transient int historyPointer = 0;
+    private transient SessionHistory history = new SessionHistory();
     private transient ClipboardHolder clipboard;
     private transient boolean toolControl = true;
     private transient boolean superPickaxe = false;
@@ -172,12 +171,20 @@ public void setTimezone(TimeZone timezone) {
         this.timezone = timezone;
     }
 
+    /**
+     * Get the undo history.
+     *
+     * @return the history
+     */
+    public SessionHistory getHistory() {
+        return history;
+    }
+
     /**
      * Clear history.
      */
     public void clearHistory() {
         history.clear();
-        historyPointer = 0;
     }
 
     /**
@@ -192,15 +199,7 @@ public void remember(EditSession editSession) {
         // Don't store anything if no changes were made
         if (editSession.size() == 0) return;
 
-        // Destroy any sessions after this undo point
-        while (historyPointer < history.size()) {
-            history.remove(historyPointer);
-        }
-        history.add(editSession);
-        while (history.size() > MAX_HISTORY_SIZE) {
-            history.remove(0);
-        }
-        historyPointer = history.size();
+        history.remember(editSession);
     }
 
     /**
@@ -223,19 +222,7 @@ public EditSession undo(@Nullable BlockBag newBlockBag, LocalPlayer player) {
      */
     public EditSession undo(@Nullable BlockBag newBlockBag, Player player) {
         checkNotNull(player);
-        --historyPointer;
-        if (historyPointer >= 0) {
-            EditSession editSession = history.get(historyPointer);
-            EditSession newEditSession = WorldEdit.getInstance().getEditSessionFactory()
-                    .getEditSession(editSession.getWorld(), -1, newBlockBag, player);
-            newEditSession.enableQueue();
-            newEditSession.setFastMode(fastMode);
-            editSession.undo(newEditSession);
-            return editSession;
-        } else {
-            historyPointer = 0;
-            return null;
-        }
+        return history.undo(newBlockBag, player, fastMode);
     }
 
     /**
@@ -258,18 +245,7 @@ public EditSession redo(@Nullable BlockBag newBlockBag, LocalPlayer player) {
      */
     public EditSession redo(@Nullable BlockBag newBlockBag, Player player) {
         checkNotNull(player);
-        if (historyPointer < history.size()) {
-            EditSession editSession = history.get(historyPointer);
-            EditSession newEditSession = WorldEdit.getInstance().getEditSessionFactory()
-                    .getEditSession(editSession.getWorld(), -1, newBlockBag, player);
-            newEditSession.enableQueue();
-            newEditSession.setFastMode(fastMode);
-            editSession.redo(newEditSession);
-            ++historyPointer;
-            return editSession;
-        }
-
-        return null;
+        return history.redo(newBlockBag, player, fastMode);
     }
 
     /**
@@ -42,6 +42,8 @@
 import com.sk89q.worldedit.scripting.CraftScriptContext;
 import com.sk89q.worldedit.scripting.CraftScriptEngine;
 import com.sk89q.worldedit.scripting.RhinoCraftScriptEngine;
+import com.sk89q.worldedit.session.OperationScheduler;
+import com.sk89q.worldedit.session.SchematicService;
 import com.sk89q.worldedit.session.SessionManager;
 import com.sk89q.worldedit.session.request.Request;
 import com.sk89q.worldedit.util.eventbus.EventBus;
@@ -93,6 +95,8 @@ public class WorldEdit {
     private final PlatformManager platformManager = new PlatformManager(this);
     private final EditSessionFactory editSessionFactory = new EditSessionFactory.EditSessionFactoryImpl(eventBus);
     private final SessionManager sessions = new SessionManager(this);
+    private final OperationScheduler scheduler = new OperationScheduler(this);
+    private final SchematicService schematicService = new SchematicService(this);
 
     private final BlockFactory blockFactory = new BlockFactory(this);
     private final MaskFactory maskFactory = new MaskFactory(this);
@@ -181,6 +185,24 @@ public SessionManager getSessionManager() {
         return sessions;
     }
 
+    /**
+     * Return the scheduler that runs large edits over several ticks.
+     *
+     * @return the operation scheduler
+     */
+    public OperationScheduler getOperationScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Return the service that saves and loads schematics in the background.
+     *
+     * @return the schematic service
+     */
+    public SchematicService getSchematicService() {
+        return schematicService;
+    }
+
     /**
      * @deprecated Use {@link #getSessionManager()}
      */
@@ -738,6 +760,7 @@ public void runScript(Player player, File f, String[] args) throws WorldEditExce
         }
 
         LocalSession session = getSessionManager().get(player);
+        getOperationScheduler().checkIdle(session);
         CraftScriptContext scriptContext = new CraftScriptContext(this, getServer(), getConfiguration(), session, player, args);
 
         CraftScriptEngine engine = null;
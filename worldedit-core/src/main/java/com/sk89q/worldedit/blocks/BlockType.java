@@ -26,6 +26,7 @@
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
@@ -477,7 +478,7 @@ public String getName() {
      * @return true if the block should be placed last
      */
     public static boolean shouldPlaceLast(int id) {
-        return shouldPlaceLast.contains(id);
+        return hasProperty(id, PLACE_LAST);
     }
 
     /**
@@ -487,7 +488,7 @@ public static boolean shouldPlaceLast(int id) {
      * @return true if the block should be placed last
      */
     public boolean shouldPlaceLast() {
-        return shouldPlaceLast.contains(id);
+        return hasProperty(id, PLACE_LAST);
     }
 
     /**
@@ -517,7 +518,7 @@ public boolean shouldPlaceLast() {
      * @return whether the block is in the final queue
      */
     public static boolean shouldPlaceFinal(int id) {
-        return shouldPlaceFinal.contains(id);
+        return hasProperty(id, PLACE_FINAL);
     }
 
     /**
@@ -588,7 +589,7 @@ public static boolean shouldPlaceFinal(int id) {
      * @return true if the block can be passed through
      */
     public static boolean canPassThrough(int id) {
-        return canPassThrough.contains(id);
+        return hasProperty(id, PASS_THROUGH);
     }
 
     /**
@@ -599,7 +600,7 @@ public static boolean canPassThrough(int id) {
      * @return true if the block can be passed through
      */
     public static boolean canPassThrough(int id, int data) {
-        return canPassThrough.contains(-16*id-data) || canPassThrough.contains(id);
+        return hasProperty(id, data, PASS_THROUGH);
     }
 
     /**
@@ -619,7 +620,7 @@ public static boolean canPassThrough(BaseBlock block) {
      * @return whether the block can be passed through
      */
     public boolean canPassThrough() {
-        return canPassThrough.contains(id);
+        return hasProperty(id, PASS_THROUGH);
     }
 
     /**
@@ -691,13 +692,13 @@ public boolean canPassThrough() {
      * @return the y offset
      */
     public static double centralTopLimit(int id, int data) {
-        if (centralTopLimit.containsKey(-16*id-data))
-            return centralTopLimit.get(-16*id-data);
-
-        if (centralTopLimit.containsKey(id))
-            return centralTopLimit.get(id);
-
-        return canPassThrough(id) ? 0 : 1;
+        if (id < 0 || id >= typeProperties.length) {
+            return 1;
+        }
+        if (data < 0 || data > BaseBlock.MAX_DATA) {
+            return typeTopLimits[id];
+        }
+        return dataTopLimits[typeDataKey(id, data)];
     }
 
     /**
@@ -717,10 +718,7 @@ public static double centralTopLimit(BaseBlock block) {
      * @return the y offset
      */
     public double centralTopLimit() {
-        if (centralTopLimit.containsKey(id))
-            return centralTopLimit.get(id);
-
-        return canPassThrough(id) ? 0 : 1;
+        return id < typeTopLimits.length ? typeTopLimits[id] : 1;
     }
 
     /**
@@ -856,7 +854,7 @@ public double centralTopLimit() {
      * @return true if the block type uses its data value
      */
     public static boolean usesData(int id) {
-        return usesData.contains(id);
+        return hasProperty(id, USES_DATA);
     }
 
     /**
@@ -865,7 +863,7 @@ public static boolean usesData(int id) {
      * @return true if this block type uses its data value
      */
     public boolean usesData() {
-        return usesData.contains(id);
+        return hasProperty(id, USES_DATA);
     }
 
     /**
@@ -891,7 +889,7 @@ public boolean usesData() {
      * @return true if the block is a container
      */
     public static boolean isContainerBlock(int id) {
-        return isContainerBlock.contains(id);
+        return hasProperty(id, CONTAINER);
     }
 
     /**
@@ -900,7 +898,7 @@ public static boolean isContainerBlock(int id) {
      * @return true if the block is a container block
      */
     public boolean isContainerBlock() {
-        return isContainerBlock.contains(id);
+        return hasProperty(id, CONTAINER);
     }
 
     /**
@@ -949,7 +947,7 @@ public boolean isContainerBlock() {
      * @return true if the block uses Redstone
      */
     public static boolean isRedstoneBlock(int id) {
-        return isRedstoneBlock.contains(id);
+        return hasProperty(id, REDSTONE);
     }
 
     /**
@@ -958,7 +956,7 @@ public static boolean isRedstoneBlock(int id) {
      * @return true if the block uses Redstone
      */
     public boolean isRedstoneBlock() {
-        return isRedstoneBlock.contains(id);
+        return hasProperty(id, REDSTONE);
     }
 
     /**
@@ -984,7 +982,7 @@ public boolean isRedstoneBlock() {
      * @return true if the block can transfer redstone
      */
     public static boolean canTransferRedstone(int id) {
-        return canTransferRedstone.contains(id);
+        return hasProperty(id, TRANSFERS_REDSTONE);
     }
 
     /**
@@ -995,7 +993,7 @@ public static boolean canTransferRedstone(int id) {
      * @return true if the block can transfer redstone
      */
     public boolean canTransferRedstone() {
-        return canTransferRedstone.contains(id);
+        return hasProperty(id, TRANSFERS_REDSTONE);
     }
 
     /**
@@ -1026,7 +1024,7 @@ public boolean canTransferRedstone() {
      * @return true if the block is a Redstone source
      */
     public static boolean isRedstoneSource(int id) {
-        return isRedstoneSource.contains(id);
+        return hasProperty(id, REDSTONE_SOURCE);
     }
 
     /**
@@ -1035,7 +1033,7 @@ public static boolean isRedstoneSource(int id) {
      * @return true if the block is a Redstone source
      */
     public boolean isRedstoneSource() {
-        return isRedstoneSource.contains(id);
+        return hasProperty(id, REDSTONE_SOURCE);
     }
 
     /**
@@ -1056,7 +1054,7 @@ public boolean isRedstoneSource() {
      * @return true if the block is a rail block
      */
     public static boolean isRailBlock(int id) {
-        return isRailBlock.contains(id);
+        return hasProperty(id, RAIL);
     }
 
     /**
@@ -1065,7 +1063,7 @@ public static boolean isRailBlock(int id) {
      * @return true if the block is a rail block
      */
     public boolean isRailBlock() {
-        return isRailBlock.contains(id);
+        return hasProperty(id, RAIL);
     }
 
     /**
@@ -1111,7 +1109,7 @@ public boolean isRailBlock() {
      */
     @Deprecated
     public static boolean isNaturalTerrainBlock(int id) {
-        return isNaturalTerrainBlock.contains(id);
+        return hasProperty(id, NATURAL_TERRAIN);
     }
 
     /**
@@ -1122,7 +1120,7 @@ public static boolean isNaturalTerrainBlock(int id) {
      * @return true if the block type is naturally occurring
      */
     public static boolean isNaturalTerrainBlock(int id, int data) {
-        return isNaturalTerrainBlock.contains(-16*id-data) || isNaturalTerrainBlock.contains(id);
+        return hasProperty(id, data, NATURAL_TERRAIN);
     }
 
     /**
@@ -1141,7 +1139,7 @@ public static boolean isNaturalTerrainBlock(BaseBlock block) {
      * @return true if the block type is naturally occurring
      */
     public boolean isNaturalTerrainBlock() {
-        return isNaturalTerrainBlock.contains(id);
+        return hasProperty(id, NATURAL_TERRAIN);
     }
 
     /**
@@ -1179,7 +1177,7 @@ public boolean isNaturalTerrainBlock() {
      * @return true if the block emits light
      */
     public static boolean emitsLight(int id) {
-        return emitsLight.contains(id);
+        return hasProperty(id, EMITS_LIGHT);
     }
 
     /**
@@ -1311,7 +1309,122 @@ public static boolean emitsLight(int id) {
      * @return true if the block type lets light through
      */
     public static boolean isTranslucent(int id) {
-        return isTranslucent.contains(id);
+        return hasProperty(id, TRANSLUCENT);
+    }
+
+    private static final int PLACE_LAST = 1;
+    private static final int PLACE_FINAL = 1 << 1;
+    private static final int PASS_THROUGH = 1 << 2;
+    private static final int USES_DATA = 1 << 3;
+    private static final int CONTAINER = 1 << 4;
+    private static final int REDSTONE = 1 << 5;
+    private static final int TRANSFERS_REDSTONE = 1 << 6;
+    private static final int REDSTONE_SOURCE = 1 << 7;
+    private static final int RAIL = 1 << 8;
+    private static final int NATURAL_TERRAIN = 1 << 9;
+    private static final int EMITS_LIGHT = 1 << 10;
+    private static final int TRANSLUCENT = 1 << 11;
+
+    /**
+     * Property flags of each type ID, for lookups that ignore data values.
+     */
+    private static final int[] typeProperties;
+    /**
+     * Property flags of each type ID and data value, indexed by
+     * {@link #typeDataKey(int, int)}.
+     */
+    private static final int[] dataProperties;
+    private static final double[] typeTopLimits;
+    private static final double[] dataTopLimits;
+    static {
+        // The sets above are keyed by either a type ID or by -16*id-data for
+        // a data value, and are flattened into arrays that are only as large
+        // as the highest ID in them
+        Map<Set<Integer>, Integer> sets = new LinkedHashMap<Set<Integer>, Integer>();
+        sets.put(shouldPlaceLast, PLACE_LAST);
+        sets.put(shouldPlaceFinal, PLACE_FINAL);
+        sets.put(canPassThrough, PASS_THROUGH);
+        sets.put(usesData, USES_DATA);
+        sets.put(isContainerBlock, CONTAINER);
+        sets.put(isRedstoneBlock, REDSTONE);
+        sets.put(canTransferRedstone, TRANSFERS_REDSTONE);
+        sets.put(isRedstoneSource, REDSTONE_SOURCE);
+        sets.put(isRailBlock, RAIL);
+        sets.put(isNaturalTerrainBlock, NATURAL_TERRAIN);
+        sets.put(emitsLight, EMITS_LIGHT);
+        sets.put(isTranslucent, TRANSLUCENT);
+
+        int maxId = 0;
+        for (Set<Integer> set : sets.keySet()) {
+            for (int key : set) {
+                maxId = Math.max(maxId, toTypeId(key));
+            }
+        }
+        for (int key : centralTopLimit.keySet()) {
+            maxId = Math.max(maxId, toTypeId(key));
+        }
+
+        typeProperties = new int[maxId + 1];
+        dataProperties = new int[(maxId + 1) << 4];
+        for (Map.Entry<Set<Integer>, Integer> entry : sets.entrySet()) {
+            int flag = entry.getValue();
+            for (int key : entry.getKey()) {
+                int id = toTypeId(key);
+                if (key >= 0) {
+                    typeProperties[id] |= flag;
+                    for (int data = 0; data <= BaseBlock.MAX_DATA; ++data) {
+                        dataProperties[typeDataKey(id, data)] |= flag;
+                    }
+                } else {
+                    dataProperties[typeDataKey(id, -key & 15)] |= flag;
+                }
+            }
+        }
+
+        typeTopLimits = new double[maxId + 1];
+        dataTopLimits = new double[(maxId + 1) << 4];
+        for (int id = 0; id <= maxId; ++id) {
+            Double typeLimit = centralTopLimit.get(id);
+            if (typeLimit == null) {
+                typeLimit = (typeProperties[id] & PASS_THROUGH) != 0 ? 0.0 : 1.0;
+            }
+            typeTopLimits[id] = typeLimit;
+            for (int data = 0; data <= BaseBlock.MAX_DATA; ++data) {
+                Double limit = centralTopLimit.get(-16 * id - data);
+                dataTopLimits[typeDataKey(id, data)] = limit != null ? limit : typeLimit;
+            }
+        }
+    }
+
+    private static int toTypeId(int key) {
+        return key >= 0 ? key : -key >> 4;
+    }
+
+    /**
+     * Checks whether a type ID has a property, regardless of its data value.
+     *
+     * @param id the type ID
+     * @param flag the property flag
+     * @return true if the type has the property
+     */
+    private static boolean hasProperty(int id, int flag) {
+        return id >= 0 && id < typeProperties.length && (typeProperties[id] & flag) != 0;
+    }
+
+    /**
+     * Checks whether a block has a property, either because of its type ID
+     * or because of its data value.
+     *
+     * @param id the type ID
+     * @param data the data value
+     * @param flag the property flag
+     * @return true if the block has the property
+     */
+    private static boolean hasProperty(int id, int data, int flag) {
+        if (data < 0 || data > BaseBlock.MAX_DATA) {
+            return hasProperty(id, flag);
+        }
+        return id >= 0 && id < typeProperties.length && (dataProperties[typeDataKey(id, data)] & flag) != 0;
     }
 
     /**
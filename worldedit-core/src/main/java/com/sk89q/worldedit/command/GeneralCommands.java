@@ -78,6 +78,20 @@ public void limit(Player player, LocalSession session, EditSession editSession,
         }
     }
 
+    @Command(
+        aliases = { "/cancel" },
+        usage = "",
+        desc = "Cancel your edits that are running in the background",
+        min = 0,
+        max = 0
+    )
+    @CommandPermissions("worldedit.cancel")
+    public void cancel(Player player, LocalSession session) throws WorldEditException {
+        if (worldEdit.getOperationScheduler().cancel(session) == 0) {
+            player.printError("You have no edits running in the background.");
+        }
+    }
+
     @Command(
         aliases = { "/fast" },
         usage = "[on|off]",
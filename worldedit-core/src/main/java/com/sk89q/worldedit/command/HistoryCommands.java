@@ -52,7 +52,8 @@ public HistoryCommands(WorldEdit worldEdit) {
         max = 2
     )
     @CommandPermissions("worldedit.history.undo")
-    public void undo(Player player, LocalSession session, EditSession editSession, CommandContext args) throws WorldEditException {
+    public void undo(Player player, LocalSession session, CommandContext args) throws WorldEditException {
+        worldEdit.getOperationScheduler().cancel(session);
         int times = Math.max(1, args.getInteger(0, 1));
         for (int i = 0; i < times; ++i) {
             EditSession undone;
@@ -65,6 +66,7 @@ public void undo(Player player, LocalSession session, EditSession editSession, C
                     player.printError("Unable to find session for " + args.getString(1));
                     break;
                 }
+                worldEdit.getOperationScheduler().cancel(sess);
                 undone = sess.undo(session.getBlockBag(player), player);
             }
             if (undone != null) {
@@ -85,8 +87,9 @@ public void undo(Player player, LocalSession session, EditSession editSession, C
         max = 2
     )
     @CommandPermissions("worldedit.history.redo")
-    public void redo(Player player, LocalSession session, EditSession editSession, CommandContext args) throws WorldEditException {
-        
+    public void redo(Player player, LocalSession session, CommandContext args) throws WorldEditException {
+        worldEdit.getOperationScheduler().cancel(session);
+
         int times = Math.max(1, args.getInteger(0, 1));
 
         for (int i = 0; i < times; ++i) {
@@ -100,6 +103,7 @@ public void redo(Player player, LocalSession session, EditSession editSession, C
                     player.printError("Unable to find session for " + args.getString(1));
                     break;
                 }
+                worldEdit.getOperationScheduler().cancel(sess);
                 redone = sess.redo(session.getBlockBag(player), player);
             }
             if (redone != null) {
@@ -119,7 +123,8 @@ public void redo(Player player, LocalSession session, EditSession editSession, C
         max = 0
     )
     @CommandPermissions("worldedit.history.clear")
-    public void clearHistory(Player player, LocalSession session, EditSession editSession) throws WorldEditException {
+    public void clearHistory(Player player, LocalSession session) throws WorldEditException {
+        worldEdit.getOperationScheduler().cancel(session);
         session.clearHistory();
         player.print("History cleared.");
     }
@@ -26,15 +26,19 @@
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.function.GroundFunction;
+import com.sk89q.worldedit.function.RegionMaskingFilter;
+import com.sk89q.worldedit.function.block.BlockReplace;
 import com.sk89q.worldedit.function.generator.FloraGenerator;
 import com.sk89q.worldedit.function.generator.ForestGenerator;
 import com.sk89q.worldedit.function.mask.ExistingBlockMask;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.mask.NoiseFilter2D;
+import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.function.pattern.Patterns;
 import com.sk89q.worldedit.function.visitor.LayerVisitor;
+import com.sk89q.worldedit.function.visitor.RegionVisitor;
 import com.sk89q.worldedit.internal.annotation.Direction;
 import com.sk89q.worldedit.internal.annotation.Selection;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
@@ -87,8 +91,12 @@ public RegionCommands(WorldEdit worldEdit) {
     @CommandPermissions("worldedit.region.set")
     @Logging(REGION)
     public void set(Player player, LocalSession session, EditSession editSession, Pattern pattern) throws WorldEditException {
-        int affected = editSession.setBlocks(session.getSelection(player.getWorld()), Patterns.wrap(pattern));
-        player.print(affected + " block(s) have been changed.");
+        BlockReplace replace = new BlockReplace(editSession, pattern);
+        // The selection may change while the edit runs in the background
+        RegionVisitor visitor = new RegionVisitor(session.getSelection(player.getWorld()).clone(), replace);
+        if (!worldEdit.getOperationScheduler().submit(player, session, editSession, visitor, "//set")) {
+            player.print(visitor.getAffected() + " block(s) have been changed.");
+        }
     }
 
     @Command(
@@ -168,12 +176,15 @@ public void curve(Player player, EditSession editSession,
     )
     @CommandPermissions("worldedit.region.replace")
     @Logging(REGION)
-    public void replace(Player player, EditSession editSession, @Selection Region region, @Optional Mask from, Pattern to) throws WorldEditException {
+    public void replace(Player player, LocalSession session, EditSession editSession, @Selection Region region, @Optional Mask from, Pattern to) throws WorldEditException {
         if (from == null) {
             from = new ExistingBlockMask(editSession);
         }
-        int affected = editSession.replaceBlocks(region, from, Patterns.wrap(to));
-        player.print(affected + " block(s) have been replaced.");
+        BlockReplace replace = new BlockReplace(editSession, to);
+        RegionVisitor visitor = new RegionVisitor(region.clone(), new RegionMaskingFilter(from, replace));
+        if (!worldEdit.getOperationScheduler().submit(player, session, editSession, visitor, "//replace")) {
+            player.print(visitor.getAffected() + " block(s) have been replaced.");
+        }
     }
 
     @Command(
@@ -361,11 +372,13 @@ public void regenerateChunk(Player player, LocalSession session, EditSession edi
         Mask mask = session.getMask();
         try {
             session.setMask((Mask) null);
-            player.getWorld().regenerate(region, editSession);
+            Operation regeneration = player.getWorld().createRegeneration(region, editSession);
+            if (!worldEdit.getOperationScheduler().submit(player, session, editSession, regeneration, "//regen")) {
+                player.print("Region regenerated.");
+            }
         } finally {
             session.setMask(mask);
         }
-        player.print("Region regenerated.");
     }
 
     @Command(
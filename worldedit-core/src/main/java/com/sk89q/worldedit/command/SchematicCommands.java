@@ -35,21 +35,13 @@
 import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
-import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
-import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.math.transform.Transform;
 import com.sk89q.worldedit.session.ClipboardHolder;
-import com.sk89q.worldedit.util.io.Closer;
 import com.sk89q.worldedit.util.command.parametric.Optional;
-import com.sk89q.worldedit.world.registry.WorldData;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -100,7 +92,6 @@ public void load(Player player, LocalSession session, @Optional("schematic") Str
             return;
         }
 
-        Closer closer = Closer.create();
         try {
             String filePath = f.getCanonicalPath();
             String dirPath = dir.getCanonicalPath();
@@ -108,25 +99,12 @@ public void load(Player player, LocalSession session, @Optional("schematic") Str
             if (!filePath.substring(0, dirPath.length()).equals(dirPath)) {
                 player.printError("Clipboard file could not read or it does not exist.");
             } else {
-                FileInputStream fis = closer.register(new FileInputStream(f));
-                BufferedInputStream bis = closer.register(new BufferedInputStream(fis));
-                ClipboardReader reader = format.getReader(bis);
-
-                WorldData worldData = player.getWorld().getWorldData();
-                Clipboard clipboard = reader.read(player.getWorld().getWorldData());
-                session.setClipboard(new ClipboardHolder(clipboard, worldData));
-
-                log.info(player.getName() + " loaded " + filePath);
-                player.print(filename + " loaded. Paste it with //paste");
+                // Decoded in the background and put into the session when done
+                worldEdit.getSchematicService().load(player, session, format, f, player.getWorld().getWorldData(), filename);
             }
         } catch (IOException e) {
             player.printError("Schematic could not read or it does not exist: " + e.getMessage());
             log.log(Level.WARNING, "Failed to load a saved clipboard", e);
-        } finally {
-            try {
-                closer.close();
-            } catch (IOException ignored) {
-            }
         }
     }
 
@@ -154,41 +132,19 @@ public void save(Player player, LocalSession session, @Optional("schematic") Str
         Transform transform = holder.getTransform();
         Clipboard target;
 
-        // If we have a transform, bake it into the copy
-        if (!transform.isIdentity()) {
+        // The schematic is written in the background, so it is written from
+        // a copy that later changes to the clipboard do not affect. If we
+        // have a transform, bake it into the copy
+        if (!transform.isIdentity() || !(clipboard instanceof BlockArrayClipboard)) {
             FlattenedClipboardTransform result = FlattenedClipboardTransform.transform(clipboard, transform, holder.getWorldData());
             target = new BlockArrayClipboard(result.getTransformedRegion());
             target.setOrigin(clipboard.getOrigin());
             Operations.completeLegacy(result.copyTo(target));
         } else {
-            target = clipboard;
+            target = ((BlockArrayClipboard) clipboard).copy();
         }
 
-        Closer closer = Closer.create();
-        try {
-            // Create parent directories
-            File parent = f.getParentFile();
-            if (parent != null && !parent.exists()) {
-                if (!parent.mkdirs()) {
-                    throw new CommandException("Could not create folder for schematics!");
-                }
-            }
-
-            FileOutputStream fos = closer.register(new FileOutputStream(f));
-            BufferedOutputStream bos = closer.register(new BufferedOutputStream(fos));
-            ClipboardWriter writer = closer.register(format.getWriter(bos));
-            writer.write(target, holder.getWorldData());
-            log.info(player.getName() + " saved " + f.getCanonicalPath());
-            player.print(filename + " saved.");
-        } catch (IOException e) {
-            player.printError("Schematic could not written: " + e.getMessage());
-            log.log(Level.WARNING, "Failed to write a saved clipboard", e);
-        } finally {
-            try {
-                closer.close();
-            } catch (IOException ignored) {
-            }
-        }
+        worldEdit.getSchematicService().save(player, session, target, holder.getWorldData(), format, f, filename);
     }
 
     @Command(
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.command;
 
 import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Futures;
 import com.sk89q.minecraft.util.commands.Command;
 import com.sk89q.minecraft.util.commands.CommandContext;
 import com.sk89q.minecraft.util.commands.CommandException;
@@ -36,6 +37,8 @@
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.extension.platform.permission.ActorSelectorLimits;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.function.analysis.BlockHistogram;
+import com.sk89q.worldedit.function.analysis.RegionScanner;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.regions.RegionOperationException;
 import com.sk89q.worldedit.regions.RegionSelector;
@@ -666,8 +669,17 @@ public void distr(Player player, LocalSession session, EditSession editSession,
         List<Countable<BaseBlock>> distributionData = null;
 
         if (args.hasFlag('c')) {
-            // TODO: Update for new clipboard
-            throw new CommandException("Needs to be re-written again");
+            ClipboardHolder holder = session.getClipboard();
+            Clipboard clipboard = holder.getClipboard();
+            Region region = clipboard.getRegion();
+            // The clipboard can be read from worker threads
+            BlockHistogram histogram = Futures.getUnchecked(new RegionScanner(clipboard, region).getHistogramAsync());
+            if (useData) {
+                distributionData = histogram.getDistributionWithData();
+            } else {
+                distribution = histogram.getDistribution();
+            }
+            size = region.getArea();
         } else {
             if (useData) {
                 distributionData = editSession.getBlockDistributionWithData(session.getSelection(player.getWorld()));
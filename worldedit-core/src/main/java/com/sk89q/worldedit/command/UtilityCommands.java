@@ -413,6 +413,7 @@ public void butcher(Actor actor, CommandContext args) throws WorldEditException
 
         if (player != null) {
             session = we.getSessionManager().get(player);
+            we.getOperationScheduler().checkIdle(session);
             Vector center = session.getPlacementPosition(player);
             editSession = session.createEditSession(player);
             List<? extends Entity> entities;
@@ -473,6 +474,7 @@ public void remove(Actor actor, CommandContext args) throws WorldEditException,
 
         if (player != null) {
             session = we.getSessionManager().get(player);
+            we.getOperationScheduler().checkIdle(session);
             Vector center = session.getPlacementPosition(player);
             editSession = session.createEditSession(player);
             List<? extends Entity> entities;
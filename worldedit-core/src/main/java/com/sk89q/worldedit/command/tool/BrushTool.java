@@ -175,12 +175,10 @@ public boolean actPrimary(Platform server, LocalConfiguration config, Player pla
 
             if (existingMask == null) {
                 editSession.setMask(mask);
-            } else if (existingMask instanceof MaskIntersection) {
-                ((MaskIntersection) existingMask).add(mask);
             } else {
-                MaskIntersection newMask = new MaskIntersection(existingMask);
-                newMask.add(mask);
-                editSession.setMask(newMask);
+                // The session's mask is not modified, as it is shared with
+                // later edits
+                editSession.setMask(new MaskIntersection(existingMask, mask));
             }
         }
 
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.command.tool.brush;
 
 import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.extent.cache.ColumnCache;
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.internal.LocalWorldAdapter;
 import com.sk89q.worldedit.math.convolution.HeightMap;
@@ -31,8 +32,15 @@
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 
+import java.util.concurrent.TimeUnit;
+
 public class SmoothBrush implements Brush {
 
+    /**
+     * Columns read for one stroke are reused by the strokes that follow
+     * shortly after it, unless they have been changed.
+     */
+    private final ColumnCache cache = new ColumnCache(2, TimeUnit.SECONDS, 16384);
     private int iterations;
     private boolean naturalOnly;
 
@@ -50,7 +58,7 @@ public void build(EditSession editSession, Vector position, Pattern pattern, dou
         WorldVector min = new WorldVector(LocalWorldAdapter.adapt(editSession.getWorld()), position.subtract(size, size, size));
         Vector max = position.add(size, size + 10, size);
         Region region = new CuboidRegion(editSession.getWorld(), min, max);
-        HeightMap heightMap = new HeightMap(editSession, region, naturalOnly);
+        HeightMap heightMap = new HeightMap(editSession, region, naturalOnly, cache);
         HeightMapFilter filter = new HeightMapFilter(new GaussianKernel(5, 1.0));
         heightMap.applyFilter(filter, iterations);
     }
@@ -28,6 +28,13 @@
 import com.sk89q.worldedit.function.pattern.RandomPattern;
 import com.sk89q.worldedit.internal.registry.InputParser;
 
+/**
+ * Parses a weighted list of blocks, such as {@code 80%stone,20%dirt}.
+ *
+ * <p>A seed can be appended after an {@code @}, such as
+ * {@code 80%stone,20%dirt@42}, so that the same blocks are picked for the
+ * same positions every time the pattern is used.</p>
+ */
 class RandomPatternParser extends InputParser<Pattern> {
 
     RandomPatternParser(WorldEdit worldEdit) {
@@ -37,7 +44,20 @@ class RandomPatternParser extends InputParser<Pattern> {
     @Override
     public Pattern parseFromInput(String input, ParserContext context) throws InputParseException {
         BlockFactory blockRegistry = worldEdit.getBlockFactory();
-        RandomPattern randomPattern = new RandomPattern();
+        RandomPattern randomPattern;
+
+        // Parse the seed after the last @
+        if (input.matches(".+@-?[0-9]+")) {
+            int at = input.lastIndexOf('@');
+            try {
+                randomPattern = new RandomPattern(Long.parseLong(input.substring(at + 1)));
+            } catch (NumberFormatException e) {
+                throw new InputParseException("The seed of '" + input + "' is too large");
+            }
+            input = input.substring(0, at);
+        } else {
+            randomPattern = new RandomPattern();
+        }
 
         for (String token : input.split(",")) {
             BaseBlock block;
@@ -33,6 +33,7 @@
 import com.sk89q.worldedit.event.platform.CommandSuggestionEvent;
 import com.sk89q.worldedit.internal.command.ActorAuthorizer;
 import com.sk89q.worldedit.internal.command.CommandLoggingHandler;
+import com.sk89q.worldedit.internal.command.QueuedEditsHandler;
 import com.sk89q.worldedit.internal.command.UserCommandCompleter;
 import com.sk89q.worldedit.internal.command.WorldEditBinding;
 import com.sk89q.worldedit.internal.command.WorldEditExceptionConverter;
@@ -100,6 +101,7 @@ public final class CommandManager {
         builder.addExceptionConverter(new WorldEditExceptionConverter(worldEdit));
         builder.addInvokeListener(new LegacyCommandsHandler());
         builder.addInvokeListener(new CommandLoggingHandler(worldEdit, commandLog));
+        builder.addInvokeListener(new QueuedEditsHandler(worldEdit));
 
         dispatcher = new CommandGraph()
                 .builder(builder)
@@ -253,7 +255,8 @@ public void handleCommand(CommandEvent event) {
         } finally {
             EditSession editSession = locals.get(EditSession.class);
 
-            if (editSession != null) {
+            // Edits that are still running are remembered by the scheduler once they finish
+            if (editSession != null && !worldEdit.getOperationScheduler().isScheduled(editSession)) {
                 session.remember(editSession);
                 editSession.flushQueue();
 
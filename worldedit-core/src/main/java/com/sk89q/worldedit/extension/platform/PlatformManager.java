@@ -40,6 +40,7 @@
 import com.sk89q.worldedit.extension.platform.permission.ActorSelectorLimits;
 import com.sk89q.worldedit.internal.ServerInterfaceAdapter;
 import com.sk89q.worldedit.regions.RegionSelector;
+import com.sk89q.worldedit.session.EditsQueuedException;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.util.eventbus.Subscribe;
 import com.sk89q.worldedit.world.World;
@@ -342,7 +343,7 @@ public void handleBlockInteract(BlockInteractEvent event) {
                 if (player.isHoldingPickAxe() && session.hasSuperPickAxe()) {
                     final BlockTool superPickaxe = session.getSuperPickaxe();
                     if (superPickaxe != null && superPickaxe.canUse(player)) {
-                        event.setCancelled(superPickaxe.actPrimary(queryCapability(Capability.WORLD_EDITING), getConfiguration(), player, session, location));
+                        event.setCancelled(hasQueuedEdits(player, session) || superPickaxe.actPrimary(queryCapability(Capability.WORLD_EDITING), getConfiguration(), player, session, location));
                         return;
                     }
                 }
@@ -350,7 +351,9 @@ public void handleBlockInteract(BlockInteractEvent event) {
                 Tool tool = session.getTool(player.getItemInHand());
                 if (tool != null && tool instanceof DoubleActionBlockTool) {
                     if (tool.canUse(player)) {
-                        ((DoubleActionBlockTool) tool).actSecondary(queryCapability(Capability.WORLD_EDITING), getConfiguration(), player, session, location);
+                        if (!hasQueuedEdits(player, session)) {
+                            ((DoubleActionBlockTool) tool).actSecondary(queryCapability(Capability.WORLD_EDITING), getConfiguration(), player, session, location);
+                        }
                         event.setCancelled(true);
                     }
                 }
@@ -377,7 +380,9 @@ public void handleBlockInteract(BlockInteractEvent event) {
                 Tool tool = session.getTool(player.getItemInHand());
                 if (tool != null && tool instanceof BlockTool) {
                     if (tool.canUse(player)) {
-                        ((BlockTool) tool).actPrimary(queryCapability(Capability.WORLD_EDITING), getConfiguration(), player, session, location);
+                        if (!hasQueuedEdits(player, session)) {
+                            ((BlockTool) tool).actPrimary(queryCapability(Capability.WORLD_EDITING), getConfiguration(), player, session, location);
+                        }
                         event.setCancelled(true);
                     }
                 }
@@ -419,7 +424,9 @@ public void handlePlayerInput(PlayerInputEvent event) {
                 Tool tool = session.getTool(player.getItemInHand());
                 if (tool != null && tool instanceof DoubleActionTraceTool) {
                     if (tool.canUse(player)) {
-                        ((DoubleActionTraceTool) tool).actSecondary(queryCapability(Capability.WORLD_EDITING), getConfiguration(), player, session);
+                        if (!hasQueuedEdits(player, session)) {
+                            ((DoubleActionTraceTool) tool).actSecondary(queryCapability(Capability.WORLD_EDITING), getConfiguration(), player, session);
+                        }
                         event.setCancelled(true);
                         return;
                     }
@@ -451,7 +458,9 @@ public void handlePlayerInput(PlayerInputEvent event) {
                 Tool tool = session.getTool(player.getItemInHand());
                 if (tool != null && tool instanceof TraceTool) {
                     if (tool.canUse(player)) {
-                        ((TraceTool) tool).actPrimary(queryCapability(Capability.WORLD_EDITING), getConfiguration(), player, session);
+                        if (!hasQueuedEdits(player, session)) {
+                            ((TraceTool) tool).actPrimary(queryCapability(Capability.WORLD_EDITING), getConfiguration(), player, session);
+                        }
                         event.setCancelled(true);
                         return;
                     }
@@ -462,5 +471,22 @@ public void handlePlayerInput(PlayerInputEvent event) {
         }
     }
 
+    /**
+     * Return whether the session of a player has edits running in the
+     * background, telling the player so. Tools may not be used then.
+     *
+     * @param player the player
+     * @param session the player's session
+     * @return true if the session has queued edits
+     */
+    private boolean hasQueuedEdits(Player player, LocalSession session) {
+        try {
+            worldEdit.getOperationScheduler().checkIdle(session);
+            return false;
+        } catch (EditsQueuedException e) {
+            player.printError(e.getMessage());
+            return true;
+        }
+    }
 
 }
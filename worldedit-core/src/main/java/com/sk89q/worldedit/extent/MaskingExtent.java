@@ -23,6 +23,7 @@
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Masks;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -32,6 +33,7 @@
 public class MaskingExtent extends AbstractDelegateExtent {
 
     private Mask mask;
+    private Mask compiledMask;
 
     /**
      * Create a new instance.
@@ -43,6 +45,7 @@ public MaskingExtent(Extent extent, Mask mask) {
         super(extent);
         checkNotNull(mask);
         this.mask = mask;
+        this.compiledMask = Masks.compile(mask);
     }
 
     /**
@@ -57,16 +60,20 @@ public Mask getMask() {
     /**
      * Set a mask.
      *
+     * <p>The mask is compiled with {@link Masks#compile(Mask)}, so changes
+     * made to it afterwards are not seen until it is set again.</p>
+     *
      * @param mask a mask
      */
     public void setMask(Mask mask) {
         checkNotNull(mask);
         this.mask = mask;
+        this.compiledMask = Masks.compile(mask);
     }
 
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
-        return mask.test(location) && super.setBlock(location, block);
+        return compiledMask.test(location) && super.setBlock(location, block);
     }
 
 }
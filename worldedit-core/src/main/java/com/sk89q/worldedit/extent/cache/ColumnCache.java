@@ -0,0 +1,236 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.cache;
+
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.world.World;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Remembers columns of blocks that have been read with
+ * {@link EditSession#getBlockColumn(int, int, int, int, int[])}, so that
+ * repeated edits of the same area do not need to read them again.
+ *
+ * <p>A column is forgotten when a block in it is written to the world by
+ * an edit session that was created after the cache. Changes that are
+ * still queued in an edit session do not affect the cache. Changes
+ * that are not made by WorldEdit cannot be seen, so columns are also
+ * forgotten after a short time.</p>
+ */
+public class ColumnCache {
+
+    private static final Set<ColumnCache> caches = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<ColumnCache, Boolean>()));
+
+    private final long lifetime;
+    private final Map<BlockVector2D, Column> columns;
+    @Nullable
+    private World world;
+    @Nullable
+    private volatile Bounds bounds;
+
+    /**
+     * Create a new cache.
+     *
+     * @param lifetime the time after which a column is read again
+     * @param unit the unit of the lifetime
+     * @param maxColumns the maximum number of columns to remember
+     */
+    public ColumnCache(long lifetime, TimeUnit unit, final int maxColumns) {
+        checkNotNull(unit);
+        checkArgument(maxColumns > 0, "maxColumns > 0 required");
+        this.lifetime = unit.toNanos(lifetime);
+        this.columns = new LinkedHashMap<BlockVector2D, Column>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BlockVector2D, Column> eldest) {
+                return size() > maxColumns;
+            }
+        };
+
+        caches.add(this);
+    }
+
+    /**
+     * Get the type IDs and data values of a column of blocks, in the
+     * format of {@link EditSession#getBlockColumn(int, int, int, int, int[])}.
+     *
+     * @param editSession the edit session to read from
+     * @param x the X coordinate of the column
+     * @param z the Z coordinate of the column
+     * @param minY the lowest Y coordinate to read
+     * @param maxY the highest Y coordinate to read
+     * @param blocks an array of at least {@code maxY - minY + 1} entries
+     */
+    public synchronized void getBlockColumn(EditSession editSession, int x, int z, int minY, int maxY, int[] blocks) {
+        checkNotNull(editSession);
+
+        World world = editSession.getWorld();
+        if (world == null || !world.equals(this.world)) {
+            columns.clear();
+            bounds = null;
+            this.world = world;
+        }
+
+        BlockVector2D key = new BlockVector2D(x, z);
+        Column column = columns.get(key);
+        long now = System.nanoTime();
+        if (column == null || now - column.time > lifetime || minY < column.minY || maxY > column.minY + column.blocks.length - 1) {
+            column = new Column(minY, new int[maxY - minY + 1], now);
+            editSession.getBlockColumn(x, z, minY, maxY, column.blocks);
+            columns.put(key, column);
+            if (world != null && (bounds == null || !bounds.contains(world, x, z))) {
+                bounds = Bounds.include(bounds, world, x, z);
+            }
+        }
+
+        System.arraycopy(column.blocks, minY - column.minY, blocks, 0, maxY - minY + 1);
+    }
+
+    /**
+     * Forget a column.
+     *
+     * @param world the world of the column
+     * @param x the X coordinate of the column
+     * @param z the Z coordinate of the column
+     */
+    public synchronized void invalidate(World world, int x, int z) {
+        if (world.equals(this.world) && !columns.isEmpty()) {
+            columns.remove(new BlockVector2D(x, z));
+        }
+    }
+
+    /**
+     * Forget all columns.
+     */
+    public synchronized void clear() {
+        columns.clear();
+        bounds = null;
+    }
+
+    /**
+     * Wrap the extent that an edit session writes to the world with, so
+     * that the columns of blocks that reach the world are forgotten by
+     * every cache that exists at this time.
+     *
+     * @param extent the extent that writes to the world
+     * @param world the world
+     * @return the wrapped extent, or the given extent if there are no caches
+     */
+    public static Extent watch(Extent extent, final World world) {
+        checkNotNull(extent);
+        checkNotNull(world);
+
+        final ColumnCache[] watched;
+        synchronized (caches) {
+            watched = caches.toArray(new ColumnCache[caches.size()]);
+        }
+        if (watched.length == 0) {
+            return extent;
+        }
+
+        return new AbstractDelegateExtent(extent) {
+            @Override
+            public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
+                int x = location.getBlockX();
+                int z = location.getBlockZ();
+                for (ColumnCache cache : watched) {
+                    if (cache.mayContain(world, x, z)) {
+                        cache.invalidate(world, x, z);
+                    }
+                }
+                return super.setBlock(location, block);
+            }
+        };
+    }
+
+    /**
+     * Return whether a column may be remembered, without waiting for
+     * other threads that use the cache.
+     *
+     * @param world the world of the column
+     * @param x the X coordinate of the column
+     * @param z the Z coordinate of the column
+     * @return false if the column is certainly not remembered
+     */
+    private boolean mayContain(World world, int x, int z) {
+        Bounds bounds = this.bounds;
+        return bounds != null && bounds.contains(world, x, z);
+    }
+
+    private static class Column {
+        private final int minY;
+        private final int[] blocks;
+        private final long time;
+
+        private Column(int minY, int[] blocks, long time) {
+            this.minY = minY;
+            this.blocks = blocks;
+            this.time = time;
+        }
+    }
+
+    /**
+     * The area of the columns that have been read since the cache was
+     * last cleared. Columns that have been forgotten since are still
+     * included.
+     */
+    private static class Bounds {
+        private final World world;
+        private final int minX;
+        private final int minZ;
+        private final int maxX;
+        private final int maxZ;
+
+        private Bounds(World world, int minX, int minZ, int maxX, int maxZ) {
+            this.world = world;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+        }
+
+        private boolean contains(World world, int x, int z) {
+            return x >= minX && x <= maxX && z >= minZ && z <= maxZ && world.equals(this.world);
+        }
+
+        private static Bounds include(@Nullable Bounds bounds, World world, int x, int z) {
+            if (bounds == null) {
+                return new Bounds(world, x, z, x, z);
+            }
+            return new Bounds(world, Math.min(bounds.minX, x), Math.min(bounds.minZ, z), Math.max(bounds.maxX, x), Math.max(bounds.maxZ, z));
+        }
+    }
+
+}
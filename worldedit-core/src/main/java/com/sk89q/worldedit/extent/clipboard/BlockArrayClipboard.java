@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.extent.clipboard;
 
+import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.WorldEditException;
@@ -27,6 +28,7 @@
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.world.biome.BaseBiome;
@@ -36,17 +38,26 @@
 import java.util.Collections;
 import java.util.List;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Stores block data as a multi-dimensional array of {@link BaseBlock}s and
- * other data as lists or maps.
+ * Stores block data as a palette of distinct blocks with a packed array of
+ * palette indices, and other data as lists or maps.
  */
 public class BlockArrayClipboard implements Clipboard {
 
     private final Region region;
     private Vector origin = new Vector();
-    private final BaseBlock[][][] blocks;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final boolean cuboid;
+    private final PaletteBlockStorage blocks;
     private final List<ClipboardEntity> entities = new ArrayList<ClipboardEntity>();
 
     /**
@@ -61,8 +72,53 @@ public BlockArrayClipboard(Region region) {
         this.region = region.clone();
         this.origin = region.getMinimumPoint();
 
+        Vector min = region.getMinimumPoint();
         Vector dimensions = getDimensions();
-        blocks = new BaseBlock[dimensions.getBlockX()][dimensions.getBlockY()][dimensions.getBlockZ()];
+        long volume = (long) dimensions.getBlockX() * dimensions.getBlockY() * dimensions.getBlockZ();
+        checkArgument(volume <= Integer.MAX_VALUE, "region is too large for a clipboard");
+
+        this.minX = min.getBlockX();
+        this.minY = min.getBlockY();
+        this.minZ = min.getBlockZ();
+        this.sizeX = dimensions.getBlockX();
+        this.sizeY = dimensions.getBlockY();
+        this.sizeZ = dimensions.getBlockZ();
+        this.cuboid = region instanceof CuboidRegion;
+        this.blocks = new PaletteBlockStorage((int) volume);
+    }
+
+    /**
+     * Create a copy of another clipboard.
+     *
+     * @param other the clipboard to copy
+     */
+    private BlockArrayClipboard(BlockArrayClipboard other) {
+        this.region = other.region.clone();
+        this.origin = other.origin;
+        this.minX = other.minX;
+        this.minY = other.minY;
+        this.minZ = other.minZ;
+        this.sizeX = other.sizeX;
+        this.sizeY = other.sizeY;
+        this.sizeZ = other.sizeZ;
+        this.cuboid = other.cuboid;
+        this.blocks = new PaletteBlockStorage(other.blocks);
+        for (ClipboardEntity entity : other.entities) {
+            entities.add(new ClipboardEntity(entity.getLocation(), entity.getEntity()));
+        }
+    }
+
+    /**
+     * Create a copy of this clipboard that can be read while this
+     * clipboard is changed.
+     *
+     * <p>Blocks are copied as packed arrays, so this is much cheaper than
+     * copying the clipboard block by block.</p>
+     *
+     * @return a copy of this clipboard
+     */
+    public BlockArrayClipboard copy() {
+        return new BlockArrayClipboard(this);
     }
 
     @Override
@@ -121,12 +177,8 @@ public Entity createEntity(Location location, BaseEntity entity) {
 
     @Override
     public BaseBlock getBlock(Vector position) {
-        if (region.contains(position)) {
-            Vector v = position.subtract(region.getMinimumPoint());
-            BaseBlock block = blocks[v.getBlockX()][v.getBlockY()][v.getBlockZ()];
-            if (block != null) {
-                return new BaseBlock(block);
-            }
+        if (contains(position)) {
+            return blocks.get(getIndex(position));
         }
 
         return new BaseBlock(BlockID.AIR);
@@ -139,15 +191,100 @@ public BaseBlock getLazyBlock(Vector position) {
 
     @Override
     public boolean setBlock(Vector position, BaseBlock block) throws WorldEditException {
-        if (region.contains(position)) {
-            Vector v = position.subtract(region.getMinimumPoint());
-            blocks[v.getBlockX()][v.getBlockY()][v.getBlockZ()] = new BaseBlock(block);
+        if (contains(position)) {
+            blocks.set(getIndex(position), block);
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Get the ID of the block at the given index.
+     *
+     * <p>Indices are in the layout used by the .schematic format: the block
+     * at (x, y, z), relative to the minimum point, is at index
+     * {@code (y * length + z) * width + x}.</p>
+     *
+     * @param index the index
+     * @return the block ID
+     */
+    public int getBlockId(int index) {
+        return blocks.getId(index);
+    }
+
+    /**
+     * Get the data value of the block at the given index.
+     *
+     * @param index the index, as described in {@link #getBlockId(int)}
+     * @return the data value
+     */
+    public int getBlockData(int index) {
+        return blocks.getData(index);
+    }
+
+    /**
+     * Get the NBT data of the block at the given index.
+     *
+     * @param index the index, as described in {@link #getBlockId(int)}
+     * @return the NBT data, or null
+     */
+    @Nullable
+    public CompoundTag getNbtData(int index) {
+        return blocks.getNbtData(index);
+    }
+
+    /**
+     * Set the block at the given index without creating a block.
+     *
+     * <p>Unlike {@link #setBlock(Vector, BaseBlock)}, positions within the
+     * bounding box but outside of the region are not rejected.</p>
+     *
+     * @param index the index, as described in {@link #getBlockId(int)}
+     * @param id the block ID, between 0 and {@link BaseBlock#MAX_ID}
+     * @param data the data value, between 0 and {@link BaseBlock#MAX_DATA}
+     * @param nbtData the NBT data, or null
+     */
+    public void setBlock(int index, int id, int data, @Nullable CompoundTag nbtData) {
+        checkElementIndex(index, blocks.size());
+        checkArgument(id >= 0 && id <= BaseBlock.MAX_ID, "block ID out of range: %s", id);
+        checkArgument(data >= 0 && data <= BaseBlock.MAX_DATA, "data value out of range: %s", data);
+        blocks.set(index, id, data, nbtData);
+    }
+
+    /**
+     * Test whether the given position is within the region of the clipboard.
+     *
+     * @param position the position
+     * @return true if contained
+     */
+    private boolean contains(Vector position) {
+        if (cuboid) {
+            double x = position.getX() - minX;
+            double y = position.getY() - minY;
+            double z = position.getZ() - minZ;
+            return x >= 0 && x <= sizeX - 1
+                    && y >= 0 && y <= sizeY - 1
+                    && z >= 0 && z <= sizeZ - 1;
+        } else {
+            return region.contains(position);
+        }
+    }
+
+    /**
+     * Get the index of the given position in the block storage, with
+     * the layout used by the .schematic format (Y, then Z, then X).
+     *
+     * @param position the position
+     * @return the index
+     */
+    private int getIndex(Vector position) {
+        int x = position.getBlockX() - minX;
+        int y = position.getBlockY() - minY;
+        int z = position.getBlockZ() - minZ;
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
     @Override
     public BaseBiome getBiome(Vector2D position) {
         return new BaseBiome(0);
@@ -0,0 +1,296 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.blocks.BaseBlock;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Stores a fixed number of blocks as indices into a palette of the distinct
+ * (id, data) pairs that have been stored, keeping NBT data in a sparse map.
+ *
+ * <p>Indices start out four bits wide and are widened to 8, 16 and then
+ * 32 bits as the palette grows, so storage containing only a handful of
+ * block types costs half a byte per block. Every slot initially holds
+ * air.</p>
+ */
+final class PaletteBlockStorage {
+
+    /**
+     * The number of distinct data values, including the -1 wildcard.
+     */
+    private static final int DATA_VALUES = BaseBlock.MAX_DATA + 2;
+
+    private final int size;
+    private int bits;
+    private byte[] bytes;
+    private char[] chars;
+    private int[] ints;
+
+    private int[] palette = new int[16];
+    private int paletteSize;
+    private int[] lookup = new int[0];
+    private int lastKey = -1;
+    private int lastIndex;
+
+    private final Map<Integer, CompoundTag> nbtData = new HashMap<Integer, CompoundTag>();
+
+    /**
+     * Create a new storage where every slot holds air.
+     *
+     * @param size the number of slots
+     */
+    PaletteBlockStorage(int size) {
+        checkArgument(size >= 0, "size >= 0");
+        this.size = size;
+        this.bits = 4;
+        this.bytes = new byte[(size >> 1) + (size & 1)];
+        paletteIndex(0, 0); // Air is always index 0
+    }
+
+    /**
+     * Create a copy of another storage. The copy shares no mutable state
+     * with the original.
+     *
+     * @param other the storage to copy
+     */
+    PaletteBlockStorage(PaletteBlockStorage other) {
+        this.size = other.size;
+        this.bits = other.bits;
+        this.bytes = other.bytes != null ? other.bytes.clone() : null;
+        this.chars = other.chars != null ? other.chars.clone() : null;
+        this.ints = other.ints != null ? other.ints.clone() : null;
+        this.palette = other.palette.clone();
+        this.paletteSize = other.paletteSize;
+        this.lookup = other.lookup.clone();
+        this.nbtData.putAll(other.nbtData);
+    }
+
+    /**
+     * Get the number of slots.
+     *
+     * @return the number of slots
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of distinct (id, data) pairs that have been stored,
+     * including air.
+     *
+     * @return the palette size
+     */
+    int getPaletteSize() {
+        return paletteSize;
+    }
+
+    /**
+     * Get the number of bits currently used per slot.
+     *
+     * @return the number of bits
+     */
+    int getBitsPerEntry() {
+        return bits;
+    }
+
+    /**
+     * Get a copy of the block at the given slot.
+     *
+     * @param index the slot
+     * @return a new block
+     */
+    BaseBlock get(int index) {
+        int key = palette[read(index)];
+        CompoundTag tag = nbtData.isEmpty() ? null : nbtData.get(index);
+        return new BaseBlock(key / DATA_VALUES, key % DATA_VALUES - 1, tag);
+    }
+
+    /**
+     * Get the ID of the block at the given slot.
+     *
+     * @param index the slot
+     * @return the block ID
+     */
+    int getId(int index) {
+        return palette[read(index)] / DATA_VALUES;
+    }
+
+    /**
+     * Get the data value of the block at the given slot.
+     *
+     * @param index the slot
+     * @return the data value
+     */
+    int getData(int index) {
+        return palette[read(index)] % DATA_VALUES - 1;
+    }
+
+    /**
+     * Get the NBT data of the block at the given slot.
+     *
+     * @param index the slot
+     * @return the NBT data, or null
+     */
+    @Nullable
+    CompoundTag getNbtData(int index) {
+        return nbtData.isEmpty() ? null : nbtData.get(index);
+    }
+
+    /**
+     * Set the block at the given slot.
+     *
+     * @param index the slot
+     * @param block the block
+     */
+    void set(int index, BaseBlock block) {
+        set(index, block.getId(), block.getData(), block.getNbtData());
+    }
+
+    /**
+     * Set the block at the given slot.
+     *
+     * @param index the slot
+     * @param id the block ID
+     * @param data the data value
+     * @param tag the NBT data, or null
+     */
+    void set(int index, int id, int data, @Nullable CompoundTag tag) {
+        write(index, paletteIndex(id, data));
+
+        if (tag != null) {
+            nbtData.put(index, tag);
+        } else if (!nbtData.isEmpty()) {
+            nbtData.remove(index);
+        }
+    }
+
+    /**
+     * Get the palette index for the given (id, data) pair, adding it to
+     * the palette and widening the slots if necessary.
+     *
+     * @param id the block ID
+     * @param data the data value
+     * @return the palette index
+     */
+    private int paletteIndex(int id, int data) {
+        int key = id * DATA_VALUES + data + 1;
+        if (key == lastKey) {
+            return lastIndex;
+        }
+
+        if (key >= lookup.length) {
+            lookup = Arrays.copyOf(lookup, Math.max(key + 1, lookup.length * 2));
+        }
+
+        int index = lookup[key] - 1;
+        if (index < 0) {
+            index = paletteSize++;
+            if (index == palette.length) {
+                palette = Arrays.copyOf(palette, palette.length * 2);
+            }
+            palette[index] = key;
+            lookup[key] = index + 1;
+
+            if (index >= (1L << bits)) {
+                widen();
+            }
+        }
+
+        lastKey = key;
+        lastIndex = index;
+        return index;
+    }
+
+    private int read(int index) {
+        return read(bits, bytes, chars, ints, index);
+    }
+
+    private static int read(int bits, byte[] bytes, char[] chars, int[] ints, int index) {
+        switch (bits) {
+            case 4:
+                int b = bytes[index >> 1];
+                return (index & 1) == 0 ? b & 0x0F : (b >> 4) & 0x0F;
+            case 8:
+                return bytes[index] & 0xFF;
+            case 16:
+                return chars[index];
+            default:
+                return ints[index];
+        }
+    }
+
+    private void write(int index, int value) {
+        switch (bits) {
+            case 4:
+                int i = index >> 1;
+                if ((index & 1) == 0) {
+                    bytes[i] = (byte) ((bytes[i] & 0xF0) | value);
+                } else {
+                    bytes[i] = (byte) ((bytes[i] & 0x0F) | (value << 4));
+                }
+                break;
+            case 8:
+                bytes[index] = (byte) value;
+                break;
+            case 16:
+                chars[index] = (char) value;
+                break;
+            default:
+                ints[index] = value;
+        }
+    }
+
+    /**
+     * Double the width of every slot.
+     */
+    private void widen() {
+        int oldBits = bits;
+        byte[] oldBytes = bytes;
+        char[] oldChars = chars;
+
+        bits *= 2;
+        bytes = null;
+        chars = null;
+
+        switch (bits) {
+            case 8:
+                bytes = new byte[size];
+                break;
+            case 16:
+                chars = new char[size];
+                break;
+            default:
+                ints = new int[size];
+        }
+
+        for (int i = 0; i < size; i++) {
+            write(i, read(oldBits, oldBytes, oldChars, null, i));
+        }
+    }
+
+}
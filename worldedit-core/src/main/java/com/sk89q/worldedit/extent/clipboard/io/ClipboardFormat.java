@@ -24,6 +24,8 @@
 import com.sk89q.jnbt.NBTOutputStream;
 
 import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -37,6 +39,7 @@
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -53,13 +56,18 @@ public enum ClipboardFormat {
     SCHEMATIC("mcedit", "mce", "schematic") {
         @Override
         public ClipboardReader getReader(InputStream inputStream) throws IOException {
-            NBTInputStream nbtStream = new NBTInputStream(new GZIPInputStream(inputStream));
+            NBTInputStream nbtStream = new NBTInputStream(new BufferedInputStream(new GZIPInputStream(inputStream)));
             return new SchematicReader(nbtStream);
         }
 
         @Override
-        public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
-            NBTOutputStream nbtStream = new NBTOutputStream(new GZIPOutputStream(outputStream));
+        public ClipboardWriter getWriter(OutputStream outputStream, final int compressionLevel) throws IOException {
+            GZIPOutputStream gzip = new GZIPOutputStream(outputStream) {
+                {
+                    def.setLevel(compressionLevel);
+                }
+            };
+            NBTOutputStream nbtStream = new NBTOutputStream(new BufferedOutputStream(gzip));
             return new SchematicWriter(nbtStream);
         }
 
@@ -119,14 +127,27 @@ public Set<String> getAliases() {
      */
     public abstract ClipboardReader getReader(InputStream inputStream) throws IOException;
 
+    /**
+     * Create a writer that uses the default compression level.
+     *
+     * @param outputStream the output stream
+     * @return a writer
+     * @throws IOException thrown on I/O error
+     */
+    public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
+        return getWriter(outputStream, Deflater.DEFAULT_COMPRESSION);
+    }
+
     /**
      * Create a writer.
      *
      * @param outputStream the output stream
+     * @param compressionLevel the compression level, from 0 to 9, or
+     *                         {@link Deflater#DEFAULT_COMPRESSION}
      * @return a writer
      * @throws IOException thrown on I/O error
      */
-    public abstract ClipboardWriter getWriter(OutputStream outputStream) throws IOException;
+    public abstract ClipboardWriter getWriter(OutputStream outputStream, int compressionLevel) throws IOException;
 
     /**
      * Return whether the given file is of this format.
@@ -19,19 +19,16 @@
 
 package com.sk89q.worldedit.extent.clipboard.io;
 
-import com.sk89q.jnbt.ByteArrayTag;
+import com.google.common.collect.ImmutableSet;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTInputStream;
-import com.sk89q.jnbt.NamedTag;
 import com.sk89q.jnbt.ShortTag;
 import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
-import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
-import com.sk89q.worldedit.WorldEditException;
-import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
@@ -41,22 +38,28 @@
 import com.sk89q.worldedit.world.registry.WorldData;
 import com.sk89q.worldedit.world.storage.NBTConversions;
 
-import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Reads schematic files based that are compatible with MCEdit and other editors.
+ *
+ * <p>The file is read tag by tag, and blocks are decoded straight into a
+ * {@link BlockArrayClipboard} without creating a tag or block object for
+ * each of them.</p>
  */
 public class SchematicReader implements ClipboardReader {
 
-    private static final Logger log = Logger.getLogger(SchematicReader.class.getCanonicalName());
+    private static final Set<String> READ_TAGS = ImmutableSet.of(
+            "Width", "Height", "Length", "Materials",
+            "WEOriginX", "WEOriginY", "WEOriginZ", "WEOffsetX", "WEOffsetY", "WEOffsetZ",
+            "TileEntities", "Entities");
+
     private final NBTInputStream inputStream;
 
     /**
@@ -72,17 +75,44 @@ public SchematicReader(NBTInputStream inputStream) {
     @Override
     public Clipboard read(WorldData data) throws IOException {
         // Schematic tag
-        NamedTag rootTag = inputStream.readNamedTag();
-        if (!rootTag.getName().equals("Schematic")) {
+        if (inputStream.readTagType() != NBTConstants.TYPE_COMPOUND || !inputStream.readTagName().equals("Schematic")) {
             throw new IOException("Tag 'Schematic' does not exist or is not first");
         }
-        CompoundTag schematicTag = (CompoundTag) rootTag.getTag();
+
+        // The block arrays are read into plain arrays and other tags
+        // are skipped, so no tags are created for the bulk of the file
+        Map<String, Tag> schematic = new HashMap<String, Tag>();
+        byte[] blockId = null;
+        byte[] blockData = null;
+        byte[] addId = new byte[0];
+
+        while (true) {
+            int type = inputStream.readTagType();
+            if (type == NBTConstants.TYPE_END) {
+                break;
+            }
+
+            String name = inputStream.readTagName();
+            if (name.equals("Blocks") && type == NBTConstants.TYPE_BYTE_ARRAY) {
+                blockId = readByteArray();
+            } else if (name.equals("Data") && type == NBTConstants.TYPE_BYTE_ARRAY) {
+                blockData = readByteArray();
+            } else if (name.equals("AddBlocks") && type == NBTConstants.TYPE_BYTE_ARRAY) {
+                addId = readByteArray();
+            } else if (READ_TAGS.contains(name)) {
+                schematic.put(name, inputStream.readTagPayload(type));
+            } else {
+                inputStream.skipTagPayload(type);
+            }
+        }
 
         // Check
-        Map<String, Tag> schematic = schematicTag.getValue();
-        if (!schematic.containsKey("Blocks")) {
+        if (blockId == null) {
             throw new IOException("Schematic file is missing a 'Blocks' tag");
         }
+        if (blockData == null) {
+            throw new IOException("Schematic file is missing a 'Data' tag");
+        }
 
         // Check type of Schematic
         String materials = requireTag(schematic, "Materials", StringTag.class).getValue();
@@ -101,6 +131,16 @@ public Clipboard read(WorldData data) throws IOException {
         short width = requireTag(schematic, "Width", ShortTag.class).getValue();
         short height = requireTag(schematic, "Height", ShortTag.class).getValue();
         short length = requireTag(schematic, "Length", ShortTag.class).getValue();
+        if (width < 1 || height < 1 || length < 1) {
+            throw new IOException("Schematic file has invalid dimensions: " + width + "x" + height + "x" + length);
+        }
+
+        // The product of three shorts can overflow an int, and arrays are
+        // never longer than an int, so compare as longs before allocating
+        long volume = (long) width * height * length;
+        if (blockId.length < volume || blockData.length < volume) {
+            throw new IOException("Schematic file has fewer blocks than its dimensions require");
+        }
 
         try {
             int originX = requireTag(schematic, "WEOriginX", IntTag.class).getValue();
@@ -124,101 +164,44 @@ public Clipboard read(WorldData data) throws IOException {
         // Blocks
         // ====================================================================
 
-        // Get blocks
-        byte[] blockId = requireTag(schematic, "Blocks", ByteArrayTag.class).getValue();
-        byte[] blockData = requireTag(schematic, "Data", ByteArrayTag.class).getValue();
-        byte[] addId = new byte[0];
-        short[] blocks = new short[blockId.length]; // Have to later combine IDs
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        clipboard.setOrigin(origin);
 
         // We support 4096 block IDs using the same method as vanilla Minecraft, where
         // the highest 4 bits are stored in a separate byte array.
-        if (schematic.containsKey("AddBlocks")) {
-            addId = requireTag(schematic, "AddBlocks", ByteArrayTag.class).getValue();
-        }
-
-        // Combine the AddBlocks data with the first 8-bit block ID
-        for (int index = 0; index < blockId.length; index++) {
-            if ((index >> 1) >= addId.length) { // No corresponding AddBlocks index
-                blocks[index] = (short) (blockId[index] & 0xFF);
-            } else {
+        for (int index = 0; index < volume; index++) {
+            int id = blockId[index] & 0xFF;
+            if ((index >> 1) < addId.length) {
                 if ((index & 1) == 0) {
-                    blocks[index] = (short) (((addId[index >> 1] & 0x0F) << 8) + (blockId[index] & 0xFF));
+                    id += (addId[index >> 1] & 0x0F) << 8;
                 } else {
-                    blocks[index] = (short) (((addId[index >> 1] & 0xF0) << 4) + (blockId[index] & 0xFF));
+                    id += (addId[index >> 1] & 0xF0) << 4;
                 }
             }
+
+            int blockDataValue = blockData[index] & 0x0F;
+            if (id != 0 || blockDataValue != 0) {
+                clipboard.setBlock(index, id, blockDataValue, null);
+            }
         }
 
         // Need to pull out tile entities
         List<Tag> tileEntities = requireTag(schematic, "TileEntities", ListTag.class).getValue();
-        Map<BlockVector, Map<String, Tag>> tileEntitiesMap = new HashMap<BlockVector, Map<String, Tag>>();
 
         for (Tag tag : tileEntities) {
             if (!(tag instanceof CompoundTag)) continue;
             CompoundTag t = (CompoundTag) tag;
+            Map<String, Tag> values = t.getValue();
 
-            int x = 0;
-            int y = 0;
-            int z = 0;
-
-            Map<String, Tag> values = new HashMap<String, Tag>();
-
-            for (Map.Entry<String, Tag> entry : t.getValue().entrySet()) {
-                if (entry.getKey().equals("x")) {
-                    if (entry.getValue() instanceof IntTag) {
-                        x = ((IntTag) entry.getValue()).getValue();
-                    }
-                } else if (entry.getKey().equals("y")) {
-                    if (entry.getValue() instanceof IntTag) {
-                        y = ((IntTag) entry.getValue()).getValue();
-                    }
-                } else if (entry.getKey().equals("z")) {
-                    if (entry.getValue() instanceof IntTag) {
-                        z = ((IntTag) entry.getValue()).getValue();
-                    }
-                }
-
-                values.put(entry.getKey(), entry.getValue());
+            int x = getInt(values, "x");
+            int y = getInt(values, "y");
+            int z = getInt(values, "z");
+            if (x < 0 || x >= width || y < 0 || y >= height || z < 0 || z >= length) {
+                continue;
             }
 
-            BlockVector vec = new BlockVector(x, y, z);
-            tileEntitiesMap.put(vec, values);
-        }
-
-        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
-        clipboard.setOrigin(origin);
-
-        // Don't log a torrent of errors
-        int failedBlockSets = 0;
-
-        for (int x = 0; x < width; ++x) {
-            for (int y = 0; y < height; ++y) {
-                for (int z = 0; z < length; ++z) {
-                    int index = y * width * length + z * width + x;
-                    BlockVector pt = new BlockVector(x, y, z);
-                    BaseBlock block = new BaseBlock(blocks[index], blockData[index]);
-
-                    if (tileEntitiesMap.containsKey(pt)) {
-                        block.setNbtData(new CompoundTag(tileEntitiesMap.get(pt)));
-                    }
-
-                    try {
-                        clipboard.setBlock(region.getMinimumPoint().add(pt), block);
-                    } catch (WorldEditException e) {
-                        switch (failedBlockSets) {
-                            case 0:
-                                log.log(Level.WARNING, "Failed to set block on a Clipboard", e);
-                                break;
-                            case 1:
-                                log.log(Level.WARNING, "Failed to set block on a Clipboard (again) -- no more messages will be logged", e);
-                                break;
-                            default:
-                        }
-
-                        failedBlockSets++;
-                    }
-                }
-            }
+            int index = y * width * length + z * width + x;
+            clipboard.setBlock(index, clipboard.getBlockId(index), clipboard.getBlockData(index), new CompoundTag(new HashMap<String, Tag>(values)));
         }
 
         // ====================================================================
@@ -259,20 +242,19 @@ private static <T extends Tag> T requireTag(Map<String, Tag> items, String key,
         return expected.cast(tag);
     }
 
-    @Nullable
-    private static <T extends Tag> T getTag(CompoundTag tag, Class<T> expected, String key) {
-        Map<String, Tag> items = tag.getValue();
-
-        if (!items.containsKey(key)) {
-            return null;
-        }
-
-        Tag test = items.get(key);
-        if (!expected.isInstance(test)) {
-            return null;
+    private byte[] readByteArray() throws IOException {
+        int length = inputStream.readInt();
+        if (length < 0) {
+            throw new IOException("Negative byte array length: " + length);
         }
+        byte[] bytes = new byte[length];
+        inputStream.readFully(bytes, 0, length);
+        return bytes;
+    }
 
-        return expected.cast(test);
+    private static int getInt(Map<String, Tag> values, String key) {
+        Tag tag = values.get(key);
+        return tag instanceof IntTag ? ((IntTag) tag).getValue() : 0;
     }
 
 }
@@ -19,21 +19,24 @@
 
 package com.sk89q.worldedit.extent.clipboard.io;
 
-import com.sk89q.jnbt.ByteArrayTag;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.DoubleTag;
 import com.sk89q.jnbt.FloatTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTOutputStream;
 import com.sk89q.jnbt.ShortTag;
 import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.world.registry.WorldData;
@@ -49,10 +52,14 @@
 
 /**
  * Writes schematic files based that are compatible with MCEdit and other editors.
+ *
+ * <p>The file is written tag by tag, and the block arrays are written
+ * straight from the clipboard in small pieces.</p>
  */
 public class SchematicWriter implements ClipboardWriter {
 
     private static final int MAX_SIZE = Short.MAX_VALUE - Short.MIN_VALUE;
+    private static final int BUFFER_SIZE = 8192;
     private final NBTOutputStream outputStream;
 
     /**
@@ -85,80 +92,84 @@ public void write(Clipboard clipboard, WorldData data) throws IOException {
             throw new IllegalArgumentException("Length of region too large for a .schematic");
         }
 
+        BlockArrayClipboard blocks = toBlockArrayClipboard(clipboard);
+        int volume = width * height * length;
+
         // ====================================================================
         // Metadata
         // ====================================================================
 
-        HashMap<String, Tag> schematic = new HashMap<String, Tag>();
-        schematic.put("Width", new ShortTag((short) width));
-        schematic.put("Length", new ShortTag((short) length));
-        schematic.put("Height", new ShortTag((short) height));
-        schematic.put("Materials", new StringTag("Alpha"));
-        schematic.put("WEOriginX", new IntTag(min.getBlockX()));
-        schematic.put("WEOriginY", new IntTag(min.getBlockY()));
-        schematic.put("WEOriginZ", new IntTag(min.getBlockZ()));
-        schematic.put("WEOffsetX", new IntTag(offset.getBlockX()));
-        schematic.put("WEOffsetY", new IntTag(offset.getBlockY()));
-        schematic.put("WEOffsetZ", new IntTag(offset.getBlockZ()));
+        outputStream.writeTagHeader(NBTConstants.TYPE_COMPOUND, "Schematic");
+        outputStream.writeNamedTag("Width", new ShortTag((short) width));
+        outputStream.writeNamedTag("Length", new ShortTag((short) length));
+        outputStream.writeNamedTag("Height", new ShortTag((short) height));
+        outputStream.writeNamedTag("Materials", new StringTag("Alpha"));
+        outputStream.writeNamedTag("WEOriginX", new IntTag(min.getBlockX()));
+        outputStream.writeNamedTag("WEOriginY", new IntTag(min.getBlockY()));
+        outputStream.writeNamedTag("WEOriginZ", new IntTag(min.getBlockZ()));
+        outputStream.writeNamedTag("WEOffsetX", new IntTag(offset.getBlockX()));
+        outputStream.writeNamedTag("WEOffsetY", new IntTag(offset.getBlockY()));
+        outputStream.writeNamedTag("WEOffsetZ", new IntTag(offset.getBlockZ()));
 
         // ====================================================================
         // Block handling
         // ====================================================================
 
-        byte[] blocks = new byte[width * height * length];
-        byte[] addBlocks = null;
-        byte[] blockData = new byte[width * height * length];
+        // The block arrays are written in pieces straight from the clipboard
+        byte[] buffer = new byte[Math.min(volume, BUFFER_SIZE)];
+        boolean hasAddBlocks = false;
         List<Tag> tileEntities = new ArrayList<Tag>();
 
-        for (Vector point : region) {
-            Vector relative = point.subtract(min);
-            int x = relative.getBlockX();
-            int y = relative.getBlockY();
-            int z = relative.getBlockZ();
-
-            int index = y * width * length + z * width + x;
-            BaseBlock block = clipboard.getBlock(point);
-
-            // Save 4096 IDs in an AddBlocks section
-            if (block.getType() > 255) {
-                if (addBlocks == null) { // Lazily create section
-                    addBlocks = new byte[(blocks.length >> 1) + 1];
+        outputStream.writeTagHeader(NBTConstants.TYPE_BYTE_ARRAY, "Blocks");
+        outputStream.writeInt(volume);
+        for (int start = 0; start < volume; start += buffer.length) {
+            int count = Math.min(buffer.length, volume - start);
+            for (int i = 0; i < count; i++) {
+                int id = blocks.getBlockId(start + i);
+                if (id > 255) {
+                    hasAddBlocks = true;
                 }
-
-                addBlocks[index >> 1] = (byte) (((index & 1) == 0) ?
-                        addBlocks[index >> 1] & 0xF0 | (block.getType() >> 8) & 0xF
-                        : addBlocks[index >> 1] & 0xF | ((block.getType() >> 8) & 0xF) << 4);
+                buffer[i] = (byte) id;
             }
+            outputStream.write(buffer, 0, count);
+        }
 
-            blocks[index] = (byte) block.getType();
-            blockData[index] = (byte) block.getData();
+        outputStream.writeTagHeader(NBTConstants.TYPE_BYTE_ARRAY, "Data");
+        outputStream.writeInt(volume);
+        for (int start = 0; start < volume; start += buffer.length) {
+            int count = Math.min(buffer.length, volume - start);
+            for (int i = 0; i < count; i++) {
+                int index = start + i;
+                buffer[i] = (byte) blocks.getBlockData(index);
 
-            // Store TileEntity data
-            CompoundTag rawTag = block.getNbtData();
-            if (rawTag != null) {
-                Map<String, Tag> values = new HashMap<String, Tag>();
-                for (Entry<String, Tag> entry : rawTag.getValue().entrySet()) {
-                    values.put(entry.getKey(), entry.getValue());
+                // Store TileEntity data
+                CompoundTag rawTag = blocks.getNbtData(index);
+                if (rawTag != null) {
+                    tileEntities.add(createTileEntity(blocks, index, rawTag, width, length));
                 }
-
-                values.put("id", new StringTag(block.getNbtId()));
-                values.put("x", new IntTag(x));
-                values.put("y", new IntTag(y));
-                values.put("z", new IntTag(z));
-
-                CompoundTag tileEntityTag = new CompoundTag(values);
-                tileEntities.add(tileEntityTag);
             }
+            outputStream.write(buffer, 0, count);
         }
 
-        schematic.put("Blocks", new ByteArrayTag(blocks));
-        schematic.put("Data", new ByteArrayTag(blockData));
-        schematic.put("TileEntities", new ListTag(CompoundTag.class, tileEntities));
-
-        if (addBlocks != null) {
-            schematic.put("AddBlocks", new ByteArrayTag(addBlocks));
+        // Save 4096 IDs in an AddBlocks section
+        if (hasAddBlocks) {
+            int addLength = (volume >> 1) + 1;
+            outputStream.writeTagHeader(NBTConstants.TYPE_BYTE_ARRAY, "AddBlocks");
+            outputStream.writeInt(addLength);
+            for (int start = 0; start < addLength; start += buffer.length) {
+                int count = Math.min(buffer.length, addLength - start);
+                for (int i = 0; i < count; i++) {
+                    int index = (start + i) << 1;
+                    int low = index < volume ? (blocks.getBlockId(index) >> 8) & 0xF : 0;
+                    int high = index + 1 < volume ? (blocks.getBlockId(index + 1) >> 8) & 0xF : 0;
+                    buffer[i] = (byte) (low | high << 4);
+                }
+                outputStream.write(buffer, 0, count);
+            }
         }
 
+        outputStream.writeNamedTag("TileEntities", new ListTag(CompoundTag.class, tileEntities));
+
         // ====================================================================
         // Entities
         // ====================================================================
@@ -186,14 +197,44 @@ public void write(Clipboard clipboard, WorldData data) throws IOException {
             }
         }
 
-        schematic.put("Entities", new ListTag(CompoundTag.class, entities));
+        outputStream.writeNamedTag("Entities", new ListTag(CompoundTag.class, entities));
+        outputStream.writeEndTag();
+    }
+
+    /**
+     * Get the given clipboard as a {@link BlockArrayClipboard}, copying the
+     * blocks of other types of clipboards into one.
+     */
+    private static BlockArrayClipboard toBlockArrayClipboard(Clipboard clipboard) {
+        if (clipboard instanceof BlockArrayClipboard) {
+            return (BlockArrayClipboard) clipboard;
+        }
+
+        Region region = clipboard.getRegion();
+        BlockArrayClipboard copy = new BlockArrayClipboard(new CuboidRegion(region.getMinimumPoint(), region.getMaximumPoint()));
+        for (Vector point : region) {
+            try {
+                copy.setBlock(point, clipboard.getBlock(point));
+            } catch (WorldEditException e) {
+                throw new RuntimeException("Failed to copy a block into a clipboard", e);
+            }
+        }
+        return copy;
+    }
+
+    private static CompoundTag createTileEntity(BlockArrayClipboard blocks, int index, CompoundTag rawTag, int width, int length) {
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        for (Entry<String, Tag> entry : rawTag.getValue().entrySet()) {
+            values.put(entry.getKey(), entry.getValue());
+        }
 
-        // ====================================================================
-        // Output
-        // ====================================================================
+        BaseBlock block = new BaseBlock(blocks.getBlockId(index), blocks.getBlockData(index), rawTag);
+        values.put("id", new StringTag(block.getNbtId()));
+        values.put("x", new IntTag(index % width));
+        values.put("y", new IntTag(index / (width * length)));
+        values.put("z", new IntTag((index / width) % length));
 
-        CompoundTag schematicTag = new CompoundTag(schematic);
-        outputStream.writeNamedTag("Schematic", schematicTag);
+        return new CompoundTag(values);
     }
 
     private Tag writeVector(Vector vector, String name) {
@@ -19,7 +19,6 @@
 
 package com.sk89q.worldedit.extent.reorder;
 
-import com.google.common.collect.Iterators;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.PlayerDirection;
 import com.sk89q.worldedit.Vector;
@@ -29,22 +28,30 @@
 import com.sk89q.worldedit.blocks.BlockType;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
-import com.sk89q.worldedit.function.operation.BlockMapEntryPlacer;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.OperationQueue;
 import com.sk89q.worldedit.function.operation.RunContext;
-import com.sk89q.worldedit.util.collection.TupleArrayList;
+import com.sk89q.worldedit.util.collection.LongIntHashMap;
 
-import java.util.*;
+import java.util.Arrays;
 
 /**
  * Re-orders blocks into several stages.
+ *
+ * <p>Positions are buffered as packed {@code long}s. The last stage is
+ * ordered so that blocks are placed after the blocks that they are
+ * attached to, which takes time linear in the number of blocks.</p>
  */
 public class MultiStageReorder extends AbstractDelegateExtent implements ReorderingExtent {
 
-    private TupleArrayList<BlockVector, BaseBlock> stage1 = new TupleArrayList<BlockVector, BaseBlock>();
-    private TupleArrayList<BlockVector, BaseBlock> stage2 = new TupleArrayList<BlockVector, BaseBlock>();
-    private TupleArrayList<BlockVector, BaseBlock> stage3 = new TupleArrayList<BlockVector, BaseBlock>();
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final int XZ_MAX = (1 << (XZ_BITS - 1)) - 1;
+    private static final int Y_MAX = (1 << (Y_BITS - 1)) - 1;
+
+    private final BlockList stage1 = new BlockList();
+    private final BlockList stage2 = new BlockList();
+    private final BlockList stage3 = new BlockList();
     private boolean enabled;
 
     /**
@@ -87,26 +94,36 @@ public void setEnabled(boolean enabled) {
 
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
-        BaseBlock lazyBlock = getLazyBlock(location);
-
         if (!enabled) {
             return super.setBlock(location, block);
         }
 
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+
+        if (!canPack(x, y, z)) {
+            // Outside of any world, so there is nothing to attach to
+            return super.setBlock(location, block);
+        }
+
+        BaseBlock lazyBlock = getLazyBlock(location);
+        long position = pack(x, y, z);
+
         if (BlockType.shouldPlaceLast(block.getType())) {
             // Place torches, etc. last
-            stage2.put(location.toBlockVector(), block);
+            stage2.add(position, block);
             return !(lazyBlock.getType() == block.getType() && lazyBlock.getData() == block.getData());
         } else if (BlockType.shouldPlaceFinal(block.getType())) {
             // Place signs, reed, etc even later
-            stage3.put(location.toBlockVector(), block);
+            stage3.add(position, block);
             return !(lazyBlock.getType() == block.getType() && lazyBlock.getData() == block.getData());
         } else if (BlockType.shouldPlaceLast(lazyBlock.getType())) {
             // Destroy torches, etc. first
             super.setBlock(location, new BaseBlock(BlockID.AIR));
             return super.setBlock(location, block);
         } else {
-            stage1.put(location.toBlockVector(), block);
+            stage1.add(position, block);
             return !(lazyBlock.getType() == block.getType() && lazyBlock.getData() == block.getData());
         }
     }
@@ -114,99 +131,241 @@ public boolean setBlock(Vector location, BaseBlock block) throws WorldEditExcept
     @Override
     public Operation commitBefore() {
         return new OperationQueue(
-                new BlockMapEntryPlacer(
-                        getExtent(),
-                        Iterators.concat(stage1.iterator(), stage2.iterator())),
+                new StageCommitter(stage1),
+                new StageCommitter(stage2),
                 new Stage3Committer());
     }
 
-    private class Stage3Committer implements Operation {
+    private static boolean canPack(int x, int y, int z) {
+        return x >= -XZ_MAX - 1 && x <= XZ_MAX
+                && z >= -XZ_MAX - 1 && z <= XZ_MAX
+                && y >= -Y_MAX - 1 && y <= Y_MAX;
+    }
+
+    private static long pack(int x, int y, int z) {
+        return ((long) x << (XZ_BITS + Y_BITS))
+                | (((long) z & ((1L << XZ_BITS) - 1)) << Y_BITS)
+                | ((long) y & ((1L << Y_BITS) - 1));
+    }
+
+    private static int unpackX(long packed) {
+        return (int) (packed >> (XZ_BITS + Y_BITS));
+    }
+
+    private static int unpackY(long packed) {
+        return (int) (packed << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    private static int unpackZ(long packed) {
+        return (int) (packed << (64 - XZ_BITS - Y_BITS) >> (64 - XZ_BITS));
+    }
+
+    private static BlockVector unpack(long packed) {
+        return new BlockVector(unpackX(packed), unpackY(packed), unpackZ(packed));
+    }
+
+    /**
+     * Get the packed position next to the given one.
+     *
+     * @param packed the packed position
+     * @param dx the change in X
+     * @param dy the change in Y
+     * @param dz the change in Z
+     * @return the packed position
+     */
+    private static long offset(long packed, int dx, int dy, int dz) {
+        int x = unpackX(packed) + dx;
+        int y = unpackY(packed) + dy;
+        int z = unpackZ(packed) + dz;
+        return pack(x, y, z);
+    }
+
+    /**
+     * A list of packed positions and the blocks to place at them.
+     */
+    private static class BlockList {
+        private long[] positions = new long[0];
+        private BaseBlock[] blocks = new BaseBlock[0];
+        private int size;
+
+        private void add(long position, BaseBlock block) {
+            if (size == positions.length) {
+                int newCapacity = Math.max(64, size + (size >> 1));
+                positions = Arrays.copyOf(positions, newCapacity);
+                blocks = Arrays.copyOf(blocks, newCapacity);
+            }
+            positions[size] = position;
+            blocks[size] = block;
+            size++;
+        }
+
+        private void clear() {
+            positions = new long[0];
+            blocks = new BaseBlock[0];
+            size = 0;
+        }
+    }
+
+    /**
+     * Places the blocks of a stage in the order that they were set.
+     */
+    private class StageCommitter implements Operation {
+        private final BlockList stage;
+        private int index;
+
+        private StageCommitter(BlockList stage) {
+            this.stage = stage;
+        }
 
         @Override
         public Operation resume(RunContext run) throws WorldEditException {
             Extent extent = getExtent();
 
-            final Set<BlockVector> blocks = new HashSet<BlockVector>();
-            final Map<BlockVector, BaseBlock> blockTypes = new HashMap<BlockVector, BaseBlock>();
-            for (Map.Entry<BlockVector, BaseBlock> entry : stage3) {
-                final BlockVector pt = entry.getKey();
-                blocks.add(pt);
-                blockTypes.put(pt, entry.getValue());
-            }
+            while (index < stage.size) {
+                extent.setBlock(unpack(stage.positions[index]), stage.blocks[index]);
+                index++;
 
-            while (!blocks.isEmpty()) {
-                BlockVector current = blocks.iterator().next();
-                if (!blocks.contains(current)) {
-                    continue;
+                if (!run.shouldContinue() && index < stage.size) {
+                    return this;
                 }
+            }
 
-                final Deque<BlockVector> walked = new LinkedList<BlockVector>();
+            stage.clear();
+            return null;
+        }
 
-                while (true) {
-                    walked.addFirst(current);
+        @Override
+        public void cancel() {
+        }
+    }
 
-                    assert (blockTypes.containsKey(current));
+    /**
+     * Places the blocks of the last stage so that each block is placed
+     * after the block that it is attached to, if both are in the stage.
+     *
+     * <p>Starting from each block that hasn't been placed, the chain of
+     * attachments is walked until it leaves the stage, reaches a placed
+     * block or loops, and the walked blocks are then placed in reverse.
+     * Every block is walked once.</p>
+     */
+    private class Stage3Committer implements Operation {
+        private static final byte UNVISITED = 0;
+        private static final byte WALKED = 1;
+        private static final byte PLACED = 2;
 
-                    final BaseBlock baseBlock = blockTypes.get(current);
+        private LongIntHashMap indices;
+        private byte[] states;
+        private int[] walked;
+        private int index;
 
-                    final int type = baseBlock.getType();
-                    final int data = baseBlock.getData();
+        @Override
+        public Operation resume(RunContext run) throws WorldEditException {
+            BlockList stage = stage3;
 
-                    switch (type) {
-                        case BlockID.WOODEN_DOOR:
-                        case BlockID.IRON_DOOR:
-                            if ((data & 0x8) == 0) {
-                                // Deal with lower door halves being attached to the floor AND the upper half
-                                BlockVector upperBlock = current.add(0, 1, 0).toBlockVector();
-                                if (blocks.contains(upperBlock) && !walked.contains(upperBlock)) {
-                                    walked.addFirst(upperBlock);
-                                }
-                            }
-                            break;
-
-                        case BlockID.MINECART_TRACKS:
-                        case BlockID.POWERED_RAIL:
-                        case BlockID.DETECTOR_RAIL:
-                        case BlockID.ACTIVATOR_RAIL:
-                            // Here, rails are hardcoded to be attached to the block below them.
-                            // They're also attached to the block they're ascending towards via BlockType.getAttachment.
-                            BlockVector lowerBlock = current.add(0, -1, 0).toBlockVector();
-                            if (blocks.contains(lowerBlock) && !walked.contains(lowerBlock)) {
-                                walked.addFirst(lowerBlock);
-                            }
-                            break;
-                    }
+            if (indices == null) {
+                indices = new LongIntHashMap(stage.size);
+                for (int i = 0; i < stage.size; i++) {
+                    // Later blocks replace earlier blocks at the same position
+                    indices.put(stage.positions[i], i);
+                }
+                states = new byte[stage.size];
+                walked = new int[stage.size];
+            }
 
-                    final PlayerDirection attachment = BlockType.getAttachment(type, data);
-                    if (attachment == null) {
-                        // Block is not attached to anything => we can place it
-                        break;
+            while (index < stage.size) {
+                int start = index++;
+                if (states[start] == UNVISITED && indices.get(stage.positions[start], -1) == start) {
+                    place(start);
+
+                    if (!run.shouldContinue() && index < stage.size) {
+                        return this;
                     }
+                }
+            }
 
-                    current = current.add(attachment.vector()).toBlockVector();
+            stage.clear();
+            indices = null;
+            states = null;
+            walked = null;
+            index = 0;
+
+            return null;
+        }
 
-                    if (!blocks.contains(current)) {
-                        // We ran outside the remaining set => assume we can place blocks on this
+        private void place(int start) throws WorldEditException {
+            BlockList stage = stage3;
+            int walkedCount = 0;
+            int current = start;
+
+            while (true) {
+                states[current] = WALKED;
+                walked[walkedCount++] = current;
+
+                long position = stage.positions[current];
+                BaseBlock baseBlock = stage.blocks[current];
+
+                final int type = baseBlock.getType();
+                final int data = baseBlock.getData();
+
+                switch (type) {
+                    case BlockID.WOODEN_DOOR:
+                    case BlockID.IRON_DOOR:
+                        if ((data & 0x8) == 0) {
+                            // Deal with lower door halves being attached to the floor AND the upper half
+                            int upper = find(offset(position, 0, 1, 0));
+                            if (upper != -1 && states[upper] == UNVISITED) {
+                                states[upper] = WALKED;
+                                walked[walkedCount++] = upper;
+                            }
+                        }
                         break;
-                    }
 
-                    if (walked.contains(current)) {
-                        // Cycle detected => This will most likely go wrong, but there's nothing we can do about it.
+                    case BlockID.MINECART_TRACKS:
+                    case BlockID.POWERED_RAIL:
+                    case BlockID.DETECTOR_RAIL:
+                    case BlockID.ACTIVATOR_RAIL:
+                        // Here, rails are hardcoded to be attached to the block below them.
+                        // They're also attached to the block they're ascending towards via BlockType.getAttachment.
+                        int lower = find(offset(position, 0, -1, 0));
+                        if (lower != -1 && states[lower] == UNVISITED) {
+                            states[lower] = WALKED;
+                            walked[walkedCount++] = lower;
+                        }
                         break;
-                    }
                 }
 
-                for (BlockVector pt : walked) {
-                    extent.setBlock(pt, blockTypes.get(pt));
-                    blocks.remove(pt);
+                final PlayerDirection attachment = BlockType.getAttachment(type, data);
+                if (attachment == null) {
+                    // Block is not attached to anything => we can place it
+                    break;
                 }
+
+                Vector direction = attachment.vector();
+                int next = find(offset(position, direction.getBlockX(), direction.getBlockY(), direction.getBlockZ()));
+
+                if (next == -1 || states[next] == PLACED) {
+                    // We ran outside the remaining set => assume we can place blocks on this
+                    break;
+                }
+
+                if (states[next] == WALKED) {
+                    // Cycle detected => This will most likely go wrong, but there's nothing we can do about it.
+                    break;
+                }
+
+                current = next;
             }
 
-            stage1.clear();
-            stage2.clear();
-            stage3.clear();
+            Extent extent = getExtent();
+            for (int i = walkedCount - 1; i >= 0; i--) {
+                int walkedIndex = walked[i];
+                states[walkedIndex] = PLACED;
+                extent.setBlock(unpack(stage.positions[walkedIndex]), stage.blocks[walkedIndex]);
+            }
+        }
 
-            return null;
+        private int find(long position) {
+            return indices.get(position, -1);
         }
 
         @Override
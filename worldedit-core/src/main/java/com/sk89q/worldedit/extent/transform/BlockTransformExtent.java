@@ -44,6 +44,11 @@ public class BlockTransformExtent extends AbstractDelegateExtent {
 
     private final Transform transform;
     private final BlockRegistry blockRegistry;
+    private final BlockTransformTable table;
+    @Nullable
+    private Transform inverse;
+    @Nullable
+    private BlockTransformTable inverseTable;
 
     /**
      * Create a new instance.
@@ -57,6 +62,7 @@ public BlockTransformExtent(Extent extent, Transform transform, BlockRegistry bl
         checkNotNull(blockRegistry);
         this.transform = transform;
         this.blockRegistry = blockRegistry;
+        this.table = BlockTransformTable.get(transform, blockRegistry);
     }
 
     /**
@@ -71,28 +77,44 @@ public Transform getTransform() {
     /**
      * Transform a block without making a copy.
      *
+     * <p>Blocks without NBT data are transformed with a table of data
+     * values that is shared by all extents with the same transform.</p>
+     *
      * @param block the block
-     * @param reverse true to transform in the opposite direction
+     * @param transform the transform
+     * @param table the table for the transform
      * @return the same block
      */
-    private BaseBlock transformBlock(BaseBlock block, boolean reverse) {
-        transform(block, reverse ? transform.inverse() : transform, blockRegistry);
+    private BaseBlock transformBlock(BaseBlock block, Transform transform, BlockTransformTable table) {
+        if (BlockTransformTable.isTabulated(block)) {
+            int data = table.transformData(transform, block.getId(), block.getData());
+            if (data != block.getData()) {
+                block.setData(data);
+            }
+        } else {
+            transform(block, transform, blockRegistry);
+        }
         return block;
     }
 
     @Override
     public BaseBlock getBlock(Vector position) {
-        return transformBlock(super.getBlock(position), false);
+        return transformBlock(super.getBlock(position), transform, table);
     }
 
     @Override
     public BaseBlock getLazyBlock(Vector position) {
-        return transformBlock(super.getLazyBlock(position), false);
+        return transformBlock(super.getLazyBlock(position), transform, table);
     }
 
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
-        return super.setBlock(location, transformBlock(new BaseBlock(block), true));
+        if (inverse == null) {
+            inverse = transform.inverse();
+            inverseTable = BlockTransformTable.get(inverse, blockRegistry);
+        }
+        BaseBlock copy = block.hasNbtData() ? new BaseBlock(block) : new BaseBlock(block.getId(), block.getData());
+        return super.setBlock(location, transformBlock(copy, inverse, inverseTable));
     }
 
 
@@ -0,0 +1,110 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.transform;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.LazyBlock;
+import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Remembers the data value that each block ID and data value pair is
+ * changed to by a transform, so that a block only has to be looked up in
+ * the registry the first time it is transformed.
+ *
+ * <p>Tables are shared between all users of the same transform object,
+ * such as repeated pastes of a clipboard, and are forgotten when the
+ * transform is no longer used.</p>
+ */
+final class BlockTransformTable {
+
+    private static final int UNKNOWN = 0;
+    private static final Cache<Transform, BlockTransformTable> tables = CacheBuilder.newBuilder().weakKeys().build();
+
+    private final BlockRegistry registry;
+    // transformed data value + 1 for each (id << 4 | data), or UNKNOWN
+    private final byte[] data = new byte[(BaseBlock.MAX_ID + 1) * (BaseBlock.MAX_DATA + 1)];
+
+    private BlockTransformTable(BlockRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Get the table for the given transform.
+     *
+     * @param transform the transform
+     * @param registry the registry used for block direction data
+     * @return the table
+     */
+    static BlockTransformTable get(Transform transform, BlockRegistry registry) {
+        checkNotNull(transform);
+        checkNotNull(registry);
+        BlockTransformTable table = tables.getIfPresent(transform);
+        if (table == null || table.registry != registry) {
+            table = new BlockTransformTable(registry);
+            tables.put(transform, table);
+        }
+        return table;
+    }
+
+    /**
+     * Get the data value that the given block would have after being
+     * transformed.
+     *
+     * <p>Entries are filled in as they are needed. Two threads may compute
+     * the same entry at once, but they will store the same value.</p>
+     *
+     * @param transform the transform that this table was created for
+     * @param id the block ID
+     * @param data the data value
+     * @return the transformed data value
+     */
+    int transformData(Transform transform, int id, int data) {
+        int index = id << 4 | data;
+        int value = this.data[index];
+        if (value == UNKNOWN) {
+            value = BlockTransformExtent.transform(new BaseBlock(id, data), transform, registry).getData() + 1;
+            this.data[index] = (byte) value;
+        }
+        return value - 1;
+    }
+
+    /**
+     * Return whether the given block can be transformed with a table.
+     *
+     * <p>The NBT data of a {@link LazyBlock} is not checked, because that
+     * would load it. Transforms only change the data value, which does not
+     * depend on the NBT data, so lazy blocks are always tabulated.</p>
+     *
+     * @param block the block
+     * @return true if the block has a plain ID and data value and no NBT data
+     */
+    static boolean isTabulated(BaseBlock block) {
+        int id = block.getId();
+        int data = block.getData();
+        return id >= 0 && id <= BaseBlock.MAX_ID && data >= 0 && data <= BaseBlock.MAX_DATA
+                && (block instanceof LazyBlock || !block.hasNbtData());
+    }
+
+}
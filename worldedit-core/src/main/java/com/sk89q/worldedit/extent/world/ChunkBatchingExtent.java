@@ -0,0 +1,387 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.world;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.world.World;
+
+import javax.annotation.Nullable;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Loads chunks as blocks are set and, when enabled, groups block changes
+ * by chunk so that each chunk is loaded once and has its blocks written
+ * in one pass.
+ *
+ * <p>Blocks are written in the order that they were set within a chunk.
+ * Blocks that have to be attached to another block (see
+ * {@link BlockType#shouldPlaceLast(int)} and
+ * {@link BlockType#shouldPlaceFinal(int)}) are never buffered: all
+ * buffered chunks are written first so that the order produced by a
+ * {@link com.sk89q.worldedit.extent.reorder.MultiStageReorder} above
+ * this extent is kept.</p>
+ *
+ * <p>While enabled, {@link #setBlock(Vector, BaseBlock)} always returns
+ * true because the block is not changed until the chunk is written.</p>
+ */
+public class ChunkBatchingExtent extends AbstractDelegateExtent {
+
+    /**
+     * The default number of blocks that may be buffered before every
+     * buffered chunk is written.
+     */
+    public static final int DEFAULT_BATCH_LIMIT = 65536;
+
+    private final World world;
+    private final int batchLimit;
+    private final Map<Long, ChunkBatch> batches = new LinkedHashMap<Long, ChunkBatch>();
+    private @Nullable ChunkBatch lastBatch;
+    private int pendingCount;
+    private boolean enabled;
+
+    private long chunkFlushCount;
+    private long flushedBlockCount;
+    private int largestChunkFlush;
+
+    /**
+     * Create a new instance.
+     *
+     * @param extent the extent
+     * @param world the world
+     * @param enabled true to enable batching
+     * @param batchLimit the number of blocks that may be buffered before all chunks are written
+     */
+    public ChunkBatchingExtent(Extent extent, World world, boolean enabled, int batchLimit) {
+        super(extent);
+        checkNotNull(world);
+        checkArgument(batchLimit > 0, "batchLimit must be greater than 0");
+        this.world = world;
+        this.enabled = enabled;
+        this.batchLimit = batchLimit;
+    }
+
+    /**
+     * Create a new instance with the default batch limit.
+     *
+     * @param extent the extent
+     * @param world the world
+     * @param enabled true to enable batching
+     */
+    public ChunkBatchingExtent(Extent extent, World world, boolean enabled) {
+        this(extent, world, enabled, DEFAULT_BATCH_LIMIT);
+    }
+
+    /**
+     * Return whether batching is enabled.
+     *
+     * @return true if batching is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether batching is enabled.
+     *
+     * <p>Blocks that are already buffered are still written on
+     * {@link #commit()}.</p>
+     *
+     * @param enabled true to enable batching
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Get the number of blocks that are buffered and not yet written.
+     *
+     * @return the number of buffered blocks
+     */
+    public int getPendingBlockCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Get the number of times that a buffered chunk has been written.
+     *
+     * @return the number of chunk flushes
+     */
+    public long getChunkFlushCount() {
+        return chunkFlushCount;
+    }
+
+    /**
+     * Get the total number of blocks written by chunk flushes.
+     *
+     * @return the number of flushed blocks
+     */
+    public long getFlushedBlockCount() {
+        return flushedBlockCount;
+    }
+
+    /**
+     * Get the largest number of blocks written by a single chunk flush.
+     *
+     * @return the largest number of blocks in one flush
+     */
+    public int getLargestChunkFlush() {
+        return largestChunkFlush;
+    }
+
+    /**
+     * Get the average number of blocks written per chunk flush.
+     *
+     * @return the average number of blocks, or 0 if nothing has been flushed
+     */
+    public double getAverageChunkFlush() {
+        return chunkFlushCount == 0 ? 0 : flushedBlockCount / (double) chunkFlushCount;
+    }
+
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        flushIfPending(position);
+        return super.getBlock(position);
+    }
+
+    @Override
+    public BaseBlock getLazyBlock(Vector position) {
+        flushIfPending(position);
+        return super.getLazyBlock(position);
+    }
+
+    @Override
+    public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
+        int y = location.getBlockY();
+
+        if (!enabled || y < 0 || y > world.getMaxY()) {
+            flushAll();
+            world.checkLoadedChunk(location);
+            return super.setBlock(location, block);
+        }
+
+        if (BlockType.shouldPlaceLast(block.getType()) || BlockType.shouldPlaceFinal(block.getType())) {
+            flushAll();
+            world.checkLoadedChunk(location);
+            return super.setBlock(location, block);
+        }
+
+        int x = location.getBlockX();
+        int z = location.getBlockZ();
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+
+        ChunkBatch batch = lastBatch;
+        if (batch == null || batch.chunkX != chunkX || batch.chunkZ != chunkZ) {
+            Long key = chunkKey(chunkX, chunkZ);
+            batch = batches.get(key);
+            if (batch == null) {
+                batch = new ChunkBatch(chunkX, chunkZ);
+                batches.put(key, batch);
+            }
+            lastBatch = batch;
+        }
+
+        batch.add((y << 8) | ((z & 15) << 4) | (x & 15), block);
+
+        if (++pendingCount >= batchLimit) {
+            flushAll();
+        }
+
+        return true;
+    }
+
+    @Override
+    @Nullable
+    public Entity createEntity(Location location, BaseEntity entity) {
+        try {
+            flushAll();
+        } catch (WorldEditException e) {
+            throw new RuntimeException("Failed to write buffered blocks", e);
+        }
+        return super.createEntity(location, entity);
+    }
+
+    @Override
+    protected Operation commitBefore() {
+        return new Operation() {
+            @Override
+            public Operation resume(RunContext run) throws WorldEditException {
+                Iterator<ChunkBatch> it = batches.values().iterator();
+                while (it.hasNext()) {
+                    ChunkBatch batch = it.next();
+                    it.remove();
+                    flush(batch);
+                    if (!run.shouldContinue() && it.hasNext()) {
+                        return this;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+    }
+
+    /**
+     * Write every buffered chunk.
+     *
+     * @throws WorldEditException thrown on an error writing a block
+     */
+    private void flushAll() throws WorldEditException {
+        if (batches.isEmpty()) {
+            return;
+        }
+
+        Iterator<ChunkBatch> it = batches.values().iterator();
+        while (it.hasNext()) {
+            ChunkBatch batch = it.next();
+            it.remove();
+            flush(batch);
+        }
+    }
+
+    /**
+     * Write the chunk containing the given position if there is a buffered
+     * block at that position, so that the block can be read back.
+     *
+     * @param position the position
+     */
+    private void flushIfPending(Vector position) {
+        if (pendingCount == 0) {
+            return;
+        }
+
+        int y = position.getBlockY();
+        if (y < 0 || y > world.getMaxY()) {
+            return;
+        }
+
+        int x = position.getBlockX();
+        int z = position.getBlockZ();
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        ChunkBatch batch = lastBatch;
+        if (batch == null || batch.chunkX != chunkX || batch.chunkZ != chunkZ) {
+            batch = batches.get(chunkKey(chunkX, chunkZ));
+        }
+
+        if (batch != null && batch.contains((y << 8) | ((z & 15) << 4) | (x & 15))) {
+            batches.remove(chunkKey(chunkX, chunkZ));
+            try {
+                flush(batch);
+            } catch (WorldEditException e) {
+                throw new RuntimeException("Failed to write buffered blocks", e);
+            }
+        }
+    }
+
+    /**
+     * Write the blocks of a chunk that has already been removed from the
+     * map of buffered chunks.
+     *
+     * @param batch the chunk
+     * @throws WorldEditException thrown on an error writing a block
+     */
+    private void flush(ChunkBatch batch) throws WorldEditException {
+        if (batch == lastBatch) {
+            lastBatch = null;
+        }
+
+        int size = batch.size;
+        pendingCount -= size;
+
+        Extent extent = getExtent();
+        int baseX = batch.chunkX << 4;
+        int baseZ = batch.chunkZ << 4;
+        for (int i = 0; i < size; i++) {
+            int index = batch.indices[i];
+            BlockVector position = new BlockVector(baseX | (index & 15), index >>> 8, baseZ | ((index >> 4) & 15));
+            if (i == 0) {
+                world.checkLoadedChunk(position);
+            }
+            extent.setBlock(position, batch.blocks[i]);
+        }
+
+        chunkFlushCount++;
+        flushedBlockCount += size;
+        largestChunkFlush = Math.max(largestChunkFlush, size);
+    }
+
+    private static Long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Blocks buffered for one chunk, kept in the order that they were set.
+     */
+    private static class ChunkBatch {
+        private final int chunkX;
+        private final int chunkZ;
+        private final BitSet present = new BitSet();
+        private int[] indices = new int[64];
+        private BaseBlock[] blocks = new BaseBlock[64];
+        private int size;
+
+        private ChunkBatch(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        private void add(int index, BaseBlock block) {
+            if (size == indices.length) {
+                int[] newIndices = new int[size * 2];
+                BaseBlock[] newBlocks = new BaseBlock[size * 2];
+                System.arraycopy(indices, 0, newIndices, 0, size);
+                System.arraycopy(blocks, 0, newBlocks, 0, size);
+                indices = newIndices;
+                blocks = newBlocks;
+            }
+            indices[size] = index;
+            blocks[size] = block;
+            size++;
+            present.set(index);
+        }
+
+        private boolean contains(int index) {
+            return present.get(index);
+        }
+    }
+
+}
@@ -28,6 +28,8 @@
 import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.world.World;
 
+import javax.annotation.Nullable;
+
 import java.util.HashSet;
 import java.util.Set;
 
@@ -40,6 +42,7 @@ public class FastModeExtent extends AbstractDelegateExtent {
 
     private final World world;
     private final Set<BlockVector2D> dirtyChunks = new HashSet<BlockVector2D>();
+    private @Nullable BlockVector2D lastDirtyChunk;
     private boolean enabled = true;
 
     /**
@@ -85,7 +88,15 @@ public void setEnabled(boolean enabled) {
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
         if (enabled) {
-            dirtyChunks.add(new BlockVector2D(location.getBlockX() >> 4, location.getBlockZ() >> 4));
+            int chunkX = location.getBlockX() >> 4;
+            int chunkZ = location.getBlockZ() >> 4;
+            BlockVector2D lastDirtyChunk = this.lastDirtyChunk;
+            // Consecutive changes are usually in the same chunk (see ChunkBatchingExtent)
+            if (lastDirtyChunk == null || lastDirtyChunk.getBlockX() != chunkX || lastDirtyChunk.getBlockZ() != chunkZ) {
+                lastDirtyChunk = new BlockVector2D(chunkX, chunkZ);
+                dirtyChunks.add(lastDirtyChunk);
+                this.lastDirtyChunk = lastDirtyChunk;
+            }
             return world.setBlock(location, block, false);
         } else {
             return world.setBlock(location, block, true);
@@ -22,6 +22,7 @@
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Masks;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -44,7 +45,7 @@ public class RegionMaskingFilter implements RegionFunction {
     public RegionMaskingFilter(Mask mask, RegionFunction function) {
         checkNotNull(function);
         checkNotNull(mask);
-        this.mask = mask;
+        this.mask = Masks.compile(mask);
         this.function = function;
     }
 
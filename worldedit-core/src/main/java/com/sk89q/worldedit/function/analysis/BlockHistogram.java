@@ -0,0 +1,192 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.analysis;
+
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.util.Countable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Counts blocks by ID and data value in a flat array, with one counter for
+ * every combination.
+ *
+ * <p>The array starts out with room for the IDs below 256 and grows when a
+ * higher ID is counted, so that histograms of ordinary blocks stay small
+ * to create, merge and search.</p>
+ */
+public class BlockHistogram {
+
+    private static final int DATA_BITS = 4;
+    private static final int DATA_VALUES = 1 << DATA_BITS;
+    private static final int INITIAL_SIZE = 256 << DATA_BITS;
+    private static final int MAX_SIZE = (BaseBlock.MAX_ID + 1) << DATA_BITS;
+
+    private int[] counts = new int[INITIAL_SIZE];
+    private long total;
+
+    /**
+     * Count a block.
+     *
+     * @param id the block ID
+     * @param data the data value
+     */
+    public void add(int id, int data) {
+        int index = (id << DATA_BITS) | (data & (DATA_VALUES - 1));
+        if (index >= counts.length) {
+            grow(index + 1);
+        }
+        counts[index]++;
+        total++;
+    }
+
+    /**
+     * Add the counts of another histogram to this one.
+     *
+     * @param other the other histogram
+     */
+    public void addAll(BlockHistogram other) {
+        checkNotNull(other);
+        int[] otherCounts = other.counts;
+        if (otherCounts.length > counts.length) {
+            grow(otherCounts.length);
+        }
+        for (int i = 0; i < otherCounts.length; i++) {
+            counts[i] += otherCounts[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Make room for at least the given number of counters, rounded up to
+     * all data values of the last ID.
+     *
+     * @param size the number of counters
+     */
+    private void grow(int size) {
+        int rounded = (size + DATA_VALUES - 1) & ~(DATA_VALUES - 1);
+        counts = Arrays.copyOf(counts, Math.min(Math.max(rounded, counts.length * 2), MAX_SIZE));
+    }
+
+    /**
+     * Get the number of blocks that have been counted.
+     *
+     * @return the total number of blocks
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the number of blocks with the given ID, with any data value.
+     *
+     * @param id the block ID
+     * @return the number of blocks
+     */
+    public int getCount(int id) {
+        int count = 0;
+        int start = id << DATA_BITS;
+        int end = Math.min(start + DATA_VALUES, counts.length);
+        for (int i = start; i < end; i++) {
+            count += counts[i];
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of blocks with the given ID and data value.
+     *
+     * @param id the block ID
+     * @param data the data value
+     * @return the number of blocks
+     */
+    public int getCount(int id, int data) {
+        int index = (id << DATA_BITS) | (data & (DATA_VALUES - 1));
+        return index < counts.length ? counts[index] : 0;
+    }
+
+    /**
+     * Get the number of blocks that match any of the given blocks, where
+     * a data value of -1 matches any data value, like
+     * {@link com.sk89q.worldedit.function.mask.FuzzyBlockMask}.
+     *
+     * @param blocks the blocks to match
+     * @return the number of blocks
+     */
+    public int getCount(Collection<BaseBlock> blocks) {
+        checkNotNull(blocks);
+        boolean[] matched = new boolean[counts.length];
+        int count = 0;
+        for (BaseBlock block : blocks) {
+            int start = block.getId() << DATA_BITS;
+            int end = Math.min(start + DATA_VALUES, counts.length);
+            int data = block.getData();
+            for (int i = start; i < end; i++) {
+                if (!matched[i] && (data == -1 || (i & (DATA_VALUES - 1)) == data)) {
+                    matched[i] = true;
+                    count += counts[i];
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the distribution of block IDs, sorted from least to
+     * most common.
+     *
+     * @return the distribution
+     */
+    public List<Countable<Integer>> getDistribution() {
+        List<Countable<Integer>> distribution = new ArrayList<Countable<Integer>>();
+        for (int id = 0; id < counts.length >> DATA_BITS; id++) {
+            int count = getCount(id);
+            if (count > 0) {
+                distribution.add(new Countable<Integer>(id, count));
+            }
+        }
+        Collections.sort(distribution);
+        return distribution;
+    }
+
+    /**
+     * Get the distribution of block IDs and data values, sorted from least
+     * to most common.
+     *
+     * @return the distribution
+     */
+    public List<Countable<BaseBlock>> getDistributionWithData() {
+        List<Countable<BaseBlock>> distribution = new ArrayList<Countable<BaseBlock>>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                distribution.add(new Countable<BaseBlock>(new BaseBlock(i >> DATA_BITS, i & (DATA_VALUES - 1)), counts[i]));
+            }
+        }
+        Collections.sort(distribution);
+        return distribution;
+    }
+
+}
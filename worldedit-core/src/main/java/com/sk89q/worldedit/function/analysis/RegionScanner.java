@@ -0,0 +1,278 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.analysis;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.Regions;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads the blocks of a region without changing them, one chunk-aligned
+ * column of the region at a time.
+ *
+ * <p>Columns are grouped into rows of chunks along the X axis. The spans of
+ * each row of blocks are computed once for the whole row of chunks, so
+ * that regions with expensive spans, such as polygons, are not asked for
+ * the same row once per chunk that it crosses.</p>
+ *
+ * <p>{@link #getHistogram()} and {@link #count(Mask)} read on the calling
+ * thread, which is required for worlds that can only be accessed from
+ * the server thread. If the extent can be read from several threads at
+ * once, such as a clipboard that is not being changed,
+ * {@link #getHistogramAsync()} splits the rows of chunks between worker
+ * threads and merges their results.</p>
+ */
+public class RegionScanner {
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final ListeningExecutorService executorService = MoreExecutors.listeningDecorator(
+            EvenMoreExecutors.newBoundedCachedThreadPool(0, PARALLELISM, 1024));
+
+    private final Extent extent;
+    private final Region region;
+    private final int minY;
+    private final int maxY;
+    private final List<Band> bands;
+    private final int columnCount;
+
+    /**
+     * Create a new instance.
+     *
+     * @param extent the extent to read from
+     * @param region the region to read
+     */
+    public RegionScanner(Extent extent, Region region) {
+        checkNotNull(extent);
+        checkNotNull(region);
+        this.extent = extent;
+        this.region = region;
+        this.minY = region.getMinimumPoint().getBlockY();
+        this.maxY = region.getMaximumPoint().getBlockY();
+        this.bands = createBands(region);
+
+        int columnCount = 0;
+        for (Band band : bands) {
+            columnCount += band.minX.length;
+        }
+        this.columnCount = columnCount;
+    }
+
+    /**
+     * Get the number of chunk-aligned columns that the region is split into.
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Count the blocks in the region by ID and data value on the
+     * calling thread.
+     *
+     * @return the histogram
+     */
+    public BlockHistogram getHistogram() {
+        BlockHistogram histogram = new BlockHistogram();
+        for (Band band : bands) {
+            scan(band, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * Count the blocks in the region by ID and data value using worker
+     * threads.
+     *
+     * <p>The extent must support reads from several threads at once.</p>
+     *
+     * @return a future for the histogram
+     */
+    public ListenableFuture<BlockHistogram> getHistogramAsync() {
+        return getHistogramAsync(executorService);
+    }
+
+    /**
+     * Count the blocks in the region by ID and data value using the given
+     * executor.
+     *
+     * <p>The extent must support reads from several threads at once.</p>
+     *
+     * @param executor the executor to run on
+     * @return a future for the histogram
+     */
+    public ListenableFuture<BlockHistogram> getHistogramAsync(ListeningExecutorService executor) {
+        checkNotNull(executor);
+
+        int taskCount = Math.max(1, Math.min(bands.size(), PARALLELISM * 4));
+        List<ListenableFuture<BlockHistogram>> futures = new ArrayList<ListenableFuture<BlockHistogram>>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            final int first = i;
+            final int step = taskCount;
+            futures.add(executor.submit(new Callable<BlockHistogram>() {
+                @Override
+                public BlockHistogram call() throws Exception {
+                    BlockHistogram histogram = new BlockHistogram();
+                    for (int j = first; j < bands.size(); j += step) {
+                        scan(bands.get(j), histogram);
+                    }
+                    return histogram;
+                }
+            }));
+        }
+
+        return Futures.transform(Futures.allAsList(futures), new Function<List<BlockHistogram>, BlockHistogram>() {
+            @Override
+            public BlockHistogram apply(List<BlockHistogram> input) {
+                BlockHistogram histogram = new BlockHistogram();
+                for (BlockHistogram part : input) {
+                    histogram.addAll(part);
+                }
+                return histogram;
+            }
+        });
+    }
+
+    /**
+     * Count the blocks in the region that match the given mask on the
+     * calling thread.
+     *
+     * @param mask the mask
+     * @return the number of matching blocks
+     */
+    public int count(Mask mask) {
+        checkNotNull(mask);
+        int count = 0;
+        for (Band band : bands) {
+            int[][] spans = getSpans(band);
+            for (int c = 0; c < band.minX.length; c++) {
+                for (int y = minY; y <= maxY; y++) {
+                    for (int z = band.minZ; z <= band.maxZ; z++) {
+                        int[] row = spans[(y - minY) * band.getLength() + z - band.minZ];
+                        for (int i = 0; i < row.length; i += 2) {
+                            int maxX = Math.min(band.maxX[c], row[i + 1]);
+                            for (int x = Math.max(band.minX[c], row[i]); x <= maxX; x++) {
+                                if (mask.test(new BlockVector(x, y, z))) {
+                                    count++;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private void scan(Band band, BlockHistogram histogram) {
+        int[][] spans = getSpans(band);
+        for (int c = 0; c < band.minX.length; c++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = band.minZ; z <= band.maxZ; z++) {
+                    int[] row = spans[(y - minY) * band.getLength() + z - band.minZ];
+                    for (int i = 0; i < row.length; i += 2) {
+                        int maxX = Math.min(band.maxX[c], row[i + 1]);
+                        for (int x = Math.max(band.minX[c], row[i]); x <= maxX; x++) {
+                            BaseBlock block = extent.getLazyBlock(new BlockVector(x, y, z));
+                            histogram.add(block.getType(), block.getData());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the spans of every row of blocks in a row of chunks, indexed by
+     * {@code (y - minY) * length + (z - minZ)}.
+     */
+    private int[][] getSpans(Band band) {
+        int length = band.getLength();
+        int[][] spans = new int[(maxY - minY + 1) * length][];
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = band.minZ; z <= band.maxZ; z++) {
+                spans[(y - minY) * length + z - band.minZ] = Regions.getSpans(region, y, z);
+            }
+        }
+        return spans;
+    }
+
+    private static List<Band> createBands(Region region) {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        int minX = min.getBlockX();
+        int minZ = min.getBlockZ();
+        int maxX = max.getBlockX();
+        int maxZ = max.getBlockZ();
+
+        List<Band> bands = new ArrayList<Band>();
+        for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+            int columns = (maxX >> 4) - (minX >> 4) + 1;
+            int[] columnMinX = new int[columns];
+            int[] columnMaxX = new int[columns];
+            for (int i = 0; i < columns; i++) {
+                int chunkX = (minX >> 4) + i;
+                columnMinX[i] = Math.max(minX, chunkX << 4);
+                columnMaxX[i] = Math.min(maxX, (chunkX << 4) + 15);
+            }
+            bands.add(new Band(Math.max(minZ, chunkZ << 4), Math.min(maxZ, (chunkZ << 4) + 15), columnMinX, columnMaxX));
+        }
+        return bands;
+    }
+
+    /**
+     * The part of the region's bounding box that lies in one row of chunks
+     * along the X axis, split into one column per chunk.
+     */
+    private static class Band {
+        private final int minZ;
+        private final int maxZ;
+        private final int[] minX;
+        private final int[] maxX;
+
+        private Band(int minZ, int maxZ, int[] minX, int[] maxX) {
+            this.minZ = minZ;
+            this.maxZ = maxZ;
+            this.minX = minX;
+            this.maxX = maxX;
+        }
+
+        private int getLength() {
+            return maxZ - minZ + 1;
+        }
+    }
+
+}
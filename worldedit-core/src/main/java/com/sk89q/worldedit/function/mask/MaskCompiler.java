@@ -0,0 +1,408 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.extent.Extent;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Compiles masks into equivalent masks that are faster to test.
+ *
+ * @see Masks#compile(Mask)
+ */
+final class MaskCompiler {
+
+    /**
+     * The number of entries in a block table, one per type ID and data value.
+     */
+    private static final int TABLE_SIZE = (BaseBlock.MAX_ID + 1) << 4;
+    /**
+     * The number of entries of a block table that are used to estimate how
+     * often it matches, which covers the vanilla block IDs.
+     */
+    private static final int SAMPLE_SIZE = 256 << 4;
+    private static final Mask NEVER = Masks.negate(Masks.alwaysTrue());
+
+    private MaskCompiler() {
+    }
+
+    static Mask compile(Mask mask) {
+        checkNotNull(mask);
+
+        if (mask.getClass() == MaskIntersection.class) {
+            return compileAll(((MaskIntersection) mask).getMasks());
+        } else if (mask.getClass() == MaskUnion.class) {
+            return compileAny(((MaskUnion) mask).getMasks());
+        } else if (mask instanceof Masks.NegatedMask) {
+            Mask inner = compile(((Masks.NegatedMask) mask).mask);
+            if (inner instanceof BlockTable) {
+                return ((BlockTable) inner).negate();
+            }
+            return Masks.negate(inner);
+        } else if (mask.getClass() == OffsetMask.class) {
+            OffsetMask offsetMask = (OffsetMask) mask;
+            return new OffsetMask(compile(offsetMask.getMask()), offsetMask.getOffset());
+        } else if (mask.getClass() == BlockMask.class || mask.getClass() == FuzzyBlockMask.class) {
+            // Blocks from an extent always have a data value, so both masks
+            // match the same blocks
+            BlockMask blockMask = (BlockMask) mask;
+            BitSet table = new BitSet(TABLE_SIZE);
+            for (BaseBlock block : blockMask.getBlocks()) {
+                int id = block.getType();
+                int data = block.getData();
+                if (data == -1) {
+                    table.set(id << 4, (id + 1) << 4);
+                } else if (data >= 0 && data <= BaseBlock.MAX_DATA) {
+                    table.set((id << 4) | data);
+                }
+            }
+            return new BlockTable(blockMask.getExtent(), table);
+        } else if (mask.getClass() == ExistingBlockMask.class) {
+            BitSet table = new BitSet(TABLE_SIZE);
+            table.set((BlockID.AIR + 1) << 4, TABLE_SIZE);
+            return new BlockTable(((ExistingBlockMask) mask).getExtent(), table);
+        } else if (mask.getClass() == SolidBlockMask.class) {
+            BitSet table = new BitSet(TABLE_SIZE);
+            for (int key = 0; key < TABLE_SIZE; key++) {
+                if (!BlockType.canPassThrough(key >> 4, key & 15)) {
+                    table.set(key);
+                }
+            }
+            return new BlockTable(((SolidBlockMask) mask).getExtent(), table);
+        } else {
+            return mask;
+        }
+    }
+
+    private static Mask compileAll(Collection<Mask> masks) {
+        if (masks.isEmpty()) {
+            // An empty intersection never matches
+            return NEVER;
+        }
+
+        List<Mask> children = new ArrayList<Mask>();
+        List<BlockTable> tables = new ArrayList<BlockTable>();
+        for (Mask mask : masks) {
+            Mask compiled = compile(mask);
+            if (compiled.getClass() == AllOf.class) {
+                Collections.addAll(children, ((AllOf) compiled).masks);
+            } else {
+                children.add(compiled);
+            }
+        }
+
+        List<Mask> result = new ArrayList<Mask>();
+        for (Mask child : children) {
+            if (child == Masks.alwaysTrue()) {
+                continue;
+            } else if (child == NEVER) {
+                return child;
+            } else if (child instanceof BlockTable) {
+                BlockTable table = (BlockTable) child;
+                BlockTable existing = findTable(tables, table.getExtent());
+                if (existing != null) {
+                    existing.table.and(table.table);
+                    continue;
+                }
+                table = table.copy();
+                tables.add(table);
+                child = table;
+            }
+            result.add(child);
+        }
+
+        if (result.isEmpty()) {
+            return Masks.alwaysTrue();
+        } else if (result.size() == 1) {
+            return result.get(0);
+        }
+
+        Collections.sort(result, new Comparator<Mask>() {
+            @Override
+            public int compare(Mask o1, Mask o2) {
+                // Test the masks that are cheap and likely to fail first
+                return Double.compare(getCost(o1) / Math.max(1 - getSelectivity(o1), 0.01),
+                        getCost(o2) / Math.max(1 - getSelectivity(o2), 0.01));
+            }
+        });
+        return new AllOf(result.toArray(new Mask[result.size()]));
+    }
+
+    private static Mask compileAny(Collection<Mask> masks) {
+        if (masks.isEmpty()) {
+            // An empty union never matches
+            return NEVER;
+        }
+
+        List<Mask> children = new ArrayList<Mask>();
+        List<BlockTable> tables = new ArrayList<BlockTable>();
+        for (Mask mask : masks) {
+            Mask compiled = compile(mask);
+            if (compiled.getClass() == AnyOf.class) {
+                Collections.addAll(children, ((AnyOf) compiled).masks);
+            } else {
+                children.add(compiled);
+            }
+        }
+
+        List<Mask> result = new ArrayList<Mask>();
+        for (Mask child : children) {
+            if (child == NEVER) {
+                continue;
+            } else if (child == Masks.alwaysTrue()) {
+                return child;
+            } else if (child instanceof BlockTable) {
+                BlockTable table = (BlockTable) child;
+                BlockTable existing = findTable(tables, table.getExtent());
+                if (existing != null) {
+                    existing.table.or(table.table);
+                    continue;
+                }
+                table = table.copy();
+                tables.add(table);
+                child = table;
+            }
+            result.add(child);
+        }
+
+        if (result.isEmpty()) {
+            return NEVER;
+        } else if (result.size() == 1) {
+            return result.get(0);
+        }
+
+        Collections.sort(result, new Comparator<Mask>() {
+            @Override
+            public int compare(Mask o1, Mask o2) {
+                // Test the masks that are cheap and likely to pass first
+                return Double.compare(getCost(o1) / Math.max(getSelectivity(o1), 0.01),
+                        getCost(o2) / Math.max(getSelectivity(o2), 0.01));
+            }
+        });
+        return new AnyOf(result.toArray(new Mask[result.size()]));
+    }
+
+    @Nullable
+    private static BlockTable findTable(List<BlockTable> tables, Extent extent) {
+        for (BlockTable table : tables) {
+            if (table.getExtent() == extent) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Estimate the cost of testing a compiled mask, where reading a block
+     * from an extent costs about 4.
+     *
+     * @param mask the mask
+     * @return the estimated cost
+     */
+    static double getCost(Mask mask) {
+        if (mask == Masks.alwaysTrue() || mask == NEVER) {
+            return 0;
+        } else if (mask instanceof BoundedHeightMask) {
+            return 1;
+        } else if (mask instanceof RegionMask) {
+            return 2;
+        } else if (mask instanceof NoiseFilter) {
+            return 3;
+        } else if (mask instanceof BlockTable) {
+            return 4;
+        } else if (mask instanceof ExpressionMask) {
+            return 20;
+        } else if (mask instanceof OffsetMask) {
+            return 1 + getCost(((OffsetMask) mask).getMask());
+        } else if (mask instanceof Masks.NegatedMask) {
+            return getCost(((Masks.NegatedMask) mask).mask);
+        } else if (mask instanceof MaskList) {
+            double cost = 0;
+            for (Mask child : ((MaskList) mask).masks) {
+                cost += getCost(child);
+            }
+            return cost;
+        } else {
+            return 8;
+        }
+    }
+
+    /**
+     * Estimate the fraction of positions for which a compiled mask
+     * returns true.
+     *
+     * @param mask the mask
+     * @return a number between 0 and 1
+     */
+    static double getSelectivity(Mask mask) {
+        if (mask == Masks.alwaysTrue()) {
+            return 1;
+        } else if (mask == NEVER) {
+            return 0;
+        } else if (mask instanceof NoiseFilter) {
+            return ((NoiseFilter) mask).getDensity();
+        } else if (mask instanceof BlockTable) {
+            return ((BlockTable) mask).table.get(0, SAMPLE_SIZE).cardinality() / (double) SAMPLE_SIZE;
+        } else if (mask instanceof OffsetMask) {
+            return getSelectivity(((OffsetMask) mask).getMask());
+        } else if (mask instanceof Masks.NegatedMask) {
+            return 1 - getSelectivity(((Masks.NegatedMask) mask).mask);
+        } else if (mask instanceof AnyOf) {
+            double none = 1;
+            for (Mask child : ((AnyOf) mask).masks) {
+                none *= 1 - getSelectivity(child);
+            }
+            return 1 - none;
+        } else if (mask instanceof AllOf) {
+            double all = 1;
+            for (Mask child : ((AllOf) mask).masks) {
+                all *= getSelectivity(child);
+            }
+            return all;
+        } else {
+            return 0.5;
+        }
+    }
+
+    /**
+     * Tests the type and data of a block against a table.
+     */
+    static final class BlockTable extends AbstractExtentMask {
+        private final BitSet table;
+
+        private BlockTable(Extent extent, BitSet table) {
+            super(extent);
+            this.table = table;
+        }
+
+        private BlockTable copy() {
+            return new BlockTable(getExtent(), (BitSet) table.clone());
+        }
+
+        private BlockTable negate() {
+            BitSet negated = (BitSet) table.clone();
+            negated.flip(0, TABLE_SIZE);
+            return new BlockTable(getExtent(), negated);
+        }
+
+        @Override
+        public boolean test(Vector vector) {
+            BaseBlock block = getExtent().getLazyBlock(vector);
+            return table.get((block.getType() << 4) | (block.getData() & 15));
+        }
+
+        @Nullable
+        @Override
+        public Mask2D toMask2D() {
+            return null;
+        }
+    }
+
+    /**
+     * A list of masks that are tested in order.
+     */
+    abstract static class MaskList extends AbstractMask {
+        final Mask[] masks;
+
+        private MaskList(Mask[] masks) {
+            this.masks = masks;
+        }
+    }
+
+    /**
+     * Requires that all masks match.
+     */
+    static final class AllOf extends MaskList {
+        private AllOf(Mask[] masks) {
+            super(masks);
+        }
+
+        @Override
+        public boolean test(Vector vector) {
+            for (Mask mask : masks) {
+                if (!mask.test(vector)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Nullable
+        @Override
+        public Mask2D toMask2D() {
+            List<Mask2D> mask2dList = new ArrayList<Mask2D>();
+            for (Mask mask : masks) {
+                Mask2D mask2d = mask.toMask2D();
+                if (mask2d == null) {
+                    return null;
+                }
+                mask2dList.add(mask2d);
+            }
+            return new MaskIntersection2D(mask2dList);
+        }
+    }
+
+    /**
+     * Requires that one or more masks match.
+     */
+    static final class AnyOf extends MaskList {
+        private AnyOf(Mask[] masks) {
+            super(masks);
+        }
+
+        @Override
+        public boolean test(Vector vector) {
+            for (Mask mask : masks) {
+                if (mask.test(vector)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public Mask2D toMask2D() {
+            List<Mask2D> mask2dList = new ArrayList<Mask2D>();
+            for (Mask mask : masks) {
+                Mask2D mask2d = mask.toMask2D();
+                if (mask2d == null) {
+                    return null;
+                }
+                mask2dList.add(mask2d);
+            }
+            return new MaskUnion2D(mask2dList);
+        }
+    }
+
+}
@@ -25,7 +25,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -38,7 +38,7 @@
  */
 public class MaskIntersection extends AbstractMask {
 
-    private final Set<Mask> masks = new HashSet<Mask>();
+    private final Set<Mask> masks = new LinkedHashSet<Mask>();
 
     /**
      * Create a new intersection.
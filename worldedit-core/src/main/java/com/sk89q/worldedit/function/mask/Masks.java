@@ -69,23 +69,7 @@ public static Mask negate(final Mask mask) {
         }
 
         checkNotNull(mask);
-        return new AbstractMask() {
-            @Override
-            public boolean test(Vector vector) {
-                return !mask.test(vector);
-            }
-
-            @Nullable
-            @Override
-            public Mask2D toMask2D() {
-                Mask2D mask2d = mask.toMask2D();
-                if (mask2d != null) {
-                    return negate(mask2d);
-                } else {
-                    return null;
-                }
-            }
-        };
+        return new NegatedMask(mask);
     }
 
     /**
@@ -131,6 +115,26 @@ public Mask2D toMask2D() {
         };
     }
 
+    /**
+     * Compile a mask into an equivalent mask that is faster to test.
+     *
+     * <p>Nested intersections and unions are flattened and their masks are
+     * reordered so that cheap and decisive masks are tested first. Masks
+     * that only look at the type and data of a block are turned into
+     * lookup tables, and those that test the same extent are merged so
+     * that the block is only read once.</p>
+     *
+     * <p>The compiled mask is a snapshot: blocks that are later added to
+     * a {@link BlockMask}, or masks that are later added to a
+     * {@link MaskIntersection}, are not seen by it.</p>
+     *
+     * @param mask the mask
+     * @return a compiled mask
+     */
+    public static Mask compile(Mask mask) {
+        return MaskCompiler.compile(mask);
+    }
+
     /**
      * Wrap an old-style mask and convert it to a new mask.
      *
@@ -207,6 +211,33 @@ public boolean matches(EditSession editSession, Vector position) {
         };
     }
 
+    /**
+     * Negates another mask.
+     */
+    static final class NegatedMask extends AbstractMask {
+        final Mask mask;
+
+        private NegatedMask(Mask mask) {
+            this.mask = mask;
+        }
+
+        @Override
+        public boolean test(Vector vector) {
+            return !mask.test(vector);
+        }
+
+        @Nullable
+        @Override
+        public Mask2D toMask2D() {
+            Mask2D mask2d = mask.toMask2D();
+            if (mask2d != null) {
+                return negate(mask2d);
+            } else {
+                return null;
+            }
+        }
+    }
+
     private static class AlwaysTrue implements Mask, Mask2D {
         @Override
         public boolean test(Vector vector) {
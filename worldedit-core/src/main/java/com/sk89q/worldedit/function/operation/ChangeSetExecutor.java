@@ -24,12 +24,17 @@
 import com.sk89q.worldedit.history.changeset.ChangeSet;
 import com.sk89q.worldedit.history.UndoContext;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Iterator;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Performs an undo or redo from a given {@link ChangeSet}.
+ *
+ * <p>If the change set's iterator is {@link Closeable}, it is closed once
+ * the operation completes, fails or is cancelled.</p>
  */
 public class ChangeSetExecutor implements Operation {
 
@@ -63,20 +68,46 @@ private ChangeSetExecutor(ChangeSet changeSet, Type type, UndoContext context) {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        while (iterator.hasNext()) {
-            Change change = iterator.next();
-            if (type == Type.UNDO) {
-                change.undo(context);
-            } else {
-                change.redo(context);
+        try {
+            while (iterator.hasNext()) {
+                Change change = iterator.next();
+                if (type == Type.UNDO) {
+                    change.undo(context);
+                } else {
+                    change.redo(context);
+                }
+
+                if (!run.shouldContinue() && iterator.hasNext()) {
+                    return this;
+                }
             }
+        } catch (WorldEditException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw e;
         }
 
+        close();
         return null;
     }
 
     @Override
     public void cancel() {
+        close();
+    }
+
+    /**
+     * Close the iterator if it holds resources.
+     */
+    private void close() {
+        if (iterator instanceof Closeable) {
+            try {
+                ((Closeable) iterator).close();
+            } catch (IOException ignored) {
+            }
+        }
     }
 
     /**
@@ -22,6 +22,8 @@
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.WorldEditException;
 
+import javax.annotation.Nullable;
+
 /**
  * Operation helper methods.
  */
@@ -42,6 +44,26 @@ public static void complete(Operation op) throws WorldEditException {
         }
     }
 
+    /**
+     * Resume a given operation until it completes or the run should stop.
+     * The operation is resumed at least once.
+     *
+     * @param op operation to resume
+     * @param run the run context
+     * @return the operation to resume later, or null if it has completed
+     * @throws WorldEditException WorldEdit exception
+     */
+    @Nullable
+    public static Operation resume(@Nullable Operation op, RunContext run) throws WorldEditException {
+        while (op != null) {
+            op = op.resume(run);
+            if (!run.shouldContinue()) {
+                break;
+            }
+        }
+        return op;
+    }
+
     /**
      * Complete a given operation synchronously until it completes. Catch all
      * errors that is not {@link MaxChangedBlocksException} for legacy reasons.
@@ -19,11 +19,45 @@
 
 package com.sk89q.worldedit.function.operation;
 
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * Describes the current run.
+ *
+ * <p>A run may have a time limit, after which operations should stop and
+ * return themselves from {@link Operation#resume(RunContext)} so that they
+ * can be resumed later.</p>
  */
 public class RunContext {
 
+    private final boolean limited;
+    private final long deadline;
+
+    /**
+     * Create a run without a time limit.
+     */
+    public RunContext() {
+        this.limited = false;
+        this.deadline = 0;
+    }
+
+    /**
+     * Create a run that should stop after the given amount of time,
+     * starting from now.
+     *
+     * @param timeLimit the time limit
+     * @param unit the unit of the time limit
+     */
+    public RunContext(long timeLimit, TimeUnit unit) {
+        checkArgument(timeLimit >= 0, "timeLimit >= 0 required");
+        checkNotNull(unit);
+        this.limited = true;
+        this.deadline = System.nanoTime() + unit.toNanos(timeLimit);
+    }
+
     /**
      * Return whether the current operation should still continue running.
      *
@@ -32,7 +66,22 @@ public class RunContext {
      * @return true if the operation should continue running
      */
     public boolean shouldContinue() {
-        return true;
+        return !limited || System.nanoTime() - deadline < 0;
+    }
+
+    /**
+     * Get the time that is left before the current operation should stop.
+     *
+     * @param unit the unit to return the time in
+     * @return the time left, which is zero or negative once the run should
+     *         stop, or {@link Long#MAX_VALUE} if the run has no time limit
+     */
+    public long getTimeLeft(TimeUnit unit) {
+        checkNotNull(unit);
+        if (!limited) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
     }
 
 }
@@ -26,16 +26,62 @@
 import java.util.List;
 import java.util.Random;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Uses a random pattern of a weighted list of patterns.
+ *
+ * <p>A pattern is picked in constant time, regardless of the number of
+ * patterns in the list. By default, a new random number is drawn for every
+ * block. If a seed is given, the pattern picked for a block is instead
+ * derived from the seed and the block's position, so that the same seed
+ * always gives the same result and blocks can be computed in any order
+ * and from several threads at once.</p>
+ *
+ * <p>The table used to pick patterns is built when the pattern is first
+ * applied after patterns were added, so adding many patterns one after
+ * another stays cheap.</p>
  */
 public class RandomPattern extends AbstractPattern {
 
-    private final Random random = new Random();
+    private final Random random;
+    private final boolean seeded;
+    private final long seed;
     private List<Chance> patterns = new ArrayList<Chance>();
     private double max = 0;
+    private volatile AliasTable table;
+
+    /**
+     * Create a new pattern that draws a new random number for every block.
+     */
+    public RandomPattern() {
+        this.random = new Random();
+        this.seeded = false;
+        this.seed = 0;
+    }
+
+    /**
+     * Create a new pattern that picks a pattern for each position based on
+     * the given seed.
+     *
+     * @param seed the seed
+     */
+    public RandomPattern(long seed) {
+        this.random = null;
+        this.seeded = true;
+        this.seed = seed;
+    }
+
+    /**
+     * Return whether the pattern picked for a position only depends on the
+     * seed and the position.
+     *
+     * @return true if a seed was given
+     */
+    public boolean isSeeded() {
+        return seeded;
+    }
 
     /**
      * Add a pattern to the weight list of patterns.
@@ -44,27 +90,71 @@ public class RandomPattern extends AbstractPattern {
      * the sum of the probabilities of all added patterns.</p>
      *
      * @param pattern the pattern
-     * @param chance the chance, which can be any positive number
+     * @param chance the chance, which can be zero or any finite positive number
      */
-    public void add(Pattern pattern, double chance) {
+    public synchronized void add(Pattern pattern, double chance) {
         checkNotNull(pattern);
+        checkArgument(chance >= 0 && !Double.isInfinite(chance), "chance must be zero or a finite positive number");
         patterns.add(new Chance(pattern, chance));
         max += chance;
+        table = null;
+    }
+
+    /**
+     * Get the table to pick patterns from, building it if patterns were
+     * added since it was last built.
+     *
+     * @return the table
+     */
+    private synchronized AliasTable getTable() {
+        if (table == null) {
+            if (max <= 0) {
+                throw new IllegalStateException("RandomPattern has no patterns with a chance greater than zero");
+            }
+            table = new AliasTable(patterns, max);
+        }
+        return table;
     }
 
     @Override
     public BaseBlock apply(Vector position) {
-        double r = random.nextDouble();
-        double offset = 0;
+        AliasTable table = this.table;
+        if (table == null) {
+            table = getTable();
+        }
 
-        for (Chance chance : patterns) {
-            if (r <= (offset + chance.getChance()) / max) {
-                return chance.getPattern().apply(position);
-            }
-            offset += chance.getChance();
+        double r;
+        if (seeded) {
+            r = (hash(seed, position.getBlockX(), position.getBlockY(), position.getBlockZ()) >>> 11) * 0x1.0p-53;
+        } else {
+            r = random.nextDouble();
         }
 
-        throw new RuntimeException("ProportionalFillPattern");
+        return table.pick(r).apply(position);
+    }
+
+    /**
+     * Hash a seed and a position into 64 well mixed bits.
+     *
+     * @param seed the seed
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the hash
+     */
+    static long hash(long seed, int x, int y, int z) {
+        long h = mix(seed + x * 0x9E3779B97F4A7C15L);
+        h = mix(h + y * 0xC2B2AE3D27D4EB4FL);
+        return mix(h + z * 0x165667B19E3779F9L);
+    }
+
+    /**
+     * The finalizer of the SplitMix64 generator.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     private static class Chance {
@@ -85,4 +175,65 @@ public double getChance() {
         }
     }
 
+    /**
+     * Picks a weighted pattern with a single random number, using Vose's
+     * alias method.
+     */
+    private static class AliasTable {
+        private final Pattern[] patterns;
+        private final Pattern[] aliases;
+        private final double[] probabilities;
+
+        private AliasTable(List<Chance> chances, double max) {
+            int n = chances.size();
+            patterns = new Pattern[n];
+            aliases = new Pattern[n];
+            probabilities = new double[n];
+
+            // Scale the chances so that they average to 1, then pair each
+            // column that is below 1 with one that is above 1
+            double[] scaled = new double[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallCount = 0;
+            int largeCount = 0;
+            for (int i = 0; i < n; i++) {
+                patterns[i] = chances.get(i).getPattern();
+                scaled[i] = chances.get(i).getChance() * n / max;
+                if (scaled[i] < 1) {
+                    small[smallCount++] = i;
+                } else {
+                    large[largeCount++] = i;
+                }
+            }
+
+            while (smallCount > 0 && largeCount > 0) {
+                int less = small[--smallCount];
+                int more = large[--largeCount];
+                probabilities[less] = scaled[less];
+                aliases[less] = patterns[more];
+                scaled[more] = scaled[more] + scaled[less] - 1;
+                if (scaled[more] < 1) {
+                    small[smallCount++] = more;
+                } else {
+                    large[largeCount++] = more;
+                }
+            }
+
+            // What is left is 1 apart from rounding errors
+            while (largeCount > 0) {
+                probabilities[large[--largeCount]] = 1;
+            }
+            while (smallCount > 0) {
+                probabilities[small[--smallCount]] = 1;
+            }
+        }
+
+        private Pattern pick(double r) {
+            double scaled = r * patterns.length;
+            int column = (int) scaled;
+            return scaled - column < probabilities[column] ? patterns[column] : aliases[column];
+        }
+    }
+
 }
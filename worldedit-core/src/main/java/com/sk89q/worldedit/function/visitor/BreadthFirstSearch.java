@@ -25,8 +25,11 @@
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.util.collection.SectionedBlockSet;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -40,13 +43,21 @@
  * <p>As an abstract implementation, this class can be used to implement
  * functionality that starts at certain points and extends outward from
  * those points.</p>
+ *
+ * <p>Visited points are kept in a {@link SectionedBlockSet} and queued
+ * points in a ring buffer of coordinates, so a search costs a few bits
+ * per visited point. See {@link #setTrimVisited(boolean)} for bounding
+ * the memory used by very large searches.</p>
  */
 public abstract class BreadthFirstSearch implements Operation {
 
     private final RegionFunction function;
-    private final Queue<BlockVector> queue = new ArrayDeque<BlockVector>();
-    private final Set<BlockVector> visited = new HashSet<BlockVector>();
+    private final PositionQueue queue = new PositionQueue();
+    private final SectionedBlockSet visited = new SectionedBlockSet();
     private final List<Vector> directions = new ArrayList<Vector>();
+    private boolean trimVisited = false;
+    private int layer = 0;
+    private int layerRemaining = 0;
     private int affected = 0;
 
     /**
@@ -98,6 +109,39 @@ protected void addDiagonal() {
         directions.add(new Vector(-1, 0, 1));
     }
 
+    /**
+     * Return whether visited points are forgotten once the search has
+     * moved far enough away from them.
+     *
+     * @return true if visited points are trimmed
+     * @see #setTrimVisited(boolean)
+     */
+    public boolean isTrimVisited() {
+        return trimVisited;
+    }
+
+    /**
+     * Set whether visited points are forgotten once the search has
+     * moved far enough away from them.
+     *
+     * <p>The search proceeds one layer at a time, where each layer holds
+     * the points first reached from the previous layer. When enabled,
+     * sections of visited points that have not been added to in the last
+     * two layers are dropped, so memory grows with the size of the
+     * frontier rather than the number of visited points.</p>
+     *
+     * <p>This is only correct when every direction has its opposite in
+     * {@link #getDirections()} and
+     * {@link #isVisitable(com.sk89q.worldedit.Vector, com.sk89q.worldedit.Vector)}
+     * does not depend on the direction of travel. Otherwise a forgotten
+     * point may be visited again.</p>
+     *
+     * @param trimVisited true to trim visited points
+     */
+    public void setTrimVisited(boolean trimVisited) {
+        this.trimVisited = trimVisited;
+    }
+
     /**
      * Add the given location to the list of locations to visit, provided
      * that it has not been visited. The position passed to this method
@@ -113,26 +157,11 @@ protected void addDiagonal() {
      * @param position the position
      */
     public void visit(Vector position) {
-        BlockVector blockVector = position.toBlockVector();
-        if (!visited.contains(blockVector)) {
-            queue.add(blockVector);
-            visited.add(blockVector);
-        }
-    }
-
-    /**
-     * Try to visit the given 'to' location.
-     *
-     * @param from the origin block
-     * @param to the block under question
-     */
-    private void visit(Vector from, Vector to) {
-        BlockVector blockVector = to.toBlockVector();
-        if (!visited.contains(blockVector)) {
-            visited.add(blockVector);
-            if (isVisitable(from, to)) {
-                queue.add(blockVector);
-            }
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+        if (visited.add(x, y, z)) {
+            queue.add(x, y, z);
         }
     }
 
@@ -157,15 +186,47 @@ public int getAffected() {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        Vector position;
-        
-        while ((position = queue.poll()) != null) {
+        int[] offsets = new int[directions.size() * 3];
+        int i = 0;
+        for (Vector dir : directions) {
+            offsets[i++] = dir.getBlockX();
+            offsets[i++] = dir.getBlockY();
+            offsets[i++] = dir.getBlockZ();
+        }
+
+        while (!queue.isEmpty()) {
+            if (layerRemaining == 0) {
+                layer++;
+                layerRemaining = queue.size();
+                visited.setGeneration(layer);
+                if (trimVisited) {
+                    // Points in this layer only neighbour points that were added in the last two layers
+                    visited.removeOlderThan(layer - 2);
+                }
+            }
+
+            int x = queue.peekX();
+            int y = queue.peekY();
+            int z = queue.peekZ();
+            queue.remove();
+            layerRemaining--;
+
+            BlockVector position = new BlockVector(x, y, z);
             if (function.apply(position)) {
                 affected++;
             }
 
-            for (Vector dir : directions) {
-                visit(position, position.add(dir));
+            for (int j = 0; j < offsets.length; j += 3) {
+                int toX = x + offsets[j];
+                int toY = y + offsets[j + 1];
+                int toZ = z + offsets[j + 2];
+                if (visited.add(toX, toY, toZ) && isVisitable(position, new BlockVector(toX, toY, toZ))) {
+                    queue.add(toX, toY, toZ);
+                }
+            }
+
+            if (!run.shouldContinue() && !queue.isEmpty()) {
+                return this;
             }
         }
 
@@ -176,4 +237,54 @@ public Operation resume(RunContext run) throws WorldEditException {
     public void cancel() {
     }
 
+    /**
+     * A first-in first-out queue of block coordinates kept in a ring buffer.
+     */
+    private static class PositionQueue {
+        private int[] elements = new int[3 * 64];
+        private int head;
+        private int size;
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void add(int x, int y, int z) {
+            if (size * 3 == elements.length) {
+                int[] newElements = new int[elements.length * 2];
+                int tail = elements.length - head;
+                System.arraycopy(elements, head, newElements, 0, tail);
+                System.arraycopy(elements, 0, newElements, tail, head);
+                elements = newElements;
+                head = 0;
+            }
+            int index = (head + size * 3) % elements.length;
+            elements[index] = x;
+            elements[index + 1] = y;
+            elements[index + 2] = z;
+            size++;
+        }
+
+        private int peekX() {
+            return elements[head];
+        }
+
+        private int peekY() {
+            return elements[head + 1];
+        }
+
+        private int peekZ() {
+            return elements[head + 2];
+        }
+
+        private void remove() {
+            head = (head + 3) % elements.length;
+            size--;
+        }
+    }
+
 }
\ No newline at end of file
@@ -29,6 +29,8 @@
 import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.regions.FlatRegion;
 
+import java.util.Iterator;
+
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -47,6 +49,7 @@ public class LayerVisitor implements Operation {
     private Mask2D mask = Masks.alwaysTrue2D();
     private int minY;
     private int maxY;
+    private Iterator<Vector2D> iterator;
 
     /**
      * Create a new visitor.
@@ -90,33 +93,40 @@ public void setMask(Mask2D mask) {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        for (Vector2D column : flatRegion.asFlatRegion()) {
-            if (!mask.test(column)) {
-                continue;
-            }
+        if (iterator == null) {
+            iterator = flatRegion.asFlatRegion().iterator();
+        }
 
-            // Abort if we are underground
-            if (function.isGround(column.toVector(maxY + 1))) {
-                return null;
-            }
+        while (iterator.hasNext()) {
+            Vector2D column = iterator.next();
+            if (mask.test(column)) {
+                // Abort if we are underground
+                if (function.isGround(column.toVector(maxY + 1))) {
+                    return null;
+                }
 
-            boolean found = false;
-            int groundY = 0;
-            for (int y = maxY; y >= minY; --y) {
-                Vector test = column.toVector(y);
-                if (!found) {
-                    if (function.isGround(test)) {
-                        found = true;
-                        groundY = y;
+                boolean found = false;
+                int groundY = 0;
+                for (int y = maxY; y >= minY; --y) {
+                    Vector test = column.toVector(y);
+                    if (!found) {
+                        if (function.isGround(test)) {
+                            found = true;
+                            groundY = y;
+                        }
                     }
-                }
 
-                if (found) {
-                    if (!function.apply(test, groundY - y)) {
-                        break;
+                    if (found) {
+                        if (!function.apply(test, groundY - y)) {
+                            break;
+                        }
                     }
                 }
             }
+
+            if (!run.shouldContinue() && iterator.hasNext()) {
+                return this;
+            }
         }
 
         return null;
@@ -0,0 +1,354 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.NamedTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.util.io.Closer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A read-only {@link ChangeSet} of {@link BlockChange}s that is stored
+ * in a file.
+ *
+ * <p>The file starts with a header holding the name of the world, the
+ * number of changes and the offsets of the two sections. It is followed by
+ * two compressed sections: one with the current blocks in redo order and
+ * one with the previous blocks in undo order, so both undo and redo are
+ * sequential reads of a single section.</p>
+ *
+ * <p>Files are written under a temporary name and renamed once they are
+ * complete, so a file with the final name is never partially written.</p>
+ */
+public class FileChangeSet implements ChangeSet {
+
+    private static final int MAGIC = 0x57454843;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 65536;
+
+    private final File file;
+    private final String worldName;
+    private final int size;
+    private final long undoOffset;
+    private final long redoOffset;
+
+    /**
+     * Open an existing change set file, reading its header.
+     *
+     * @param file the file
+     * @throws IOException thrown if the file can't be read or isn't a change set
+     */
+    public FileChangeSet(File file) throws IOException {
+        checkNotNull(file);
+        this.file = file;
+
+        Closer closer = Closer.create();
+        try {
+            FileInputStream fis = closer.register(new FileInputStream(file));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(fis));
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a history file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported history version " + version);
+            }
+            worldName = in.readUTF();
+            size = in.readInt();
+            redoOffset = in.readLong();
+            undoOffset = in.readLong();
+            if (redoOffset <= 0 || undoOffset < redoOffset || undoOffset >= file.length()) {
+                throw new IOException(file + " is incomplete");
+            }
+        } finally {
+            closer.close();
+        }
+    }
+
+    /**
+     * Write the given change set to a file.
+     *
+     * <p>Only change sets consisting entirely of {@link BlockChange}s can be
+     * written. If any other kind of change is encountered, nothing is
+     * written and an {@link IllegalArgumentException} is thrown.</p>
+     *
+     * @param file the file to write to
+     * @param worldName the name of the world that the changes were made in
+     * @param changeSet the change set
+     * @return the written change set
+     * @throws IOException thrown on I/O error
+     */
+    public static FileChangeSet write(File file, String worldName, ChangeSet changeSet) throws IOException {
+        checkNotNull(file);
+        checkNotNull(worldName);
+        checkNotNull(changeSet);
+
+        File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        boolean success = false;
+        try {
+            Closer closer = Closer.create();
+            try {
+                FileOutputStream fos = closer.register(new FileOutputStream(tempFile));
+                DataOutputStream header = new DataOutputStream(new BufferedOutputStream(new UnclosedOutputStream(fos)));
+                header.writeInt(MAGIC);
+                header.writeInt(VERSION);
+                header.writeUTF(worldName);
+                header.writeInt(changeSet.size());
+                long offsetPosition = header.size();
+                header.writeLong(0);
+                header.writeLong(0);
+                header.flush();
+
+                long redoOffset = fos.getChannel().position();
+                writeSection(fos, changeSet.forwardIterator(), false);
+                long undoOffset = fos.getChannel().position();
+                writeSection(fos, changeSet.backwardIterator(), true);
+
+                ByteBuffer buffer = ByteBuffer.allocate(16);
+                buffer.putLong(redoOffset);
+                buffer.putLong(undoOffset);
+                buffer.flip();
+                fos.getChannel().write(buffer, offsetPosition);
+            } finally {
+                closer.close();
+            }
+
+            // Renaming onto an existing file fails on some platforms
+            if (!tempFile.renameTo(file) && (!file.delete() || !tempFile.renameTo(file))) {
+                throw new IOException("Failed to move " + tempFile + " to " + file);
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                tempFile.delete();
+            }
+        }
+
+        return new FileChangeSet(file);
+    }
+
+    private static void writeSection(OutputStream out, Iterator<Change> it, boolean previous) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(new UnclosedOutputStream(out), BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(gzip, BUFFER_SIZE));
+        NBTOutputStream nbt = new NBTOutputStream(dos);
+
+        while (it.hasNext()) {
+            Change change = it.next();
+            if (!(change instanceof BlockChange)) {
+                throw new IllegalArgumentException("Only block changes can be written to a history file");
+            }
+
+            BlockChange blockChange = (BlockChange) change;
+            BlockVector position = blockChange.getPosition();
+            BaseBlock block = previous ? blockChange.getPrevious() : blockChange.getCurrent();
+            dos.writeInt(position.getBlockX());
+            dos.writeInt(position.getBlockY());
+            dos.writeInt(position.getBlockZ());
+            dos.writeShort(block.getId());
+            dos.writeByte(block.getData());
+
+            CompoundTag tag = block.getNbtData();
+            dos.writeBoolean(tag != null);
+            if (tag != null) {
+                nbt.writeNamedTag("", tag);
+            }
+        }
+
+        dos.flush();
+        gzip.finish();
+    }
+
+    /**
+     * Get the file.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the name of the world that the changes were made in.
+     *
+     * @return the world name
+     */
+    public String getWorldName() {
+        return worldName;
+    }
+
+    @Override
+    public void add(Change change) {
+        throw new UnsupportedOperationException("Can't add to a history file");
+    }
+
+    @Override
+    public Iterator<Change> backwardIterator() {
+        return new SectionIterator(undoOffset);
+    }
+
+    @Override
+    public Iterator<Change> forwardIterator() {
+        return new SectionIterator(redoOffset);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Reads changes sequentially from one section of the file, closing the
+     * file once the last change has been read. An iteration that is
+     * abandoned early must be closed with {@link #close()}.
+     */
+    private class SectionIterator implements Iterator<Change>, Closeable {
+        private DataInputStream in;
+        private NBTInputStream nbt;
+        private int remaining = size;
+
+        private SectionIterator(long offset) {
+            if (remaining == 0) {
+                return;
+            }
+
+            try {
+                FileInputStream fis = new FileInputStream(file);
+                try {
+                    fis.getChannel().position(offset);
+                    in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(fis, BUFFER_SIZE), BUFFER_SIZE));
+                    nbt = new NBTInputStream(in);
+                } catch (IOException e) {
+                    fis.close();
+                    throw e;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open history file " + file, e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            try {
+                int x = in.readInt();
+                int y = in.readInt();
+                int z = in.readInt();
+                int id = in.readShort();
+                int data = in.readByte();
+                CompoundTag tag = null;
+                if (in.readBoolean()) {
+                    NamedTag namedTag = nbt.readNamedTag();
+                    Tag read = namedTag.getTag();
+                    if (read instanceof CompoundTag) {
+                        tag = (CompoundTag) read;
+                    }
+                }
+
+                if (--remaining == 0) {
+                    close();
+                }
+
+                BaseBlock block = new BaseBlock(id, data, tag);
+                return new BlockChange(new BlockVector(x, y, z), block, block);
+            } catch (IOException e) {
+                remaining = 0;
+                try {
+                    close();
+                } catch (IOException ignored) {
+                }
+                throw new RuntimeException("Failed to read history file " + file, e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            remaining = 0;
+            if (in != null) {
+                DataInputStream closing = in;
+                in = null;
+                closing.close();
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Passes writes through but ignores {@link #close()}, so that several
+     * compressed sections can be written to the same stream.
+     */
+    private static class UnclosedOutputStream extends FilterOutputStream {
+        private UnclosedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+}
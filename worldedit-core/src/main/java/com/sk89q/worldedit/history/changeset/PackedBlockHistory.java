@@ -0,0 +1,194 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.google.common.collect.Iterators;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An extension of {@link ArrayListHistory} that stores {@link BlockChange}s
+ * in primitive arrays.
+ *
+ * <p>Each block change is recorded as a packed position and the combined
+ * ID and data value of the previous and current block, which costs 16 bytes
+ * per change. Blocks with NBT data keep their tags in a separate map, and
+ * changes with positions that cannot be packed are stored like any
+ * other change.</p>
+ */
+public class PackedBlockHistory extends ArrayListHistory {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final int XZ_MAX = (1 << (XZ_BITS - 1)) - 1;
+    private static final int Y_MAX = (1 << (Y_BITS - 1)) - 1;
+
+    private long[] positions = new long[0];
+    private int[] previous = new int[0];
+    private int[] current = new int[0];
+    private int size;
+    private final Map<Integer, CompoundTag> previousNbt = new HashMap<Integer, CompoundTag>();
+    private final Map<Integer, CompoundTag> currentNbt = new HashMap<Integer, CompoundTag>();
+
+    @Override
+    public void add(Change change) {
+        checkNotNull(change);
+
+        if (change instanceof BlockChange) {
+            BlockChange blockChange = (BlockChange) change;
+            BlockVector position = blockChange.getPosition();
+            int x = position.getBlockX();
+            int y = position.getBlockY();
+            int z = position.getBlockZ();
+
+            if (canPack(x, y, z)) {
+                BaseBlock previousBlock = blockChange.getPrevious();
+                BaseBlock currentBlock = blockChange.getCurrent();
+
+                ensureCapacity(size + 1);
+                positions[size] = pack(x, y, z);
+                previous[size] = combine(previousBlock);
+                current[size] = combine(currentBlock);
+
+                if (previousBlock.hasNbtData()) {
+                    previousNbt.put(size, previousBlock.getNbtData());
+                }
+                if (currentBlock.hasNbtData()) {
+                    currentNbt.put(size, currentBlock.getNbtData());
+                }
+
+                size++;
+                return;
+            }
+        }
+
+        super.add(change);
+    }
+
+    @Override
+    public Iterator<Change> forwardIterator() {
+        return Iterators.concat(
+                super.forwardIterator(),
+                new BlockChangeIterator(current, currentNbt, false));
+    }
+
+    @Override
+    public Iterator<Change> backwardIterator() {
+        return Iterators.concat(
+                super.backwardIterator(),
+                new BlockChangeIterator(previous, previousNbt, true));
+    }
+
+    @Override
+    public int size() {
+        return super.size() + size;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > positions.length) {
+            int newCapacity = Math.max(INITIAL_CAPACITY, positions.length + (positions.length >> 1));
+            newCapacity = Math.max(newCapacity, capacity);
+            positions = Arrays.copyOf(positions, newCapacity);
+            previous = Arrays.copyOf(previous, newCapacity);
+            current = Arrays.copyOf(current, newCapacity);
+        }
+    }
+
+    private static boolean canPack(int x, int y, int z) {
+        return x >= -XZ_MAX - 1 && x <= XZ_MAX
+                && z >= -XZ_MAX - 1 && z <= XZ_MAX
+                && y >= -Y_MAX - 1 && y <= Y_MAX;
+    }
+
+    private static long pack(int x, int y, int z) {
+        return ((long) x << (XZ_BITS + Y_BITS))
+                | (((long) z & ((1L << XZ_BITS) - 1)) << Y_BITS)
+                | ((long) y & ((1L << Y_BITS) - 1));
+    }
+
+    private static BlockVector unpack(long packed) {
+        int x = (int) (packed >> (XZ_BITS + Y_BITS));
+        int z = (int) (packed << (64 - XZ_BITS - Y_BITS) >> (64 - XZ_BITS));
+        int y = (int) (packed << (64 - Y_BITS) >> (64 - Y_BITS));
+        return new BlockVector(x, y, z);
+    }
+
+    private static int combine(BaseBlock block) {
+        return (block.getId() << 8) | (block.getData() & 0xFF);
+    }
+
+    /**
+     * Iterates over the packed block changes, creating a {@link BlockChange}
+     * for each.
+     */
+    private class BlockChangeIterator implements Iterator<Change> {
+        private final int[] blocks;
+        private final Map<Integer, CompoundTag> nbtData;
+        private final boolean reverse;
+        private final int end = size;
+        private int index;
+
+        private BlockChangeIterator(int[] blocks, Map<Integer, CompoundTag> nbtData, boolean reverse) {
+            this.blocks = blocks;
+            this.nbtData = nbtData;
+            this.reverse = reverse;
+            this.index = reverse ? end - 1 : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return reverse ? index >= 0 : index < end;
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            int i = index;
+            index += reverse ? -1 : 1;
+
+            int combined = blocks[i];
+            CompoundTag tag = nbtData.isEmpty() ? null : nbtData.get(i);
+            BaseBlock block = new BaseBlock(combined >> 8, (byte) combined, tag);
+            return new BlockChange(unpack(positions[i]), block, block);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -94,6 +94,11 @@ public int getBlockData(Vector pt) {
         return world.getBlockData(pt);
     }
 
+    @Override
+    public void getBlockColumn(int x, int z, int minY, int maxY, int[] blocks) {
+        world.getBlockColumn(x, z, minY, maxY, blocks);
+    }
+
     @Override
     public boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight) throws WorldEditException {
         return world.setBlock(position, block, notifyAndLight);
@@ -139,6 +144,11 @@ public boolean regenerate(Region region, EditSession editSession) {
         return world.regenerate(region, editSession);
     }
 
+    @Override
+    public Operation createRegeneration(Region region, EditSession editSession) {
+        return world.createRegeneration(region, editSession);
+    }
+
     @Override
     public boolean generateTree(TreeType type, EditSession editSession, Vector position) throws MaxChangedBlocksException {
         return world.generateTree(type, editSession, position);
@@ -0,0 +1,89 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.command;
+
+import com.sk89q.minecraft.util.commands.CommandContext;
+import com.sk89q.minecraft.util.commands.CommandException;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.session.EditsQueuedException;
+import com.sk89q.worldedit.util.command.parametric.AbstractInvokeListener;
+import com.sk89q.worldedit.util.command.parametric.InvokeHandler;
+import com.sk89q.worldedit.util.command.parametric.ParameterData;
+import com.sk89q.worldedit.util.command.parametric.ParameterException;
+
+import java.lang.reflect.Method;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Refuses commands that take an {@link EditSession} while the actor's
+ * session has edits running in the background.
+ *
+ * @see com.sk89q.worldedit.session.OperationScheduler#checkIdle(com.sk89q.worldedit.LocalSession)
+ */
+public class QueuedEditsHandler extends AbstractInvokeListener implements InvokeHandler {
+
+    private final WorldEdit worldEdit;
+
+    /**
+     * Create a new instance.
+     *
+     * @param worldEdit an instance of WorldEdit
+     */
+    public QueuedEditsHandler(WorldEdit worldEdit) {
+        checkNotNull(worldEdit);
+        this.worldEdit = worldEdit;
+    }
+
+    @Override
+    public void preProcess(Object object, Method method, ParameterData[] parameters, CommandContext context) throws CommandException, ParameterException {
+        Actor sender = context.getLocals().get(Actor.class);
+        if (sender == null) {
+            return;
+        }
+
+        for (ParameterData parameter : parameters) {
+            if (parameter.getType() == EditSession.class) {
+                try {
+                    worldEdit.getOperationScheduler().checkIdle(worldEdit.getSessionManager().get(sender));
+                } catch (EditsQueuedException e) {
+                    throw new CommandException(e.getMessage(), e);
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void preInvoke(Object object, Method method, ParameterData[] parameters, Object[] args, CommandContext context) throws CommandException, ParameterException {
+    }
+
+    @Override
+    public void postInvoke(Object object, Method method, ParameterData[] parameters, Object[] args, CommandContext context) throws CommandException, ParameterException {
+    }
+
+    @Override
+    public InvokeHandler createInvokeHandler() {
+        return this;
+    }
+
+}
@@ -20,10 +20,13 @@
 package com.sk89q.worldedit.internal.expression;
 
 import com.sk89q.worldedit.internal.expression.lexer.Lexer;
+import com.sk89q.worldedit.internal.expression.lexer.tokens.IdentifierToken;
 import com.sk89q.worldedit.internal.expression.lexer.tokens.Token;
 import com.sk89q.worldedit.internal.expression.parser.Parser;
+import com.sk89q.worldedit.internal.expression.runtime.CompiledExpression;
 import com.sk89q.worldedit.internal.expression.runtime.Constant;
 import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import com.sk89q.worldedit.internal.expression.runtime.ExpressionCompiler;
 import com.sk89q.worldedit.internal.expression.runtime.ExpressionEnvironment;
 import com.sk89q.worldedit.internal.expression.runtime.Functions;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
@@ -56,7 +59,9 @@
  * <p>To compile an equation, run
  * {@code Expression.compile("expression here", "var1", "var2"...)}.
  * If you wish to run the equation multiple times, you can then optimize it,
- * by calling {@link #optimize()}. You can then run the equation as many times
+ * by calling {@link #optimize()}, which also compiles it to bytecode unless
+ * the {@code worldedit.expression.compile} system property is set to
+ * {@code false}. You can then run the equation as many times
  * as you want by calling {@link #evaluate(double...)}. You do not need to
  * pass values for all variables specified while compiling.
  * To query variables after evaluation, you can use
@@ -69,12 +74,15 @@
 public class Expression {
 
     private static final ThreadLocal<Stack<Expression>> instance = new ThreadLocal<Stack<Expression>>();
+    private static final boolean compileEnabled = !"false".equalsIgnoreCase(System.getProperty("worldedit.expression.compile"));
 
     private final Map<String, RValue> variables = new HashMap<String, RValue>();
     private final String[] variableNames;
     private RValue root;
+    private CompiledExpression compiled;
     private final Functions functions = new Functions();
     private ExpressionEnvironment environment;
+    private final boolean stateless;
 
     public static Expression compile(String expression, String... variableNames) throws ExpressionException {
         return new Expression(expression, variableNames);
@@ -100,6 +108,14 @@ private Expression(List<Token> tokens, String... variableNames) throws Expressio
         }
 
         root = Parser.parse(tokens, this);
+
+        boolean stateless = variables.size() == 4 + variableNames.length;
+        for (Token token : tokens) {
+            if (token instanceof IdentifierToken && Functions.isDynamic(((IdentifierToken) token).value)) {
+                stateless = false;
+            }
+        }
+        this.stateless = stateless;
     }
 
     public double evaluate(double... values) throws EvaluationException {
@@ -115,7 +131,7 @@ public double evaluate(double... values) throws EvaluationException {
 
         pushInstance();
         try {
-            return root.getValue();
+            return compiled != null ? compiled.getValue() : root.getValue();
         } catch (ReturnException e) {
             return e.getValue();
         } finally {
@@ -124,7 +140,39 @@ public double evaluate(double... values) throws EvaluationException {
     }
 
     public void optimize() throws EvaluationException {
+        optimize(compileEnabled);
+    }
+
+    void optimize(boolean compile) throws EvaluationException {
         root = root.optimize();
+        compiled = compile ? ExpressionCompiler.compile(root) : null;
+    }
+
+    /**
+     * Return whether the expression has been compiled to bytecode by
+     * {@link #optimize()}, rather than being interpreted.
+     *
+     * @return true if compiled
+     */
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    /**
+     * Return whether the result of the expression only depends on the
+     * values passed to {@link #evaluate(double...)}.
+     *
+     * <p>This is the case if the expression calls no {@link Functions}
+     * that have side effects, such as {@code megabuf} or {@code query},
+     * and uses no variables besides the ones it was compiled with, which
+     * could carry values from one evaluation to the next. Separately
+     * compiled copies of a stateless expression can be evaluated on
+     * several threads, in any order.</p>
+     *
+     * @return true if stateless
+     */
+    public boolean isStateless() {
+        return stateless;
     }
 
     @Override
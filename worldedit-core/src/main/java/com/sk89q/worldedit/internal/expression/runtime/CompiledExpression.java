@@ -0,0 +1,63 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The base class of expressions that have been compiled to bytecode
+ * by {@link ExpressionCompiler}.
+ *
+ * <p>Subclasses are generated at runtime. Nodes that the compiler does
+ * not translate are kept in {@link #nodes} and evaluated by the
+ * interpreter.</p>
+ */
+public abstract class CompiledExpression {
+
+    protected final RValue[] nodes;
+
+    protected CompiledExpression(RValue[] nodes) {
+        checkNotNull(nodes);
+        this.nodes = nodes;
+    }
+
+    /**
+     * Evaluate the expression.
+     *
+     * @return the result
+     * @throws EvaluationException thrown on an evaluation error
+     */
+    public final double getValue() throws EvaluationException {
+        try {
+            return evaluate();
+        } catch (RuntimeException e) {
+            throw new EvaluationException(-1, "Exception caught while evaluating expression", e);
+        }
+    }
+
+    /**
+     * Evaluate the expression.
+     *
+     * @return the result
+     * @throws EvaluationException thrown on an evaluation error
+     */
+    protected abstract double evaluate() throws EvaluationException;
+
+}
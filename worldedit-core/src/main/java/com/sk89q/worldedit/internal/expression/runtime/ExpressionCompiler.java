@@ -0,0 +1,792 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Compiles an optimized tree of {@link RValue}s to JVM bytecode.
+ *
+ * <p>Constants, variables, conditionals, sequences and calls to the
+ * built-in operators and functions are translated to bytecode, with
+ * arithmetic and {@link Math} functions inlined and other built-in
+ * functions called directly instead of through reflection. Any other node
+ * (loops, switches, user-registered functions) is kept as it is and
+ * evaluated by the interpreter from the generated code.</p>
+ */
+public final class ExpressionCompiler {
+
+    private static final Logger log = Logger.getLogger(ExpressionCompiler.class.getCanonicalName());
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    private static final String PACKAGE = "com/sk89q/worldedit/internal/expression/runtime/";
+    private static final String COMPILED_EXPRESSION = PACKAGE + "CompiledExpression";
+    private static final String RVALUE = PACKAGE + "RValue";
+    private static final String LVALUE = PACKAGE + "LValue";
+    private static final String VARIABLE = PACKAGE + "Variable";
+    private static final String MATH = "java/lang/Math";
+
+    private static final Map<String, Integer> binaryOpcodes = new HashMap<String, Integer>();
+    private static final Map<String, Integer> comparisonOpcodes = new HashMap<String, Integer>();
+    private static final Map<String, Integer> assignmentOpcodes = new HashMap<String, Integer>();
+
+    static {
+        binaryOpcodes.put("add", Code.DADD);
+        binaryOpcodes.put("sub", Code.DSUB);
+        binaryOpcodes.put("mul", Code.DMUL);
+        binaryOpcodes.put("div", Code.DDIV);
+        binaryOpcodes.put("mod", Code.DREM);
+
+        // the comparison and the branch taken when the result is false
+        comparisonOpcodes.put("lth", (Code.DCMPG << 8) | Code.IFGE);
+        comparisonOpcodes.put("gth", (Code.DCMPL << 8) | Code.IFLE);
+        comparisonOpcodes.put("leq", (Code.DCMPG << 8) | Code.IFGT);
+        comparisonOpcodes.put("geq", (Code.DCMPL << 8) | Code.IFLT);
+        comparisonOpcodes.put("equ", (Code.DCMPL << 8) | Code.IFNE);
+        comparisonOpcodes.put("neq", (Code.DCMPL << 8) | Code.IFEQ);
+
+        // 0 for plain assignment, -1 for Math.pow
+        assignmentOpcodes.put("ass", 0);
+        assignmentOpcodes.put("aadd", Code.DADD);
+        assignmentOpcodes.put("asub", Code.DSUB);
+        assignmentOpcodes.put("amul", Code.DMUL);
+        assignmentOpcodes.put("adiv", Code.DDIV);
+        assignmentOpcodes.put("amod", Code.DREM);
+        assignmentOpcodes.put("aexp", -1);
+    }
+
+    private final ConstantPool pool = new ConstantPool();
+    private final Code code = new Code();
+    private final List<RValue> nodes = new ArrayList<RValue>();
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * Compile the given expression tree.
+     *
+     * @param root the root of the tree, which should already be optimized
+     * @return the compiled expression, or null if it could not be compiled
+     */
+    public static CompiledExpression compile(RValue root) {
+        checkNotNull(root);
+        try {
+            return new ExpressionCompiler().compileRoot(root);
+        } catch (RuntimeException e) {
+            log.log(Level.FINE, "Failed to compile expression; it will be interpreted", e);
+        } catch (LinkageError e) {
+            log.log(Level.FINE, "Failed to compile expression; it will be interpreted", e);
+        } catch (StackOverflowError e) {
+            log.log(Level.FINE, "Expression is too deeply nested to compile; it will be interpreted", e);
+        }
+        return null;
+    }
+
+    private CompiledExpression compileRoot(RValue root) {
+        String className = PACKAGE + "GeneratedExpression" + classCounter.incrementAndGet();
+
+        emit(root);
+        code.op(Code.DRETURN, -2);
+
+        byte[] bytes = writeClass(className);
+        Class<?> type = new GeneratedClassLoader().define(className.replace('/', '.'), bytes);
+        try {
+            RValue[] nodeArray = nodes.toArray(new RValue[nodes.size()]);
+            return (CompiledExpression) type.getConstructor(RValue[].class).newInstance((Object) nodeArray);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to instantiate compiled expression", e);
+        }
+    }
+
+    private void emit(RValue node) {
+        if (node instanceof Constant) {
+            emitConstant(((Constant) node).getValue());
+        } else if (node instanceof Variable) {
+            emitNode(node, VARIABLE);
+            code.field(Code.GETFIELD, pool.fieldRef(VARIABLE, "value", "D"), 1);
+        } else if (node instanceof Conditional) {
+            emitConditional((Conditional) node);
+        } else if (node instanceof Sequence) {
+            emitSequence((Sequence) node);
+        } else if (!(node instanceof Function) || !emitFunction((Function) node)) {
+            emitNode(node, RVALUE);
+            code.invokeInterface(pool.interfaceMethodRef(RVALUE, "getValue", "()D"), 1, 1);
+        }
+    }
+
+    private void emitConstant(double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            code.op(Code.DCONST_0, 2);
+        } else if (value == 1.0) {
+            code.op(Code.DCONST_1, 2);
+        } else {
+            code.ldc2(pool.doubleConstant(value));
+        }
+    }
+
+    /**
+     * Push a reference to the given node, taken from the node array.
+     */
+    private void emitNode(RValue node, String type) {
+        int index = nodes.size();
+        nodes.add(node);
+
+        code.op(Code.ALOAD_0, 1);
+        code.field(Code.GETFIELD, pool.fieldRef(COMPILED_EXPRESSION, "nodes", "[L" + RVALUE + ";"), 0);
+        code.pushInt(index);
+        code.op(Code.AALOAD, -1);
+        if (!type.equals(RVALUE)) {
+            code.typeOp(Code.CHECKCAST, pool.classRef(type));
+        }
+    }
+
+    private void emitConditional(Conditional node) {
+        Label elseLabel = new Label();
+        Label end = new Label();
+
+        emitPositiveTest(node.condition, elseLabel);
+        emit(node.truePart);
+        code.jump(Code.GOTO, end);
+        code.mark(elseLabel, -2);
+        if (node.falsePart == null) {
+            code.op(Code.DCONST_0, 2);
+        } else {
+            emit(node.falsePart);
+        }
+        code.mark(end, 0);
+    }
+
+    private void emitSequence(Sequence node) {
+        RValue[] sequence = node.sequence;
+        if (sequence.length == 0) {
+            code.op(Code.DCONST_0, 2);
+            return;
+        }
+
+        for (int i = 0; i < sequence.length; i++) {
+            emit(sequence[i]);
+            if (i < sequence.length - 1) {
+                code.op(Code.POP2, -2);
+            }
+        }
+    }
+
+    /**
+     * Emit a branch to the given label that is taken unless the value
+     * is greater than 0.
+     */
+    private void emitPositiveTest(RValue value, Label ifNotPositive) {
+        emit(value);
+        code.op(Code.DCONST_0, 2);
+        code.op(Code.DCMPL, -3);
+        code.jump(Code.IFLE, ifNotPositive);
+    }
+
+    /**
+     * Turn the result of a comparison into 1.0 or 0.0.
+     */
+    private void emitBoolean(int ifFalseOpcode) {
+        Label falseLabel = new Label();
+        Label end = new Label();
+        code.jump(ifFalseOpcode, falseLabel);
+        code.op(Code.DCONST_1, 2);
+        code.jump(Code.GOTO, end);
+        code.mark(falseLabel, -2);
+        code.op(Code.DCONST_0, 2);
+        code.mark(end, 0);
+    }
+
+    private boolean emitFunction(Function function) {
+        Method method = function.method;
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (declaringClass != Operators.class && declaringClass != Functions.class) {
+            return false;
+        }
+        if (method.getReturnType() != double.class || !Modifier.isStatic(method.getModifiers()) || !Modifier.isPublic(method.getModifiers())) {
+            return false;
+        }
+
+        Class<?>[] parameters = method.getParameterTypes();
+        RValue[] args = function.args;
+        if (parameters.length != args.length) {
+            return false;
+        }
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] == LValue.class) {
+                if (!(args[i] instanceof LValue)) {
+                    return false;
+                }
+            } else if (parameters[i] != RValue.class) {
+                return false;
+            }
+        }
+
+        if (!emitInline(method.getName(), parameters, args)) {
+            emitStaticCall(method, parameters, args);
+        }
+        return true;
+    }
+
+    private boolean emitInline(String name, Class<?>[] parameters, RValue[] args) {
+        if (parameters.length >= 1 && parameters[0] == LValue.class) {
+            return args[0] instanceof Variable && emitVariableAssignment(name, (Variable) args[0], args);
+        }
+
+        switch (args.length) {
+            case 1:
+                return emitUnary(name, args[0]);
+
+            case 2:
+                return emitBinary(name, args[0], args[1]);
+
+            case 3:
+                if (name.equals("min") || name.equals("max")) {
+                    emit(args[0]);
+                    emit(args[1]);
+                    emit(args[2]);
+                    code.invokeStatic(pool.methodRef(MATH, name, "(DD)D"), -2);
+                    code.invokeStatic(pool.methodRef(MATH, name, "(DD)D"), -2);
+                    return true;
+                }
+                return false;
+
+            default:
+                return false;
+        }
+    }
+
+    private boolean emitUnary(String name, RValue arg) {
+        if (name.equals("neg")) {
+            emit(arg);
+            code.op(Code.DNEG, 0);
+        } else if (name.equals("not")) {
+            Label falseLabel = new Label();
+            Label end = new Label();
+            emitPositiveTest(arg, falseLabel);
+            code.op(Code.DCONST_0, 2);
+            code.jump(Code.GOTO, end);
+            code.mark(falseLabel, -2);
+            code.op(Code.DCONST_1, 2);
+            code.mark(end, 0);
+        } else if (name.equals("inv")) {
+            emit(arg);
+            code.op(Code.D2L, 0);
+            code.ldc2(pool.longConstant(-1L));
+            code.op(Code.LXOR, -2);
+            code.op(Code.L2D, 0);
+        } else if (name.equals("round")) {
+            emit(arg);
+            code.invokeStatic(pool.methodRef(MATH, "round", "(D)J"), 0);
+            code.op(Code.L2D, 0);
+        } else if (name.equals("ln") || name.equals("log")) {
+            emit(arg);
+            code.invokeStatic(pool.methodRef(MATH, "log", "(D)D"), 0);
+        } else if (isMathFunction(name)) {
+            emit(arg);
+            code.invokeStatic(pool.methodRef(MATH, name, "(D)D"), 0);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isMathFunction(String name) {
+        return name.equals("sin") || name.equals("cos") || name.equals("tan")
+                || name.equals("asin") || name.equals("acos") || name.equals("atan")
+                || name.equals("sinh") || name.equals("cosh") || name.equals("tanh")
+                || name.equals("sqrt") || name.equals("cbrt") || name.equals("abs")
+                || name.equals("ceil") || name.equals("floor") || name.equals("rint")
+                || name.equals("exp") || name.equals("log10");
+    }
+
+    private boolean emitBinary(String name, RValue lhs, RValue rhs) {
+        Integer opcode = binaryOpcodes.get(name);
+        if (opcode != null) {
+            emit(lhs);
+            emit(rhs);
+            code.op(opcode, -2);
+            return true;
+        }
+
+        Integer comparison = comparisonOpcodes.get(name);
+        if (comparison != null) {
+            emit(lhs);
+            emit(rhs);
+            code.op(comparison >> 8, -3);
+            emitBoolean(comparison & 0xFF);
+            return true;
+        }
+
+        if (name.equals("pow") || name.equals("atan2") || name.equals("min") || name.equals("max")) {
+            emit(lhs);
+            emit(rhs);
+            code.invokeStatic(pool.methodRef(MATH, name, "(DD)D"), -2);
+        } else if (name.equals("and")) {
+            Label falseLabel = new Label();
+            emitPositiveTest(lhs, falseLabel);
+            emitPositiveTest(rhs, falseLabel);
+            emitBooleanTail(falseLabel);
+        } else if (name.equals("or")) {
+            Label trueLabel = new Label();
+            Label falseLabel = new Label();
+            emit(lhs);
+            code.op(Code.DCONST_0, 2);
+            code.op(Code.DCMPL, -3);
+            code.jump(Code.IFGT, trueLabel);
+            emitPositiveTest(rhs, falseLabel);
+            code.mark(trueLabel, 0);
+            emitBooleanTail(falseLabel);
+        } else if (name.equals("shl") || name.equals("shr")) {
+            emit(lhs);
+            code.op(Code.D2L, 0);
+            emit(rhs);
+            code.op(Code.D2L, 0);
+            code.op(Code.L2I, -1);
+            code.op(name.equals("shl") ? Code.LSHL : Code.LSHR, -1);
+            code.op(Code.L2D, 0);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Push 1.0, or 0.0 if the given label was branched to.
+     */
+    private void emitBooleanTail(Label falseLabel) {
+        Label end = new Label();
+        code.op(Code.DCONST_1, 2);
+        code.jump(Code.GOTO, end);
+        code.mark(falseLabel, -2);
+        code.op(Code.DCONST_0, 2);
+        code.mark(end, 0);
+    }
+
+    private boolean emitVariableAssignment(String name, Variable variable, RValue[] args) {
+        int valueField = pool.fieldRef(VARIABLE, "value", "D");
+
+        if (args.length == 2) {
+            Integer opcode = assignmentOpcodes.get(name);
+            if (opcode == null) {
+                return false;
+            }
+            emitNode(variable, VARIABLE);
+            if (opcode != 0) {
+                code.op(Code.DUP, 1);
+                code.field(Code.GETFIELD, valueField, 1);
+            }
+            emit(args[1]);
+            if (opcode == -1) {
+                code.invokeStatic(pool.methodRef(MATH, "pow", "(DD)D"), -2);
+            } else if (opcode != 0) {
+                code.op(opcode, -2);
+            }
+            code.op(Code.DUP2_X1, 2);
+            code.field(Code.PUTFIELD, valueField, -3);
+            return true;
+        }
+
+        boolean increment = name.equals("inc") || name.equals("postinc");
+        boolean post = name.equals("postinc") || name.equals("postdec");
+        if (!increment && !name.equals("dec") && !name.equals("postdec")) {
+            return false;
+        }
+
+        emitNode(variable, VARIABLE);
+        code.op(Code.DUP, 1);
+        code.field(Code.GETFIELD, valueField, 1);
+        if (post) {
+            code.op(Code.DUP2_X1, 2);
+        }
+        code.op(Code.DCONST_1, 2);
+        code.op(increment ? Code.DADD : Code.DSUB, -2);
+        if (!post) {
+            code.op(Code.DUP2_X1, 2);
+        }
+        code.field(Code.PUTFIELD, valueField, -3);
+        return true;
+    }
+
+    private void emitStaticCall(Method method, Class<?>[] parameters, RValue[] args) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (int i = 0; i < args.length; i++) {
+            String type = parameters[i] == LValue.class ? LVALUE : RVALUE;
+            emitNode(args[i], type);
+            descriptor.append('L').append(type).append(';');
+        }
+        descriptor.append(")D");
+
+        String owner = method.getDeclaringClass().getName().replace('.', '/');
+        code.invokeStatic(pool.methodRef(owner, method.getName(), descriptor.toString()), 2 - args.length);
+    }
+
+    private byte[] writeClass(String className) {
+        int thisClass = pool.classRef(className);
+        int superClass = pool.classRef(COMPILED_EXPRESSION);
+        int superConstructor = pool.methodRef(COMPILED_EXPRESSION, "<init>", "([L" + RVALUE + ";)V");
+        int codeName = pool.utf8("Code");
+        int constructorName = pool.utf8("<init>");
+        int constructorType = pool.utf8("([L" + RVALUE + ";)V");
+        int evaluateName = pool.utf8("evaluate");
+        int evaluateType = pool.utf8("()D");
+
+        Code constructor = new Code();
+        constructor.op(Code.ALOAD_0, 1);
+        constructor.op(Code.ALOAD_1, 1);
+        constructor.invokeSpecial(superConstructor, -2);
+        constructor.op(Code.RETURN, 0);
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49); // Java 5, which needs no stack map frames
+            pool.write(out);
+            out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(2); // methods
+            writeMethod(out, 0x0001, constructorName, constructorType, codeName, constructor, 2);
+            writeMethod(out, 0x0004, evaluateName, evaluateType, codeName, code, 1);
+            out.writeShort(0); // attributes
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeMethod(DataOutputStream out, int access, int name, int descriptor, int codeName, Code code, int maxLocals) throws IOException {
+        byte[] bytecode = code.toByteArray();
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1); // attributes
+        out.writeShort(codeName);
+        out.writeInt(12 + bytecode.length);
+        out.writeShort(code.maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bytecode.length);
+        out.write(bytecode);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    /**
+     * Defines the generated class. Each expression gets its own loader
+     * so that the class can be unloaded with the expression.
+     */
+    private static class GeneratedClassLoader extends ClassLoader {
+        private GeneratedClassLoader() {
+            super(CompiledExpression.class.getClassLoader());
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static class Label {
+        private int position = -1;
+        private final List<Integer> references = new ArrayList<Integer>();
+    }
+
+    /**
+     * The bytecode of a method, which keeps track of the depth of the
+     * operand stack as instructions are added.
+     */
+    private static class Code {
+        static final int DCONST_0 = 0x0e;
+        static final int DCONST_1 = 0x0f;
+        static final int BIPUSH = 0x10;
+        static final int SIPUSH = 0x11;
+        static final int LDC2_W = 0x14;
+        static final int ALOAD_0 = 0x2a;
+        static final int ALOAD_1 = 0x2b;
+        static final int AALOAD = 0x32;
+        static final int POP2 = 0x58;
+        static final int DUP = 0x59;
+        static final int DUP2_X1 = 0x5d;
+        static final int DADD = 0x63;
+        static final int DSUB = 0x67;
+        static final int DMUL = 0x6b;
+        static final int DDIV = 0x6f;
+        static final int DREM = 0x73;
+        static final int DNEG = 0x77;
+        static final int LSHL = 0x79;
+        static final int LSHR = 0x7b;
+        static final int LXOR = 0x83;
+        static final int L2I = 0x88;
+        static final int L2D = 0x8a;
+        static final int D2L = 0x8f;
+        static final int DCMPL = 0x97;
+        static final int DCMPG = 0x98;
+        static final int IFEQ = 0x99;
+        static final int IFNE = 0x9a;
+        static final int IFLT = 0x9b;
+        static final int IFGE = 0x9c;
+        static final int IFGT = 0x9d;
+        static final int IFLE = 0x9e;
+        static final int GOTO = 0xa7;
+        static final int DRETURN = 0xaf;
+        static final int RETURN = 0xb1;
+        static final int GETFIELD = 0xb4;
+        static final int PUTFIELD = 0xb5;
+        static final int INVOKESPECIAL = 0xb7;
+        static final int INVOKESTATIC = 0xb8;
+        static final int INVOKEINTERFACE = 0xb9;
+        static final int CHECKCAST = 0xc0;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<Label>();
+        private int stack;
+        private int maxStack;
+
+        void op(int opcode, int stackChange) {
+            bytes.write(opcode);
+            adjustStack(stackChange);
+        }
+
+        void pushInt(int value) {
+            if (value <= Byte.MAX_VALUE) {
+                bytes.write(BIPUSH);
+                bytes.write(value);
+            } else if (value <= Short.MAX_VALUE) {
+                bytes.write(SIPUSH);
+                writeShort(value);
+            } else {
+                throw new IllegalStateException("Too many nodes to compile");
+            }
+            adjustStack(1);
+        }
+
+        void ldc2(int constant) {
+            bytes.write(LDC2_W);
+            writeShort(constant);
+            adjustStack(2);
+        }
+
+        void field(int opcode, int field, int stackChange) {
+            bytes.write(opcode);
+            writeShort(field);
+            adjustStack(stackChange);
+        }
+
+        void typeOp(int opcode, int type) {
+            bytes.write(opcode);
+            writeShort(type);
+        }
+
+        void invokeStatic(int method, int stackChange) {
+            bytes.write(INVOKESTATIC);
+            writeShort(method);
+            adjustStack(stackChange);
+        }
+
+        void invokeSpecial(int method, int stackChange) {
+            bytes.write(INVOKESPECIAL);
+            writeShort(method);
+            adjustStack(stackChange);
+        }
+
+        void invokeInterface(int method, int argumentSlots, int stackChange) {
+            bytes.write(INVOKEINTERFACE);
+            writeShort(method);
+            bytes.write(argumentSlots);
+            bytes.write(0);
+            adjustStack(stackChange);
+        }
+
+        /**
+         * Add a branch instruction. The stack change of conditional
+         * branches is accounted for here.
+         */
+        void jump(int opcode, Label label) {
+            if (!labels.contains(label)) {
+                labels.add(label);
+            }
+            label.references.add(bytes.size());
+            bytes.write(opcode);
+            writeShort(0);
+            if (opcode != GOTO) {
+                adjustStack(-1);
+            }
+        }
+
+        /**
+         * Place a label at the current position.
+         *
+         * @param label the label
+         * @param stackChange the change in stack depth since the previous
+         *                    instruction, which may not fall through to here
+         */
+        void mark(Label label, int stackChange) {
+            label.position = bytes.size();
+            adjustStack(stackChange);
+        }
+
+        byte[] toByteArray() {
+            byte[] code = bytes.toByteArray();
+            if (code.length > 65535) {
+                throw new IllegalStateException("Method too large");
+            }
+            for (Label label : labels) {
+                for (int reference : label.references) {
+                    int offset = label.position - reference;
+                    if (label.position < 0 || offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        throw new IllegalStateException("Branch offset out of range");
+                    }
+                    code[reference + 1] = (byte) (offset >> 8);
+                    code[reference + 2] = (byte) offset;
+                }
+            }
+            return code;
+        }
+
+        private void writeShort(int value) {
+            bytes.write(value >> 8);
+            bytes.write(value);
+        }
+
+        private void adjustStack(int change) {
+            stack += change;
+            if (stack > maxStack) {
+                maxStack = stack;
+            }
+        }
+    }
+
+    /**
+     * The constant pool of the generated class.
+     */
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<String, Integer>();
+        private int count = 1;
+
+        int utf8(String value) {
+            Integer index = entries.get("U" + value);
+            if (index == null) {
+                try {
+                    out.writeByte(1);
+                    out.writeUTF(value);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                index = add("U" + value, 1);
+            }
+            return index;
+        }
+
+        int classRef(String name) {
+            return reference("C" + name, 7, utf8(name), -1);
+        }
+
+        int fieldRef(String owner, String name, String descriptor) {
+            return reference("F" + owner + "." + name + descriptor, 9, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return reference("M" + owner + "." + name + descriptor, 10, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        int interfaceMethodRef(String owner, String name, String descriptor) {
+            return reference("I" + owner + "." + name + descriptor, 11, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        int doubleConstant(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            return wideConstant("D" + bits, 6, bits);
+        }
+
+        int longConstant(long value) {
+            return wideConstant("J" + value, 5, value);
+        }
+
+        void write(DataOutputStream target) throws IOException {
+            if (count > 65535) {
+                throw new IllegalStateException("Too many constants");
+            }
+            target.writeShort(count);
+            out.flush();
+            bytes.writeTo(target);
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            return reference("N" + name + ":" + descriptor, 12, utf8(name), utf8(descriptor));
+        }
+
+        private int reference(String key, int tag, int first, int second) {
+            Integer index = entries.get(key);
+            if (index == null) {
+                try {
+                    out.writeByte(tag);
+                    out.writeShort(first);
+                    if (second >= 0) {
+                        out.writeShort(second);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                index = add(key, 1);
+            }
+            return index;
+        }
+
+        private int wideConstant(String key, int tag, long bits) {
+            Integer index = entries.get(key);
+            if (index == null) {
+                try {
+                    out.writeByte(tag);
+                    out.writeLong(bits);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                index = add(key, 2);
+            }
+            return index;
+        }
+
+        private int add(String key, int slots) {
+            int index = count;
+            entries.put(key, index);
+            count += slots;
+            return index;
+        }
+    }
+
+}
@@ -133,6 +133,27 @@ private static Method getMethod(String name, boolean isSetter, RValue... args) t
     }
 
 
+    /**
+     * Return whether any function with the given name is {@link Dynamic},
+     * meaning that it has side effects or does not always return the same
+     * value for the same arguments.
+     *
+     * @param name the name of the function
+     * @return true if dynamic
+     */
+    public static boolean isDynamic(String name) {
+        final List<Overload> overloads = functions.get(name);
+        if (overloads != null) {
+            for (Overload overload : overloads) {
+                if (overload.method.isAnnotationPresent(Dynamic.class)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
     public static void addFunction(Method method) throws IllegalArgumentException {
         final String methodName = method.getName();
 
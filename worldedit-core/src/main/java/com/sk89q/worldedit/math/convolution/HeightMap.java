@@ -24,8 +24,12 @@
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.extent.cache.ColumnCache;
 import com.sk89q.worldedit.regions.Region;
 
+import javax.annotation.Nullable;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -41,6 +45,8 @@ public class HeightMap {
 
     private Region region;
     private EditSession session;
+    @Nullable
+    private ColumnCache cache;
 
     /**
      * Constructs the HeightMap
@@ -60,11 +66,24 @@ public HeightMap(EditSession session, Region region) {
      * @param naturalOnly ignore non-natural blocks
      */
     public HeightMap(EditSession session, Region region, boolean naturalOnly) {
+        this(session, region, naturalOnly, null);
+    }
+
+    /**
+     * Constructs the HeightMap
+     *
+     * @param session an edit session
+     * @param region the region
+     * @param naturalOnly ignore non-natural blocks
+     * @param cache a cache to read columns of blocks from, or null
+     */
+    public HeightMap(EditSession session, Region region, boolean naturalOnly, @Nullable ColumnCache cache) {
         checkNotNull(session);
         checkNotNull(region);
 
         this.session = session;
         this.region = region;
+        this.cache = cache;
 
         this.width = region.getWidth();
         this.height = region.getLength();
@@ -76,11 +95,41 @@ public HeightMap(EditSession session, Region region, boolean naturalOnly) {
 
         // Store current heightmap data
         data = new int[width * height];
+        int[] column = new int[maxY - minY + 1];
         for (int z = 0; z < height; ++z) {
             for (int x = 0; x < width; ++x) {
-                data[z * width + x] = session.getHighestTerrainBlock(x + minX, z + minZ, minY, maxY, naturalOnly);
+                readColumn(x + minX, z + minZ, minY, maxY, column);
+                data[z * width + x] = getHighestTerrainBlock(column, minY, naturalOnly);
+            }
+        }
+    }
+
+    private void readColumn(int x, int z, int minY, int maxY, int[] column) {
+        if (cache != null) {
+            cache.getBlockColumn(session, x, z, minY, maxY, column);
+        } else {
+            session.getBlockColumn(x, z, minY, maxY, column);
+        }
+    }
+
+    /**
+     * Find the highest terrain block of a column.
+     *
+     * @param column the blocks of the column
+     * @param minY the Y coordinate of the first block
+     * @param naturalOnly look at natural blocks or all blocks
+     * @return the Y coordinate of the highest block found, or minY
+     * @see EditSession#getHighestTerrainBlock(int, int, int, int, boolean)
+     */
+    private static int getHighestTerrainBlock(int[] column, int minY, boolean naturalOnly) {
+        for (int i = column.length - 1; i >= 0; --i) {
+            int id = column[i] >> 4;
+            int data = column[i] & 0xF;
+            if (naturalOnly ? BlockType.isNaturalTerrainBlock(id, data) : !BlockType.canPassThrough(id, data)) {
+                return minY + i;
             }
         }
+        return minY;
     }
 
     /**
@@ -107,6 +156,9 @@ public int applyFilter(HeightMapFilter filter, int iterations) throws MaxChanged
 
     /**
      * Apply a raw heightmap to the region
+     *
+     * <p>Only the columns whose height changes are read again, and only the
+     * blocks that change are set.</p>
      * 
      * @param data the data
      * @return number of blocks affected
@@ -125,6 +177,7 @@ public int apply(int[] data) throws MaxChangedBlocksException {
         BaseBlock fillerAir = new BaseBlock(BlockID.AIR);
 
         int blocksChanged = 0;
+        int[] column = new int[maxY - originY + 1];
 
         // Apply heightmap
         for (int z = 0; z < height; ++z) {
@@ -133,50 +186,54 @@ public int apply(int[] data) throws MaxChangedBlocksException {
                 int curHeight = this.data[index];
 
                 // Clamp newHeight within the selection area
-                int newHeight = Math.min(maxY, data[index]);
+                int newHeight = Math.max(originY, Math.min(maxY, data[index]));
+                if (newHeight == curHeight) {
+                    continue;
+                }
 
                 // Offset x,z to be 'real' coordinates
                 int xr = x + originX;
                 int zr = z + originZ;
 
+                // The blocks are copied from the column as it was before this
+                // method changed it, in an order where the blocks that are
+                // read have not been set yet
+                readColumn(xr, zr, originY, maxY, column);
+
                 // We are keeping the topmost blocks so take that in account for the scale
                 double scale = (double) (curHeight - originY) / (double) (newHeight - originY);
 
                 // Depending on growing or shrinking we need to start at the bottom or top
                 if (newHeight > curHeight) {
                     // Set the top block of the column to be the same type (this might go wrong with rounding)
-                    BaseBlock existing = session.getBlock(new Vector(xr, curHeight, zr));
+                    int existing = column[curHeight - originY] >> 4;
 
                     // Skip water/lava
-                    if (existing.getType() != BlockID.WATER && existing.getType() != BlockID.STATIONARY_WATER
-                            && existing.getType() != BlockID.LAVA && existing.getType() != BlockID.STATIONARY_LAVA) {
-                        session.setBlock(new Vector(xr, newHeight, zr), existing);
-                        ++blocksChanged;
+                    if (existing != BlockID.WATER && existing != BlockID.STATIONARY_WATER
+                            && existing != BlockID.LAVA && existing != BlockID.STATIONARY_LAVA) {
+                        blocksChanged += copy(column, xr, zr, originY, curHeight - originY, newHeight - originY);
 
                         // Grow -- start from 1 below top replacing airblocks
                         for (int y = newHeight - 1 - originY; y >= 0; --y) {
-                            int copyFrom = (int) (y * scale);
-                            session.setBlock(new Vector(xr, originY + y, zr), session.getBlock(new Vector(xr, originY + copyFrom, zr)));
-                            ++blocksChanged;
+                            blocksChanged += copy(column, xr, zr, originY, (int) (y * scale), y);
                         }
                     }
-                } else if (curHeight > newHeight) {
+                } else {
                     // Shrink -- start from bottom
                     for (int y = 0; y < newHeight - originY; ++y) {
-                        int copyFrom = (int) (y * scale);
-                        session.setBlock(new Vector(xr, originY + y, zr), session.getBlock(new Vector(xr, originY + copyFrom, zr)));
-                        ++blocksChanged;
+                        blocksChanged += copy(column, xr, zr, originY, (int) (y * scale), y);
                     }
 
                     // Set the top block of the column to be the same type
                     // (this could otherwise go wrong with rounding)
-                    session.setBlock(new Vector(xr, newHeight, zr), session.getBlock(new Vector(xr, curHeight, zr)));
-                    ++blocksChanged;
+                    blocksChanged += copy(column, xr, zr, originY, curHeight - originY, newHeight - originY);
 
                     // Fill rest with air
                     for (int y = newHeight + 1; y <= curHeight; ++y) {
-                        session.setBlock(new Vector(xr, y, zr), fillerAir);
-                        ++blocksChanged;
+                        if (column[y - originY] != BlockID.AIR << 4) {
+                            session.setBlock(new Vector(xr, y, zr), fillerAir);
+                            ++blocksChanged;
+                        }
                     }
                 }
             }
@@ -187,4 +244,26 @@ public int apply(int[] data) throws MaxChangedBlocksException {
         return blocksChanged;
     }
 
+    /**
+     * Copy a block of a column to another height, unless the block at that
+     * height is already the same.
+     *
+     * @param column the blocks of the column before it was changed
+     * @param x the X coordinate of the column
+     * @param z the Z coordinate of the column
+     * @param originY the Y coordinate of the first block of the column
+     * @param from the index of the block to copy
+     * @param to the index to copy the block to
+     * @return the number of blocks changed
+     * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     */
+    private int copy(int[] column, int x, int z, int originY, int from, int to) throws MaxChangedBlocksException {
+        if (column[from] == column[to]) {
+            return 0;
+        }
+        // Read the full block so that its NBT data is copied too
+        session.setBlock(new Vector(x, originY + to, z), session.getBlock(new Vector(x, originY + from, z)));
+        return 1;
+    }
+
 }
@@ -31,6 +31,8 @@
 public class HeightMapFilter {
 
     private Kernel kernel;
+    private float[] rowFactors;
+    private float[] columnFactors;
 
     /**
      * Construct the HeightMapFilter object.
@@ -40,6 +42,7 @@ public class HeightMapFilter {
     public HeightMapFilter(Kernel kernel) {
         checkNotNull(kernel);
         this.kernel = kernel;
+        updateFactors();
     }
 
     /**
@@ -52,6 +55,7 @@ public HeightMapFilter(Kernel kernel) {
     public HeightMapFilter(int kernelWidth, int kernelHeight, float[] kernelData) {
         checkNotNull(kernelData);
         this.kernel = new Kernel(kernelWidth, kernelHeight, kernelData);
+        updateFactors();
     }
 
     /**
@@ -70,6 +74,52 @@ public void setKernel(Kernel kernel) {
         checkNotNull(kernel);
 
         this.kernel = kernel;
+        updateFactors();
+    }
+
+    /**
+     * Split the kernel into a row and a column whose product is the kernel,
+     * if possible, as is the case for a {@link GaussianKernel}.
+     */
+    private void updateFactors() {
+        float[] matrix = kernel.getKernelData(null);
+        int kw = kernel.getWidth();
+        int kh = kernel.getHeight();
+
+        int pivot = 0;
+        for (int i = 1; i < matrix.length; ++i) {
+            if (Math.abs(matrix[i]) > Math.abs(matrix[pivot])) {
+                pivot = i;
+            }
+        }
+
+        rowFactors = null;
+        columnFactors = null;
+        float p = matrix[pivot];
+        if (p == 0) {
+            return;
+        }
+
+        float[] row = new float[kw];
+        float[] column = new float[kh];
+        for (int kx = 0; kx < kw; ++kx) {
+            row[kx] = matrix[(pivot / kw) * kw + kx];
+        }
+        for (int ky = 0; ky < kh; ++ky) {
+            column[ky] = matrix[ky * kw + pivot % kw] / p;
+        }
+
+        float tolerance = Math.abs(p) * 1e-5f;
+        for (int ky = 0; ky < kh; ++ky) {
+            for (int kx = 0; kx < kw; ++kx) {
+                if (Math.abs(column[ky] * row[kx] - matrix[ky * kw + kx]) > tolerance) {
+                    return;
+                }
+            }
+        }
+
+        rowFactors = row;
+        columnFactors = column;
     }
 
     /**
@@ -84,6 +134,10 @@ public void setKernel(Kernel kernel) {
     public int[] filter(int[] inData, int width, int height) {
         checkNotNull(inData);
 
+        if (rowFactors != null) {
+            return filterSeparable(inData, width, height);
+        }
+
         int index = 0;
         float[] matrix = kernel.getKernelData(null);
         int[] outData = new int[inData.length];
@@ -126,4 +180,51 @@ public int[] filter(int[] inData, int width, int height) {
         return outData;
     }
 
+    /**
+     * Filter with a kernel that has been split into a row and a column, by
+     * filtering each row and then each column. This gives the same result
+     * as {@link #filter(int[], int, int)}, apart from rounding errors.
+     */
+    private int[] filterSeparable(int[] inData, int width, int height) {
+        float[] row = rowFactors;
+        float[] column = columnFactors;
+        int kox = kernel.getXOrigin();
+        int koy = kernel.getYOrigin();
+        float[] rowData = new float[inData.length];
+        int[] outData = new int[inData.length];
+
+        for (int y = 0; y < height; ++y) {
+            int offsetY = y * width;
+            for (int x = 0; x < width; ++x) {
+                float z = 0;
+                for (int kx = 0; kx < row.length; ++kx) {
+                    int offsetX = x + kx - kox;
+                    // Clamp coordinates inside data
+                    if (offsetX < 0 || offsetX >= width) {
+                        offsetX = x;
+                    }
+                    z += row[kx] * inData[offsetY + offsetX];
+                }
+                rowData[offsetY + x] = z;
+            }
+        }
+
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                float z = 0;
+                for (int ky = 0; ky < column.length; ++ky) {
+                    int offsetY = y + ky - koy;
+                    // Clamp coordinates inside data
+                    if (offsetY < 0 || offsetY >= height) {
+                        offsetY = y;
+                    }
+                    z += column[ky] * rowData[offsetY * width + x];
+                }
+                outData[y * width + x] = (int) (z + 0.5);
+            }
+        }
+
+        return outData;
+    }
+
 }
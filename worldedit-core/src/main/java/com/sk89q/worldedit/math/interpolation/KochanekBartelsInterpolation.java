@@ -42,6 +42,7 @@ public class KochanekBartelsInterpolation implements Interpolation {
     private Vector[] coeffC;
     private Vector[] coeffD;
     private double scaling;
+    private double[] arcLengths;
 
     public KochanekBartelsInterpolation() {
         setNodes(Collections.<Node>emptyList());
@@ -61,6 +62,7 @@ private void recalc() {
         coeffB = new Vector[nNodes];
         coeffC = new Vector[nNodes];
         coeffD = new Vector[nNodes];
+        arcLengths = null;
 
         if (nNodes == 0)
             return;
@@ -194,28 +196,32 @@ public double arcLength(double positionA, double positionB) {
         final int indexB = (int) Math.floor(positionB);
         final double remainderB = positionB - indexB;
 
-        return arcLengthRecursive(indexA, remainderA, indexB, remainderB);
+        if (indexA == indexB) {
+            return arcLengthRecursive(indexA, remainderA, remainderB);
+        }
+
+        return
+                arcLengthRecursive(indexA, remainderA, 1.0) +
+                getArcLengths()[indexB] - getArcLengths()[indexA + 1] +
+                arcLengthRecursive(indexB, 0.0, remainderB);
     }
 
     /**
-     * Assumes a < b
+     * Get the total arc length of all segments before each segment, which
+     * is computed once so that the length of whole segments between two
+     * positions does not need to be sampled again.
+     *
+     * @return an array where element i is the length of segments 0 to i-1
      */
-    private double arcLengthRecursive(int indexLeft, double remainderLeft, int indexRight, double remainderRight) {
-        switch (indexRight - indexLeft) {
-        case 0:
-            return arcLengthRecursive(indexLeft, remainderLeft, remainderRight);
-
-        case 1:
-            // This case is merely a speed-up for a very common case
-            return
-                    arcLengthRecursive(indexLeft, remainderLeft, 1.0) +
-                    arcLengthRecursive(indexRight, 0.0, remainderRight);
-
-        default:
-            return
-                    arcLengthRecursive(indexLeft, remainderLeft, indexRight - 1, 1.0) +
-                    arcLengthRecursive(indexRight, 0.0, remainderRight);
+    private double[] getArcLengths() {
+        if (arcLengths == null) {
+            double[] lengths = new double[coeffA.length];
+            for (int i = 1; i < lengths.length; ++i) {
+                lengths[i] = lengths[i - 1] + arcLengthRecursive(i - 1, 0.0, 1.0);
+            }
+            arcLengths = lengths;
         }
+        return arcLengths;
     }
 
     private double arcLengthRecursive(int index, double remainderLeft, double remainderRight) {
@@ -29,6 +29,8 @@
 
 public abstract class AbstractRegion implements Region {
 
+    protected static final int[] NO_SPANS = new int[0];
+
     protected World world;
 
     public AbstractRegion(World world) {
@@ -50,6 +52,77 @@ public Iterator<BlockVector> iterator() {
         return new RegionIterator(this);
     }
 
+    /**
+     * Get the blocks that are inside the region on the row of blocks at
+     * the given Y and Z coordinates.
+     *
+     * <p>The returned array holds pairs of X coordinates, each being the
+     * inclusive minimum and maximum of a run of blocks inside the region.
+     * Runs are in increasing order and are separated by at least one block
+     * that is outside of the region. The array must not be modified.</p>
+     *
+     * <p>This implementation tests every block of the row that is in the
+     * bounding box with {@link #contains(Vector)}. Use
+     * {@link Regions#getSpans(Region, int, int)} to get the spans of any
+     * region.</p>
+     *
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @return an array of pairs of X coordinates, which may be empty
+     */
+    public int[] getSpans(int y, int z) {
+        return Regions.scanSpans(this, y, z);
+    }
+
+    /**
+     * Get the span of a row of a region that is convex along the X axis,
+     * given an estimate of where the row enters and leaves the region.
+     *
+     * <p>The estimate only needs to be within about one block of the
+     * actual span: the ends are found exactly with
+     * {@link #contains(Vector)}. If the estimate is empty or not a number,
+     * the row is tested at the given center instead.</p>
+     *
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @param estimatedMinX the estimated minimum X coordinate inside the region
+     * @param estimatedMaxX the estimated maximum X coordinate inside the region
+     * @param centerX an X coordinate to test if the estimate is empty
+     * @return an array with zero or one pair of X coordinates
+     */
+    protected int[] getConvexSpan(int y, int z, double estimatedMinX, double estimatedMaxX, double centerX) {
+        int boundMinX = getMinimumPoint().getBlockX();
+        int boundMaxX = getMaximumPoint().getBlockX();
+
+        int minX;
+        int maxX;
+        if (estimatedMinX <= estimatedMaxX) {
+            minX = (int) Math.max(boundMinX, Math.min(boundMaxX, Math.ceil(estimatedMinX)));
+            maxX = (int) Math.max(boundMinX, Math.min(boundMaxX, Math.floor(estimatedMaxX)));
+        } else {
+            minX = maxX = (int) Math.max(boundMinX, Math.min(boundMaxX, Math.round(centerX)));
+        }
+
+        if (minX <= maxX) {
+            // Extend the estimate to the blocks just outside of it
+            while (minX > boundMinX && contains(new BlockVector(minX - 1, y, z))) {
+                minX--;
+            }
+            while (maxX < boundMaxX && contains(new BlockVector(maxX + 1, y, z))) {
+                maxX++;
+            }
+        }
+
+        while (minX <= maxX && !contains(new BlockVector(minX, y, z))) {
+            minX++;
+        }
+        while (maxX >= minX && !contains(new BlockVector(maxX, y, z))) {
+            maxX--;
+        }
+
+        return minX <= maxX ? new int[] { minX, maxX } : NO_SPANS;
+    }
+
     @Override
     public World getWorld() {
         return world;
@@ -299,6 +299,36 @@ public boolean contains(Vector position) {
         return containsRaw(position);
     }
 
+    @Override
+    public int[] getSpans(int y, int z) {
+        if (!isDefined()) {
+            return NO_SPANS;
+        }
+
+        final Vector min = getMinimumPoint();
+        final Vector max = getMaximumPoint();
+        if (y < min.getBlockY() || y > max.getBlockY() || z < min.getBlockZ() || z > max.getBlockZ()) {
+            return NO_SPANS;
+        }
+
+        // The row is inside every plane over an interval of X
+        double minX = min.getX();
+        double maxX = max.getX();
+        for (Triangle triangle : triangles) {
+            Vector normal = triangle.getNormal();
+            double remaining = triangle.getDistance() - normal.getY() * y - normal.getZ() * z;
+            if (normal.getX() > 0) {
+                maxX = Math.min(maxX, remaining / normal.getX());
+            } else if (normal.getX() < 0) {
+                minX = Math.max(minX, remaining / normal.getX());
+            } else if (remaining < 0) {
+                maxX = Double.NEGATIVE_INFINITY;
+            }
+        }
+
+        return getConvexSpan(y, z, minX, maxX, (minX + maxX) / 2);
+    }
+
     private boolean containsRaw(Vector pt) {
         if (lastTriangle != null && lastTriangle.above(pt)) {
             return false;
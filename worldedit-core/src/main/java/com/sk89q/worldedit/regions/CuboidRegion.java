@@ -343,6 +343,16 @@ public boolean contains(Vector position) {
                 && z >= min.getBlockZ() && z <= max.getBlockZ();
     }
 
+    @Override
+    public int[] getSpans(int y, int z) {
+        Vector min = getMinimumPoint();
+        Vector max = getMaximumPoint();
+        if (y < min.getBlockY() || y > max.getBlockY() || z < min.getBlockZ() || z > max.getBlockZ()) {
+            return NO_SPANS;
+        }
+        return new int[] { min.getBlockX(), max.getBlockX() };
+    }
+
     @Override
     public Iterator<BlockVector> iterator() {
         return new Iterator<BlockVector>() {
@@ -313,6 +313,22 @@ public boolean contains(Vector position) {
         return position.toVector2D().subtract(center).divide(radius).lengthSq() <= 1;
     }
 
+    @Override
+    public int[] getSpans(int y, int z) {
+        if (y < minY || y > maxY) {
+            return NO_SPANS;
+        }
+
+        double dz = (z - center.getZ()) / radius.getZ();
+        double remaining = 1 - dz * dz;
+        if (remaining < -1e-9) {
+            return NO_SPANS;
+        }
+
+        double halfWidth = radius.getX() * Math.sqrt(Math.max(0, remaining));
+        return getConvexSpan(y, z, center.getX() - halfWidth, center.getX() + halfWidth, center.getX());
+    }
+
 
     /**
      * Sets the height of the cylinder to fit the specified Y.
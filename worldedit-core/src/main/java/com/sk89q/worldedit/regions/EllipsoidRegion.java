@@ -210,6 +210,19 @@ public boolean contains(Vector position) {
         return position.subtract(center).divide(radius).lengthSq() <= 1;
     }
 
+    @Override
+    public int[] getSpans(int y, int z) {
+        double dy = (y - center.getY()) / radius.getY();
+        double dz = (z - center.getZ()) / radius.getZ();
+        double remaining = 1 - dy * dy - dz * dz;
+        if (remaining < -1e-9) {
+            return NO_SPANS;
+        }
+
+        double halfWidth = radius.getX() * Math.sqrt(Math.max(0, remaining));
+        return getConvexSpan(y, z, center.getX() - halfWidth, center.getX() + halfWidth, center.getX());
+    }
+
     /**
      * Returns string representation in the format
      * "(centerX, centerY, centerZ) - (radiusX, radiusY, radiusZ)".
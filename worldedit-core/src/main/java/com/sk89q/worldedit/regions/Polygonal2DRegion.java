@@ -29,6 +29,7 @@
 import com.sk89q.worldedit.world.World;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -314,6 +315,60 @@ public boolean contains(Vector position) {
         return contains(points, minY, maxY, position);
     }
 
+    @Override
+    public int[] getSpans(int y, int z) {
+        if (y < minY || y > maxY || z < min.getBlockZ() || z > max.getBlockZ() || points.size() < 3) {
+            return NO_SPANS;
+        }
+
+        // Whether a block is inside can only change at the X coordinates
+        // of vertices and next to where edges cross the row
+        int[] candidates = new int[points.size() * 3];
+        int count = 0;
+        BlockVector2D last = points.get(points.size() - 1);
+        for (BlockVector2D point : points) {
+            int x1 = last.getBlockX();
+            int z1 = last.getBlockZ();
+            int x2 = point.getBlockX();
+            int z2 = point.getBlockZ();
+            candidates[count++] = x2;
+            if (z1 != z2 && Math.min(z1, z2) <= z && z <= Math.max(z1, z2)) {
+                double crossing = x1 + (double) (z - z1) * (x2 - x1) / (z2 - z1);
+                candidates[count] = (int) Math.floor(crossing);
+                candidates[count + 1] = candidates[count] + 1;
+                count += 2;
+            }
+            last = point;
+        }
+        Arrays.sort(candidates, 0, count);
+
+        int minX = min.getBlockX();
+        int maxX = max.getBlockX();
+        int[] spans = new int[count * 2 + 2];
+        int spanCount = 0;
+        int x = minX;
+        int i = 0;
+        while (x <= maxX) {
+            while (i < count && candidates[i] < x) {
+                i++;
+            }
+
+            // Blocks from x up to the next candidate are all inside or all outside
+            int end = i < count && candidates[i] == x ? x : Math.min(maxX, i < count ? candidates[i] - 1 : maxX);
+            if (contains(new BlockVector(x, y, z))) {
+                if (spanCount > 0 && spans[spanCount - 1] == x - 1) {
+                    spans[spanCount - 1] = end;
+                } else {
+                    spans[spanCount++] = x;
+                    spans[spanCount++] = end;
+                }
+            }
+            x = end + 1;
+        }
+
+        return Arrays.copyOf(spans, spanCount);
+    }
+
     /**
      * Checks to see if a point is inside a region.
      *
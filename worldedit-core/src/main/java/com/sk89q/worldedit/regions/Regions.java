@@ -19,11 +19,18 @@
 
 package com.sk89q.worldedit.regions;
 
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+
+import java.util.Arrays;
+
 /**
  * Utility methods relating to {@link Region}s.
  */
 public final class Regions {
 
+    private static final int[] NO_SPANS = new int[0];
+
     private Regions() {
     }
 
@@ -89,4 +96,65 @@ public static FlatRegion asFlatRegion(Region region) {
         }
     }
 
+    /**
+     * Get the blocks that are inside the given region on the row of blocks
+     * at the given Y and Z coordinates.
+     *
+     * <p>If the region is an {@link AbstractRegion}, its
+     * {@link AbstractRegion#getSpans(int, int)} method is used. Otherwise,
+     * every block of the row that is in the bounding box is tested with
+     * {@link Region#contains(Vector)}.</p>
+     *
+     * @param region the region
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @return an array of pairs of X coordinates, which must not be modified
+     * @see AbstractRegion#getSpans(int, int)
+     */
+    public static int[] getSpans(Region region, int y, int z) {
+        if (region instanceof AbstractRegion) {
+            return ((AbstractRegion) region).getSpans(y, z);
+        } else {
+            return scanSpans(region, y, z);
+        }
+    }
+
+    /**
+     * Get the spans of a row by testing every block of the row that is in
+     * the bounding box with {@link Region#contains(Vector)}.
+     *
+     * @param region the region
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @return an array of pairs of X coordinates
+     */
+    static int[] scanSpans(Region region, int y, int z) {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        if (y < min.getBlockY() || y > max.getBlockY() || z < min.getBlockZ() || z > max.getBlockZ()) {
+            return NO_SPANS;
+        }
+
+        int[] spans = NO_SPANS;
+        int count = 0;
+        int start = 0;
+        boolean inside = false;
+        int maxX = max.getBlockX();
+        for (int x = min.getBlockX(); x <= maxX + 1; x++) {
+            boolean contained = x <= maxX && region.contains(new BlockVector(x, y, z));
+            if (contained && !inside) {
+                start = x;
+            } else if (!contained && inside) {
+                if (count == spans.length) {
+                    spans = Arrays.copyOf(spans, Math.max(4, count * 2));
+                }
+                spans[count++] = start;
+                spans[count++] = x - 1;
+            }
+            inside = contained;
+        }
+
+        return count == spans.length ? spans : Arrays.copyOf(spans, count);
+    }
+
 }
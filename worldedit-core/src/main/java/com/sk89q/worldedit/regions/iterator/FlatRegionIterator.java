@@ -22,6 +22,7 @@
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.Regions;
 
 import java.util.Iterator;
 
@@ -31,11 +32,12 @@ public class FlatRegionIterator implements Iterator<Vector2D>  {
 
     private Region region;
     private int y;
-    private int minX;
     private int nextX;
     private int nextZ;
-    private int maxX;
     private int maxZ;
+    private int[] spans;
+    private int span;
+    private boolean hasNext;
 
     public FlatRegionIterator(Region region) {
         checkNotNull(region);
@@ -47,26 +49,21 @@ public FlatRegionIterator(Region region) {
 
         this.y = min.getBlockY();
 
-        this.minX = min.getBlockX();
-
-        this.nextX = minX;
         this.nextZ = min.getBlockZ();
-
-        this.maxX = max.getBlockX();
         this.maxZ = max.getBlockZ();
 
-        forward();
+        this.hasNext = nextZ <= maxZ;
+        this.spans = hasNext ? Regions.getSpans(region, y, nextZ) : new int[0];
+        if (spans.length > 0) {
+            nextX = spans[0];
+        } else {
+            forwardRow();
+        }
     }
 
     @Override
     public boolean hasNext() {
-        return nextX != Integer.MIN_VALUE;
-    }
-
-    private void forward() {
-        while (hasNext() && !region.contains(new Vector(nextX, y, nextZ))) {
-            forwardOne();
-        }
+        return hasNext;
     }
 
     @Override
@@ -77,22 +74,35 @@ public Vector2D next() {
 
         Vector2D answer = new Vector2D(nextX, nextZ);
 
-        forwardOne();
-        forward();
+        if (nextX < spans[span + 1]) {
+            nextX++;
+        } else if (span + 2 < spans.length) {
+            span += 2;
+            nextX = spans[span];
+        } else {
+            forwardRow();
+        }
 
         return answer;
     }
 
-    private void forwardOne() {
-        if (++nextX <= maxX) {
-            return;
-        }
-        nextX = minX;
-
-        if (++nextZ <= maxZ) {
-            return;
+    /**
+     * Move to the start of the next row that has columns in the region.
+     */
+    private void forwardRow() {
+        while (hasNext) {
+            if (++nextZ > maxZ) {
+                hasNext = false;
+                return;
+            }
+
+            spans = Regions.getSpans(region, y, nextZ);
+            if (spans.length > 0) {
+                span = 0;
+                nextX = spans[0];
+                return;
+            }
         }
-        nextX = Integer.MIN_VALUE;
     }
 
     @Override
@@ -22,6 +22,7 @@
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.Regions;
 
 import java.util.Iterator;
 
@@ -30,70 +31,82 @@
 public class RegionIterator implements Iterator<BlockVector> {
 
     private final Region region;
-    private final int maxX;
+    private final int minY;
     private final int maxY;
     private final int maxZ;
-    private final Vector min;
+    private int y;
+    private int z;
+    private int[] spans;
+    private int span;
     private int nextX;
-    private int nextY;
-    private int nextZ;
+    private boolean hasNext;
 
     public RegionIterator(Region region) {
         checkNotNull(region);
 
         this.region = region;
 
+        Vector min = region.getMinimumPoint();
         Vector max = region.getMaximumPoint();
-        this.maxX = max.getBlockX();
+        this.minY = min.getBlockY();
         this.maxY = max.getBlockY();
         this.maxZ = max.getBlockZ();
 
-        this.min = region.getMinimumPoint();
-        this.nextX = min.getBlockX();
-        this.nextY = min.getBlockY();
-        this.nextZ = min.getBlockZ();
-
-        forward();
+        this.y = minY;
+        this.z = min.getBlockZ();
+        this.spans = y <= maxY && z <= maxZ ? Regions.getSpans(region, y, z) : new int[0];
+        this.span = 0;
+        this.hasNext = y <= maxY && z <= maxZ;
+        if (spans.length > 0) {
+            nextX = spans[0];
+        } else {
+            forwardRow();
+        }
     }
 
     @Override
     public boolean hasNext() {
-        return nextX != Integer.MIN_VALUE;
-    }
-
-    private void forward() {
-        while (hasNext() && !region.contains(new BlockVector(nextX, nextY, nextZ))) {
-            forwardOne();
-        }
+        return hasNext;
     }
 
     @Override
     public BlockVector next() {
         if (!hasNext()) throw new java.util.NoSuchElementException();
 
-        BlockVector answer = new BlockVector(nextX, nextY, nextZ);
+        BlockVector answer = new BlockVector(nextX, y, z);
 
-        forwardOne();
-        forward();
+        if (nextX < spans[span + 1]) {
+            nextX++;
+        } else if (span + 2 < spans.length) {
+            span += 2;
+            nextX = spans[span];
+        } else {
+            forwardRow();
+        }
 
         return answer;
     }
 
-    private void forwardOne() {
-        if (++nextX <= maxX) {
-            return;
-        }
-        nextX = min.getBlockX();
-
-        if (++nextY <= maxY) {
-            return;
-        }
-        nextY = min.getBlockY();
-
-        if (++nextZ <= maxZ) {
-            return;
+    /**
+     * Move to the start of the next row that has blocks in the region.
+     */
+    private void forwardRow() {
+        while (hasNext) {
+            if (++y > maxY) {
+                y = minY;
+                if (++z > maxZ) {
+                    hasNext = false;
+                    return;
+                }
+            }
+
+            spans = Regions.getSpans(region, y, z);
+            if (spans.length > 0) {
+                span = 0;
+                nextX = spans[0];
+                return;
+            }
         }
-        nextX = Integer.MIN_VALUE;
     }
 
     @Override
@@ -19,28 +19,72 @@
 
 package com.sk89q.worldedit.regions.shape;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
 import com.sk89q.worldedit.patterns.Pattern;
+import com.sk89q.worldedit.patterns.SingleBlockPattern;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.Regions;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Generates solid and hollow shapes according to materials returned by the
  * {@link #getMaterial} method.
+ *
+ * <p>The shape is evaluated in tiles that are one chunk wide and as tall
+ * as the region. If {@link #isConcurrent()} returns true, tiles are
+ * evaluated on worker threads. Blocks are always set on the thread that
+ * calls {@link #generate(EditSession, Pattern, boolean)}, one tile after
+ * another, as soon as each tile has been evaluated. Only the tiles that
+ * are being evaluated are kept in memory, plus one row of tiles in hollow
+ * mode, where every tile depends on the tiles next to it.</p>
  */
+@SuppressWarnings("deprecation")
 public abstract class ArbitraryShape {
 
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final ListeningExecutorService executorService = MoreExecutors.listeningDecorator(
+            EvenMoreExecutors.newBoundedCachedThreadPool(PARALLELISM, PARALLELISM, 1024));
+    private static final ListeningExecutorService directExecutor = MoreExecutors.newDirectExecutorService();
+
+    /**
+     * Tile entries are 0 for positions that have not been evaluated, -1
+     * for positions outside of the shape, -2 for positions that get their
+     * material from the pattern when they are placed and otherwise
+     * {@code (type << 4 | data) + 1}.
+     */
+    private static final int UNKNOWN = 0;
+    private static final int OUTSIDE = -1;
+    private static final int DEFAULT = -2;
+
+    /**
+     * Passed to {@link #getMaterial(int, int, int, BaseBlock)} instead of
+     * a material from the pattern if {@link #returnsDefaultMaterial()}
+     * returns true.
+     */
+    private static final BaseBlock PLACEHOLDER = new BaseBlock(BlockID.AIR);
+
     protected final Region extent;
-    private int cacheOffsetX;
-    private int cacheOffsetY;
-    private int cacheOffsetZ;
-    @SuppressWarnings("FieldCanBeLocal")
-    private int cacheSizeX;
-    private int cacheSizeY;
-    private int cacheSizeZ;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
 
     public ArbitraryShape(Region extent) {
         this.extent = extent;
@@ -48,31 +92,18 @@ public ArbitraryShape(Region extent) {
         Vector min = extent.getMinimumPoint();
         Vector max = extent.getMaximumPoint();
 
-        cacheOffsetX = min.getBlockX() - 1;
-        cacheOffsetY = min.getBlockY() - 1;
-        cacheOffsetZ = min.getBlockZ() - 1;
-
-        cacheSizeX = (int) (max.getX() - cacheOffsetX + 2);
-        cacheSizeY = (int) (max.getY() - cacheOffsetY + 2);
-        cacheSizeZ = (int) (max.getZ() - cacheOffsetZ + 2);
-
-        cache = new short[cacheSizeX * cacheSizeY * cacheSizeZ];
+        minX = min.getBlockX();
+        minY = min.getBlockY();
+        minZ = min.getBlockZ();
+        maxX = max.getBlockX();
+        maxY = max.getBlockY();
+        maxZ = max.getBlockZ();
     }
 
     protected Region getExtent() {
         return extent;
     }
 
-
-    /**
-     * Cache entries:
-     * 0 = unknown
-     * -1 = outside
-     * -2 = inside but type and data 0
-     * > 0 = inside, value = (type | (data << 8)), not handling data < 0
-     */
-    private final short[] cache;
-
     /**
      * Override this function to specify the shape to generate.
      *
@@ -84,62 +115,43 @@ protected Region getExtent() {
      */
     protected abstract BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial);
 
-    private BaseBlock getMaterialCached(int x, int y, int z, Pattern pattern) {
-        final int index = (y - cacheOffsetY) + (z - cacheOffsetZ) * cacheSizeY + (x - cacheOffsetX) * cacheSizeY * cacheSizeZ;
-
-        final short cacheEntry = cache[index];
-        switch (cacheEntry) {
-        case 0:
-            // unknown, fetch material
-            final BaseBlock material = getMaterial(x, y, z, pattern.next(new BlockVector(x, y, z)));
-            if (material == null) {
-                // outside
-                cache[index] = -1;
-                return null;
-            }
-
-            short newCacheEntry = (short) (material.getType() | ((material.getData() + 1) << 8));
-            if (newCacheEntry == 0) {
-                // type and data 0
-                newCacheEntry = -2;
-            }
-
-            cache[index] = newCacheEntry;
-            return material;
-
-        case -1:
-            // outside
-            return null;
-
-        case -2:
-            // type and data 0
-            return new BaseBlock(0, 0);
-        }
-
-        return new BaseBlock(cacheEntry & 255, ((cacheEntry >> 8) - 1) & 15);
+    /**
+     * Return whether {@link #getMaterial(int, int, int, BaseBlock)} may be
+     * called from several threads at once, in any order.
+     *
+     * <p>The pattern passed to
+     * {@link #generate(EditSession, Pattern, boolean)} is only queried from
+     * other threads if it is a {@link SingleBlockPattern}. With any other
+     * pattern, the shape is evaluated on the calling thread, unless
+     * {@link #returnsDefaultMaterial()} returns true.</p>
+     *
+     * @return true if the shape can be evaluated concurrently
+     */
+    protected boolean isConcurrent() {
+        return false;
     }
 
-    private boolean isInsideCached(int x, int y, int z, Pattern pattern) {
-        final int index = (y - cacheOffsetY) + (z - cacheOffsetZ) * cacheSizeY + (x - cacheOffsetX) * cacheSizeY * cacheSizeZ;
-
-        switch (cache[index]) {
-        case 0:
-            // unknown block, meaning they must be outside the extent at this stage, but might still be inside the shape
-            return getMaterialCached(x, y, z, pattern) != null;
-
-        case -1:
-            // outside
-            return false;
-
-        default:
-            // inside
-            return true;
-        }
+    /**
+     * Return whether {@link #getMaterial(int, int, int, BaseBlock)} always
+     * returns either null or the default material that it was passed,
+     * without looking at the default material.
+     *
+     * <p>If true, the shape is evaluated without the pattern, which is
+     * only queried for the blocks that are placed, on the thread that
+     * calls {@link #generate(EditSession, Pattern, boolean)}.</p>
+     *
+     * @return true if the shape does not depend on the pattern
+     */
+    protected boolean returnsDefaultMaterial() {
+        return false;
     }
 
     /**
      * Generates the shape.
      *
+     * <p>In hollow mode, a position outside of the region that borders
+     * two tiles may be evaluated once for each tile.</p>
+     *
      * @param editSession The EditSession to use.
      * @param pattern The pattern to generate default materials from.
      * @param hollow Specifies whether to generate a hollow shape.
@@ -147,65 +159,288 @@ private boolean isInsideCached(int x, int y, int z, Pattern pattern) {
      * @throws MaxChangedBlocksException
      */
     public int generate(EditSession editSession, Pattern pattern, boolean hollow) throws MaxChangedBlocksException {
-        int affected = 0;
-
-        for (BlockVector position : getExtent()) {
-            int x = position.getBlockX();
-            int y = position.getBlockY();
-            int z = position.getBlockZ();
+        if (maxX < minX || maxY < minY || maxZ < minZ) {
+            return 0;
+        }
 
-            if (!hollow) {
-                final BaseBlock material = getMaterial(x, y, z, pattern.next(position));
-                if (material != null && editSession.setBlock(position, material)) {
-                    ++affected;
+        boolean deferPattern = returnsDefaultMaterial();
+        ListeningExecutorService executor = isConcurrent() && (deferPattern || pattern instanceof SingleBlockPattern)
+                ? executorService : directExecutor;
+
+        final int minTileX = minX >> 4;
+        final int minTileZ = minZ >> 4;
+        final int tileCountZ = (maxZ >> 4) - minTileZ + 1;
+        final Tile[] tiles = new Tile[((maxX >> 4) - minTileX + 1) * tileCountZ];
+        ListenableFuture<?>[] evaluations = new ListenableFuture<?>[tiles.length];
+        ListenableFuture<?>[] shells = hollow ? new ListenableFuture<?>[tiles.length] : null;
+
+        // The tiles next to a tile are at most one row of tiles away
+        int reach = hollow ? tileCountZ : 0;
+        int submitted = 0;
+        int evaluated = 0;
+        int shelled = 0;
+        int affected = 0;
+        boolean finished = false;
+        try {
+            for (int i = 0; i < tiles.length; ++i) {
+                // Evaluate the tiles that are needed next, and a few more to keep the workers busy
+                while (submitted < Math.min(tiles.length, i + reach + PARALLELISM + 1)) {
+                    int tileX = minTileX + submitted / tileCountZ;
+                    int tileZ = minTileZ + submitted % tileCountZ;
+                    final Tile tile = tiles[submitted] = new Tile(
+                            Math.max(minX, tileX << 4), Math.max(minZ, tileZ << 4),
+                            Math.min(maxX, (tileX << 4) + 15), Math.min(maxZ, (tileZ << 4) + 15),
+                            pattern, deferPattern, hollow);
+                    evaluations[submitted++] = submit(executor, new Runnable() {
+                        @Override
+                        public void run() {
+                            tile.evaluate();
+                        }
+                    });
                 }
 
-                continue;
+                if (hollow) {
+                    while (evaluated <= Math.min(tiles.length - 1, i + reach)) {
+                        await(evaluations[evaluated++]);
+                    }
+                    while (evaluated < submitted && evaluations[evaluated].isDone()) {
+                        await(evaluations[evaluated++]);
+                    }
+
+                    // Find the shells of the tiles whose neighbours have been evaluated
+                    while (shelled < tiles.length && shelled <= i + PARALLELISM
+                            && Math.min(tiles.length - 1, shelled + reach) < evaluated) {
+                        final Tile tile = tiles[shelled];
+                        shells[shelled++] = submit(executor, new Runnable() {
+                            @Override
+                            public void run() {
+                                tile.findShell(tiles, minTileX, minTileZ, tileCountZ);
+                            }
+                        });
+                    }
+
+                    await(shells[i]);
+                    affected += tiles[i].place(editSession);
+                    shells[i] = null;
+
+                    // Nothing looks at a tile after the tile one row after it is done
+                    if (i >= reach) {
+                        tiles[i - reach] = null;
+                        evaluations[i - reach] = null;
+                    }
+                } else {
+                    await(evaluations[i]);
+                    affected += tiles[i].place(editSession);
+                    tiles[i] = null;
+                    evaluations[i] = null;
+                }
             }
+            finished = true;
+        } finally {
+            if (!finished) {
+                cancel(evaluations);
+                if (shells != null) {
+                    cancel(shells);
+                }
+            }
+        }
 
-            final BaseBlock material = getMaterialCached(x, y, z, pattern);
-            if (material == null) {
-                continue;
+        return affected;
+    }
+
+    /**
+     * Submit a task, or run it on the calling thread if the workers are
+     * too busy to take it.
+     */
+    private static ListenableFuture<?> submit(ListeningExecutorService executor, Runnable task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            return directExecutor.submit(task);
+        }
+    }
+
+    private static void await(ListenableFuture<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    private static void cancel(ListenableFuture<?>[] futures) {
+        for (ListenableFuture<?> future : futures) {
+            if (future != null) {
+                future.cancel(false);
             }
+        }
+    }
 
-            boolean draw = false;
-            do {
-                if (!isInsideCached(x + 1, y, z, pattern)) {
-                    draw = true;
-                    break;
-                }
-                if (!isInsideCached(x - 1, y, z, pattern)) {
-                    draw = true;
-                    break;
-                }
-                if (!isInsideCached(x, y, z + 1, pattern)) {
-                    draw = true;
-                    break;
-                }
-                if (!isInsideCached(x, y, z - 1, pattern)) {
-                    draw = true;
-                    break;
-                }
-                if (!isInsideCached(x, y + 1, z, pattern)) {
-                    draw = true;
-                    break;
+    /**
+     * The evaluated materials of one chunk-wide column of the shape,
+     * with a margin of one block on every side in hollow mode.
+     */
+    private class Tile {
+        private final int tileMinX;
+        private final int tileMinZ;
+        private final int tileMaxX;
+        private final int tileMaxZ;
+        private final Pattern pattern;
+        private final boolean deferPattern;
+        private final boolean hollow;
+        private final int margin;
+        private final int sizeX;
+        private final int sizeZ;
+        private final int[] entries;
+        private final BitSet place;
+        private final Map<Integer, BaseBlock> nbtBlocks = new HashMap<Integer, BaseBlock>();
+
+        private Tile(int tileMinX, int tileMinZ, int tileMaxX, int tileMaxZ, Pattern pattern, boolean deferPattern, boolean hollow) {
+            this.tileMinX = tileMinX;
+            this.tileMinZ = tileMinZ;
+            this.tileMaxX = tileMaxX;
+            this.tileMaxZ = tileMaxZ;
+            this.pattern = pattern;
+            this.deferPattern = deferPattern;
+            this.hollow = hollow;
+            margin = hollow ? 1 : 0;
+            sizeX = tileMaxX - tileMinX + 1 + 2 * margin;
+            sizeZ = tileMaxZ - tileMinZ + 1 + 2 * margin;
+            int length = sizeX * sizeZ * (maxY - minY + 1 + 2 * margin);
+            entries = new int[length];
+            place = new BitSet(length);
+        }
+
+        private int index(int x, int y, int z) {
+            return ((y - minY + margin) * sizeZ + (z - tileMinZ + margin)) * sizeX + (x - tileMinX + margin);
+        }
+
+        /**
+         * Evaluate every position of the tile that is in the region, and
+         * mark every position inside of the shape to be placed unless the
+         * shape is hollow.
+         */
+        private void evaluate() {
+            for (int y = minY; y <= maxY; ++y) {
+                for (int z = tileMinZ; z <= tileMaxZ; ++z) {
+                    int[] spans = Regions.getSpans(extent, y, z);
+                    for (int i = 0; i < spans.length; i += 2) {
+                        int start = Math.max(spans[i], tileMinX);
+                        int end = Math.min(spans[i + 1], tileMaxX);
+                        for (int x = start; x <= end; ++x) {
+                            int index = index(x, y, z);
+                            if (evaluate(x, y, z, index) != OUTSIDE && !hollow) {
+                                place.set(index);
+                            }
+                        }
+                    }
                 }
-                if (!isInsideCached(x, y - 1, z, pattern)) {
-                    draw = true;
-                    break;
+            }
+        }
+
+        private int evaluate(int x, int y, int z, int index) {
+            BaseBlock material = getMaterial(x, y, z, deferPattern ? PLACEHOLDER : pattern.next(new BlockVector(x, y, z)));
+            int entry;
+            if (material == null) {
+                entry = OUTSIDE;
+            } else if (material == PLACEHOLDER) {
+                entry = DEFAULT;
+            } else {
+                entry = ((material.getType() << 4) | (material.getData() & 0xf)) + 1;
+                if (material.hasNbtData()) {
+                    nbtBlocks.put(index, material);
                 }
-            } while (false);
+            }
+            entries[index] = entry;
+            return entry;
+        }
 
-            if (!draw) {
-                continue;
+        /**
+         * Mark the positions inside of the shape that have a neighbour
+         * outside of it to be placed. Must be called after this tile and
+         * the tiles next to it have been evaluated.
+         */
+        private void findShell(Tile[] tiles, int minTileX, int minTileZ, int tileCountZ) {
+            for (int y = minY; y <= maxY; ++y) {
+                for (int z = tileMinZ; z <= tileMaxZ; ++z) {
+                    // Positions outside of the region may be evaluated as neighbours, but are never placed
+                    int[] spans = Regions.getSpans(extent, y, z);
+                    for (int i = 0; i < spans.length; i += 2) {
+                        int start = Math.max(spans[i], tileMinX);
+                        int end = Math.min(spans[i + 1], tileMaxX);
+                        for (int x = start; x <= end; ++x) {
+                            int index = index(x, y, z);
+                            if (entries[index] == OUTSIDE) {
+                                continue;
+                            }
+
+                            if (!isInside(x + 1, y, z, tiles, minTileX, minTileZ, tileCountZ)
+                                    || !isInside(x - 1, y, z, tiles, minTileX, minTileZ, tileCountZ)
+                                    || !isInside(x, y, z + 1, tiles, minTileX, minTileZ, tileCountZ)
+                                    || !isInside(x, y, z - 1, tiles, minTileX, minTileZ, tileCountZ)
+                                    || !isInside(x, y + 1, z, tiles, minTileX, minTileZ, tileCountZ)
+                                    || !isInside(x, y - 1, z, tiles, minTileX, minTileZ, tileCountZ)) {
+                                place.set(index);
+                            }
+                        }
+                    }
+                }
             }
+        }
 
-            if (editSession.setBlock(position, material)) {
-                ++affected;
+        private boolean isInside(int x, int y, int z, Tile[] tiles, int minTileX, int minTileZ, int tileCountZ) {
+            int index = index(x, y, z);
+            int entry = entries[index];
+            if (entry == UNKNOWN) {
+                boolean inCore = x >= tileMinX && x <= tileMaxX && z >= tileMinZ && z <= tileMaxZ;
+                if (!inCore && y >= minY && y <= maxY && x >= minX && x <= maxX && z >= minZ && z <= maxZ
+                        && extent.contains(new Vector(x, y, z))) {
+                    // Evaluated by the tile that contains it, which does not change it anymore
+                    Tile owner = tiles[((x >> 4) - minTileX) * tileCountZ + (z >> 4) - minTileZ];
+                    entry = entries[index] = owner.entries[owner.index(x, y, z)];
+                } else {
+                    // Outside of the region, so nobody else writes to this entry
+                    entry = evaluate(x, y, z, index);
+                }
             }
+            return entry != OUTSIDE;
         }
 
-        return affected;
+        /**
+         * Set the blocks that have been marked to be placed.
+         *
+         * @param editSession the edit session
+         * @return the number of blocks changed
+         * @throws MaxChangedBlocksException thrown if too many blocks are changed
+         */
+        private int place(EditSession editSession) throws MaxChangedBlocksException {
+            int affected = 0;
+            int sizeXZ = sizeX * sizeZ;
+            for (int index = place.nextSetBit(0); index >= 0; index = place.nextSetBit(index + 1)) {
+                int x = tileMinX - margin + index % sizeX;
+                int z = tileMinZ - margin + (index / sizeX) % sizeZ;
+                int y = minY - margin + index / sizeXZ;
+
+                BaseBlock block;
+                int entry = entries[index];
+                if (entry == DEFAULT) {
+                    block = pattern.next(new BlockVector(x, y, z));
+                } else {
+                    block = nbtBlocks.get(index);
+                    if (block == null) {
+                        block = new BaseBlock((entry - 1) >> 4, (entry - 1) & 0xf);
+                    }
+                }
+
+                if (editSession.setBlock(new Vector(x, y, z), block)) {
+                    ++affected;
+                }
+            }
+            return affected;
+        }
     }
 
 }
@@ -0,0 +1,279 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.shape;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.function.pattern.Pattern;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Generates the blocks covered by a sphere that is swept along a path of
+ * points, such as a line or a spline.
+ *
+ * <p>Covered blocks are marked in one bit set per chunk column that the
+ * path passes through, so that long paths do not need a grid over their
+ * whole bounding box. Each point marks the sphere as one run of bits per
+ * column of the sphere, and blocks are set one chunk after another.</p>
+ */
+@SuppressWarnings("deprecation")
+public class PathRasterizer {
+
+    private final double radius;
+    private final int ceilRadius;
+    private int[] points = new int[48];
+    private int pointCount;
+
+    /**
+     * Create a new rasterizer.
+     *
+     * @param radius the radius of the sphere, where 0 covers only the points
+     *               and a negative radius covers nothing
+     */
+    public PathRasterizer(double radius) {
+        this.radius = radius;
+        this.ceilRadius = (int) Math.ceil(radius);
+    }
+
+    /**
+     * Add a point to the path.
+     *
+     * <p>A point that is the same as the previous point is ignored.</p>
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     */
+    public void addPoint(int x, int y, int z) {
+        int offset = pointCount * 3;
+        if (pointCount > 0 && points[offset - 3] == x && points[offset - 2] == y && points[offset - 1] == z) {
+            return;
+        }
+        if (offset + 3 > points.length) {
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        points[offset] = x;
+        points[offset + 1] = y;
+        points[offset + 2] = z;
+        ++pointCount;
+    }
+
+    /**
+     * Add a point to the path.
+     *
+     * @param point the point, which is rounded to the nearest block
+     */
+    public void addPoint(Vector point) {
+        addPoint((int) Math.round(point.getX()), (int) Math.round(point.getY()), (int) Math.round(point.getZ()));
+    }
+
+    /**
+     * Set the blocks covered by the sphere.
+     *
+     * @param editSession the edit session
+     * @param pattern the pattern
+     * @param hollow true to only set blocks that are next to a block that is not covered
+     * @return the number of blocks changed
+     * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     */
+    public int generate(EditSession editSession, Pattern pattern, boolean hollow) throws MaxChangedBlocksException {
+        checkNotNull(editSession);
+        checkNotNull(pattern);
+
+        if (pointCount == 0 || radius < 0) {
+            return 0;
+        }
+
+        Grid grid = rasterize();
+        long[] keys = grid.getColumnKeys();
+        int affected = 0;
+
+        for (long key : keys) {
+            BitSet column = grid.columns.get(key);
+            int baseX = (int) (key >> 32) << 4;
+            int baseZ = (int) key << 4;
+
+            for (int index = column.nextSetBit(0); index >= 0; index = column.nextSetBit(index + 1)) {
+                int xz = index / grid.height;
+                int x = baseX + (xz >> 4);
+                int y = grid.minY + index % grid.height;
+                int z = baseZ + (xz & 15);
+
+                if (hollow && !grid.isShell(column, index, x, y, z)) {
+                    continue;
+                }
+
+                Vector position = new Vector(x, y, z);
+                if (editSession.setBlock(position, pattern.apply(position))) {
+                    ++affected;
+                }
+            }
+        }
+
+        return affected;
+    }
+
+    /**
+     * Mark the blocks covered by the sphere at every point.
+     *
+     * @return the grid
+     */
+    Grid rasterize() {
+        // For each column of the sphere, the largest Y offset that it covers, or -1
+        int size = ceilRadius * 2 + 1;
+        int[] halfHeights = new int[size * size];
+        for (int dx = -ceilRadius; dx <= ceilRadius; ++dx) {
+            for (int dz = -ceilRadius; dz <= ceilRadius; ++dz) {
+                int halfHeight = -1;
+                while (halfHeight < ceilRadius && Math.sqrt(dx * dx + (halfHeight + 1) * (halfHeight + 1) + dz * dz) <= radius) {
+                    ++halfHeight;
+                }
+                halfHeights[(dx + ceilRadius) * size + dz + ceilRadius] = halfHeight;
+            }
+        }
+
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < pointCount; ++i) {
+            minY = Math.min(minY, points[i * 3 + 1]);
+            maxY = Math.max(maxY, points[i * 3 + 1]);
+        }
+
+        Grid grid = new Grid(minY - ceilRadius, (long) maxY - minY + 2 * ceilRadius + 1);
+        for (int i = 0; i < pointCount; ++i) {
+            int px = points[i * 3];
+            int py = points[i * 3 + 1];
+            int pz = points[i * 3 + 2];
+
+            for (int dx = -ceilRadius; dx <= ceilRadius; ++dx) {
+                for (int dz = -ceilRadius; dz <= ceilRadius; ++dz) {
+                    int halfHeight = halfHeights[(dx + ceilRadius) * size + dz + ceilRadius];
+                    if (halfHeight >= 0) {
+                        grid.markRun(px + dx, pz + dz, py - halfHeight, py + halfHeight);
+                    }
+                }
+            }
+        }
+
+        return grid;
+    }
+
+    /**
+     * Bit sets for each chunk column, indexed by {@code ((x & 15) << 4 | (z & 15)) * height + y - minY}
+     * so that a vertical run of blocks is a run of bits.
+     */
+    static class Grid {
+        private final Map<Long, BitSet> columns = new HashMap<Long, BitSet>();
+        private final int minY;
+        private final int height;
+        private long lastKey;
+        private BitSet lastColumn;
+
+        private Grid(int minY, long height) {
+            checkArgument(height * 256 <= Integer.MAX_VALUE, "The path is too tall");
+            this.minY = minY;
+            this.height = (int) height;
+        }
+
+        private static long key(int chunkX, int chunkZ) {
+            return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+        }
+
+        private BitSet getColumn(int chunkX, int chunkZ, boolean create) {
+            long key = key(chunkX, chunkZ);
+            if (lastColumn != null && key == lastKey) {
+                return lastColumn;
+            }
+            BitSet column = columns.get(key);
+            if (column == null) {
+                if (!create) {
+                    return null;
+                }
+                column = new BitSet(256 * height);
+                columns.put(key, column);
+            }
+            lastKey = key;
+            lastColumn = column;
+            return column;
+        }
+
+        private void markRun(int x, int z, int fromY, int toY) {
+            int base = ((x & 15) << 4 | (z & 15)) * height - minY;
+            getColumn(x >> 4, z >> 4, true).set(base + fromY, base + toY + 1);
+        }
+
+        /**
+         * Return whether the given block is marked.
+         *
+         * @param x the X coordinate
+         * @param y the Y coordinate
+         * @param z the Z coordinate
+         * @return true if marked
+         */
+        boolean isMarked(int x, int y, int z) {
+            if (y < minY || y >= minY + height) {
+                return false;
+            }
+            BitSet column = getColumn(x >> 4, z >> 4, false);
+            return column != null && column.get(((x & 15) << 4 | (z & 15)) * height + y - minY);
+        }
+
+        /**
+         * Return whether a marked block has a neighbour that is not marked.
+         */
+        private boolean isShell(BitSet column, int index, int x, int y, int z) {
+            if (y == minY || !column.get(index - 1) || y == minY + height - 1 || !column.get(index + 1)) {
+                return true;
+            }
+            int localX = x & 15;
+            int localZ = z & 15;
+            if (localX > 0 && localX < 15 && localZ > 0 && localZ < 15) {
+                return !column.get(index - 16 * height) || !column.get(index + 16 * height)
+                        || !column.get(index - height) || !column.get(index + height);
+            }
+            return !isMarked(x - 1, y, z) || !isMarked(x + 1, y, z) || !isMarked(x, y, z - 1) || !isMarked(x, y, z + 1);
+        }
+
+        /**
+         * Get the keys of the columns, sorted by chunk X and then by the
+         * unsigned chunk Z.
+         *
+         * @return the keys
+         */
+        private long[] getColumnKeys() {
+            long[] keys = new long[columns.size()];
+            int i = 0;
+            for (long key : columns.keySet()) {
+                keys[i++] = key;
+            }
+            Arrays.sort(keys);
+            return keys;
+        }
+    }
+
+}
@@ -42,4 +42,14 @@ protected BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial)
         return defaultMaterial;
     }
 
+    @Override
+    protected boolean isConcurrent() {
+        return true;
+    }
+
+    @Override
+    protected boolean returnsDefaultMaterial() {
+        return true;
+    }
+
 }
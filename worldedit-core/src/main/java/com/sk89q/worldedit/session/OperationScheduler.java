@@ -0,0 +1,368 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.event.platform.ConfigurationLoadEvent;
+import com.sk89q.worldedit.event.platform.PlatformReadyEvent;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extension.platform.NoCapablePlatformException;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.util.eventbus.Subscribe;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Runs edits a slice at a time on the server's tick, so that a large edit
+ * does not stop the server while it is applied.
+ *
+ * <p>Each tick, queued edits are resumed until the tick budget runs out.
+ * Sessions take turns, and each session has at most one queued edit. An
+ * edit is only remembered in its session's history once it has completed
+ * or has been cancelled, so that undo never sees a half-applied edit.
+ * Other edits of a session are refused while it has a queued edit (see
+ * {@link #checkIdle(LocalSession)}).</p>
+ */
+public class OperationScheduler {
+
+    private static final Logger log = Logger.getLogger(OperationScheduler.class.getCanonicalName());
+    private static final long PROGRESS_INTERVAL = 5000;
+
+    private final WorldEdit worldEdit;
+    private final Map<LocalSession, ScheduledEdit> queues = new LinkedHashMap<LocalSession, ScheduledEdit>();
+    private int tickBudget = -1;
+    private boolean ticking = false;
+
+    /**
+     * Create a new scheduler.
+     *
+     * @param worldEdit a WorldEdit instance
+     */
+    public OperationScheduler(WorldEdit worldEdit) {
+        checkNotNull(worldEdit);
+        this.worldEdit = worldEdit;
+
+        worldEdit.getEventBus().register(this);
+    }
+
+    /**
+     * Get the number of milliseconds that edits may run for in each tick.
+     *
+     * @return the budget in milliseconds, or a negative number if edits are
+     *         not scheduled
+     */
+    public int getTickBudget() {
+        return tickBudget;
+    }
+
+    /**
+     * Set the number of milliseconds that edits may run for in each tick.
+     *
+     * @param tickBudget the budget in milliseconds, or a negative number to
+     *                   complete edits immediately
+     */
+    public void setTickBudget(int tickBudget) {
+        this.tickBudget = tickBudget;
+    }
+
+    /**
+     * Set whether the platform calls {@link #tick()} once every tick.
+     *
+     * @param ticking true if ticks are received
+     */
+    void setTicking(boolean ticking) {
+        this.ticking = ticking;
+    }
+
+    /**
+     * Run an operation that makes changes to the given edit session.
+     *
+     * <p>If scheduling is not enabled, the operation is completed
+     * immediately. Otherwise, it is run for at most one tick budget, and if
+     * it has not completed by then, it is queued to be resumed on later
+     * ticks.</p>
+     *
+     * <p>When this method returns true, the edit session will be
+     * remembered and flushed by the scheduler, and the caller must not
+     * remember or flush it itself.</p>
+     *
+     * @param actor the actor to report progress to
+     * @param session the session to remember the edit in
+     * @param editSession the edit session that the operation changes
+     * @param operation the operation
+     * @param description a short description of the edit, such as the command
+     * @return true if the operation was queued, false if it has completed
+     * @throws EditsQueuedException thrown if the session already has a queued edit
+     * @throws WorldEditException thrown if the operation fails before it is queued
+     */
+    public synchronized boolean submit(Actor actor, LocalSession session, EditSession editSession, Operation operation, String description) throws WorldEditException {
+        checkNotNull(actor);
+        checkNotNull(session);
+        checkNotNull(editSession);
+        checkNotNull(operation);
+        checkNotNull(description);
+
+        checkIdle(session);
+
+        if (tickBudget < 0 || !ticking) {
+            Operations.complete(operation);
+            return false;
+        }
+
+        operation = Operations.resume(operation, new RunContext(tickBudget, TimeUnit.MILLISECONDS));
+        if (operation == null) {
+            return false;
+        }
+
+        queues.put(session, new ScheduledEdit(actor, session, editSession, operation, description));
+        actor.print("The edit will continue in the background. Use //cancel to stop it.");
+        return true;
+    }
+
+    /**
+     * Return whether the given edit session has an edit that is queued.
+     *
+     * @param editSession the edit session
+     * @return true if queued
+     */
+    public synchronized boolean isScheduled(EditSession editSession) {
+        for (ScheduledEdit edit : queues.values()) {
+            if (edit.editSession == editSession) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check that a session has no queued edits before it makes an edit
+     * that is not run by this scheduler.
+     *
+     * <p>Such an edit would interleave with the queued edits, so that
+     * neither could be undone without undoing part of the other.</p>
+     *
+     * @param session the session
+     * @throws EditsQueuedException thrown if the session has a queued edit
+     */
+    public synchronized void checkIdle(LocalSession session) throws EditsQueuedException {
+        if (queues.containsKey(session)) {
+            throw new EditsQueuedException();
+        }
+    }
+
+    /**
+     * Cancel the queued edit of a session.
+     *
+     * <p>Changes that have already been made are kept and remembered in
+     * the session's history, so they can be undone.</p>
+     *
+     * @param session the session
+     * @return the number of edits cancelled
+     */
+    public synchronized int cancel(LocalSession session) {
+        ScheduledEdit edit = queues.remove(session);
+        if (edit == null) {
+            return 0;
+        }
+
+        edit.cancel();
+        return 1;
+    }
+
+    /**
+     * Resume queued edits until the tick budget runs out. At least one
+     * edit is resumed, even if the budget is zero.
+     */
+    public synchronized void tick() {
+        if (queues.isEmpty()) {
+            return;
+        }
+
+        RunContext run = new RunContext(Math.max(0, tickBudget), TimeUnit.MILLISECONDS);
+        List<LocalSession> sessions = new ArrayList<LocalSession>(queues.keySet());
+
+        for (LocalSession session : sessions) {
+            ScheduledEdit edit = queues.remove(session);
+
+            // Move the session to the back so that every session gets a turn
+            if (!edit.resume(run)) {
+                queues.put(session, edit);
+            }
+
+            if (!run.shouldContinue()) {
+                break;
+            }
+        }
+    }
+
+    @Subscribe
+    public void onConfigurationLoad(ConfigurationLoadEvent event) {
+        setTickBudget(event.getConfiguration().operationTickBudget);
+    }
+
+    @Subscribe
+    public synchronized void onPlatformReady(PlatformReadyEvent event) {
+        // The event is posted again when platforms are reloaded
+        if (ticking) {
+            return;
+        }
+
+        int taskId;
+        try {
+            taskId = worldEdit.getPlatformManager().queryCapability(Capability.WORLD_EDITING).schedule(0, 1, new Runnable() {
+                @Override
+                public void run() {
+                    tick();
+                }
+            });
+        } catch (NoCapablePlatformException e) {
+            taskId = -1;
+        }
+
+        setTicking(taskId != -1);
+    }
+
+    /**
+     * An edit that is waiting to be resumed.
+     */
+    private class ScheduledEdit {
+        private final Actor actor;
+        private final LocalSession session;
+        private final EditSession editSession;
+        private final String description;
+        private final long start = System.currentTimeMillis();
+        private long lastReport = start;
+        @Nullable
+        private Operation operation;
+        @Nullable
+        private Operation commit;
+        private boolean committing = false;
+
+        private ScheduledEdit(Actor actor, LocalSession session, EditSession editSession, Operation operation, String description) {
+            this.actor = actor;
+            this.session = session;
+            this.editSession = editSession;
+            this.operation = operation;
+            this.description = description;
+        }
+
+        /**
+         * Resume the edit.
+         *
+         * @param run the run context
+         * @return true if the edit has finished
+         */
+        private boolean resume(RunContext run) {
+            try {
+                if (!committing) {
+                    operation = Operations.resume(operation, run);
+                    if (operation != null) {
+                        reportProgress();
+                        return false;
+                    }
+
+                    committing = true;
+                    commit = editSession.commit();
+                }
+
+                commit = Operations.resume(commit, run);
+                if (commit != null) {
+                    reportProgress();
+                    return false;
+                }
+
+                finish();
+                actor.print(description + " has finished: " + editSession.getBlockChangeCount() + " block(s) have been changed.");
+            } catch (MaxChangedBlocksException e) {
+                actor.printError("Max blocks change limit reached.");
+                abort();
+            } catch (WorldEditException e) {
+                actor.printError(e.getMessage() != null ? e.getMessage() : "An unknown error has occurred! Please see console.");
+                abort();
+            } catch (RuntimeException e) {
+                actor.printError("Please report this error: [See console]");
+                actor.printRaw(e.getClass().getName() + ": " + e.getMessage());
+                log.log(Level.SEVERE, "An unexpected error occurred while running " + description, e);
+                abort();
+            }
+
+            return true;
+        }
+
+        private void reportProgress() {
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= PROGRESS_INTERVAL) {
+                lastReport = now;
+                actor.print(description + " is still running after " + ((now - start) / 1000) + "s: "
+                        + editSession.getBlockChangeCount() + " block(s) changed so far.");
+            }
+        }
+
+        private void cancel() {
+            abort();
+            actor.print(description + " was cancelled after " + editSession.getBlockChangeCount() + " block(s) were changed. Use //undo to revert them.");
+        }
+
+        /**
+         * Stop the edit, keeping the changes made so far.
+         */
+        private void abort() {
+            if (operation != null) {
+                operation.cancel();
+                operation = null;
+            }
+
+            try {
+                // Buffered changes are still applied so that the world matches history
+                if (!committing) {
+                    editSession.flushQueue();
+                } else if (commit != null) {
+                    Operations.completeBlindly(commit);
+                }
+                commit = null;
+            } catch (RuntimeException e) {
+                log.log(Level.SEVERE, "Failed to flush the changes of " + description, e);
+            }
+            finish();
+        }
+
+        private void finish() {
+            session.remember(editSession);
+            worldEdit.flushBlockBag(actor, editSession);
+        }
+    }
+
+}
@@ -0,0 +1,533 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.event.platform.ConfigurationLoadEvent;
+import com.sk89q.worldedit.event.platform.PlatformReadyEvent;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extension.platform.NoCapablePlatformException;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
+import com.sk89q.worldedit.util.eventbus.Subscribe;
+import com.sk89q.worldedit.util.io.Closer;
+import com.sk89q.worldedit.world.registry.WorldData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Saves and loads schematics on worker threads, so that encoding and
+ * compressing a large clipboard does not stop the server.
+ *
+ * <p>A session can have one schematic being saved or loaded at a time,
+ * and only a few jobs are queued across all sessions. Requests beyond
+ * that are turned down until the queue drains. Progress messages and
+ * results are delivered on the server's tick, so a loaded clipboard is
+ * put into the session on the main thread.</p>
+ *
+ * <p>A schematic is written to a temporary file next to the target and
+ * then renamed over it, so a failed save never leaves a truncated file
+ * behind. Where a file can't be renamed over another, the old file is
+ * moved aside first and put back if the new one can't take its place.</p>
+ */
+public class SchematicService {
+
+    private static final Logger log = Logger.getLogger(SchematicService.class.getCanonicalName());
+    private static final int PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final int QUEUE_SIZE = 16;
+    private static final int BUFFER_SIZE = 65536;
+    private static final long PROGRESS_INTERVAL = 5000;
+    private static final ExecutorService executor = EvenMoreExecutors.newBoundedCachedThreadPool(0, PARALLELISM, QUEUE_SIZE);
+
+    private final WorldEdit worldEdit;
+    private final Set<LocalSession> busy = Collections.newSetFromMap(new ConcurrentHashMap<LocalSession, Boolean>());
+    private final Queue<Runnable> completions = new ConcurrentLinkedQueue<Runnable>();
+    private volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private volatile boolean ticking = false;
+
+    /**
+     * Create a new service.
+     *
+     * @param worldEdit a WorldEdit instance
+     */
+    public SchematicService(WorldEdit worldEdit) {
+        checkNotNull(worldEdit);
+        this.worldEdit = worldEdit;
+
+        worldEdit.getEventBus().register(this);
+    }
+
+    /**
+     * Get the compression level that schematics are saved with.
+     *
+     * @return the level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Set the compression level that schematics are saved with.
+     *
+     * @param compressionLevel the level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        checkArgument(isValidCompressionLevel(compressionLevel), "compression level must be between 0 and 9, or -1");
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Set whether the platform calls {@link #tick()} once every tick.
+     * Otherwise, results are delivered on the worker thread.
+     *
+     * @param ticking true if ticks are received
+     */
+    void setTicking(boolean ticking) {
+        this.ticking = ticking;
+    }
+
+    /**
+     * Save a clipboard to a file in the background.
+     *
+     * <p>The clipboard is read from a worker thread, so it must not be
+     * changed afterwards. Pass a copy if the original may be changed.</p>
+     *
+     * @param actor the actor to report progress to
+     * @param session the session that the save counts against
+     * @param clipboard the clipboard
+     * @param worldData the world data of the clipboard
+     * @param format the format to write
+     * @param file the file to write to
+     * @param name the name of the schematic, as shown to the actor
+     * @return a future that completes once the actor has been told that
+     *         the file was saved, or fails if it could not be
+     */
+    public ListenableFuture<File> save(Actor actor, LocalSession session, final Clipboard clipboard, final WorldData worldData, final ClipboardFormat format, final File file, final String name) {
+        checkNotNull(clipboard);
+        checkNotNull(worldData);
+        checkNotNull(format);
+        checkNotNull(file);
+        final int level = compressionLevel;
+
+        return submit(new Job<File>(actor, session, "Saving " + name, -1) {
+            @Override
+            File call() throws IOException {
+                write(clipboard, worldData, format, level, file, this);
+                return file;
+            }
+
+            @Override
+            void complete(File result) {
+                log.info(actor.getName() + " saved " + file.getAbsolutePath());
+                actor.print(name + " saved.");
+            }
+
+            @Override
+            void fail(Throwable e) {
+                actor.printError("Schematic could not written: " + e.getMessage());
+                log.log(Level.WARNING, "Failed to write a saved clipboard", e);
+            }
+        });
+    }
+
+    /**
+     * Load a clipboard from a file in the background, and put it into the
+     * session once it has been read.
+     *
+     * @param actor the actor to report progress to
+     * @param session the session to put the clipboard into
+     * @param format the format to read
+     * @param file the file to read from
+     * @param worldData the world data to read the clipboard with
+     * @param name the name of the schematic, as shown to the actor
+     * @return a future that completes once the clipboard has been put
+     *         into the session, or fails if it could not be read
+     */
+    public ListenableFuture<Clipboard> load(Actor actor, final LocalSession session, final ClipboardFormat format, final File file, final WorldData worldData, final String name) {
+        checkNotNull(format);
+        checkNotNull(file);
+        checkNotNull(worldData);
+
+        return submit(new Job<Clipboard>(actor, session, "Loading " + name, file.length()) {
+            @Override
+            Clipboard call() throws IOException {
+                return read(format, file, worldData, this);
+            }
+
+            @Override
+            void complete(Clipboard result) {
+                session.setClipboard(new ClipboardHolder(result, worldData));
+                log.info(actor.getName() + " loaded " + file.getAbsolutePath());
+                actor.print(name + " loaded. Paste it with //paste");
+            }
+
+            @Override
+            void fail(Throwable e) {
+                actor.printError("Schematic could not read or it does not exist: " + e.getMessage());
+                log.log(Level.WARNING, "Failed to load a saved clipboard", e);
+            }
+        });
+    }
+
+    /**
+     * Return whether the session has a schematic being saved or loaded.
+     *
+     * @param session the session
+     * @return true if busy
+     */
+    public boolean isBusy(LocalSession session) {
+        return busy.contains(session);
+    }
+
+    /**
+     * Deliver the results and progress messages of jobs.
+     */
+    public void tick() {
+        Runnable task;
+        while ((task = completions.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private <V> ListenableFuture<V> submit(Job<V> job) {
+        if (!busy.add(job.session)) {
+            job.actor.printError("Your last schematic is still being saved or loaded. Wait for it to finish first.");
+            return Futures.immediateFailedFuture(new RejectedExecutionException("The session already has a job"));
+        }
+
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            busy.remove(job.session);
+            job.actor.printError("Too many schematics are being saved or loaded right now. Try again in a moment.");
+            return Futures.immediateFailedFuture(e);
+        }
+
+        job.actor.print(job.description + " in the background...");
+        return job.future;
+    }
+
+    /**
+     * Run the task on the next tick, or right away if there are no ticks.
+     *
+     * @param task the task
+     */
+    private void deliver(Runnable task) {
+        if (ticking) {
+            completions.add(task);
+        } else {
+            task.run();
+        }
+    }
+
+    private static void write(Clipboard clipboard, WorldData worldData, ClipboardFormat format, int level, File file, Job<?> job) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create folder for schematics!");
+        }
+
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        boolean moved = false;
+        try {
+            Closer closer = Closer.create();
+            try {
+                FileOutputStream fos = closer.register(new FileOutputStream(temp));
+                BufferedOutputStream bos = closer.register(new BufferedOutputStream(new ProgressOutputStream(fos, job), BUFFER_SIZE));
+                ClipboardWriter writer = closer.register(format.getWriter(bos, level));
+                writer.write(clipboard, worldData);
+            } catch (Throwable e) {
+                throw closer.rethrow(e);
+            } finally {
+                closer.close();
+            }
+
+            if (!temp.renameTo(file)) {
+                // Some platforms will not rename over an existing file
+                File backup = File.createTempFile(file.getName(), ".bak", parent);
+                if (!backup.delete() || !file.renameTo(backup)) {
+                    backup.delete();
+                    throw new IOException("Could not replace " + file.getName());
+                }
+
+                if (!temp.renameTo(file)) {
+                    if (!backup.renameTo(file)) {
+                        throw new IOException("Could not replace " + file.getName() + ", the old file was kept as " + backup.getName());
+                    }
+                    throw new IOException("Could not replace " + file.getName());
+                }
+                backup.delete();
+            }
+            moved = true;
+        } finally {
+            if (!moved) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static Clipboard read(ClipboardFormat format, File file, WorldData worldData, Job<?> job) throws IOException {
+        Closer closer = Closer.create();
+        try {
+            FileInputStream fis = closer.register(new FileInputStream(file));
+            BufferedInputStream bis = closer.register(new BufferedInputStream(new ProgressInputStream(fis, job), BUFFER_SIZE));
+            ClipboardReader reader = format.getReader(bis);
+            return reader.read(worldData);
+        } catch (Throwable e) {
+            throw closer.rethrow(e);
+        } finally {
+            closer.close();
+        }
+    }
+
+    private static boolean isValidCompressionLevel(int level) {
+        return level == Deflater.DEFAULT_COMPRESSION || (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION);
+    }
+
+    @Subscribe
+    public void onConfigurationLoad(ConfigurationLoadEvent event) {
+        int level = event.getConfiguration().schematicCompressionLevel;
+        if (isValidCompressionLevel(level)) {
+            setCompressionLevel(level);
+        } else {
+            log.warning("Invalid schematic compression level " + level + "; using the default");
+            setCompressionLevel(Deflater.DEFAULT_COMPRESSION);
+        }
+    }
+
+    @Subscribe
+    public synchronized void onPlatformReady(PlatformReadyEvent event) {
+        // The event is posted again when platforms are reloaded
+        if (ticking) {
+            return;
+        }
+
+        int taskId;
+        try {
+            taskId = worldEdit.getPlatformManager().queryCapability(Capability.WORLD_EDITING).schedule(0, 1, new Runnable() {
+                @Override
+                public void run() {
+                    tick();
+                }
+            });
+        } catch (NoCapablePlatformException e) {
+            taskId = -1;
+        }
+
+        setTicking(taskId != -1);
+    }
+
+    /**
+     * A save or load that runs on a worker thread.
+     *
+     * @param <V> the result type
+     */
+    private abstract class Job<V> implements Runnable {
+        final Actor actor;
+        final LocalSession session;
+        final String description;
+        private final long size;
+        private final SettableFuture<V> future = SettableFuture.create();
+        private long lastReport = System.currentTimeMillis();
+
+        private Job(Actor actor, LocalSession session, String description, long size) {
+            checkNotNull(actor);
+            checkNotNull(session);
+            this.actor = actor;
+            this.session = session;
+            this.description = description;
+            this.size = size;
+        }
+
+        /**
+         * Do the work. Called on a worker thread.
+         *
+         * @return the result
+         * @throws IOException thrown on I/O error
+         */
+        abstract V call() throws IOException;
+
+        /**
+         * Report the result. Called on the main thread.
+         *
+         * @param result the result
+         */
+        abstract void complete(V result);
+
+        /**
+         * Report a failure. Called on the main thread.
+         *
+         * @param e the error
+         */
+        abstract void fail(Throwable e);
+
+        @Override
+        public void run() {
+            try {
+                final V result = call();
+                deliver(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            complete(result);
+                        } finally {
+                            busy.remove(session);
+                            future.set(result);
+                        }
+                    }
+                });
+            } catch (final Throwable e) {
+                deliver(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            fail(e);
+                        } finally {
+                            busy.remove(session);
+                            future.setException(e);
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * Tell the actor how far the job has got, at most once every few
+         * seconds.
+         *
+         * @param bytes the number of bytes read or written so far
+         */
+        void reportProgress(long bytes) {
+            long now = System.currentTimeMillis();
+            if (now - lastReport < PROGRESS_INTERVAL) {
+                return;
+            }
+            lastReport = now;
+
+            final String message;
+            if (size > 0) {
+                message = description + ": " + Math.min(100, bytes * 100 / size) + "%";
+            } else {
+                message = description + ": " + (bytes / 1024) + " KB written";
+            }
+            deliver(new Runnable() {
+                @Override
+                public void run() {
+                    actor.print(message);
+                }
+            });
+        }
+    }
+
+    /**
+     * Counts the bytes read from a stream.
+     */
+    private static class ProgressInputStream extends FilterInputStream {
+        private final Job<?> job;
+        private long count;
+
+        private ProgressInputStream(InputStream in, Job<?> job) {
+            super(in);
+            this.job = job;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                job.reportProgress(++count);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+                job.reportProgress(count);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Counts the bytes written to a stream.
+     */
+    private static class ProgressOutputStream extends FilterOutputStream {
+        private final Job<?> job;
+        private long count;
+
+        private ProgressOutputStream(OutputStream out, Job<?> job) {
+            super(out);
+            this.job = job;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            job.reportProgress(++count);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+            job.reportProgress(count);
+        }
+    }
+
+}
@@ -0,0 +1,619 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.entity.Player;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extension.platform.NoCapablePlatformException;
+import com.sk89q.worldedit.extent.inventory.BlockBag;
+import com.sk89q.worldedit.function.operation.ChangeSetExecutor;
+import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.FileChangeSet;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
+import com.sk89q.worldedit.world.World;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The undo history of a session.
+ *
+ * <p>Recent edits are kept in memory as the {@link EditSession}s that made
+ * them. If a directory has been set and the estimated memory used by those
+ * edits exceeds the memory budget, the oldest edits are written to files
+ * in the directory and replayed from there on undo and redo. Edits within
+ * the budget are only written when the history is {@link #flush() flushed},
+ * which happens when a session expires or is removed. Written history is
+ * picked up again when a new history is pointed at the same directory,
+ * such as after a restart.</p>
+ *
+ * <p>Files are written on a background thread. Until a write has
+ * finished, the edit is still replayed from memory.</p>
+ *
+ * <p>Instances are not thread safe.</p>
+ */
+public class SessionHistory {
+
+    private static final Logger log = Logger.getLogger(SessionHistory.class.getCanonicalName());
+    private static final Pattern FILE_PATTERN = Pattern.compile("^([0-9]+)\\.(done|undone)$");
+    private static final String DONE_EXTENSION = "done";
+    private static final String UNDONE_EXTENSION = "undone";
+
+    /**
+     * The estimated number of bytes used in memory by each change.
+     */
+    private static final long BYTES_PER_CHANGE = 16;
+
+    private static final ListeningExecutorService executor = MoreExecutors.listeningDecorator(
+            EvenMoreExecutors.newBoundedCachedThreadPool(0, 1, 64));
+
+    private final LinkedList<Entry> entries = new LinkedList<Entry>();
+    private int pointer = 0;
+    private long nextId = 0;
+    @Nullable
+    private File directory;
+    private long memoryBudget = -1;
+
+    /**
+     * Get the directory that history is written to.
+     *
+     * @return the directory, or null if history is only kept in memory
+     */
+    @Nullable
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Set the directory that history is written to.
+     *
+     * <p>If nothing has been remembered yet, history already stored in the
+     * directory is loaded. History that was previously written to a
+     * different directory stays there.</p>
+     *
+     * @param directory the directory, or null to keep history in memory
+     */
+    public void setDirectory(@Nullable File directory) {
+        this.directory = directory;
+
+        if (directory == null || !directory.isDirectory() || !entries.isEmpty()) {
+            return;
+        }
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<FileEntry> loaded = new ArrayList<FileEntry>();
+        for (File file : files) {
+            Matcher matcher = FILE_PATTERN.matcher(file.getName());
+            if (matcher.matches()) {
+                try {
+                    long id = Long.parseLong(matcher.group(1));
+                    FileEntry entry = new FileEntry(id, new FileChangeSet(file));
+                    entry.undone = matcher.group(2).equals(UNDONE_EXTENSION);
+                    loaded.add(entry);
+                } catch (NumberFormatException e) {
+                    log.log(Level.WARNING, "Ignoring history file " + file);
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Failed to read history file " + file, e);
+                }
+            }
+        }
+
+        Collections.sort(loaded);
+
+        for (FileEntry entry : loaded) {
+            entries.add(entry);
+            if (!entry.undone) {
+                pointer = entries.size();
+            }
+            nextId = Math.max(nextId, entry.id + 1);
+        }
+
+        trim();
+    }
+
+    /**
+     * Get the memory budget.
+     *
+     * @return the budget in bytes, or a negative number if there is no budget
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Set the estimated number of bytes that history may use in memory
+     * before the oldest edits are written to the history directory.
+     *
+     * @param memoryBudget the budget in bytes, or a negative number for no budget
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Get the number of remembered edits, including those that have been
+     * undone but can still be redone.
+     *
+     * @return the number of edits
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of edits that are being written to the history
+     * directory.
+     *
+     * @return the number of edits
+     */
+    public int getPendingWrites() {
+        int count = 0;
+        for (Entry entry : entries) {
+            if (entry instanceof MemoryEntry && ((MemoryEntry) entry).pending != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Remember an edit session. Edits that have been undone can no longer
+     * be redone afterwards.
+     *
+     * @param editSession the edit session
+     */
+    public void remember(EditSession editSession) {
+        checkNotNull(editSession);
+        collect();
+
+        // Destroy any edits after this undo point
+        while (pointer < entries.size()) {
+            entries.removeLast().discard();
+        }
+        entries.add(new MemoryEntry(editSession));
+        pointer = entries.size();
+        trim();
+
+        if (memoryBudget >= 0) {
+            spill(memoryBudget);
+        }
+    }
+
+    /**
+     * Start writing every edit that is held in memory to the history
+     * directory, if one is set.
+     *
+     * @return a future that completes once the writes have finished
+     */
+    public ListenableFuture<?> flush() {
+        collect();
+        spill(0);
+
+        List<ListenableFuture<FileChangeSet>> writes = new ArrayList<ListenableFuture<FileChangeSet>>();
+        for (Entry entry : entries) {
+            if (entry instanceof MemoryEntry && ((MemoryEntry) entry).pending != null) {
+                writes.add(((MemoryEntry) entry).pending);
+            }
+        }
+        return Futures.successfulAsList(writes);
+    }
+
+    /**
+     * Forget all history, deleting any history files.
+     */
+    public void clear() {
+        for (Entry entry : entries) {
+            entry.discard();
+        }
+        entries.clear();
+        pointer = 0;
+    }
+
+    /**
+     * Undo the last edit that hasn't been undone.
+     *
+     * @param newBlockBag a new block bag
+     * @param player the player
+     * @param fastMode whether to use fast mode
+     * @return the edit session that the changes were undone in, or null if there was nothing to undo
+     */
+    @Nullable
+    public EditSession undo(@Nullable BlockBag newBlockBag, Player player, boolean fastMode) {
+        checkNotNull(player);
+        collect();
+        if (pointer > 0) {
+            Entry entry = entries.get(pointer - 1);
+            EditSession editSession = entry.replay(newBlockBag, player, fastMode, ChangeSetExecutor.Type.UNDO);
+            if (editSession != null) {
+                --pointer;
+                entry.setUndone(true);
+            }
+            return editSession;
+        }
+
+        return null;
+    }
+
+    /**
+     * Redo the first edit that has been undone.
+     *
+     * @param newBlockBag a new block bag
+     * @param player the player
+     * @param fastMode whether to use fast mode
+     * @return the edit session that the changes were redone in, or null if there was nothing to redo
+     */
+    @Nullable
+    public EditSession redo(@Nullable BlockBag newBlockBag, Player player, boolean fastMode) {
+        checkNotNull(player);
+        collect();
+        if (pointer < entries.size()) {
+            Entry entry = entries.get(pointer);
+            EditSession editSession = entry.replay(newBlockBag, player, fastMode, ChangeSetExecutor.Type.REDO);
+            if (editSession != null) {
+                ++pointer;
+                entry.setUndone(false);
+            }
+            return editSession;
+        }
+
+        return null;
+    }
+
+    /**
+     * Discard the oldest edits beyond {@link LocalSession#MAX_HISTORY_SIZE}.
+     */
+    private void trim() {
+        while (entries.size() > LocalSession.MAX_HISTORY_SIZE) {
+            entries.removeFirst().discard();
+            pointer = Math.max(0, pointer - 1);
+        }
+    }
+
+    /**
+     * Start writing the oldest edits held in memory to the history
+     * directory until the estimated memory used is within the given budget.
+     * Edits that are already being written are not counted.
+     *
+     * @param budget the budget in bytes
+     */
+    private void spill(long budget) {
+        if (directory == null) {
+            return;
+        }
+
+        long used = 0;
+        for (Entry entry : entries) {
+            used += entry.getMemoryUsage();
+        }
+
+        int index = 0;
+        for (Entry entry : entries) {
+            if (used <= budget) {
+                break;
+            }
+            if (entry instanceof MemoryEntry) {
+                MemoryEntry memoryEntry = (MemoryEntry) entry;
+                long usage = memoryEntry.getMemoryUsage();
+                if (memoryEntry.write(index >= pointer)) {
+                    used -= usage;
+                }
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Replace edits whose files have been written with entries that replay
+     * from those files.
+     */
+    private void collect() {
+        ListIterator<Entry> it = entries.listIterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry instanceof MemoryEntry) {
+                FileEntry written = ((MemoryEntry) entry).collect();
+                if (written != null) {
+                    it.set(written);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find a loaded world by name.
+     *
+     * @param name the name
+     * @return the world, or null if it is not loaded
+     */
+    @Nullable
+    private static World findWorld(String name) {
+        try {
+            for (World world : WorldEdit.getInstance().getPlatformManager()
+                    .queryCapability(Capability.WORLD_EDITING).getWorlds()) {
+                if (world.getName().equals(name)) {
+                    return world;
+                }
+            }
+        } catch (NoCapablePlatformException ignored) {
+        }
+
+        return null;
+    }
+
+    /**
+     * A remembered edit.
+     */
+    private abstract static class Entry {
+        /**
+         * Undo or redo the edit.
+         *
+         * @param newBlockBag a new block bag
+         * @param player the player
+         * @param fastMode whether to use fast mode
+         * @param type whether to undo or redo
+         * @return the edit session, or null if the edit could not be replayed
+         */
+        @Nullable
+        abstract EditSession replay(@Nullable BlockBag newBlockBag, Player player, boolean fastMode, ChangeSetExecutor.Type type);
+
+        /**
+         * Record whether the edit is currently undone.
+         *
+         * @param undone true if undone
+         */
+        abstract void setUndone(boolean undone);
+
+        /**
+         * Get the estimated number of bytes used in memory.
+         *
+         * @return the number of bytes
+         */
+        abstract long getMemoryUsage();
+
+        /**
+         * Release any resources held by this edit, such as files.
+         */
+        abstract void discard();
+
+        /**
+         * Create a new edit session to replay changes in.
+         */
+        static EditSession createEditSession(World world, @Nullable BlockBag newBlockBag, Player player, boolean fastMode) {
+            EditSession newEditSession = WorldEdit.getInstance().getEditSessionFactory()
+                    .getEditSession(world, -1, newBlockBag, player);
+            newEditSession.enableQueue();
+            newEditSession.setFastMode(fastMode);
+            return newEditSession;
+        }
+    }
+
+    /**
+     * An edit that is held in memory.
+     */
+    private class MemoryEntry extends Entry {
+        private final EditSession editSession;
+        private boolean writable = true;
+        private boolean undone;
+        @Nullable
+        private ListenableFuture<FileChangeSet> pending;
+        private long pendingId;
+        private File pendingFile;
+        private boolean pendingUndone;
+
+        private MemoryEntry(EditSession editSession) {
+            this.editSession = editSession;
+        }
+
+        @Override
+        EditSession replay(@Nullable BlockBag newBlockBag, Player player, boolean fastMode, ChangeSetExecutor.Type type) {
+            EditSession newEditSession = createEditSession(editSession.getWorld(), newBlockBag, player, fastMode);
+            if (type == ChangeSetExecutor.Type.UNDO) {
+                editSession.undo(newEditSession);
+            } else {
+                editSession.redo(newEditSession);
+            }
+            return newEditSession;
+        }
+
+        @Override
+        void setUndone(boolean undone) {
+            this.undone = undone;
+        }
+
+        @Override
+        long getMemoryUsage() {
+            return pending != null ? 0 : editSession.size() * BYTES_PER_CHANGE;
+        }
+
+        @Override
+        void discard() {
+            if (pending != null) {
+                final File file = pendingFile;
+                // Delete the file once it has been written
+                pending.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (file.exists() && !file.delete()) {
+                            log.log(Level.WARNING, "Failed to delete history file " + file);
+                        }
+                    }
+                }, MoreExecutors.directExecutor());
+            }
+        }
+
+        /**
+         * Start writing this edit to the history directory.
+         *
+         * @param undone true if the edit is currently undone
+         * @return true if the edit is being written
+         */
+        private boolean write(boolean undone) {
+            final World world = editSession.getWorld();
+            if (directory == null || world == null || !writable || pending != null) {
+                return false;
+            }
+
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                log.log(Level.WARNING, "Failed to create history directory " + directory);
+                return false;
+            }
+
+            final File file = new File(directory, nextId + "." + (undone ? UNDONE_EXTENSION : DONE_EXTENSION));
+            final ChangeSet changeSet = editSession.getChangeSet();
+            try {
+                pending = executor.submit(new Callable<FileChangeSet>() {
+                    @Override
+                    public FileChangeSet call() throws IOException {
+                        return FileChangeSet.write(file, world.getName(), changeSet);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                return false; // Try again on the next spill
+            }
+            pendingId = nextId++;
+            pendingFile = file;
+            pendingUndone = undone;
+            return true;
+        }
+
+        /**
+         * Get the entry that replaces this one if it has been written.
+         *
+         * @return the new entry, or null if it has not been written
+         */
+        @Nullable
+        private FileEntry collect() {
+            if (pending == null || !pending.isDone()) {
+                return null;
+            }
+
+            try {
+                FileEntry entry = new FileEntry(pendingId, pending.get());
+                entry.undone = pendingUndone;
+                entry.setUndone(undone);
+                return entry;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IllegalArgumentException) {
+                    writable = false; // Contains changes that can't be written, such as entity changes
+                } else {
+                    log.log(Level.WARNING, "Failed to write history to " + pendingFile, e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pending = null;
+            return null;
+        }
+    }
+
+    /**
+     * An edit that has been written to a file.
+     */
+    private static class FileEntry extends Entry implements Comparable<FileEntry> {
+        private final long id;
+        private FileChangeSet changeSet;
+        private boolean undone;
+
+        private FileEntry(long id, FileChangeSet changeSet) {
+            this.id = id;
+            this.changeSet = changeSet;
+        }
+
+        @Nullable
+        @Override
+        EditSession replay(@Nullable BlockBag newBlockBag, Player player, boolean fastMode, ChangeSetExecutor.Type type) {
+            World world = findWorld(changeSet.getWorldName());
+            if (world == null) {
+                log.log(Level.WARNING, "Can't replay history in " + changeSet.getFile() + " because the world '"
+                        + changeSet.getWorldName() + "' is not loaded");
+                return null;
+            }
+
+            EditSession newEditSession = createEditSession(world, newBlockBag, player, fastMode);
+            newEditSession.replay(changeSet, type);
+            return newEditSession;
+        }
+
+        @Override
+        void setUndone(boolean undone) {
+            if (this.undone == undone) {
+                return;
+            }
+
+            File file = changeSet.getFile();
+            File target = new File(file.getParentFile(), id + "." + (undone ? UNDONE_EXTENSION : DONE_EXTENSION));
+            if (file.renameTo(target)) {
+                try {
+                    changeSet = new FileChangeSet(target);
+                    this.undone = undone;
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "Failed to read history file " + target, e);
+                }
+            } else {
+                log.log(Level.WARNING, "Failed to rename history file " + file + " to " + target);
+            }
+        }
+
+        @Override
+        long getMemoryUsage() {
+            return 0;
+        }
+
+        @Override
+        void discard() {
+            File file = changeSet.getFile();
+            if (file.exists() && !file.delete()) {
+                log.log(Level.WARNING, "Failed to delete history file " + file);
+            }
+        }
+
+        @Override
+        public int compareTo(FileEntry o) {
+            return id < o.id ? -1 : (id == o.id ? 0 : 1);
+        }
+    }
+
+}
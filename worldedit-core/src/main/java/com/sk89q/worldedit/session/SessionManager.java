@@ -37,13 +37,18 @@
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -60,12 +65,15 @@ public class SessionManager {
 
     public static int EXPIRATION_GRACE = 600000;
     private static final int FLUSH_PERIOD = 1000 * 30;
+    private static final int FLUSH_TIMEOUT = 1000 * 10;
     private static final ListeningExecutorService executorService = MoreExecutors.listeningDecorator(EvenMoreExecutors.newBoundedCachedThreadPool(0, 1, 5));
     private static final Logger log = Logger.getLogger(SessionManager.class.getCanonicalName());
     private final Timer timer = new Timer();
     private final WorldEdit worldEdit;
     private final Map<UUID, SessionHolder> sessions = new HashMap<UUID, SessionHolder>();
     private SessionStore store = new VoidStore();
+    @Nullable
+    private File historyDir;
 
     /**
      * Create a new session manager.
@@ -154,6 +162,12 @@ public synchronized LocalSession get(SessionOwner owner) {
             session.setConfiguration(config);
             session.setBlockChangeLimit(config.defaultChangeLimit);
 
+            // Let history that goes over the memory budget be written to disk
+            if (historyDir != null && sessionKey.isPersistent() && config.historyMemoryBudget >= 0) {
+                session.getHistory().setMemoryBudget(config.historyMemoryBudget * 1024L);
+                session.getHistory().setDirectory(new File(historyDir, getKey(sessionKey).toString()));
+            }
+
             // Remember the session if the session is still active
             if (sessionKey.isActive()) {
                 sessions.put(getKey(owner), new SessionHolder(sessionKey, session));
@@ -262,16 +276,47 @@ protected UUID getKey(SessionKey key) {
      *
      * @param owner the owner
      */
-    public synchronized void remove(SessionOwner owner) {
+    public void remove(SessionOwner owner) {
         checkNotNull(owner);
-        sessions.remove(getKey(owner));
+        SessionHolder holder;
+        synchronized (this) {
+            holder = sessions.remove(getKey(owner));
+        }
+
+        // Keep the session's history for when it is next loaded
+        if (holder != null) {
+            holder.session.getHistory().flush();
+        }
     }
 
     /**
-     * Remove all sessions.
+     * Remove all sessions, waiting a short while for their history to be
+     * written.
      */
-    public synchronized void clear() {
-        sessions.clear();
+    public void clear() {
+        List<LocalSession> removed;
+        synchronized (this) {
+            removed = new ArrayList<LocalSession>(sessions.size());
+            for (SessionHolder holder : sessions.values()) {
+                removed.add(holder.session);
+            }
+            sessions.clear();
+        }
+
+        List<ListenableFuture<?>> writes = new ArrayList<ListenableFuture<?>>();
+        for (LocalSession session : removed) {
+            writes.add(session.getHistory().flush());
+        }
+
+        try {
+            Futures.successfulAsList(writes).get(FLUSH_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.log(Level.WARNING, "Failed to write session history", e);
+        } catch (TimeoutException e) {
+            log.log(Level.WARNING, "Timed out while writing session history");
+        }
     }
 
     @Subscribe
@@ -279,6 +324,7 @@ public void onConfigurationLoad(ConfigurationLoadEvent event) {
         LocalConfiguration config = event.getConfiguration();
         File dir = new File(config.getWorkingDirectory(), "sessions");
         store = new JsonFileSessionStore(dir);
+        historyDir = new File(dir, "history");
     }
 
     /**
@@ -302,6 +348,8 @@ private SessionHolder(SessionKey key, LocalSession session) {
     private class SessionTracker extends TimerTask {
         @Override
         public void run() {
+            List<LocalSession> expired = new ArrayList<LocalSession>();
+
             synchronized (SessionManager.this) {
                 long now = System.currentTimeMillis();
                 Iterator<SessionHolder> it = sessions.values().iterator();
@@ -321,6 +369,7 @@ public void run() {
                                 saveQueue.put(stored.key, stored.session);
                             }
 
+                            expired.add(stored.session);
                             it.remove();
                         }
                     }
@@ -330,6 +379,12 @@ public void run() {
                     commit(saveQueue);
                 }
             }
+
+            // Keep the history of expired sessions for when they are next
+            // loaded. The files are written on a worker thread
+            for (LocalSession session : expired) {
+                session.getHistory().flush();
+            }
         }
     }
 
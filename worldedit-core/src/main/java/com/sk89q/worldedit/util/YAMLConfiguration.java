@@ -104,11 +104,15 @@ public void load() {
         scriptsDir = config.getString("scripting.dir", scriptsDir);
 
         saveDir = config.getString("saving.dir", saveDir);
+        schematicCompressionLevel = config.getInt("saving.compression-level", schematicCompressionLevel);
 
         allowSymlinks = config.getBoolean("files.allow-symbolic-links", false);
         LocalSession.MAX_HISTORY_SIZE = Math.max(0, config.getInt("history.size", 15));
+        historyMemoryBudget = config.getInt("history.memory-budget", historyMemoryBudget);
         SessionManager.EXPIRATION_GRACE = config.getInt("history.expiration", 10) * 60 * 1000;
 
+        operationTickBudget = config.getInt("scheduling.tick-budget", operationTickBudget);
+
         showHelpInfo = config.getBoolean("show-help-on-first-use", true);
 
         String snapshotsDir = config.getString("snapshots.directory", "");
@@ -0,0 +1,199 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A set of block positions that stores one bit per position, in sections
+ * of 16x16x16 blocks.
+ *
+ * <p>A section costs 512 bytes once any position in it has been added, so
+ * dense sets of positions, such as the blocks reached by a flood fill,
+ * cost far less than a set of vectors would.</p>
+ *
+ * <p>Each section remembers the generation (see {@link #setGeneration(int)})
+ * in which a position was last added to it, so that sections that have
+ * not been added to for a while can be dropped with
+ * {@link #removeOlderThan(int)}.</p>
+ */
+public class SectionedBlockSet {
+
+    private final Map<Long, Section> sections = new HashMap<Long, Section>();
+    private long lastKey;
+    private Section lastSection;
+    private int generation;
+    private long size;
+
+    /**
+     * Get the number of positions in the set.
+     *
+     * @return the number of positions
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Return whether the set is empty.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of sections that are allocated.
+     *
+     * @return the number of sections
+     */
+    public int getSectionCount() {
+        return sections.size();
+    }
+
+    /**
+     * Get the current generation.
+     *
+     * @return the generation
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Set the generation that is recorded for sections when positions
+     * are added to them.
+     *
+     * @param generation the generation
+     */
+    public void setGeneration(int generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * Return whether the set contains the given position.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the position is in the set
+     */
+    public boolean contains(int x, int y, int z) {
+        Section section = getSection(x, y, z, false);
+        if (section == null) {
+            return false;
+        }
+        int index = index(x, y, z);
+        return (section.bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Add the given position to the set.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the position was not already in the set
+     */
+    public boolean add(int x, int y, int z) {
+        Section section = getSection(x, y, z, true);
+        section.generation = generation;
+        int index = index(x, y, z);
+        long bit = 1L << index;
+        long word = section.bits[index >>> 6];
+        if ((word & bit) != 0) {
+            return false;
+        }
+        section.bits[index >>> 6] = word | bit;
+        section.count++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove every section that was last added to in a generation before
+     * the given one.
+     *
+     * @param generation the oldest generation to keep
+     */
+    public void removeOlderThan(int generation) {
+        Iterator<Section> it = sections.values().iterator();
+        while (it.hasNext()) {
+            Section section = it.next();
+            if (section.generation < generation) {
+                size -= section.count;
+                it.remove();
+                if (section == lastSection) {
+                    lastSection = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove every position.
+     */
+    public void clear() {
+        sections.clear();
+        lastSection = null;
+        size = 0;
+    }
+
+    private Section getSection(int x, int y, int z, boolean create) {
+        long key = sectionKey(x >> 4, y >> 4, z >> 4);
+        Section section = lastSection;
+        if (section != null && lastKey == key) {
+            return section;
+        }
+
+        section = sections.get(key);
+        if (section == null) {
+            if (!create) {
+                return null;
+            }
+            section = new Section();
+            sections.put(key, section);
+        }
+
+        lastKey = key;
+        lastSection = section;
+        return section;
+    }
+
+    private static long sectionKey(int sectionX, int sectionY, int sectionZ) {
+        return ((long) (sectionX & 0xFFFFFF) << 40)
+                | ((long) (sectionZ & 0xFFFFFF) << 16)
+                | (sectionY & 0xFFFF);
+    }
+
+    private static int index(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private static class Section {
+        private final long[] bits = new long[64];
+        private int count;
+        private int generation;
+    }
+
+}
@@ -43,7 +43,9 @@
  *
  * <p>This implementation utilizes naive synchronization on all getter and
  * setter methods. Dispatch does not occur when a lock has been acquired,
- * however.</p>
+ * however. The handlers for each posted event class are kept in a sorted
+ * array that is rebuilt whenever handlers change, so posting an event
+ * that has been posted before takes no lock.</p>
  */
 public class EventBus {
 
@@ -68,6 +70,12 @@ public Set<EventHandler> get() {
     @RequiresNewerGuava
     private HierarchyCache flattenHierarchyCache = new HierarchyCache();
 
+    /**
+     * Handlers to dispatch to, sorted by priority, for each event class
+     * that has been posted. The map is never modified once published.
+     */
+    private volatile Map<Class<?>, EventHandler[]> dispatchCache = Collections.emptyMap();
+
     /**
      * Registers the given handler for the given class to receive events.
      *
@@ -78,6 +86,7 @@ public synchronized void subscribe(Class<?> clazz, EventHandler handler) {
         checkNotNull(clazz);
         checkNotNull(handler);
         handlersByType.put(clazz, handler);
+        rebuildDispatchCache();
     }
 
     /**
@@ -88,6 +97,7 @@ public synchronized void subscribe(Class<?> clazz, EventHandler handler) {
     public synchronized void subscribeAll(Multimap<Class<?>, EventHandler> handlers) {
         checkNotNull(handlers);
         handlersByType.putAll(handlers);
+        rebuildDispatchCache();
     }
 
     /**
@@ -100,6 +110,7 @@ public synchronized void unsubscribe(Class<?> clazz, EventHandler handler) {
         checkNotNull(clazz);
         checkNotNull(handler);
         handlersByType.remove(clazz, handler);
+        rebuildDispatchCache();
     }
 
     /**
@@ -113,10 +124,11 @@ public synchronized void unsubscribeAll(Multimap<Class<?>, EventHandler> handler
             Set<EventHandler> currentHandlers = getHandlersForEventType(entry.getKey());
             Collection<EventHandler> eventMethodsInListener = entry.getValue();
 
-            if (currentHandlers != null &&!currentHandlers.containsAll(entry.getValue())) {
+            if (currentHandlers != null) {
                 currentHandlers.removeAll(eventMethodsInListener);
             }
         }
+        rebuildDispatchCache();
     }
 
     /**
@@ -153,25 +165,60 @@ public void unregister(Object object) {
      * @param event  event to post.
      */
     public void post(Object event) {
-        List<EventHandler> dispatching = new ArrayList<EventHandler>();
+        EventHandler[] dispatching = dispatchCache.get(event.getClass());
 
-        synchronized (this) {
-            Set<Class<?>> dispatchTypes = flattenHierarchy(event.getClass());
+        if (dispatching == null) {
+            dispatching = cacheHandlers(event.getClass());
+        }
 
-            for (Class<?> eventType : dispatchTypes) {
-                Set<EventHandler> wrappers = getHandlersForEventType(eventType);
+        for (EventHandler handler : dispatching) {
+            dispatch(event, handler);
+        }
+    }
 
-                if (wrappers != null && !wrappers.isEmpty()) {
-                    dispatching.addAll(wrappers);
-                }
-            }
+    /**
+     * Collect the handlers for the given event class and add them to the
+     * dispatch cache.
+     *
+     * @param eventClass the class of the posted event
+     * @return the handlers, sorted by priority
+     */
+    private synchronized EventHandler[] cacheHandlers(Class<?> eventClass) {
+        EventHandler[] handlers = dispatchCache.get(eventClass);
+        if (handlers == null) {
+            handlers = collectHandlers(eventClass);
+            Map<Class<?>, EventHandler[]> cache = new HashMap<Class<?>, EventHandler[]>(dispatchCache);
+            cache.put(eventClass, handlers);
+            dispatchCache = cache;
         }
+        return handlers;
+    }
 
-        Collections.sort(dispatching);
+    /**
+     * Replace the dispatch cache after the registered handlers have
+     * changed. Posts that are in progress keep using the old arrays.
+     */
+    private synchronized void rebuildDispatchCache() {
+        Map<Class<?>, EventHandler[]> cache = new HashMap<Class<?>, EventHandler[]>();
+        for (Class<?> eventClass : dispatchCache.keySet()) {
+            cache.put(eventClass, collectHandlers(eventClass));
+        }
+        dispatchCache = cache;
+    }
 
-        for (EventHandler handler : dispatching) {
-            dispatch(event, handler);
+    private synchronized EventHandler[] collectHandlers(Class<?> eventClass) {
+        List<EventHandler> handlers = new ArrayList<EventHandler>();
+
+        for (Class<?> eventType : flattenHierarchy(eventClass)) {
+            Set<EventHandler> wrappers = getHandlersForEventType(eventType);
+
+            if (wrappers != null && !wrappers.isEmpty()) {
+                handlers.addAll(wrappers);
+            }
         }
+
+        Collections.sort(handlers);
+        return handlers.toArray(new EventHandler[handlers.size()]);
     }
 
     /**
@@ -0,0 +1,41 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.eventbus;
+
+/**
+ * Calls a handler method on a listener.
+ *
+ * <p>Implementations are generated by {@link InvokerCompiler} for each
+ * handler method so that events are not dispatched through reflection.
+ * This interface has to be public so that the generated classes, which
+ * are defined in their own class loader, can implement it.</p>
+ */
+public interface EventInvoker {
+
+    /**
+     * Call the handler method.
+     *
+     * @param listener the listener, which is ignored for static methods
+     * @param event the event
+     * @throws Exception any exception thrown by the handler method
+     */
+    void invoke(Object listener, Object event) throws Exception;
+
+}
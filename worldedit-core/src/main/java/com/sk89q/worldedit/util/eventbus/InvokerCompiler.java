@@ -0,0 +1,300 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.eventbus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Generates an {@link EventInvoker} class that calls a handler method
+ * directly, so that dispatching an event costs a plain virtual call.
+ *
+ * <p>Only public methods of public classes with a public event type can be
+ * called from a generated class. Other methods are left to reflection.</p>
+ */
+final class InvokerCompiler {
+
+    private static final Logger log = Logger.getLogger(InvokerCompiler.class.getCanonicalName());
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    private static final String PACKAGE = "com/sk89q/worldedit/util/eventbus/";
+    private static final String EVENT_INVOKER = PACKAGE + "EventInvoker";
+    private static final String OBJECT = "java/lang/Object";
+
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int POP = 0x57;
+    private static final int POP2 = 0x58;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int CHECKCAST = 0xc0;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> entries = new HashMap<String, Integer>();
+    private int poolCount = 1;
+
+    private InvokerCompiler() {
+    }
+
+    /**
+     * Generate an invoker for the given method.
+     *
+     * @param method the handler method, which takes exactly one parameter
+     * @return the invoker, or null if the method has to be called through reflection
+     */
+    static EventInvoker compile(Method method) {
+        checkNotNull(method);
+        if (!isAccessible(method)) {
+            return null;
+        }
+
+        ClassLoader parent = method.getDeclaringClass().getClassLoader();
+        if (parent == null) {
+            parent = EventInvoker.class.getClassLoader();
+        }
+
+        try {
+            if (Class.forName(EventInvoker.class.getName(), false, parent) != EventInvoker.class) {
+                return null;
+            }
+            String className = PACKAGE + "GeneratedInvoker" + classCounter.incrementAndGet();
+            byte[] bytes = new InvokerCompiler().writeClass(className, method);
+            Class<?> type = new GeneratedClassLoader(parent).define(className.replace('/', '.'), bytes);
+            return (EventInvoker) type.newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            log.log(Level.FINE, "Failed to generate an invoker for " + method + "; reflection will be used", e);
+        } catch (LinkageError e) {
+            log.log(Level.FINE, "Failed to generate an invoker for " + method + "; reflection will be used", e);
+        }
+        return null;
+    }
+
+    private static boolean isAccessible(Method method) {
+        Class<?>[] parameters = method.getParameterTypes();
+        return parameters.length == 1
+                && !parameters[0].isPrimitive()
+                && Modifier.isPublic(method.getModifiers())
+                && isPublic(method.getDeclaringClass())
+                && isPublic(parameters[0])
+                && isPublic(method.getReturnType());
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+    }
+
+    private byte[] writeClass(String className, Method method) throws IOException {
+        Class<?> owner = method.getDeclaringClass();
+        Class<?> parameter = method.getParameterTypes()[0];
+        Class<?> returnType = method.getReturnType();
+        String ownerName = internalName(owner);
+        String descriptor = "(" + descriptor(parameter) + ")" + descriptor(returnType);
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+
+        int thisClass = classRef(className);
+        int superClass = classRef(OBJECT);
+        int invokerInterface = classRef(EVENT_INVOKER);
+        int superConstructor = methodRef(10, OBJECT, "<init>", "()V");
+        int ownerClass = classRef(ownerName);
+        int parameterClass = classRef(internalName(parameter));
+        int target = methodRef(owner.isInterface() ? 11 : 10, ownerName, method.getName(), descriptor);
+        int codeName = utf8("Code");
+        int constructorName = utf8("<init>");
+        int constructorType = utf8("()V");
+        int invokeName = utf8("invoke");
+        int invokeType = utf8("(L" + OBJECT + ";L" + OBJECT + ";)V");
+
+        ByteArrayOutputStream constructor = new ByteArrayOutputStream();
+        constructor.write(ALOAD_0);
+        writeInstruction(constructor, INVOKESPECIAL, superConstructor);
+        constructor.write(RETURN);
+
+        ByteArrayOutputStream invoke = new ByteArrayOutputStream();
+        if (!isStatic) {
+            invoke.write(ALOAD_1);
+            writeInstruction(invoke, CHECKCAST, ownerClass);
+        }
+        invoke.write(ALOAD_2);
+        writeInstruction(invoke, CHECKCAST, parameterClass);
+        if (isStatic) {
+            writeInstruction(invoke, INVOKESTATIC, target);
+        } else if (owner.isInterface()) {
+            writeInstruction(invoke, INVOKEINTERFACE, target);
+            invoke.write(2);
+            invoke.write(0);
+        } else {
+            writeInstruction(invoke, INVOKEVIRTUAL, target);
+        }
+        if (returnType == long.class || returnType == double.class) {
+            invoke.write(POP2);
+        } else if (returnType != void.class) {
+            invoke.write(POP);
+        }
+        invoke.write(RETURN);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49); // Java 5, which needs no stack map frames
+        out.writeShort(poolCount);
+        pool.flush();
+        poolBytes.writeTo(out);
+        out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1); // interfaces
+        out.writeShort(invokerInterface);
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+        writeMethod(out, constructorName, constructorType, codeName, constructor.toByteArray(), 1, 1);
+        writeMethod(out, invokeName, invokeType, codeName, invoke.toByteArray(), 2, 3);
+        out.writeShort(0); // attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeInstruction(ByteArrayOutputStream code, int opcode, int operand) {
+        code.write(opcode);
+        code.write(operand >> 8);
+        code.write(operand);
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName, byte[] bytecode, int maxStack, int maxLocals) throws IOException {
+        out.writeShort(0x0001); // public
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1); // attributes
+        out.writeShort(codeName);
+        out.writeInt(12 + bytecode.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bytecode.length);
+        out.write(bytecode);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    private static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    private static String descriptor(Class<?> type) {
+        if (type.isArray()) {
+            return internalName(type);
+        } else if (type == void.class) {
+            return "V";
+        } else if (type == boolean.class) {
+            return "Z";
+        } else if (type == byte.class) {
+            return "B";
+        } else if (type == char.class) {
+            return "C";
+        } else if (type == short.class) {
+            return "S";
+        } else if (type == int.class) {
+            return "I";
+        } else if (type == long.class) {
+            return "J";
+        } else if (type == float.class) {
+            return "F";
+        } else if (type == double.class) {
+            return "D";
+        } else {
+            return "L" + internalName(type) + ";";
+        }
+    }
+
+    private int utf8(String value) throws IOException {
+        Integer index = entries.get("U" + value);
+        if (index == null) {
+            pool.writeByte(1);
+            pool.writeUTF(value);
+            index = add("U" + value);
+        }
+        return index;
+    }
+
+    private int classRef(String name) throws IOException {
+        Integer index = entries.get("C" + name);
+        if (index == null) {
+            int nameIndex = utf8(name);
+            pool.writeByte(7);
+            pool.writeShort(nameIndex);
+            index = add("C" + name);
+        }
+        return index;
+    }
+
+    private int methodRef(int tag, String owner, String name, String descriptor) throws IOException {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        pool.writeByte(12); // name and type
+        pool.writeShort(nameIndex);
+        pool.writeShort(descriptorIndex);
+        int nameAndType = add("N" + owner + "." + name + descriptor);
+        pool.writeByte(tag);
+        pool.writeShort(ownerIndex);
+        pool.writeShort(nameAndType);
+        return add("M" + owner + "." + name + descriptor);
+    }
+
+    private int add(String key) {
+        int index = poolCount++;
+        entries.put(key, index);
+        return index;
+    }
+
+    /**
+     * Defines the generated class. Each invoker gets its own loader so that
+     * it can be unloaded with the listener.
+     */
+    private static class GeneratedClassLoader extends ClassLoader {
+        private GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+}
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.util.eventbus;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -30,6 +31,7 @@ public class MethodEventHandler extends EventHandler {
 
     private final Object object;
     private final Method method;
+    private volatile EventInvoker invoker;
 
     /**
      * Create a new event handler.
@@ -53,9 +55,29 @@ public Method getMethod() {
         return method;
     }
 
+    /**
+     * Dispatch the event to the method.
+     *
+     * <p>An invoker class that calls the method directly is generated on
+     * first dispatch, so that handlers that are only created to be
+     * unregistered never generate one. Methods that cannot be called from
+     * a generated class are called through reflection.</p>
+     *
+     * @param event the event object
+     * @throws Exception an exception thrown by the method
+     */
     @Override
     public void dispatch(Object event) throws Exception {
-        method.invoke(object, event);
+        EventInvoker invoker = this.invoker;
+        if (invoker == null) {
+            invoker = InvokerCompiler.compile(method);
+            if (invoker == null) {
+                invoker = new ReflectionInvoker(method);
+            }
+            this.invoker = invoker;
+        }
+
+        invoker.invoke(object, event);
     }
 
     @Override
@@ -78,4 +100,28 @@ public int hashCode() {
         result = 31 * result + method.hashCode();
         return result;
     }
+
+    /**
+     * Calls a method through reflection.
+     */
+    private static class ReflectionInvoker implements EventInvoker {
+        private final Method method;
+
+        private ReflectionInvoker(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public void invoke(Object listener, Object event) throws Exception {
+            try {
+                method.invoke(listener, event);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw e;
+            }
+        }
+    }
 }
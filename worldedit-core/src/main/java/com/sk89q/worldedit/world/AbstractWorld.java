@@ -32,6 +32,8 @@
 import com.sk89q.worldedit.function.mask.BlockMask;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.TreeGenerator.TreeType;
 
 import javax.annotation.Nullable;
@@ -111,6 +113,14 @@ public int getBlockData(Vector pt) {
         return getLazyBlock(pt).getData();
     }
 
+    @Override
+    public void getBlockColumn(int x, int z, int minY, int maxY, int[] blocks) {
+        for (int y = minY; y <= maxY; ++y) {
+            BaseBlock block = getLazyBlock(new Vector(x, y, z));
+            blocks[y - minY] = (block.getType() << 4) | block.getData();
+        }
+    }
+
     @Override
     public void dropItem(Vector pt, BaseItemStack item, int times) {
         for (int i = 0; i < times; ++i) {
@@ -139,6 +149,22 @@ public void simulateBlockMine(Vector pt) {
         }
     }
 
+    @Override
+    public Operation createRegeneration(final Region region, final EditSession editSession) {
+        // Worlds that cannot regenerate in parts do it all at once
+        return new Operation() {
+            @Override
+            public Operation resume(RunContext run) {
+                regenerate(region, editSession);
+                return null;
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+    }
+
     @Override
     public boolean generateTree(EditSession editSession, Vector pt) throws MaxChangedBlocksException {
         return generateTree(TreeType.TREE, editSession, pt);
@@ -0,0 +1,390 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.Regions;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Regenerates the chunks of a region a batch at a time.
+ *
+ * <p>Before a batch is regenerated, the type IDs and data values of its
+ * chunks are saved as packed integers, with full copies only of blocks
+ * that may have a tile entity. Afterwards, blocks outside of the region
+ * are put back, and blocks inside of it are remembered in the history of
+ * the edit session. Blocks that regeneration did not change, including
+ * their tile entity, are skipped.</p>
+ *
+ * <p>Platforms implement {@link #regenerateChunks(List)}. Each call to
+ * {@link #resume(RunContext)} regenerates batches until the run context
+ * asks to stop, so that the operation can be spread over several ticks.
+ * If the run has a time limit, batches are made small enough to fit into
+ * the time that is left, based on how long previous chunks took.</p>
+ */
+public abstract class ChunkRegenerator implements Operation {
+
+    /**
+     * Whether a block type may have a tile entity, which the packed type
+     * ID and data value would lose. Types unknown to WorldEdit may belong
+     * to mods, so they are assumed to have one.
+     */
+    private static final BitSet mayHaveTileEntity = new BitSet();
+
+    static {
+        int[] types = {
+                BlockID.NOTE_BLOCK, BlockID.PISTON_MOVING_PIECE, BlockID.MOB_SPAWNER, BlockID.SIGN_POST,
+                BlockID.WALL_SIGN, BlockID.JUKEBOX, BlockID.ENCHANTMENT_TABLE, BlockID.END_PORTAL,
+                BlockID.ENDER_CHEST, BlockID.COMMAND_BLOCK, BlockID.BEACON, BlockID.FLOWER_POT, BlockID.HEAD,
+                BlockID.COMPARATOR_OFF, BlockID.COMPARATOR_ON, BlockID.DAYLIGHT_SENSOR,
+                BlockID.STANDING_BANNER, BlockID.WALL_BANNER, BlockID.DAYLIGHT_SENSOR_INVERTED
+        };
+        for (int type : types) {
+            mayHaveTileEntity.set(type);
+        }
+        for (int type = 0; type <= BaseBlock.MAX_ID; ++type) {
+            if (BlockType.fromID(type) == null || BlockType.isContainerBlock(type)) {
+                mayHaveTileEntity.set(type);
+            }
+        }
+    }
+
+    private final World world;
+    private final Region region;
+    private final EditSession editSession;
+    private final List<Vector2D> chunks;
+    private final int height;
+    private int batchSize = 16;
+    private long chunkTime = -1;
+    private int next = 0;
+    private boolean failed = false;
+
+    /**
+     * Create a new instance.
+     *
+     * @param world the world to regenerate chunks in
+     * @param region the region to regenerate, which is copied so that later
+     *               changes to it do not affect batches that are still to come
+     * @param editSession the edit session to restore blocks with and remember changes in
+     */
+    protected ChunkRegenerator(World world, Region region, EditSession editSession) {
+        checkNotNull(world);
+        checkNotNull(region);
+        checkNotNull(editSession);
+        this.world = world;
+        this.region = region.clone();
+        this.editSession = editSession;
+        this.height = world.getMaxY() + 1;
+
+        chunks = new ArrayList<Vector2D>(region.getChunks());
+        Collections.sort(chunks, new Comparator<Vector2D>() {
+            @Override
+            public int compare(Vector2D o1, Vector2D o2) {
+                if (o1.getBlockX() != o2.getBlockX()) {
+                    return o1.getBlockX() < o2.getBlockX() ? -1 : 1;
+                }
+                return o1.getBlockZ() < o2.getBlockZ() ? -1 : o1.getBlockZ() == o2.getBlockZ() ? 0 : 1;
+            }
+        });
+    }
+
+    /**
+     * Get the number of chunks that are regenerated at once.
+     *
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the number of chunks that are regenerated at once, at most.
+     *
+     * @param batchSize the batch size, at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        checkArgument(batchSize >= 1, "batchSize >= 1 required");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the number of chunks to regenerate.
+     *
+     * @return the number of chunks
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Get the number of chunks that have been regenerated so far.
+     *
+     * @return the number of chunks
+     */
+    public int getRegeneratedCount() {
+        return next;
+    }
+
+    /**
+     * Return whether the platform failed to regenerate a batch, in which
+     * case the remaining chunks were not regenerated.
+     *
+     * @return true if regeneration failed
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    /**
+     * Regenerate the given chunks.
+     *
+     * @param chunks the chunks
+     * @return false if regeneration failed and no more chunks should be regenerated
+     */
+    protected abstract boolean regenerateChunks(List<Vector2D> chunks);
+
+    @Override
+    public Operation resume(RunContext run) {
+        while (next < chunks.size()) {
+            long start = System.nanoTime();
+            List<Vector2D> batch = chunks.subList(next, Math.min(chunks.size(), next + getBatchSize(run)));
+            List<SavedChunk> saved = new ArrayList<SavedChunk>(batch.size());
+            for (Vector2D chunk : batch) {
+                saved.add(new SavedChunk(chunk));
+            }
+
+            boolean success = false;
+            try {
+                success = regenerateChunks(batch);
+            } finally {
+                // Whatever was regenerated has to be restored or remembered
+                for (SavedChunk chunk : saved) {
+                    chunk.restore();
+                }
+                next += batch.size();
+                if (!success) {
+                    failed = true;
+                    next = chunks.size();
+                }
+            }
+            chunkTime = (System.nanoTime() - start) / batch.size();
+
+            if (!run.shouldContinue()) {
+                break;
+            }
+        }
+
+        return next < chunks.size() ? this : null;
+    }
+
+    @Override
+    public void cancel() {
+        next = chunks.size();
+    }
+
+    /**
+     * Get the number of chunks to regenerate next.
+     *
+     * @param run the run context
+     * @return the number of chunks, at least 1
+     */
+    private int getBatchSize(RunContext run) {
+        long timeLeft = run.getTimeLeft(TimeUnit.NANOSECONDS);
+        if (timeLeft == Long.MAX_VALUE) {
+            return batchSize;
+        } else if (chunkTime < 0) {
+            // Find out how long a chunk takes first
+            return 1;
+        } else {
+            return (int) Math.max(1, Math.min(batchSize, timeLeft / Math.max(1, chunkTime)));
+        }
+    }
+
+    /**
+     * Return whether two tags have the same contents.
+     *
+     * @param first the first tag
+     * @param second the second tag
+     * @return true if the same
+     */
+    private static boolean isSameTag(@Nullable Tag first, @Nullable Tag second) {
+        if (first == null || second == null) {
+            return first == second;
+        }
+        if (first.getClass() != second.getClass()) {
+            return false;
+        }
+
+        Object value = first.getValue();
+        Object other = second.getValue();
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<?, ?> otherMap = (Map<?, ?>) other;
+            if (map.size() != otherMap.size()) {
+                return false;
+            }
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!otherMap.containsKey(entry.getKey()) || !isSameTag((Tag) entry.getValue(), (Tag) otherMap.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<?> otherList = (List<?>) other;
+            if (list.size() != otherList.size()) {
+                return false;
+            }
+            for (int i = 0; i < list.size(); ++i) {
+                if (!isSameTag((Tag) list.get(i), (Tag) otherList.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (value instanceof byte[]) {
+            return Arrays.equals((byte[]) value, (byte[]) other);
+        } else if (value instanceof int[]) {
+            return Arrays.equals((int[]) value, (int[]) other);
+        } else {
+            return value.equals(other);
+        }
+    }
+
+    /**
+     * The blocks of a chunk from before it was regenerated. Entries are
+     * stored a column at a time as {@code type << 4 | data}.
+     */
+    private class SavedChunk {
+        private final int baseX;
+        private final int baseZ;
+        private final int[] blocks = new int[16 * 16 * height];
+        private final Map<Integer, BaseBlock> tileEntityBlocks = new HashMap<Integer, BaseBlock>();
+
+        private SavedChunk(Vector2D chunk) {
+            baseX = chunk.getBlockX() << 4;
+            baseZ = chunk.getBlockZ() << 4;
+
+            int[] column = new int[height];
+            for (int z = 0; z < 16; ++z) {
+                for (int x = 0; x < 16; ++x) {
+                    world.getBlockColumn(baseX + x, baseZ + z, 0, height - 1, column);
+                    int offset = (z * 16 + x) * height;
+                    System.arraycopy(column, 0, blocks, offset, height);
+                    for (int y = 0; y < height; ++y) {
+                        if (mayHaveTileEntity.get(column[y] >> 4)) {
+                            tileEntityBlocks.put(offset + y, editSession.getBlock(new Vector(baseX + x, y, baseZ + z)));
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Find the blocks of the chunk that are in the region.
+         */
+        private BitSet getInside() {
+            BitSet inside = new BitSet(blocks.length);
+            int minY = Math.max(0, region.getMinimumPoint().getBlockY());
+            int maxY = Math.min(height - 1, region.getMaximumPoint().getBlockY());
+            for (int y = minY; y <= maxY; ++y) {
+                for (int z = 0; z < 16; ++z) {
+                    int[] spans = Regions.getSpans(region, y, baseZ + z);
+                    for (int i = 0; i < spans.length; i += 2) {
+                        int start = Math.max(spans[i] - baseX, 0);
+                        int end = Math.min(spans[i + 1] - baseX, 15);
+                        for (int x = start; x <= end; ++x) {
+                            inside.set((z * 16 + x) * height + y);
+                        }
+                    }
+                }
+            }
+            return inside;
+        }
+
+        /**
+         * Put back the blocks outside of the region and remember the
+         * changes inside of it.
+         */
+        @SuppressWarnings("deprecation")
+        private void restore() {
+            BitSet inside = getInside();
+            int[] column = new int[height];
+            for (int z = 0; z < 16; ++z) {
+                for (int x = 0; x < 16; ++x) {
+                    world.getBlockColumn(baseX + x, baseZ + z, 0, height - 1, column);
+                    int offset = (z * 16 + x) * height;
+                    for (int y = 0; y < height; ++y) {
+                        int index = offset + y;
+                        BaseBlock saved = tileEntityBlocks.get(index);
+                        if (blocks[index] == column[y] && saved == null) {
+                            continue;
+                        }
+
+                        Vector position = new Vector(baseX + x, y, baseZ + z);
+                        BaseBlock current = null;
+                        if (saved == null) {
+                            saved = new BaseBlock(blocks[index] >> 4, blocks[index] & 0xf);
+                        } else if (blocks[index] == column[y]) {
+                            // Only the tile entity may have changed
+                            current = editSession.getBlock(position);
+                            if (isSameTag(saved.getNbtData(), current.getNbtData())) {
+                                continue;
+                            }
+                        }
+
+                        if (inside.get(index)) {
+                            if (current == null) {
+                                current = mayHaveTileEntity.get(column[y] >> 4)
+                                        ? editSession.getBlock(position)
+                                        : new BaseBlock(column[y] >> 4, column[y] & 0xf);
+                            }
+                            editSession.rememberChange(position, saved, current);
+                        } else {
+                            editSession.smartSetBlock(position, saved);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -29,6 +29,7 @@
 import com.sk89q.worldedit.extension.platform.Platform;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.TreeGenerator;
 import com.sk89q.worldedit.util.TreeGenerator.TreeType;
@@ -92,6 +93,20 @@ public interface World extends Extent {
     @Deprecated
     int getBlockData(Vector pt);
 
+    /**
+     * Get the type IDs and data values of a column of blocks at once.
+     *
+     * <p>The block at {@code minY + i} is stored at {@code blocks[i]} as
+     * {@code type << 4 | data}. Blocks outside of the world are air.</p>
+     *
+     * @param x the X coordinate of the column
+     * @param z the Z coordinate of the column
+     * @param minY the lowest Y coordinate to read
+     * @param maxY the highest Y coordinate to read
+     * @param blocks an array of at least {@code maxY - minY + 1} entries
+     */
+    void getBlockColumn(int x, int z, int minY, int maxY, int[] blocks);
+
     /**
      * Similar to {@link Extent#setBlock(Vector, BaseBlock)} but a
      * {@code notifyAndLight} parameter indicates whether adjacent blocks
@@ -180,6 +195,17 @@ public interface World extends Extent {
      */
     boolean regenerate(Region region, EditSession editSession);
 
+    /**
+     * Create an operation that regenerates an area, which may be resumed
+     * several times to spread the work over several ticks.
+     *
+     * @param region the region
+     * @param editSession the {@link EditSession}
+     * @return an operation
+     * @see #regenerate(Region, EditSession)
+     */
+    Operation createRegeneration(Region region, EditSession editSession);
+
     /**
      * Generate a tree at the given position.
      *
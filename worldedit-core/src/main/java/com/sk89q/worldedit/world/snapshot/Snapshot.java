@@ -108,7 +108,9 @@ private ChunkStore internalGetChunkStore() throws IOException, DataException {
                 throw new DataException("TrueZIP is required for .tar support");
             }
         } else {
-            ChunkStore chunkStore = new FileMcRegionChunkStore(file);
+            // The region files stay mapped (and locked on Windows) until the
+            // store is garbage collected, even after it has been closed
+            ChunkStore chunkStore = new MappedMcRegionChunkStore(file);
 
             if (!chunkStore.isValid()) {
                 return new FileLegacyChunkStore(file);
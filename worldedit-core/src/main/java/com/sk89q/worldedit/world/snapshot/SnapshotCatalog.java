@@ -0,0 +1,356 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.snapshot;
+
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
+import com.sk89q.worldedit.world.storage.MissingWorldException;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Keeps a sorted list of the snapshots of each world in a repository, so
+ * that the snapshot directory does not have to be listed and every
+ * snapshot probed for each query.
+ *
+ * <p>The first query for a world lists the directory. Later queries
+ * answer from the list and, once the list is older than the check
+ * interval, check for changes in the background. The directory is only
+ * listed again if its modification time (or that of a world folder in it)
+ * has changed, and only new or modified snapshots are probed again.</p>
+ *
+ * <p>Modification times are coarse on some file systems, so a change made
+ * shortly after a listing may not change them. Anything with a modification
+ * time that close to the last listing is always listed or probed again.</p>
+ */
+class SnapshotCatalog {
+
+    private static final Logger log = Logger.getLogger(SnapshotCatalog.class.getCanonicalName());
+    private static final ExecutorService executor = EvenMoreExecutors.newBoundedCachedThreadPool(0, 1, 64);
+    private static final long MODIFIED_GRANULARITY = TimeUnit.SECONDS.toMillis(2);
+
+    private final SnapshotRepository repository;
+    private final ConcurrentMap<String, WorldIndex> indexes = new ConcurrentHashMap<String, WorldIndex>();
+    private volatile long checkInterval = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * Create a new catalog.
+     *
+     * @param repository the repository
+     */
+    SnapshotCatalog(SnapshotRepository repository) {
+        checkNotNull(repository);
+        this.repository = repository;
+    }
+
+    /**
+     * Set the time after which the snapshots of a world are checked for
+     * changes again.
+     *
+     * @param checkInterval the interval in milliseconds
+     */
+    void setCheckInterval(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Get the snapshots of a world.
+     *
+     * @param worldName the name of the world
+     * @return the snapshots
+     * @throws MissingWorldException if the snapshot directory cannot be listed
+     */
+    WorldIndex get(String worldName) throws MissingWorldException {
+        WorldIndex index = indexes.get(worldName);
+        if (index == null) {
+            synchronized (this) {
+                index = indexes.get(worldName);
+                if (index == null) {
+                    index = build(worldName, null);
+                    indexes.put(worldName, index);
+                }
+            }
+        } else if (System.currentTimeMillis() - index.checked >= checkInterval && index.refreshing.compareAndSet(false, true)) {
+            try {
+                executor.submit(new Refresh(worldName, index));
+            } catch (RejectedExecutionException e) {
+                index.refreshing.set(false);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * List the snapshots of a world, reusing what is known about snapshots
+     * that have not been modified.
+     *
+     * @param worldName the name of the world
+     * @param previous the previous list, or null
+     * @return the new list, or the previous list if nothing has changed
+     * @throws MissingWorldException if the snapshot directory cannot be listed
+     */
+    private WorldIndex build(String worldName, @Nullable WorldIndex previous) throws MissingWorldException {
+        File dir = repository.getDirectory();
+        if (previous != null && previous.isUnchanged()) {
+            previous.checked = System.currentTimeMillis();
+            return previous;
+        }
+
+        long checked = System.currentTimeMillis();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new MissingWorldException(worldName);
+        }
+
+        Map<File, Long> folders = new HashMap<File, Long>();
+        Map<String, Probe> probes = new HashMap<String, Probe>();
+        List<Snapshot> snapshots = new ArrayList<Snapshot>(files.length);
+        folders.put(dir, dir.lastModified());
+
+        for (File file : files) {
+            Probe probe = probe(file, file.getName(), worldName, previous, probes, true);
+            if (probe.valid) {
+                if (probe.snapshot != null) {
+                    snapshots.add(probe.snapshot);
+                }
+            } else if (file.isDirectory() && file.getName().equalsIgnoreCase(worldName)) {
+                folders.put(file, file.lastModified());
+                File[] children = file.listFiles();
+                if (children != null) {
+                    for (File child : children) {
+                        probe = probe(child, file.getName() + "/" + child.getName(), worldName, previous, probes, false);
+                        if (probe.snapshot != null) {
+                            snapshots.add(probe.snapshot);
+                        }
+                    }
+                }
+            }
+        }
+
+        return new WorldIndex(snapshots, folders, probes, checked);
+    }
+
+    /**
+     * Find out whether a file is a snapshot of the world, unless it has not
+     * been modified since it was last probed.
+     */
+    private Probe probe(File file, String name, String worldName, @Nullable WorldIndex previous, Map<String, Probe> probes, boolean checkWorld) {
+        long modified = file.lastModified();
+        Probe probe = previous != null ? previous.probes.get(name) : null;
+        if (probe == null || probe.modified != modified || isRacy(modified, previous.listed)) {
+            boolean valid = repository.isValidSnapshot(file);
+            Snapshot snapshot = null;
+            if (valid) {
+                snapshot = new Snapshot(repository, name);
+                if (checkWorld && !snapshot.containsWorld(worldName)) {
+                    snapshot = null;
+                } else {
+                    repository.detectDate(snapshot);
+                }
+            }
+            probe = new Probe(modified, valid, snapshot);
+        }
+        probes.put(name, probe);
+        return probe;
+    }
+
+    /**
+     * Return whether a file may have been modified again after it was
+     * listed without its modification time changing.
+     *
+     * @param modified the modification time that was seen
+     * @param listed the time at which it was seen
+     * @return true if the file has to be looked at again
+     */
+    private static boolean isRacy(long modified, long listed) {
+        return modified >= listed - MODIFIED_GRANULARITY;
+    }
+
+    /**
+     * What is known about a file in the snapshot directory.
+     */
+    private static class Probe {
+        private final long modified;
+        private final boolean valid;
+        @Nullable
+        private final Snapshot snapshot;
+
+        private Probe(long modified, boolean valid, @Nullable Snapshot snapshot) {
+            this.modified = modified;
+            this.valid = valid;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * The snapshots of a world, sorted from oldest to newest.
+     */
+    static class WorldIndex {
+        private final List<Snapshot> snapshots;
+        private final Snapshot[] dated;
+        private final long[] times;
+        private final Map<File, Long> folders;
+        private final Map<String, Probe> probes;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private final long listed;
+        private volatile long checked;
+
+        private WorldIndex(List<Snapshot> snapshots, Map<File, Long> folders, Map<String, Probe> probes, long checked) {
+            Collections.sort(snapshots);
+            this.snapshots = Collections.unmodifiableList(snapshots);
+            this.folders = folders;
+            this.probes = probes;
+            this.listed = checked;
+            this.checked = checked;
+
+            List<Snapshot> dated = new ArrayList<Snapshot>(snapshots.size());
+            for (Snapshot snapshot : snapshots) {
+                if (snapshot.getDate() != null) {
+                    dated.add(snapshot);
+                }
+            }
+            Collections.sort(dated, new Comparator<Snapshot>() {
+                @Override
+                public int compare(Snapshot a, Snapshot b) {
+                    return a.getDate().compareTo(b.getDate());
+                }
+            });
+            this.dated = dated.toArray(new Snapshot[dated.size()]);
+            this.times = new long[this.dated.length];
+            for (int i = 0; i < times.length; i++) {
+                times[i] = this.dated[i].getDate().getTimeInMillis();
+            }
+        }
+
+        private boolean isUnchanged() {
+            for (Map.Entry<File, Long> entry : folders.entrySet()) {
+                if (entry.getKey().lastModified() != entry.getValue() || isRacy(entry.getValue(), listed)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Get the snapshots, oldest first.
+         *
+         * @return an unmodifiable list of snapshots
+         */
+        List<Snapshot> getSnapshots() {
+            return snapshots;
+        }
+
+        /**
+         * Get the newest snapshot with a date that is not after the given time.
+         *
+         * @param time the time in milliseconds
+         * @return the snapshot, or null
+         */
+        @Nullable
+        Snapshot getLatestAtOrBefore(long time) {
+            int index = upperBound(time) - 1;
+            return index >= 0 ? dated[index] : null;
+        }
+
+        /**
+         * Get the oldest snapshot with a date that is not before the given time.
+         *
+         * @param time the time in milliseconds
+         * @return the snapshot, or null
+         */
+        @Nullable
+        Snapshot getEarliestAtOrAfter(long time) {
+            int low = 0;
+            int high = times.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low < dated.length ? dated[low] : null;
+        }
+
+        /**
+         * Get the index of the first snapshot after the given time.
+         */
+        private int upperBound(long time) {
+            int low = 0;
+            int high = times.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Checks the snapshots of a world for changes.
+     */
+    private class Refresh implements Runnable {
+        private final String worldName;
+        private final WorldIndex index;
+
+        private Refresh(String worldName, WorldIndex index) {
+            this.worldName = worldName;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                WorldIndex updated = build(worldName, index);
+                if (updated != index) {
+                    indexes.replace(worldName, index, updated);
+                }
+            } catch (MissingWorldException e) {
+                indexes.remove(worldName, index);
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "Failed to check the snapshots of " + worldName + " for changes", e);
+            } finally {
+                index.refreshing.set(false);
+            }
+        }
+    }
+
+}
@@ -25,7 +25,6 @@
 
 import javax.annotation.Nullable;
 import java.io.File;
-import java.io.FilenameFilter;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
@@ -38,6 +37,7 @@ public class SnapshotRepository {
 
     protected File dir;
     protected List<SnapshotDateParser> dateParsers = new ArrayList<SnapshotDateParser>();
+    private final SnapshotCatalog catalog = new SnapshotCatalog(this);
 
     /**
      * Create a new instance of a repository.
@@ -71,42 +71,10 @@ public SnapshotRepository(String dir) {
      * @return a list of snapshots
      */
     public List<Snapshot> getSnapshots(boolean newestFirst, String worldName) throws MissingWorldException {
-        FilenameFilter filter = new FilenameFilter() {
-            @Override
-            public boolean accept(File dir, String name) {
-                File f = new File(dir, name);
-                return isValidSnapshot(f);
-            }
-        };
-
-        File[] snapshotFiles = dir.listFiles();
-        if (snapshotFiles == null) {
-            throw new MissingWorldException(worldName);
-        }
-        List<Snapshot> list = new ArrayList<Snapshot>(snapshotFiles.length);
-
-        for (File file : snapshotFiles) {
-            if (isValidSnapshot(file)) {
-                Snapshot snapshot = new Snapshot(this, file.getName());
-                if (snapshot.containsWorld(worldName)) {
-                    detectDate(snapshot);
-                    list.add(snapshot);
-                }
-            } else if (file.isDirectory() && file.getName().equalsIgnoreCase(worldName)) {
-                for (String name : file.list(filter)) {
-                    Snapshot snapshot = new Snapshot(this, file.getName() + "/" + name);
-                    detectDate(snapshot);
-                    list.add(snapshot);
-                }
-            }
-        }
-
+        List<Snapshot> list = new ArrayList<Snapshot>(catalog.get(worldName).getSnapshots());
         if (newestFirst) {
-            Collections.sort(list, Collections.reverseOrder());
-        } else {
-            Collections.sort(list);
+            Collections.reverse(list);
         }
-
         return list;
     }
 
@@ -118,18 +86,7 @@ public boolean accept(File dir, String name) {
      */
     @Nullable
     public Snapshot getSnapshotAfter(Calendar date, String world) throws MissingWorldException {
-        List<Snapshot> snapshots = getSnapshots(true, world);
-        Snapshot last = null;
-
-        for (Snapshot snapshot : snapshots) {
-            if (snapshot.getDate() != null && snapshot.getDate().before(date)) {
-                return last;
-            }
-
-            last = snapshot;
-        }
-
-        return last;
+        return catalog.get(world).getEarliestAtOrAfter(date.getTimeInMillis());
     }
 
     /**
@@ -140,18 +97,18 @@ public Snapshot getSnapshotAfter(Calendar date, String world) throws MissingWorl
      */
     @Nullable
     public Snapshot getSnapshotBefore(Calendar date, String world) throws MissingWorldException {
-        List<Snapshot> snapshots = getSnapshots(false, world);
-        Snapshot last = null;
-
-        for (Snapshot snapshot : snapshots) {
-            if (snapshot.getDate().after(date)) {
-                return last;
-            }
-
-            last = snapshot;
-        }
+        return catalog.get(world).getLatestAtOrBefore(date.getTimeInMillis());
+    }
 
-        return last;
+    /**
+     * Set the time after which the snapshots of a world are checked for
+     * changes again. Until then, the snapshots found when the world was
+     * last checked are returned.
+     *
+     * @param checkInterval the interval in milliseconds
+     */
+    void setCheckInterval(long checkInterval) {
+        catalog.setCheckInterval(checkInterval);
     }
 
     /**
@@ -179,13 +136,13 @@ protected void detectDate(Snapshot snapshot) {
      */
     @Nullable
     public Snapshot getDefaultSnapshot(String world) throws MissingWorldException {
-        List<Snapshot> snapshots = getSnapshots(true, world);
+        List<Snapshot> snapshots = catalog.get(world).getSnapshots();
 
         if (snapshots.isEmpty()) {
             return null;
         }
 
-        return snapshots.get(0);
+        return snapshots.get(snapshots.size() - 1);
     }
 
     /**
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.world.snapshot;
 
+import com.google.common.base.Throwables;
 import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
@@ -27,6 +28,8 @@
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.Regions;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
 import com.sk89q.worldedit.world.DataException;
 import com.sk89q.worldedit.world.chunk.Chunk;
 import com.sk89q.worldedit.world.storage.ChunkStore;
@@ -35,20 +38,47 @@
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A snapshot restore operation.
+ *
+ * <p>Chunks are restored one at a time, one region file after another, so
+ * that each region file is only read once. If the chunk store can read
+ * chunks from several threads at once, the next few chunks are read in the
+ * background while the current one is being restored.</p>
  */
 public class SnapshotRestore {
 
-    private final Map<BlockVector2D, ArrayList<Vector>> neededChunks = new LinkedHashMap<BlockVector2D, ArrayList<Vector>>();
+    private static final Logger log = Logger.getLogger(SnapshotRestore.class.getCanonicalName());
+    private static final int REGION_SHIFTS = 5;
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService executorService =
+            EvenMoreExecutors.newBoundedCachedThreadPool(0, PARALLELISM, 1024);
+
+    private final Set<BlockVector2D> neededChunks = new LinkedHashSet<BlockVector2D>();
     private final ChunkStore chunkStore;
     private final EditSession editSession;
+    private final Region region;
+    private final boolean cuboid;
+    private final Vector min;
+    private final Vector max;
     private ArrayList<Vector2D> missingChunks;
     private ArrayList<Vector2D> errorChunks;
+    private Map<Vector2D, Long> regionTimes;
     private String lastErrorMessage;
 
     /**
@@ -61,60 +91,58 @@ public class SnapshotRestore {
     public SnapshotRestore(ChunkStore chunkStore, EditSession editSession, Region region) {
         this.chunkStore = chunkStore;
         this.editSession = editSession;
+        this.region = region.clone();
+        this.cuboid = region instanceof CuboidRegion;
+        this.min = region.getMinimumPoint();
+        this.max = region.getMaximumPoint();
 
-        if (region instanceof CuboidRegion) {
-            findNeededCuboidChunks(region);
-        } else {
-            findNeededChunks(region);
-        }
+        findNeededChunks();
     }
 
     /**
-     * Find needed chunks in the axis-aligned bounding box of the region.
+     * Find the chunks that contain at least one block to restore.
      *
-     * @param region The {@link Region} to iterate
+     * <p>Positions are not stored; they are visited again, chunk by chunk,
+     * when restoring.</p>
      */
-    private void findNeededCuboidChunks(Region region) {
-        Vector min = region.getMinimumPoint();
-        Vector max = region.getMaximumPoint();
-
-        // First, we need to group points by chunk so that we only need
-        // to keep one chunk in memory at any given moment
-        for (int x = min.getBlockX(); x <= max.getBlockX(); ++x) {
-            for (int y = min.getBlockY(); y <= max.getBlockY(); ++y) {
-                for (int z = min.getBlockZ(); z <= max.getBlockZ(); ++z) {
-                    Vector pos = new Vector(x, y, z);
-                    checkAndAddBlock(pos);
+    private void findNeededChunks() {
+        boolean allBlocks = cuboid && editSession.getMask() == null;
+
+        for (int chunkX = min.getBlockX() >> ChunkStore.CHUNK_SHIFTS; chunkX <= max.getBlockX() >> ChunkStore.CHUNK_SHIFTS; ++chunkX) {
+            for (int chunkZ = min.getBlockZ() >> ChunkStore.CHUNK_SHIFTS; chunkZ <= max.getBlockZ() >> ChunkStore.CHUNK_SHIFTS; ++chunkZ) {
+                BlockVector2D chunkPos = new BlockVector2D(chunkX, chunkZ);
+                if (allBlocks || hasBlockToRestore(chunkPos)) {
+                    neededChunks.add(chunkPos);
                 }
             }
         }
     }
 
-    /**
-     * Find needed chunks in the region.
-     *
-     * @param region The {@link Region} to iterate
-     */
-    private void findNeededChunks(Region region) {
-        // First, we need to group points by chunk so that we only need
-        // to keep one chunk in memory at any given moment
-        for (Vector pos : region) {
-            checkAndAddBlock(pos);
-        }
-    }
-
-    private void checkAndAddBlock(Vector pos) {
-        if (editSession.getMask() != null && !editSession.getMask().test(pos))
-            return;
-
-        BlockVector2D chunkPos = ChunkStore.toChunk(pos);
+    private boolean hasBlockToRestore(BlockVector2D chunkPos) {
+        int minX = Math.max(min.getBlockX(), chunkPos.getBlockX() << ChunkStore.CHUNK_SHIFTS);
+        int maxX = Math.min(max.getBlockX(), (chunkPos.getBlockX() << ChunkStore.CHUNK_SHIFTS) + 15);
+        int minZ = Math.max(min.getBlockZ(), chunkPos.getBlockZ() << ChunkStore.CHUNK_SHIFTS);
+        int maxZ = Math.min(max.getBlockZ(), (chunkPos.getBlockZ() << ChunkStore.CHUNK_SHIFTS) + 15);
 
-        // Unidentified chunk
-        if (!neededChunks.containsKey(chunkPos)) {
-            neededChunks.put(chunkPos, new ArrayList<Vector>());
+        for (int y = min.getBlockY(); y <= max.getBlockY(); ++y) {
+            for (int z = minZ; z <= maxZ; ++z) {
+                int[] spans = Regions.getSpans(region, y, z);
+                for (int i = 0; i < spans.length; i += 2) {
+                    int spanMaxX = Math.min(maxX, spans[i + 1]);
+                    for (int x = Math.max(minX, spans[i]); x <= spanMaxX; ++x) {
+                        if (shouldRestore(new Vector(x, y, z))) {
+                            return true;
+                        }
+                    }
+                }
+            }
         }
 
-        neededChunks.get(chunkPos).add(pos);
+        return false;
+    }
+
+    private boolean shouldRestore(Vector pos) {
+        return editSession.getMask() == null || editSession.getMask().test(pos);
     }
 
     /**
@@ -135,40 +163,127 @@ public void restore() throws MaxChangedBlocksException {
 
         missingChunks = new ArrayList<Vector2D>();
         errorChunks = new ArrayList<Vector2D>();
+        regionTimes = new LinkedHashMap<Vector2D, Long>();
 
-        // Now let's start restoring!
-        for (Map.Entry<BlockVector2D, ArrayList<Vector>> entry : neededChunks.entrySet()) {
-            BlockVector2D chunkPos = entry.getKey();
-            Chunk chunk;
-
-            try {
-                chunk = chunkStore.getChunk(chunkPos, editSession.getWorld());
-                // Good, the chunk could be at least loaded
-
-                // Now just copy blocks!
-                for (Vector pos : entry.getValue()) {
-                    try {
-                        BaseBlock block = chunk.getBlock(pos);
-                        editSession.setBlock(pos, block);
-                    } catch (DataException e) {
-                        // this is a workaround: just ignore for now
+        List<BlockVector2D> chunks = new ArrayList<BlockVector2D>(neededChunks);
+        Collections.sort(chunks, new Comparator<BlockVector2D>() {
+            @Override
+            public int compare(BlockVector2D a, BlockVector2D b) {
+                int regionX = a.getBlockX() >> REGION_SHIFTS;
+                int otherRegionX = b.getBlockX() >> REGION_SHIFTS;
+                if (regionX != otherRegionX) {
+                    return regionX < otherRegionX ? -1 : 1;
+                }
+                int regionZ = a.getBlockZ() >> REGION_SHIFTS;
+                int otherRegionZ = b.getBlockZ() >> REGION_SHIFTS;
+                return regionZ < otherRegionZ ? -1 : (regionZ == otherRegionZ ? 0 : 1);
+            }
+        });
+
+        boolean concurrent = chunkStore.isConcurrent();
+        int prefetch = concurrent ? PARALLELISM * 2 : 0;
+        LinkedList<Future<Chunk>> pending = new LinkedList<Future<Chunk>>();
+        int submitted = 0;
+        Vector2D region = null;
+        long regionStart = 0;
+
+        try {
+            // Now let's start restoring!
+            for (int i = 0; i < chunks.size(); i++) {
+                BlockVector2D chunkPos = chunks.get(i);
+                Vector2D chunkRegion = new BlockVector2D(chunkPos.getBlockX() >> REGION_SHIFTS, chunkPos.getBlockZ() >> REGION_SHIFTS);
+                if (!chunkRegion.equals(region)) {
+                    if (region != null) {
+                        reportRegion(region, regionStart);
                     }
+                    region = chunkRegion;
+                    regionStart = System.nanoTime();
+                }
+
+                while (concurrent && submitted < chunks.size() && submitted <= i + prefetch) {
+                    pending.add(executorService.submit(new ChunkLoader(chunks.get(submitted++))));
                 }
-            } catch (MissingChunkException me) {
-                missingChunks.add(chunkPos);
-            } catch (MissingWorldException me) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = me.getMessage();
-            } catch (DataException de) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = de.getMessage();
-            } catch (IOException ioe) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = ioe.getMessage();
+
+                Chunk chunk;
+
+                try {
+                    chunk = concurrent ? getChunk(pending.removeFirst()) : chunkStore.getChunk(chunkPos, editSession.getWorld());
+                    // Good, the chunk could be at least loaded
+
+                    // Now just copy blocks!
+                    restoreChunk(chunkPos, chunk);
+                } catch (MissingChunkException me) {
+                    missingChunks.add(chunkPos);
+                } catch (MissingWorldException me) {
+                    errorChunks.add(chunkPos);
+                    lastErrorMessage = me.getMessage();
+                } catch (DataException de) {
+                    errorChunks.add(chunkPos);
+                    lastErrorMessage = de.getMessage();
+                } catch (IOException ioe) {
+                    errorChunks.add(chunkPos);
+                    lastErrorMessage = ioe.getMessage();
+                }
+            }
+        } finally {
+            if (region != null) {
+                reportRegion(region, regionStart);
+            }
+            for (Future<Chunk> future : pending) {
+                future.cancel(false);
             }
         }
     }
 
+    private void reportRegion(Vector2D region, long start) {
+        long time = (System.nanoTime() - start) / 1000000;
+        regionTimes.put(region, time);
+        log.log(Level.FINE, "Restored region " + region.getBlockX() + "," + region.getBlockZ() + " from the snapshot in " + time + " ms");
+    }
+
+    private void restoreChunk(BlockVector2D chunkPos, Chunk chunk) throws MaxChangedBlocksException {
+        int minX = Math.max(min.getBlockX(), chunkPos.getBlockX() << ChunkStore.CHUNK_SHIFTS);
+        int maxX = Math.min(max.getBlockX(), (chunkPos.getBlockX() << ChunkStore.CHUNK_SHIFTS) + 15);
+        int minZ = Math.max(min.getBlockZ(), chunkPos.getBlockZ() << ChunkStore.CHUNK_SHIFTS);
+        int maxZ = Math.min(max.getBlockZ(), (chunkPos.getBlockZ() << ChunkStore.CHUNK_SHIFTS) + 15);
+
+        for (int y = min.getBlockY(); y <= max.getBlockY(); ++y) {
+            for (int z = minZ; z <= maxZ; ++z) {
+                int[] spans = Regions.getSpans(region, y, z);
+                for (int i = 0; i < spans.length; i += 2) {
+                    int spanMaxX = Math.min(maxX, spans[i + 1]);
+                    for (int x = Math.max(minX, spans[i]); x <= spanMaxX; ++x) {
+                        Vector pos = new Vector(x, y, z);
+                        if (!shouldRestore(pos)) {
+                            continue;
+                        }
+
+                        try {
+                            BaseBlock block = chunk.getBlock(pos);
+                            editSession.setBlock(pos, block);
+                        } catch (DataException e) {
+                            // this is a workaround: just ignore for now
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static Chunk getChunk(Future<Chunk> future) throws DataException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading a chunk", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            Throwables.propagateIfInstanceOf(cause, DataException.class);
+            Throwables.propagateIfInstanceOf(cause, IOException.class);
+            throw Throwables.propagate(cause);
+        }
+    }
+
     /**
      * Get a list of the missing chunks. restore() must have been called
      * already.
@@ -189,6 +304,17 @@ public List<Vector2D> getErrorChunks() {
         return errorChunks;
     }
 
+    /**
+     * Get the time that was spent restoring each region file, in the
+     * order that they were restored. restore() must have been called
+     * already.
+     *
+     * @return a map of region coordinates to milliseconds
+     */
+    public Map<Vector2D, Long> getRegionTimes() {
+        return regionTimes;
+    }
+
     /**
      * Checks to see where the backup succeeded in any capacity. False will
      * be returned if no chunk could be successfully loaded.
@@ -208,4 +334,20 @@ public String getLastErrorMessage() {
         return lastErrorMessage;
     }
 
+    /**
+     * Reads a chunk from the chunk store.
+     */
+    private class ChunkLoader implements Callable<Chunk> {
+        private final BlockVector2D position;
+
+        private ChunkLoader(BlockVector2D position) {
+            this.position = position;
+        }
+
+        @Override
+        public Chunk call() throws Exception {
+            return chunkStore.getChunk(position, editSession.getWorld());
+        }
+    }
+
 }
@@ -0,0 +1,105 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The entries of an archive by name, so that the archive only has to be
+ * listed once.
+ *
+ * <p>Names are stored with forward slashes, so an entry stored with
+ * backslashes is found with either kind of slash.</p>
+ *
+ * @param <E> the type of entry
+ */
+class ArchiveIndex<E> {
+
+    private static final Pattern REGION_FILE = Pattern.compile(".*\\.mc[ra]$");
+
+    private final Map<String, E> entries = new LinkedHashMap<String, E>();
+
+    /**
+     * Add an entry.
+     *
+     * @param name the name of the entry
+     * @param entry the entry
+     */
+    void put(String name, E entry) {
+        checkNotNull(name);
+        checkNotNull(entry);
+        name = normalize(name);
+        if (!entries.containsKey(name)) {
+            entries.put(name, entry);
+        }
+    }
+
+    /**
+     * Get an entry.
+     *
+     * @param name the name of the entry, with either kind of slash
+     * @return the entry, or null if there is none
+     */
+    @Nullable
+    E get(String name) {
+        return entries.get(normalize(name));
+    }
+
+    /**
+     * Find the folder that holds the region files of the given world.
+     *
+     * @param worldName the name of the world
+     * @return the folder, or null if there is no region file for the world
+     */
+    @Nullable
+    String findRegionFolder(String worldName) {
+        String prefix = worldName + "/";
+        for (String name : entries.keySet()) {
+            if (name.startsWith(prefix) && REGION_FILE.matcher(name).matches()) {
+                return name.substring(0, name.lastIndexOf('/'));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return whether the archive holds any region files.
+     *
+     * @return true if there is a region file
+     */
+    boolean hasRegionFiles() {
+        for (String name : entries.keySet()) {
+            if (REGION_FILE.matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(String name) {
+        return name.replace('\\', '/');
+    }
+
+}
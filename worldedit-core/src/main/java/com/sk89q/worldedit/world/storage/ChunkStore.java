@@ -86,6 +86,15 @@ public Chunk getChunk(Vector2D position, World world) throws DataException, IOEx
         return new OldChunk(world, tag);
     }
 
+    /**
+     * Returns whether chunks can be read from several threads at once.
+     *
+     * @return true if chunks can be read concurrently
+     */
+    public boolean isConcurrent() {
+        return false;
+    }
+
     /**
      * Close resources.
      *
@@ -0,0 +1,320 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import com.google.common.collect.ImmutableSet;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTConstants;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.World;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads chunks from the MCRegion files of a world folder by mapping the
+ * files into memory.
+ *
+ * <p>Chunks can be read in any order and from several threads at once.
+ * Only the tags needed to read the blocks and tile entities of a chunk
+ * are kept: light, height maps, biomes and entities are skipped without
+ * being decoded, so the returned tag is not a complete copy of the
+ * chunk.</p>
+ *
+ * <p>Java has no way to unmap a file, so {@link #close()} only lets go of
+ * the mappings. The files stay mapped until the buffers are garbage
+ * collected, and on Windows they can't be deleted or renamed until
+ * then.</p>
+ */
+public class MappedMcRegionChunkStore extends ChunkStore {
+
+    private static final Set<String> LEVEL_TAGS = ImmutableSet.of("xPos", "zPos", "Blocks", "Data", "TileEntities");
+    private static final Set<String> SECTION_TAGS = ImmutableSet.of("Y", "Blocks", "Data", "Add");
+
+    private final File path;
+    private final ConcurrentMap<String, ByteBuffer> regions = new ConcurrentHashMap<String, ByteBuffer>();
+    private Map<String, File> regionFiles;
+
+    /**
+     * Create an instance. The passed path is the folder to read the
+     * chunk files from.
+     *
+     * @param path a path
+     */
+    public MappedMcRegionChunkStore(File path) {
+        checkNotNull(path);
+        this.path = path;
+    }
+
+    @Override
+    public CompoundTag getChunkTag(Vector2D position, World world) throws DataException, IOException {
+        ByteBuffer region = getRegion(McRegionChunkStore.getFilename(position));
+        int x = position.getBlockX() & 31;
+        int z = position.getBlockZ() & 31;
+
+        int offset = region.getInt((x + z * 32) * 4);
+        if (offset == 0) {
+            throw new MissingChunkException(position);
+        }
+
+        // A corrupt header must not give a start that overflows
+        long sectorStart = (long) (offset >>> 8) * McRegionReader.SECTOR_BYTES;
+        int numSectors = offset & 0xFF;
+        if (sectorStart < 0 || sectorStart + McRegionReader.CHUNK_HEADER_SIZE > region.limit()) {
+            throw new ChunkStoreException("MCRegion chunk at " + x + "," + z + " is outside of the file");
+        }
+        int start = (int) sectorStart;
+
+        int length = region.getInt(start);
+        if (length > McRegionReader.SECTOR_BYTES * numSectors || length < 1 || (long) start + 4 + length > region.limit()) {
+            throw new ChunkStoreException("MCRegion chunk at " + x + "," + z + " has an invalid length of " + length);
+        }
+
+        ByteBuffer data = region.duplicate();
+        data.limit(start + 4 + length);
+        data.position(start + McRegionReader.CHUNK_HEADER_SIZE);
+
+        InputStream stream;
+        byte version = region.get(start + 4);
+        if (version == McRegionReader.VERSION_GZIP) {
+            stream = new GZIPInputStream(new ByteBufferInputStream(data));
+        } else if (version == McRegionReader.VERSION_DEFLATE) {
+            stream = new InflaterInputStream(new ByteBufferInputStream(data));
+        } else {
+            throw new ChunkStoreException("MCRegion chunk at " + x + "," + z + " has an unsupported version of " + version);
+        }
+
+        NBTInputStream nbt = new NBTInputStream(new BufferedInputStream(stream));
+        try {
+            return readChunk(nbt);
+        } finally {
+            nbt.close();
+        }
+    }
+
+    /**
+     * Read the 'Level' tag of a chunk, keeping only the tags that are
+     * needed to read blocks.
+     */
+    private static CompoundTag readChunk(NBTInputStream nbt) throws IOException, DataException {
+        int type = nbt.readTagType();
+        if (type != NBTConstants.TYPE_COMPOUND) {
+            throw new ChunkStoreException("CompoundTag expected for chunk; got tag type " + type);
+        }
+        nbt.readTagName();
+
+        CompoundTag rootTag = null;
+        while ((type = nbt.readTagType()) != NBTConstants.TYPE_END) {
+            String name = nbt.readTagName();
+            if (name.equals("Level")) {
+                if (type != NBTConstants.TYPE_COMPOUND) {
+                    throw new ChunkStoreException("CompoundTag expected for 'Level'; got tag type " + type);
+                }
+                rootTag = readLevel(nbt);
+            } else {
+                nbt.skipTagPayload(type);
+            }
+        }
+
+        if (rootTag == null) {
+            throw new ChunkStoreException("Missing root 'Level' tag");
+        }
+
+        return rootTag;
+    }
+
+    private static CompoundTag readLevel(NBTInputStream nbt) throws IOException {
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        int type;
+        while ((type = nbt.readTagType()) != NBTConstants.TYPE_END) {
+            String name = nbt.readTagName();
+            if (name.equals("Sections") && type == NBTConstants.TYPE_LIST) {
+                values.put(name, readSections(nbt));
+            } else if (LEVEL_TAGS.contains(name)) {
+                values.put(name, nbt.readTagPayload(type));
+            } else {
+                nbt.skipTagPayload(type);
+            }
+        }
+        return new CompoundTag(values);
+    }
+
+    private static ListTag readSections(NBTInputStream nbt) throws IOException {
+        int childType = nbt.readByte();
+        int length = nbt.readInt();
+        List<Tag> sections = new ArrayList<Tag>();
+
+        for (int i = 0; i < length; i++) {
+            if (childType != NBTConstants.TYPE_COMPOUND) {
+                nbt.skipTagPayload(childType);
+                continue;
+            }
+
+            Map<String, Tag> values = new HashMap<String, Tag>();
+            int type;
+            while ((type = nbt.readTagType()) != NBTConstants.TYPE_END) {
+                String name = nbt.readTagName();
+                if (SECTION_TAGS.contains(name)) {
+                    values.put(name, nbt.readTagPayload(type));
+                } else {
+                    nbt.skipTagPayload(type);
+                }
+            }
+            sections.add(new CompoundTag(values));
+        }
+
+        return new ListTag(CompoundTag.class, sections);
+    }
+
+    /**
+     * Get the mapped contents of a region file, mapping it if it has not
+     * been mapped yet.
+     *
+     * @param name the name of the region file
+     * @return a read-only buffer
+     * @throws IOException thrown on I/O error
+     * @throws DataException thrown if the region file does not exist
+     */
+    private ByteBuffer getRegion(String name) throws IOException, DataException {
+        ByteBuffer region = regions.get(name);
+        if (region != null) {
+            return region;
+        }
+
+        File file = getRegionFiles().get(name.toLowerCase());
+        if (file == null) {
+            throw new MissingChunkException();
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < McRegionReader.SECTOR_BYTES) {
+                throw new ChunkStoreException("MCRegion file " + file.getName() + " is missing its header");
+            }
+            region = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+
+        ByteBuffer existing = regions.putIfAbsent(name, region);
+        return existing != null ? existing : region;
+    }
+
+    /**
+     * Get the region files of the world, keyed by their lowercase name with
+     * the .mca extension.
+     *
+     * @return a map of files
+     */
+    private synchronized Map<String, File> getRegionFiles() {
+        if (regionFiles == null) {
+            Map<String, File> files = new HashMap<String, File>();
+            File[] list = new File(path, "region").listFiles();
+            if (list != null) {
+                for (File file : list) {
+                    String name = file.getName().toLowerCase();
+                    if (name.endsWith(".mca") || name.endsWith(".mcr")) {
+                        // allow either file extension, both work the same
+                        String key = name.replaceFirst("mcr$", "mca");
+                        if (!files.containsKey(key) || name.endsWith(".mca")) {
+                            files.put(key, file);
+                        }
+                    }
+                }
+            }
+            regionFiles = files;
+        }
+        return regionFiles;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Mapped buffers are released when they are garbage collected, so
+        // the files may stay locked on Windows until then
+        regions.clear();
+    }
+
+    @Override
+    public boolean isValid() {
+        return new File(path, "region").isDirectory() ||
+                new File(path, "DIM-1" + File.separator + "region").isDirectory();
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.remaining();
+        }
+    }
+
+}
@@ -26,15 +26,52 @@
 import com.sk89q.worldedit.world.DataException;
 import com.sk89q.worldedit.world.World;
 
+import com.google.common.io.ByteStreams;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Reads chunks from MCRegion files.
+ *
+ * <p>Region files are read whole and kept in memory, up to a total size,
+ * so that chunks of recently used regions can be read in any order
+ * without reading or inflating the region file again. The most recently
+ * used region is always kept. Region files are read without holding the
+ * lock of the store, so that chunks of regions that are already in memory
+ * can be read meanwhile.</p>
+ */
 public abstract class McRegionChunkStore extends ChunkStore {
 
+    /**
+     * The default total size of the region files that are kept in memory.
+     */
+    public static final long DEFAULT_CACHE_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * @deprecated regions are kept in a cache, and this is only the name of
+     *             the most recently used one
+     */
+    @Deprecated
     protected String curFilename = null;
+
+    /**
+     * @deprecated regions are kept in a cache, and this is only the reader
+     *             of the most recently used one
+     */
+    @Deprecated
     protected McRegionReader cachedReader = null;
 
+    private final Map<String, McRegionReader> cachedReaders = new LinkedHashMap<String, McRegionReader>(16, 0.75f, true);
+    private long cacheSize = DEFAULT_CACHE_SIZE;
+    private long cachedBytes;
+    private int regionsRead;
+
     /**
      * Get the filename of a region file.
      * 
@@ -48,22 +85,79 @@ public static String getFilename(Vector2D position) {
         return "r." + (x >> 5) + "." + (z >> 5) + ".mca";
     }
 
+    /**
+     * Set the total size of the region files that are kept in memory.
+     *
+     * @param cacheSize the size in bytes
+     */
+    public synchronized void setCacheSize(long cacheSize) {
+        checkArgument(cacheSize >= 0, "cacheSize >= 0 required");
+        this.cacheSize = cacheSize;
+        evict();
+    }
+
+    /**
+     * Get the number of times that a region file has been read.
+     *
+     * @return the number of region files read
+     */
+    public synchronized int getRegionsRead() {
+        return regionsRead;
+    }
+
     protected McRegionReader getReader(Vector2D pos, String worldname) throws DataException, IOException {
         String filename = getFilename(pos);
-        if (curFilename != null) {
-            if (curFilename.equals(filename)) {
-                return cachedReader;
-            } else {
-                try {
-                    cachedReader.close();
-                } catch (IOException ignored) {
-                }
+        synchronized (this) {
+            McRegionReader reader = cachedReaders.get(filename);
+            if (reader != null) {
+                return use(filename, reader);
             }
         }
+
         InputStream stream = getInputStream(filename, worldname);
-        cachedReader = new McRegionReader(stream);
-        //curFilename = filename;
-        return cachedReader;
+        McRegionReader reader;
+        try {
+            reader = new McRegionReader(ByteStreams.toByteArray(stream));
+        } finally {
+            stream.close();
+        }
+
+        synchronized (this) {
+            ++regionsRead;
+
+            // Another thread may have read the same region meanwhile
+            McRegionReader cached = cachedReaders.get(filename);
+            if (cached != null) {
+                return use(filename, cached);
+            }
+
+            cachedReaders.put(filename, reader);
+            cachedBytes += reader.getSize();
+            evict();
+            return use(filename, reader);
+        }
+    }
+
+    /**
+     * Remember the most recently used region.
+     */
+    @SuppressWarnings("deprecation")
+    private McRegionReader use(String filename, McRegionReader reader) {
+        curFilename = filename;
+        cachedReader = reader;
+        return reader;
+    }
+
+    /**
+     * Forget the least recently used regions until the cache is small
+     * enough, but keep the most recently used one.
+     */
+    private void evict() {
+        Iterator<McRegionReader> it = cachedReaders.values().iterator();
+        while (cachedBytes > cacheSize && cachedReaders.size() > 1) {
+            cachedBytes -= it.next().getSize();
+            it.remove();
+        }
     }
 
     @Override
@@ -116,10 +210,10 @@ public CompoundTag getChunkTag(Vector2D position, World world) throws DataExcept
     protected abstract InputStream getInputStream(String name, String worldName) throws IOException, DataException;
 
     @Override
-    public void close() throws IOException {
-        if (cachedReader != null) {
-            cachedReader.close();
-        }
+    public synchronized void close() throws IOException {
+        cachedReaders.clear();
+        cachedBytes = 0;
+        use(null, null);
     }
 
 }
@@ -69,6 +69,10 @@ counts. The chunk offset for a chunk (x, z) begins at byte 4*(x+z*32) in the
 /**
  * Reader for a MCRegion file. This reader works on input streams, meaning
  * that it can be used to read files from non-file based sources.
+ *
+ * <p>A reader created from a stream can only read chunks in the order that
+ * they are stored in. A reader created from the bytes of a whole region
+ * file can read chunks in any order.</p>
  */
 public class McRegionReader {
 
@@ -82,6 +86,7 @@ public class McRegionReader {
     protected DataInputStream dataStream;
 
     protected int[] offsets;
+    private final byte[] region;
 
     /**
      * Construct the reader.
@@ -93,10 +98,35 @@ public class McRegionReader {
     public McRegionReader(InputStream stream) throws DataException, IOException {
         this.stream = new ForwardSeekableInputStream(stream);
         this.dataStream = new DataInputStream(this.stream);
+        this.region = null;
+
+        readHeader();
+    }
+
+    /**
+     * Construct a reader for the contents of a whole region file.
+     *
+     * @param region the bytes of the region file
+     * @throws DataException
+     * @throws IOException
+     */
+    public McRegionReader(byte[] region) throws DataException, IOException {
+        this.stream = new ForwardSeekableInputStream(new ByteArrayInputStream(region));
+        this.dataStream = new DataInputStream(this.stream);
+        this.region = region;
 
         readHeader();
     }
 
+    /**
+     * Get the number of bytes of the region file that are held in memory.
+     *
+     * @return the number of bytes, or 0 if the reader reads from a stream
+     */
+    public int getSize() {
+        return region != null ? region.length : 0;
+    }
+
     /**
      * Read the header.
      * 
@@ -138,6 +168,11 @@ public synchronized InputStream getChunkInputStream(Vector2D position) throws IO
         int sectorNumber = offset >> 8;
         int numSectors = offset & 0xFF;
 
+        if (region != null) {
+            stream = new ForwardSeekableInputStream(new ByteArrayInputStream(region));
+            dataStream = new DataInputStream(stream);
+        }
+
         stream.seek(sectorNumber * SECTOR_BYTES);
         int length = dataStream.readInt();
 
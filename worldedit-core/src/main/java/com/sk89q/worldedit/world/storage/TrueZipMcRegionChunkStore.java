@@ -29,7 +29,6 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Enumeration;
-import java.util.regex.Pattern;
 import java.util.zip.ZipException;
 
 /**
@@ -41,6 +40,7 @@ public class TrueZipMcRegionChunkStore extends McRegionChunkStore {
     protected File zipFile;
     protected ZipFile zip;
     protected String folder;
+    private ArchiveIndex<ZipEntry> index;
 
     /**
      * Create an instance. The folder argument lets you choose a folder or
@@ -91,29 +91,16 @@ protected InputStream getInputStream(String name, String worldName) throws IOExc
                 name = folder + "/" + name;
             }
         } else {
-            Pattern pattern = Pattern.compile(".*\\.mc[ra]$");
-            // World pattern
-            Pattern worldPattern = Pattern.compile(worldName + "\\$");
-            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
-                ZipEntry testEntry = e.nextElement();
-                // Check for world
-                if (worldPattern.matcher(worldName).matches()) {
-                    // Check for file
-                    if (pattern.matcher(testEntry.getName()).matches()) {
-                        folder = testEntry.getName().substring(0, testEntry.getName().lastIndexOf("/"));
-                        name = folder + "/" + name;
-                        break;
-                    }
-                }
-            }
+            folder = getIndex().findRegionFolder(worldName);
 
             // Check if world is found
             if (folder == null) {
                 throw new MissingWorldException("Target world is not present in ZIP.", worldName);
             }
+            name = folder + "/" + name;
         }
 
-        ZipEntry entry = getEntry(name);
+        ZipEntry entry = getIndex().get(name);
         if (entry == null) {
             throw new MissingChunkException();
         }
@@ -125,37 +112,33 @@ protected InputStream getInputStream(String name, String worldName) throws IOExc
     }
 
     /**
-     * Get an entry from the ZIP, trying both types of slashes.
-     * 
-     * @param file the file
-     * @return an entry
+     * Get the index of the entries in the ZIP, which is built the first
+     * time that it is needed.
+     *
+     * @return the index
      */
-    private ZipEntry getEntry(String file) {
-        ZipEntry entry = zip.getEntry(file);
-        if (entry != null) {
-            return entry;
+    @SuppressWarnings("unchecked")
+    private synchronized ArchiveIndex<ZipEntry> getIndex() {
+        if (index == null) {
+            ArchiveIndex<ZipEntry> index = new ArchiveIndex<ZipEntry>();
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+                ZipEntry entry = e.nextElement();
+                index.put(entry.getName(), entry);
+            }
+            this.index = index;
         }
-        return zip.getEntry(file.replace("/", "\\"));
+        return index;
     }
 
     @Override
     public void close() throws IOException {
+        super.close();
         zip.close();
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public boolean isValid() {
-        for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
-
-            ZipEntry testEntry = e.nextElement();
-
-            if (testEntry.getName().matches(".*\\.mcr$") || testEntry.getName().matches(".*\\.mca$")) { // TODO: does this need a separate class?
-                return true;
-            }
-        }
-
-        return false;
+        return getIndex().hasRegionFiles();
     }
 
 }
@@ -26,7 +26,6 @@
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -40,6 +39,7 @@ public class ZippedMcRegionChunkStore extends McRegionChunkStore {
     protected File zipFile;
     protected ZipFile zip;
     protected String folder;
+    private ArchiveIndex<ZipEntry> index;
 
     /**
      * Create an instance. The folder argument lets you choose a folder or
@@ -80,27 +80,16 @@ protected InputStream getInputStream(String name, String worldName) throws IOExc
                 name = folder + "/" + name;
             }
         } else {
-            Pattern pattern = Pattern.compile(".*\\.mc[ra]$");
-            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
-                ZipEntry testEntry = e.nextElement();
-                // Check for world
-                if (testEntry.getName().startsWith(worldName + "/")) {
-                    if (pattern.matcher(testEntry.getName()).matches()) { // does entry end in .mca
-                        folder = testEntry.getName().substring(0, testEntry.getName().lastIndexOf("/"));
-                        name = folder + "/" + name;
-                        break;
-                    }
-
-                }
-            }
+            folder = getIndex().findRegionFolder(worldName);
 
             // Check if world is found
             if (folder == null) {
                 throw new MissingWorldException("Target world is not present in ZIP.", worldName);
             }
+            name = folder + "/" + name;
         }
 
-        ZipEntry entry = getEntry(name);
+        ZipEntry entry = getIndex().get(name);
         if (entry == null) {
             throw new MissingChunkException();
         }
@@ -112,35 +101,31 @@ protected InputStream getInputStream(String name, String worldName) throws IOExc
     }
 
     /**
-     * Get an entry from the ZIP, trying both types of slashes.
-     * 
-     * @param file the file
-     * @return a ZIP entry
+     * Get the index of the entries in the ZIP, which is built the first
+     * time that it is needed.
+     *
+     * @return the index
      */
-    private ZipEntry getEntry(String file) {
-        ZipEntry entry = zip.getEntry(file);
-        if (entry != null) {
-            return entry;
+    private synchronized ArchiveIndex<ZipEntry> getIndex() {
+        if (index == null) {
+            ArchiveIndex<ZipEntry> index = new ArchiveIndex<ZipEntry>();
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+                ZipEntry entry = e.nextElement();
+                index.put(entry.getName(), entry);
+            }
+            this.index = index;
         }
-        return zip.getEntry(file.replace("/", "\\"));
+        return index;
     }
 
     @Override
     public void close() throws IOException {
+        super.close();
         zip.close();
     }
 
     @Override
     public boolean isValid() {
-        for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
-
-            ZipEntry testEntry = e.nextElement();
-
-            if (testEntry.getName().matches(".*\\.mcr$") || testEntry.getName().matches(".*\\.mca$")) { // TODO: does this need a separate class?
-                return true;
-            }
-        }
-
-        return false;
+        return getIndex().hasRegionFiles();
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit;
+
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.patterns.SingleBlockPattern;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.MapWorld;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HollowOutRegionTest {
+
+    private static final BlockVector[] DIRECTIONS = {
+            new BlockVector(1, 0, 0), new BlockVector(-1, 0, 0),
+            new BlockVector(0, 1, 0), new BlockVector(0, -1, 0),
+            new BlockVector(0, 0, 1), new BlockVector(0, 0, -1)
+    };
+
+    @Test
+    public void testCuboid() throws Exception {
+        Region region = new CuboidRegion(new Vector(-6, 2, -3), new Vector(13, 17, 20));
+        for (int thickness = 0; thickness <= 3; thickness++) {
+            assertMatchesFlood(region, thickness);
+        }
+    }
+
+    @Test
+    public void testCylinder() throws Exception {
+        Region region = new CylinderRegion(null, new Vector(3.5, 0, 8.5), new Vector2D(12, 14), 1, 16);
+        for (int thickness = 0; thickness <= 3; thickness++) {
+            assertMatchesFlood(region, thickness);
+        }
+    }
+
+    private static void assertMatchesFlood(Region region, int thickness) throws Exception {
+        MapWorld world = createBuilding();
+        Set<BlockVector> expected = hollowByFlood(world, region, thickness);
+
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+        int affected = editSession.hollowOutRegion(region, thickness, new SingleBlockPattern(new BaseBlock(BlockID.GLASS)));
+        editSession.flushQueue();
+
+        assertTrue(!expected.isEmpty());
+        assertEquals(expected, world.getChanged());
+        assertEquals(expected.size(), affected);
+    }
+
+    /**
+     * Find the blocks to set the way that they were found before the
+     * outside was kept in a grid.
+     */
+    private static Set<BlockVector> hollowByFlood(MapWorld world, Region region, int thickness) {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        Set<BlockVector> outside = new HashSet<BlockVector>();
+        LinkedList<BlockVector> queue = new LinkedList<BlockVector>();
+        for (int x = min.getBlockX(); x <= max.getBlockX(); x++) {
+            for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
+                for (int z = min.getBlockZ(); z <= max.getBlockZ(); z++) {
+                    if (x == min.getBlockX() || x == max.getBlockX() || y == min.getBlockY() || y == max.getBlockY()
+                            || z == min.getBlockZ() || z == max.getBlockZ()) {
+                        queue.add(new BlockVector(x, y, z));
+                    }
+                }
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            BlockVector current = queue.removeFirst();
+            if (!BlockType.canPassThrough(world.getBlock(current)) || !outside.add(current) || !region.contains(current)) {
+                continue;
+            }
+            for (BlockVector direction : DIRECTIONS) {
+                queue.add(current.add(direction).toBlockVector());
+            }
+        }
+
+        for (int i = 1; i < thickness; i++) {
+            Set<BlockVector> layer = new HashSet<BlockVector>();
+            for (BlockVector position : region) {
+                if (isNextTo(position, outside)) {
+                    layer.add(position);
+                }
+            }
+            outside.addAll(layer);
+        }
+
+        Set<BlockVector> filled = new HashSet<BlockVector>();
+        for (BlockVector position : region) {
+            if (!isNextTo(position, outside)) {
+                filled.add(position);
+            }
+        }
+        return filled;
+    }
+
+    private static boolean isNextTo(BlockVector position, Set<BlockVector> blocks) {
+        for (BlockVector direction : DIRECTIONS) {
+            if (blocks.contains(position.add(direction).toBlockVector())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Create a box with two rooms and air around it. One of the rooms has a
+     * hole in its outer wall, so that the outside leaks into it.
+     */
+    private static MapWorld createBuilding() {
+        Random random = new Random(11);
+        MapWorld world = new MapWorld();
+        for (int x = -4; x <= 11; x++) {
+            for (int y = 3; y <= 15; y++) {
+                for (int z = -1; z <= 18; z++) {
+                    boolean wall = x == -4 || x == 11 || y == 3 || y == 15 || z == -1 || z == 18 || x == 4;
+                    boolean hole = x == -4 && y == 5 && z == 5;
+                    if (wall ? !hole : random.nextInt(6) == 0) {
+                        world.getBlocks().put(new BlockVector(x, y, z), new BaseBlock(random.nextBoolean() ? BlockID.STONE : BlockID.GLASS));
+                    } else if (random.nextInt(20) == 0) {
+                        world.getBlocks().put(new BlockVector(x, y, z), new BaseBlock(BlockID.TORCH));
+                    }
+                }
+            }
+        }
+        return world;
+    }
+
+}
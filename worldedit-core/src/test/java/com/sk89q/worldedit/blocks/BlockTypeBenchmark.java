@@ -0,0 +1,94 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.blocks;
+
+import com.sk89q.worldedit.util.Benchmark;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares looking up block properties in {@link BlockType} with looking
+ * them up in a set of boxed IDs, which is how they used to be stored.
+ * See {@link Benchmark} for how to run it.
+ */
+public final class BlockTypeBenchmark {
+
+    private static final int BLOCKS = 1 << 20;
+    private static final int ROUNDS = 50;
+
+    private BlockTypeBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Set<Integer> canPassThrough = new HashSet<Integer>();
+        for (int id = 0; id < 256; id++) {
+            if (BlockType.canPassThrough(id)) {
+                canPassThrough.add(id);
+            }
+            for (int data = 0; data < 16; data++) {
+                if (BlockType.canPassThrough(id, data) && !BlockType.canPassThrough(id)) {
+                    canPassThrough.add(-16 * id - data);
+                }
+            }
+        }
+
+        Random random = new Random(0);
+        final int[] ids = new int[BLOCKS];
+        final int[] data = new int[BLOCKS];
+        for (int i = 0; i < BLOCKS; i++) {
+            ids[i] = random.nextInt(200);
+            data[i] = random.nextInt(16);
+        }
+
+        new Benchmark(3)
+                .add("table", (long) BLOCKS * ROUNDS, new Benchmark.Case() {
+                    @Override
+                    public long run() {
+                        int count = 0;
+                        for (int r = 0; r < ROUNDS; r++) {
+                            for (int i = 0; i < BLOCKS; i++) {
+                                if (BlockType.canPassThrough(ids[i], data[i])) {
+                                    count++;
+                                }
+                            }
+                        }
+                        return count;
+                    }
+                })
+                .add("hash set", (long) BLOCKS * ROUNDS, new Benchmark.Case() {
+                    @Override
+                    public long run() {
+                        int count = 0;
+                        for (int r = 0; r < ROUNDS; r++) {
+                            for (int i = 0; i < BLOCKS; i++) {
+                                if (canPassThrough.contains(-16 * ids[i] - data[i]) || canPassThrough.contains(ids[i])) {
+                                    count++;
+                                }
+                            }
+                        }
+                        return count;
+                    }
+                })
+                .run();
+    }
+
+}
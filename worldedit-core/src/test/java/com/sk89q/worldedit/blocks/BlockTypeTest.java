@@ -0,0 +1,80 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.blocks;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlockTypeTest {
+
+    @Test
+    public void testProperties() {
+        assertTrue(BlockType.canPassThrough(BlockID.AIR));
+        assertFalse(BlockType.canPassThrough(BlockID.STONE));
+        assertTrue(BlockType.shouldPlaceLast(BlockID.SAPLING));
+        assertTrue(BlockType.shouldPlaceFinal(BlockID.WALL_SIGN));
+        assertFalse(BlockType.shouldPlaceFinal(BlockID.SAPLING));
+        assertTrue(BlockType.isContainerBlock(BlockID.CHEST));
+        assertTrue(BlockType.CHEST.isContainerBlock());
+        assertFalse(BlockType.isContainerBlock(BlockID.ENDER_CHEST));
+        assertTrue(BlockType.emitsLight(BlockID.SEA_LANTERN));
+        assertTrue(BlockType.isTranslucent(BlockID.GLASS));
+        assertTrue(BlockType.usesData(BlockID.LOG));
+        assertTrue(BlockType.isNaturalTerrainBlock(BlockID.STONE, 3));
+    }
+
+    @Test
+    public void testDataProperties() {
+        // Only the thinnest layers of snow can be passed through
+        assertFalse(BlockType.canPassThrough(BlockID.SNOW));
+        assertTrue(BlockType.canPassThrough(BlockID.SNOW, 0));
+        assertTrue(BlockType.canPassThrough(BlockID.SNOW, 8));
+        assertFalse(BlockType.canPassThrough(BlockID.SNOW, 1));
+        assertTrue(BlockType.canPassThrough(BlockID.AIR, 5));
+    }
+
+    @Test
+    public void testOutOfRange() {
+        assertFalse(BlockType.canPassThrough(-1));
+        assertFalse(BlockType.canPassThrough(BaseBlock.MAX_ID + 1, 0));
+        assertTrue(BlockType.canPassThrough(BlockID.AIR, 16));
+        assertEquals(1, BlockType.centralTopLimit(BaseBlock.MAX_ID, 0), 0);
+    }
+
+    @Test
+    public void testCentralTopLimit() {
+        assertEquals(1, BlockType.centralTopLimit(BlockID.STONE, 0), 0);
+        assertEquals(0, BlockType.centralTopLimit(BlockID.AIR, 0), 0);
+        assertEquals(0.5, BlockType.centralTopLimit(BlockID.STEP, 3), 0);
+        assertEquals(1, BlockType.centralTopLimit(BlockID.STEP, 8), 0);
+        assertEquals(0.25, BlockType.centralTopLimit(BlockID.SNOW, 10), 0);
+        assertEquals(0.5, BlockType.centralTopLimit(BlockID.HEAD, 1), 0);
+        assertEquals(0.75, BlockType.centralTopLimit(BlockID.HEAD, 2), 0);
+        assertEquals(0.4375, BlockType.centralTopLimit(BlockID.CAKE_BLOCK, 2), 0);
+        assertEquals(0, BlockType.centralTopLimit(BlockID.CAKE_BLOCK, 7), 0);
+        assertEquals(0.75, BlockType.HEAD.centralTopLimit(), 0);
+        assertEquals(0, BlockType.AIR.centralTopLimit(), 0);
+        assertEquals(1, BlockType.STONE.centralTopLimit(), 0);
+    }
+
+}
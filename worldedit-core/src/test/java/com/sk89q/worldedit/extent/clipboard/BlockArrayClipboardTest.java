@@ -0,0 +1,156 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BlockArrayClipboardTest {
+
+    private static final Vector MIN = new Vector(-5, 10, 20);
+    private static final Vector MAX = new Vector(14, 29, 39);
+
+    @Test
+    public void testUnsetBlocksAreAir() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+        assertThat(clipboard.getBlock(MIN), equalTo(new BaseBlock(BlockID.AIR)));
+        assertThat(clipboard.getBlock(MAX), equalTo(new BaseBlock(BlockID.AIR)));
+    }
+
+    @Test
+    public void testOutsideRegion() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+        Vector outside = MAX.add(1, 0, 0);
+        assertFalse(clipboard.setBlock(outside, new BaseBlock(BlockID.STONE)));
+        assertFalse(clipboard.setBlock(MIN.subtract(0, 1, 0), new BaseBlock(BlockID.STONE)));
+        assertThat(clipboard.getBlock(outside), equalTo(new BaseBlock(BlockID.AIR)));
+    }
+
+    @Test
+    public void testPaletteWidening() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+
+        // Write more distinct blocks than fit in 4, 8 and 16 bits
+        int distinct = 0;
+        for (int x = MIN.getBlockX(); x <= MAX.getBlockX(); x++) {
+            for (int y = MIN.getBlockY(); y <= MAX.getBlockY(); y++) {
+                for (int z = MIN.getBlockZ(); z <= MAX.getBlockZ(); z++) {
+                    BaseBlock block = new BaseBlock(distinct % (BaseBlock.MAX_ID + 1), (distinct / (BaseBlock.MAX_ID + 1)) % 16);
+                    assertTrue(clipboard.setBlock(new Vector(x, y, z), block));
+                    distinct++;
+                }
+            }
+        }
+
+        distinct = 0;
+        for (int x = MIN.getBlockX(); x <= MAX.getBlockX(); x++) {
+            for (int y = MIN.getBlockY(); y <= MAX.getBlockY(); y++) {
+                for (int z = MIN.getBlockZ(); z <= MAX.getBlockZ(); z++) {
+                    BaseBlock block = new BaseBlock(distinct % (BaseBlock.MAX_ID + 1), (distinct / (BaseBlock.MAX_ID + 1)) % 16);
+                    assertThat(clipboard.getBlock(new Vector(x, y, z)), equalTo(block));
+                    distinct++;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNbtData() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+        CompoundTag tag = new CompoundTag(new HashMap<String, Tag>());
+        Vector position = MIN.add(3, 4, 5);
+
+        clipboard.setBlock(position, new BaseBlock(BlockID.CHEST, 2, tag));
+        BaseBlock block = clipboard.getBlock(position);
+        assertThat(block, equalTo(new BaseBlock(BlockID.CHEST, 2)));
+        assertThat(block.getNbtData(), sameInstance(tag));
+        assertThat(clipboard.getBlock(position.add(1, 0, 0)).getNbtData(), nullValue());
+
+        clipboard.setBlock(position, new BaseBlock(BlockID.STONE));
+        assertThat(clipboard.getBlock(position).getNbtData(), nullValue());
+    }
+
+    @Test
+    public void testSetByIndexChecksRange() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+        clipboard.setBlock(0, BaseBlock.MAX_ID, BaseBlock.MAX_DATA, null);
+        assertThat(clipboard.getBlock(MIN), equalTo(new BaseBlock(BaseBlock.MAX_ID, BaseBlock.MAX_DATA)));
+
+        int[][] invalid = { { -1, 0 }, { BaseBlock.MAX_ID + 1, 0 }, { BlockID.STONE, -1 }, { BlockID.STONE, BaseBlock.MAX_DATA + 1 } };
+        for (int[] block : invalid) {
+            try {
+                clipboard.setBlock(0, block[0], block[1], null);
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void testReturnsCopies() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+        BaseBlock block = new BaseBlock(BlockID.CLOTH, 3);
+        clipboard.setBlock(MIN, block);
+        block.setData(4);
+        clipboard.getBlock(MIN).setData(5);
+        assertThat(clipboard.getBlock(MIN), equalTo(new BaseBlock(BlockID.CLOTH, 3)));
+        assertThat(clipboard.getBlock(MIN), not(sameInstance(clipboard.getBlock(MIN))));
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+        CompoundTag tag = new CompoundTag(new HashMap<String, Tag>());
+        clipboard.setBlock(MIN, new BaseBlock(BlockID.CLOTH, 3));
+        clipboard.setBlock(MAX, new BaseBlock(BlockID.CHEST, 2, tag));
+        clipboard.setOrigin(MIN.add(1, 1, 1));
+
+        BlockArrayClipboard copy = clipboard.copy();
+        clipboard.setBlock(MIN, new BaseBlock(BlockID.STONE));
+        clipboard.setBlock(MAX, new BaseBlock(BlockID.AIR));
+        // Enough distinct blocks to widen the original's palette
+        for (int i = 0; i < 300; i++) {
+            clipboard.setBlock(MIN.add(0, i % 20, i / 20), new BaseBlock(i));
+        }
+
+        assertThat(copy.getOrigin(), equalTo(MIN.add(1, 1, 1)));
+        assertThat(copy.getBlock(MIN), equalTo(new BaseBlock(BlockID.CLOTH, 3)));
+        assertThat(copy.getBlock(MAX), equalTo(new BaseBlock(BlockID.CHEST, 2)));
+        assertThat(copy.getBlock(MAX).getNbtData(), sameInstance(tag));
+        assertThat(copy.getBlock(MIN.add(0, 1, 0)), equalTo(new BaseBlock(BlockID.AIR)));
+    }
+
+}
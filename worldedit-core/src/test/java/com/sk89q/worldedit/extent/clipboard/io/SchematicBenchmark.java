@@ -0,0 +1,104 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard.io;
+
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.util.Benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Measures the time and peak heap usage of saving and loading a large
+ * schematic, and of parsing the same file into a tree of tags, which is
+ * how schematics used to be loaded. See {@link Benchmark} for how to run
+ * it; the argument is the size of the cube to save.
+ */
+public final class SchematicBenchmark {
+
+    private SchematicBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int size = Benchmark.getSize(args, 256);
+        final File file = File.createTempFile("benchmark", ".schematic");
+        file.deleteOnExit();
+
+        // The clipboard is only kept while it is written, so that it is not counted when reading
+        write(file, size);
+
+        new Benchmark(3)
+                .add("read", (long) size * size * size, new Benchmark.Case() {
+                    @Override
+                    public long run() throws IOException {
+                        ClipboardReader reader = ClipboardFormat.SCHEMATIC.getReader(new BufferedInputStream(new FileInputStream(file)));
+                        return reader.read(null).getRegion().getArea();
+                    }
+                })
+                .add("parse tag tree only", (long) size * size * size, new Benchmark.Case() {
+                    @Override
+                    public long run() throws IOException {
+                        NBTInputStream in = new NBTInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+                        try {
+                            return in.readNamedTag().getName().length();
+                        } finally {
+                            in.close();
+                        }
+                    }
+                })
+                .run();
+    }
+
+    private static void write(final File file, int size) throws Exception {
+        final BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(size - 1, size - 1, size - 1)));
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    clipboard.setBlock(new Vector(x, y, z), new BaseBlock((x + y * 3 + z * 7) % 300, (x ^ z) & 15));
+                }
+            }
+        }
+
+        new Benchmark(3)
+                .add("write", (long) size * size * size, new Benchmark.Case() {
+                    @Override
+                    public long run() throws IOException {
+                        ClipboardWriter writer = ClipboardFormat.SCHEMATIC.getWriter(new BufferedOutputStream(new FileOutputStream(file)));
+                        try {
+                            writer.write(clipboard, null);
+                        } finally {
+                            writer.close();
+                        }
+                        return file.length();
+                    }
+                })
+                .run();
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard.io;
+
+import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.ShortTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SchematicFormatTest {
+
+    private static final Vector MIN = new Vector(-5, 10, 20);
+    private static final Vector MAX = new Vector(14, 17, 32);
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+        clipboard.setOrigin(MIN.add(2, 0, 3));
+        int i = 0;
+        for (int x = MIN.getBlockX(); x <= MAX.getBlockX(); x++) {
+            for (int y = MIN.getBlockY(); y <= MAX.getBlockY(); y++) {
+                for (int z = MIN.getBlockZ(); z <= MAX.getBlockZ(); z++) {
+                    clipboard.setBlock(new Vector(x, y, z), createBlock(i++));
+                }
+            }
+        }
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        values.put("id", new StringTag("Chest"));
+        Vector chest = MIN.add(3, 4, 5);
+        clipboard.setBlock(chest, new BaseBlock(BlockID.CHEST, 2, new CompoundTag(values)));
+
+        Clipboard read = read(write(clipboard));
+
+        assertThat(read.getMinimumPoint(), equalTo(MIN));
+        assertThat(read.getMaximumPoint(), equalTo(MAX));
+        assertThat(read.getOrigin(), equalTo(clipboard.getOrigin()));
+        i = 0;
+        for (int x = MIN.getBlockX(); x <= MAX.getBlockX(); x++) {
+            for (int y = MIN.getBlockY(); y <= MAX.getBlockY(); y++) {
+                for (int z = MIN.getBlockZ(); z <= MAX.getBlockZ(); z++) {
+                    Vector position = new Vector(x, y, z);
+                    BaseBlock expected = position.equals(chest) ? new BaseBlock(BlockID.CHEST, 2) : createBlock(i);
+                    assertThat(read.getBlock(position), equalTo(expected));
+                    i++;
+                }
+            }
+        }
+
+        CompoundTag tag = read.getBlock(chest).getNbtData();
+        assertThat(tag, notNullValue());
+        assertThat(tag.getString("id"), equalTo("Chest"));
+        assertThat(tag.getInt("x"), equalTo(3));
+        assertThat(tag.getInt("y"), equalTo(4));
+        assertThat(tag.getInt("z"), equalTo(5));
+        assertThat(read.getBlock(chest.add(1, 0, 0)).getNbtData(), nullValue());
+    }
+
+    @Test
+    public void testReadsTagsInAnyOrder() throws Exception {
+        // Data comes before the dimensions, and there are tags that are
+        // not used by the reader
+        Map<String, Tag> schematic = new LinkedHashMap<String, Tag>();
+        schematic.put("Data", new ByteArrayTag(new byte[] { 1, 2, 3, 4 }));
+        schematic.put("Biomes", new ByteArrayTag(new byte[100]));
+        schematic.put("Unknown", new CompoundTag(new HashMap<String, Tag>(schematic)));
+        schematic.put("Blocks", new ByteArrayTag(new byte[] { 1, 0, 5, 0 }));
+        schematic.put("AddBlocks", new ByteArrayTag(new byte[] { 0x10, 0x00, 0x00 }));
+        schematic.put("Width", new ShortTag((short) 2));
+        schematic.put("Height", new ShortTag((short) 1));
+        schematic.put("Length", new ShortTag((short) 2));
+        schematic.put("Materials", new StringTag("Alpha"));
+        schematic.put("TileEntities", new ListTag(CompoundTag.class, new ArrayList<Tag>()));
+        schematic.put("Trailing", new IntTag(7));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NBTOutputStream out = new NBTOutputStream(new GZIPOutputStream(bytes));
+        out.writeNamedTag("Schematic", new CompoundTag(schematic));
+        out.close();
+
+        Clipboard read = read(bytes.toByteArray());
+        assertThat(read.getMinimumPoint(), equalTo(Vector.ZERO));
+        assertThat(read.getBlock(new Vector(0, 0, 0)), equalTo(new BaseBlock(1, 1)));
+        assertThat(read.getBlock(new Vector(1, 0, 0)), equalTo(new BaseBlock(256, 2)));
+        assertThat(read.getBlock(new Vector(0, 0, 1)), equalTo(new BaseBlock(5, 3)));
+        assertThat(read.getBlock(new Vector(1, 0, 1)), equalTo(new BaseBlock(0, 4)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingBlocks() throws Exception {
+        Map<String, Tag> schematic = new HashMap<String, Tag>();
+        schematic.put("Materials", new StringTag("Alpha"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NBTOutputStream out = new NBTOutputStream(new GZIPOutputStream(bytes));
+        out.writeNamedTag("Schematic", new CompoundTag(schematic));
+        out.close();
+
+        read(bytes.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTooLarge() throws Exception {
+        // 2000^3 blocks overflow an int
+        Map<String, Tag> schematic = new HashMap<String, Tag>();
+        schematic.put("Materials", new StringTag("Alpha"));
+        schematic.put("Width", new ShortTag((short) 2000));
+        schematic.put("Height", new ShortTag((short) 2000));
+        schematic.put("Length", new ShortTag((short) 2000));
+        schematic.put("Blocks", new ByteArrayTag(new byte[8]));
+        schematic.put("Data", new ByteArrayTag(new byte[8]));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NBTOutputStream out = new NBTOutputStream(new GZIPOutputStream(bytes));
+        out.writeNamedTag("Schematic", new CompoundTag(schematic));
+        out.close();
+
+        read(bytes.toByteArray());
+    }
+
+    private static BaseBlock createBlock(int i) {
+        return new BaseBlock((i * 31) % (BaseBlock.MAX_ID + 1), i % 16);
+    }
+
+    private static byte[] write(Clipboard clipboard) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ClipboardWriter writer = ClipboardFormat.SCHEMATIC.getWriter(bytes);
+        writer.write(clipboard, null);
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    private static Clipboard read(byte[] bytes) throws IOException {
+        return ClipboardFormat.SCHEMATIC.getReader(new ByteArrayInputStream(bytes)).read(null);
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.reorder;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.function.operation.Operations;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class MultiStageReorderTest {
+
+    @Test
+    public void testStageOrder() throws Exception {
+        RecordingExtent recorder = new RecordingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(recorder);
+        reorder.setBlock(new Vector(0, 2, 0), new BaseBlock(BlockID.SIGN_POST));
+        reorder.setBlock(new Vector(0, 1, 0), new BaseBlock(BlockID.TORCH));
+        reorder.setBlock(new Vector(-30000000, 0, 30000000), new BaseBlock(BlockID.STONE));
+        assertThat(recorder.positions.size(), equalTo(0));
+
+        Operations.completeBlindly(reorder.commit());
+
+        assertThat(recorder.positions, equalTo(Arrays.asList(
+                new BlockVector(-30000000, 0, 30000000),
+                new BlockVector(0, 1, 0),
+                new BlockVector(0, 2, 0))));
+    }
+
+    @Test
+    public void testAttachmentOrder() throws Exception {
+        RecordingExtent recorder = new RecordingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(recorder);
+        for (int y = 10; y > 0; y--) {
+            reorder.setBlock(new Vector(5, y, -5), new BaseBlock(BlockID.CACTUS));
+        }
+        reorder.setBlock(new Vector(5, 4, -5), new BaseBlock(BlockID.CACTUS));
+
+        Operations.completeBlindly(reorder.commit());
+
+        List<BlockVector> expected = new ArrayList<BlockVector>();
+        for (int y = 1; y <= 10; y++) {
+            expected.add(new BlockVector(5, y, -5));
+        }
+        assertThat(recorder.positions, equalTo(expected));
+
+        Operations.completeBlindly(reorder.commit());
+        assertThat(recorder.positions.size(), equalTo(10));
+    }
+
+    private static class RecordingExtent extends NullExtent {
+        private final List<BlockVector> positions = new ArrayList<BlockVector>();
+
+        @Override
+        public boolean setBlock(Vector position, BaseBlock block) {
+            positions.add(position.toBlockVector());
+            return true;
+        }
+    }
+
+}
@@ -19,11 +19,16 @@
 
 package com.sk89q.worldedit.extent.transform;
 
+import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockData;
 import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.blocks.LazyBlock;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.math.transform.AffineTransform;
 import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.world.registry.BlockRegistry;
 import com.sk89q.worldedit.world.registry.LegacyBlockRegistry;
 import org.junit.Before;
@@ -34,6 +39,11 @@
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 public class BlockTransformExtentTest {
 
@@ -74,4 +84,40 @@ public void testTransform() throws Exception {
             }
         }
     }
+
+    @Test
+    public void testTransformTable() throws Exception {
+        BlockRegistry blockRegistry = new LegacyBlockRegistry();
+        Transform[] transforms = { ROTATE_90, new AffineTransform().scale(-1, 1, 1), new AffineTransform().rotateY(180).scale(1, -1, 1) };
+        Vector position = new Vector(0, 0, 0);
+
+        for (Transform transform : transforms) {
+            BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(position, position));
+            BlockTransformExtent extent = new BlockTransformExtent(clipboard, transform, blockRegistry);
+
+            for (int pass = 0; pass < 2; pass++) {
+                for (BlockType type : BlockType.values()) {
+                    for (int data = 0; data <= BaseBlock.MAX_DATA; data++) {
+                        BaseBlock block = new BaseBlock(type.getID(), data);
+
+                        clipboard.setBlock(position, block);
+                        BaseBlock expected = BlockTransformExtent.transform(new BaseBlock(block), transform, blockRegistry);
+                        assertThat(type + ":" + data, extent.getBlock(position), equalTo(expected));
+
+                        extent.setBlock(position, block);
+                        expected = BlockTransformExtent.transform(new BaseBlock(block), transform.inverse(), blockRegistry);
+                        assertThat(type + ":" + data + " inverse", clipboard.getBlock(position), equalTo(expected));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLazyBlockIsNotLoaded() throws Exception {
+        Extent extent = mock(Extent.class);
+        LazyBlock block = new LazyBlock(BlockType.CHEST.getID(), 2, extent, new Vector(0, 0, 0));
+        assertTrue(BlockTransformTable.isTabulated(block));
+        verify(extent, never()).getBlock(any(Vector.class));
+    }
 }
\ No newline at end of file
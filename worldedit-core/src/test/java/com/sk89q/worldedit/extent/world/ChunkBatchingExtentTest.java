@@ -0,0 +1,138 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.world;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.world.World;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChunkBatchingExtentTest {
+
+    private static final BaseBlock STONE = new BaseBlock(BlockID.STONE);
+    private static final BaseBlock TORCH = new BaseBlock(BlockID.TORCH);
+
+    private World world;
+    private RecordingExtent recorder;
+
+    @Before
+    public void setUp() throws Exception {
+        world = mock(World.class);
+        when(world.getMaxY()).thenReturn(255);
+        recorder = new RecordingExtent();
+    }
+
+    @Test
+    public void testGroupsByChunk() throws Exception {
+        ChunkBatchingExtent extent = new ChunkBatchingExtent(recorder, world, true);
+        extent.setBlock(new Vector(0, 64, 0), STONE);
+        extent.setBlock(new Vector(16, 64, 0), STONE);
+        extent.setBlock(new Vector(1, 64, 0), STONE);
+        extent.setBlock(new Vector(-1, 64, 0), STONE);
+        extent.setBlock(new Vector(17, 64, 0), STONE);
+        assertThat(recorder.positions.size(), equalTo(0));
+        assertThat(extent.getPendingBlockCount(), equalTo(5));
+
+        Operations.completeBlindly(extent.commit());
+
+        assertThat(recorder.positions, equalTo(Arrays.asList(
+                new BlockVector(0, 64, 0), new BlockVector(1, 64, 0),
+                new BlockVector(16, 64, 0), new BlockVector(17, 64, 0),
+                new BlockVector(-1, 64, 0))));
+        verify(world, times(3)).checkLoadedChunk(any(Vector.class));
+        assertThat(extent.getPendingBlockCount(), equalTo(0));
+        assertThat(extent.getChunkFlushCount(), equalTo(3L));
+        assertThat(extent.getFlushedBlockCount(), equalTo(5L));
+        assertThat(extent.getLargestChunkFlush(), equalTo(2));
+    }
+
+    @Test
+    public void testAttachedBlockWrittenAfterBufferedBlocks() throws Exception {
+        ChunkBatchingExtent extent = new ChunkBatchingExtent(recorder, world, true);
+        extent.setBlock(new Vector(0, 64, 0), STONE);
+        extent.setBlock(new Vector(16, 65, 0), TORCH);
+
+        assertThat(recorder.positions, equalTo(Arrays.asList(
+                new BlockVector(0, 64, 0), new BlockVector(16, 65, 0))));
+    }
+
+    @Test
+    public void testReadFlushesPendingChunk() throws Exception {
+        ChunkBatchingExtent extent = new ChunkBatchingExtent(recorder, world, true);
+        extent.setBlock(new Vector(0, 64, 0), STONE);
+        extent.setBlock(new Vector(16, 64, 0), STONE);
+
+        extent.getBlock(new Vector(0, 65, 0));
+        assertThat(recorder.positions.size(), equalTo(0));
+
+        extent.getBlock(new Vector(16, 64, 0));
+        assertThat(recorder.positions, equalTo(Arrays.asList(new BlockVector(16, 64, 0))));
+        assertThat(extent.getPendingBlockCount(), equalTo(1));
+    }
+
+    @Test
+    public void testBatchLimit() throws Exception {
+        ChunkBatchingExtent extent = new ChunkBatchingExtent(recorder, world, true, 2);
+        extent.setBlock(new Vector(0, 64, 0), STONE);
+        assertThat(recorder.positions.size(), equalTo(0));
+        extent.setBlock(new Vector(0, 65, 0), STONE);
+        assertThat(recorder.positions.size(), equalTo(2));
+        assertThat(extent.getChunkFlushCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        ChunkBatchingExtent extent = new ChunkBatchingExtent(recorder, world, false);
+        extent.setBlock(new Vector(0, 64, 0), STONE);
+        extent.setBlock(new Vector(1, 64, 0), STONE);
+
+        assertThat(recorder.positions.size(), equalTo(2));
+        verify(world, times(2)).checkLoadedChunk(any(Vector.class));
+        assertThat(extent.getChunkFlushCount(), equalTo(0L));
+    }
+
+    private static class RecordingExtent extends NullExtent {
+        private final List<BlockVector> positions = new ArrayList<BlockVector>();
+
+        @Override
+        public boolean setBlock(Vector position, BaseBlock block) {
+            positions.add(position.toBlockVector());
+            return true;
+        }
+    }
+
+}
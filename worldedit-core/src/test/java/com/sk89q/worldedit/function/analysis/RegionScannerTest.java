@@ -0,0 +1,106 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.analysis;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.function.mask.FuzzyBlockMask;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Countable;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class RegionScannerTest {
+
+    @Test
+    public void testHistogram() throws Exception {
+        BlockArrayClipboard clipboard = createClipboard();
+        RegionScanner scanner = new RegionScanner(clipboard, clipboard.getRegion());
+        BlockHistogram histogram = scanner.getHistogram();
+        BlockHistogram async = scanner.getHistogramAsync().get();
+
+        assertThat(scanner.getColumnCount(), equalTo(16));
+        for (BlockHistogram h : Arrays.asList(histogram, async)) {
+            assertThat(h.getTotal(), equalTo((long) clipboard.getRegion().getArea()));
+            assertThat(h.getCount(BlockID.STONE), equalTo(40 * 40 * 5));
+            assertThat(h.getCount(BlockID.CLOTH), equalTo(40 * 40));
+            assertThat(h.getCount(BlockID.CLOTH, 3), equalTo(40 * 40 / 2));
+            assertThat(h.getCount(Arrays.asList(new BaseBlock(BlockID.CLOTH, 3), new BaseBlock(BlockID.CLOTH, -1))), equalTo(40 * 40));
+        }
+
+        List<Countable<Integer>> distribution = histogram.getDistribution();
+        assertThat(distribution.size(), equalTo(3));
+        assertThat(distribution.get(2).getID(), equalTo(BlockID.STONE));
+        assertThat(histogram.getDistributionWithData().size(), equalTo(4));
+    }
+
+    @Test
+    public void testNonCuboid() throws Exception {
+        BlockArrayClipboard clipboard = createClipboard();
+        Region region = new CylinderRegion(new Vector(0, 0, 0), new Vector(10, 0, 10).toVector2D(), 0, 4);
+        RegionScanner scanner = new RegionScanner(clipboard, region);
+        int size = 0;
+        for (BlockVector ignored : region) {
+            size++;
+        }
+
+        assertThat(scanner.getHistogram().getTotal(), equalTo((long) size));
+        assertThat(scanner.count(new FuzzyBlockMask(clipboard, new BaseBlock(BlockID.STONE))), equalTo(size));
+    }
+
+    @Test
+    public void testHighIds() {
+        BlockHistogram high = new BlockHistogram();
+        high.add(1000, 2);
+        BlockHistogram histogram = new BlockHistogram();
+        histogram.add(BlockID.STONE, 0);
+        assertThat(histogram.getCount(1000), equalTo(0));
+
+        histogram.addAll(high);
+        assertThat(histogram.getCount(1000, 2), equalTo(1));
+        assertThat(histogram.getCount(Arrays.asList(new BaseBlock(1000, -1), new BaseBlock(4000, -1))), equalTo(1));
+        assertThat(histogram.getDistribution().size(), equalTo(2));
+        assertThat(histogram.getTotal(), equalTo(2L));
+    }
+
+    private static BlockArrayClipboard createClipboard() throws Exception {
+        CuboidRegion region = new CuboidRegion(new Vector(-20, 0, -20), new Vector(19, 9, 19));
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        for (BlockVector position : region) {
+            if (position.getBlockY() < 5) {
+                clipboard.setBlock(position, new BaseBlock(BlockID.STONE));
+            } else if (position.getBlockY() == 5) {
+                clipboard.setBlock(position, new BaseBlock(BlockID.CLOTH, position.getBlockX() < 0 ? 3 : 4));
+            }
+        }
+        return clipboard;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.world.World;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MaskCompilerTest {
+
+    private static final int SIZE = 12;
+    private static final int[] TYPES = { BlockID.AIR, BlockID.STONE, BlockID.GRASS, BlockID.WATER, BlockID.SNOW, BlockID.LOG };
+
+    private BlockArrayClipboard extent;
+    private BlockArrayClipboard other;
+
+    @Before
+    public void setUp() throws Exception {
+        extent = createExtent(1);
+        other = createExtent(2);
+    }
+
+    @Test
+    public void testBlockMasks() {
+        assertSameResults(new BlockMask(extent, new BaseBlock(BlockID.STONE), new BaseBlock(BlockID.LOG, -1)));
+        assertSameResults(new FuzzyBlockMask(extent, new BaseBlock(BlockID.SNOW, 3), new BaseBlock(BlockID.GRASS, -1)));
+        assertSameResults(new ExistingBlockMask(extent));
+        assertSameResults(new SolidBlockMask(extent));
+        assertSameResults(Masks.negate(new BlockMask(extent, new BaseBlock(BlockID.WATER, -1))));
+    }
+
+    @Test
+    public void testMergesBlockMasks() {
+        Mask mask = new MaskIntersection(
+                new ExistingBlockMask(extent),
+                new MaskIntersection(new SolidBlockMask(extent), new RegionMask(new CuboidRegion(new Vector(2, 2, 2), new Vector(9, 9, 9)))),
+                Masks.negate(new BlockMask(extent, new BaseBlock(BlockID.STONE, 2))),
+                new ExistingBlockMask(other));
+        assertSameResults(mask);
+
+        // One table for each extent and the region
+        Mask compiled = Masks.compile(mask);
+        assertTrue(compiled instanceof MaskCompiler.AllOf);
+        assertEquals(3, ((MaskCompiler.AllOf) compiled).masks.length);
+        assertTrue(((MaskCompiler.AllOf) compiled).masks[0] instanceof RegionMask);
+    }
+
+    @Test
+    public void testUnions() {
+        Mask mask = new MaskUnion(
+                new BlockMask(extent, new BaseBlock(BlockID.WATER, -1)),
+                new MaskUnion(new BlockMask(extent, new BaseBlock(BlockID.GRASS, 1)), new BoundedHeightMask(10, 20)),
+                new MaskIntersection(new RegionMask(new EllipsoidRegion((World) null, new Vector(5, 5, 5), new Vector(4, 4, 4))), new SolidBlockMask(other)),
+                new OffsetMask(new ExistingBlockMask(extent), new Vector(0, 1, 0)));
+        assertSameResults(mask);
+
+        Mask compiled = Masks.compile(mask);
+        assertTrue(compiled instanceof MaskCompiler.AnyOf);
+        assertEquals(4, ((MaskCompiler.AnyOf) compiled).masks.length);
+    }
+
+    @Test
+    public void testConstants() {
+        assertSame(Masks.alwaysTrue(), Masks.compile(new MaskIntersection(Masks.alwaysTrue(), Masks.alwaysTrue())));
+        assertSameResults(new MaskIntersection());
+        assertSameResults(new MaskUnion());
+        assertSameResults(new MaskUnion(Masks.negate(Masks.alwaysTrue()), new ExistingBlockMask(extent)));
+        assertSameResults(new MaskIntersection(Masks.negate(Masks.alwaysTrue()), new ExistingBlockMask(extent)));
+    }
+
+    private void assertSameResults(Mask mask) {
+        Mask compiled = Masks.compile(mask);
+        for (int x = -1; x <= SIZE; x++) {
+            for (int y = -1; y <= SIZE; y++) {
+                for (int z = -1; z <= SIZE; z++) {
+                    Vector position = new Vector(x, y, z);
+                    assertEquals(position.toString(), mask.test(position), compiled.test(position));
+                }
+            }
+        }
+    }
+
+    private static BlockArrayClipboard createExtent(long seed) throws Exception {
+        Random random = new Random(seed);
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(SIZE - 1, SIZE - 1, SIZE - 1)));
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                for (int z = 0; z < SIZE; z++) {
+                    clipboard.setBlock(new Vector(x, y, z), new BaseBlock(TYPES[random.nextInt(TYPES.length)], random.nextInt(16)));
+                }
+            }
+        }
+        return clipboard;
+    }
+
+}
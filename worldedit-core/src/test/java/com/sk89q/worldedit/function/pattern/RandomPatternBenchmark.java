@@ -0,0 +1,114 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.pattern;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.util.Benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the throughput of {@link RandomPattern} with a linear scan of
+ * the list of chances, which is how patterns used to be picked, for lists
+ * of 2, 10 and 50 patterns. See {@link Benchmark} for how to run it.
+ */
+public final class RandomPatternBenchmark {
+
+    private static final int BLOCKS = 1 << 22;
+
+    private RandomPatternBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Vector[] positions = new Vector[1 << 16];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new Vector(i & 63, i >> 12, (i >> 6) & 63);
+        }
+
+        Benchmark benchmark = new Benchmark(3);
+        for (int size : new int[] { 2, 10, 50 }) {
+            Random random = new Random(size);
+            final List<Pattern> patterns = new ArrayList<Pattern>();
+            final List<Double> chances = new ArrayList<Double>();
+            RandomPattern alias = new RandomPattern();
+            RandomPattern seeded = new RandomPattern(size);
+            for (int i = 0; i < size; i++) {
+                Pattern pattern = new BlockPattern(new BaseBlock(i + 1));
+                double chance = 1 + random.nextInt(50);
+                patterns.add(pattern);
+                chances.add(chance);
+                alias.add(pattern, chance);
+                seeded.add(pattern, chance);
+            }
+
+            Pattern linear = new AbstractPattern() {
+                private final Random random = new Random();
+                private double max;
+
+                {
+                    for (double chance : chances) {
+                        max += chance;
+                    }
+                }
+
+                @Override
+                public BaseBlock apply(Vector position) {
+                    double r = random.nextDouble();
+                    double offset = 0;
+                    for (int i = 0; i < patterns.size(); i++) {
+                        if (r <= (offset + chances.get(i)) / max) {
+                            return patterns.get(i).apply(position);
+                        }
+                        offset += chances.get(i);
+                    }
+                    throw new RuntimeException();
+                }
+            };
+
+            benchmark.add(size + " linear", BLOCKS, new ApplyCase(linear, positions));
+            benchmark.add(size + " alias", BLOCKS, new ApplyCase(alias, positions));
+            benchmark.add(size + " seeded", BLOCKS, new ApplyCase(seeded, positions));
+        }
+        benchmark.run();
+    }
+
+    private static class ApplyCase implements Benchmark.Case {
+        private final Pattern pattern;
+        private final Vector[] positions;
+
+        private ApplyCase(Pattern pattern, Vector[] positions) {
+            this.pattern = pattern;
+            this.positions = positions;
+        }
+
+        @Override
+        public long run() {
+            long sum = 0;
+            for (int i = 0; i < BLOCKS; i++) {
+                sum += pattern.apply(positions[i & (positions.length - 1)]).getType();
+            }
+            return sum;
+        }
+    }
+
+}
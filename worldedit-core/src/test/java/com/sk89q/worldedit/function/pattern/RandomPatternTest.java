@@ -0,0 +1,114 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.pattern;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extension.input.ParserContext;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.world.NullWorld;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class RandomPatternTest {
+
+    private static final double[] CHANCES = { 30, 20, 0, 45.5, 4.5 };
+
+    @Test
+    public void testDistribution() {
+        assertDistribution(new RandomPattern());
+        assertDistribution(new RandomPattern(42));
+    }
+
+    @Test
+    public void testSeeded() {
+        RandomPattern first = create(new RandomPattern(1234));
+        RandomPattern second = create(new RandomPattern(1234));
+        RandomPattern other = create(new RandomPattern(4321));
+
+        int differences = 0;
+        for (int i = 0; i < 1000; i++) {
+            Vector position = new Vector(i % 10, i / 100, (i / 10) % 10);
+            assertEquals(first.apply(position), second.apply(position));
+            assertEquals(first.apply(position), first.apply(position));
+            if (!first.apply(position).equals(other.apply(position))) {
+                differences++;
+            }
+        }
+        assertNotEquals(0, differences);
+    }
+
+    @Test
+    public void testParseSeed() throws Exception {
+        ParserContext context = new ParserContext();
+        context.setWorld(NullWorld.getInstance());
+        context.setActor(mock(Actor.class));
+        context.setRestricted(false);
+        RandomPattern seeded = (RandomPattern) WorldEdit.getInstance().getPatternFactory().parseFromInput("stone,30%dirt@-7", context);
+        assertTrue(seeded.isSeeded());
+        assertEquals(seeded.apply(new Vector(3, 4, 5)), seeded.apply(new Vector(3, 4, 5)));
+        assertFalse(((RandomPattern) WorldEdit.getInstance().getPatternFactory().parseFromInput("stone,dirt", context)).isSeeded());
+    }
+
+    @Test
+    public void testSinglePattern() {
+        RandomPattern pattern = new RandomPattern();
+        pattern.add(new BlockPattern(new BaseBlock(7)), 0.1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(new BaseBlock(7), pattern.apply(new Vector(i, 0, 0)));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEmpty() {
+        new RandomPattern().apply(Vector.ZERO);
+    }
+
+    private static RandomPattern create(RandomPattern pattern) {
+        for (int i = 0; i < CHANCES.length; i++) {
+            pattern.add(new BlockPattern(new BaseBlock(i + 1)), CHANCES[i]);
+        }
+        return pattern;
+    }
+
+    private static void assertDistribution(RandomPattern pattern) {
+        create(pattern);
+        int samples = 64 * 64 * 64;
+        int[] counts = new int[CHANCES.length];
+        for (int x = 0; x < 64; x++) {
+            for (int y = 0; y < 64; y++) {
+                for (int z = 0; z < 64; z++) {
+                    counts[pattern.apply(new Vector(x, y, z)).getType() - 1]++;
+                }
+            }
+        }
+
+        for (int i = 0; i < CHANCES.length; i++) {
+            assertEquals(CHANCES[i] / 100, counts[i] / (double) samples, 0.005);
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.visitor;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.mask.RegionMask;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class BreadthFirstSearchTest {
+
+    private static final CuboidRegion REGION = new CuboidRegion(new Vector(-20, 0, -20), new Vector(19, 40, 19));
+
+    @Test
+    public void testVisitsRegionOnce() throws Exception {
+        CountingFunction function = new CountingFunction();
+        RecursiveVisitor visitor = new RecursiveVisitor(new RegionMask(REGION), function);
+        visitor.visit(new Vector(0, 0, 0));
+        Operations.completeLegacy(visitor);
+
+        assertThat(visitor.getAffected(), equalTo(REGION.getArea()));
+        assertThat(function.visited.size(), equalTo(REGION.getArea()));
+    }
+
+    @Test
+    public void testTrimVisited() throws Exception {
+        CountingFunction function = new CountingFunction();
+        RecursiveVisitor visitor = new RecursiveVisitor(new RegionMask(REGION), function);
+        visitor.setTrimVisited(true);
+        visitor.visit(new Vector(-20, 0, -20));
+        visitor.visit(new Vector(19, 40, 19));
+        Operations.completeLegacy(visitor);
+
+        assertThat(visitor.getAffected(), equalTo(REGION.getArea()));
+        assertThat(function.visited.size(), equalTo(REGION.getArea()));
+    }
+
+    @Test
+    public void testDownward() throws Exception {
+        CountingFunction function = new CountingFunction();
+        DownwardVisitor visitor = new DownwardVisitor(new RegionMask(REGION), function, 10);
+        visitor.visit(new Vector(0, 10, 0));
+        Operations.completeLegacy(visitor);
+
+        assertThat(visitor.getAffected(), equalTo(40 * 40 * 11));
+    }
+
+    private static class CountingFunction implements RegionFunction {
+        private final Set<BlockVector> visited = new HashSet<BlockVector>();
+
+        @Override
+        public boolean apply(Vector position) throws WorldEditException {
+            assertTrue("visited twice: " + position, visited.add(position.toBlockVector()));
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.history.change.EntityCreate;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class FileChangeSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        values.put("Text1", new StringTag("Hello"));
+        CompoundTag tag = new CompoundTag(values);
+
+        ChangeSet source = new PackedBlockHistory();
+        source.add(new BlockChange(new BlockVector(1, 2, 3), new BaseBlock(BlockID.AIR), new BaseBlock(BlockID.STONE)));
+        source.add(new BlockChange(new BlockVector(1, 2, 3), new BaseBlock(BlockID.STONE), new BaseBlock(BlockID.SIGN_POST, 4, tag)));
+        source.add(new BlockChange(new BlockVector(-400, 0, 70000), new BaseBlock(BlockID.DIRT, 2), new BaseBlock(BlockID.GRASS)));
+
+        File file = folder.newFile("1.done");
+        FileChangeSet written = FileChangeSet.write(file, "world_nether", source);
+        FileChangeSet read = new FileChangeSet(file);
+
+        assertThat(read.getWorldName(), equalTo("world_nether"));
+        assertThat(read.size(), equalTo(3));
+        assertSameChanges(source.forwardIterator(), read.forwardIterator());
+        assertSameChanges(source.backwardIterator(), read.backwardIterator());
+        assertSameChanges(source.backwardIterator(), written.backwardIterator());
+    }
+
+    @Test
+    public void testCloseAbandonedIteration() throws Exception {
+        ChangeSet source = new PackedBlockHistory();
+        source.add(new BlockChange(new BlockVector(1, 2, 3), new BaseBlock(BlockID.AIR), new BaseBlock(BlockID.STONE)));
+        source.add(new BlockChange(new BlockVector(4, 5, 6), new BaseBlock(BlockID.AIR), new BaseBlock(BlockID.DIRT)));
+        FileChangeSet read = FileChangeSet.write(folder.newFile("1.done"), "world", source);
+
+        Iterator<Change> it = read.forwardIterator();
+        assertTrue(it instanceof Closeable);
+        it.next();
+        ((Closeable) it).close();
+        assertFalse(it.hasNext());
+        ((Closeable) it).close();
+
+        FileChangeSet empty = FileChangeSet.write(folder.newFile("2.done"), "world", new PackedBlockHistory());
+        assertFalse(empty.backwardIterator().hasNext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedChange() throws Exception {
+        ChangeSet source = new ArrayListHistory();
+        source.add(mock(EntityCreate.class));
+        File file = new File(folder.getRoot(), "1.done");
+        try {
+            FileChangeSet.write(file, "world", source);
+        } finally {
+            assertFalse(file.exists());
+            assertThat(folder.getRoot().list().length, equalTo(0));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testIncompleteFile() throws Exception {
+        ChangeSet source = new PackedBlockHistory();
+        source.add(new BlockChange(new BlockVector(1, 2, 3), new BaseBlock(BlockID.AIR), new BaseBlock(BlockID.STONE)));
+        File file = FileChangeSet.write(folder.newFile("1.done"), "world", source).getFile();
+
+        // Cut the file off after the header, like a write that has not finished
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(40);
+        } finally {
+            raf.close();
+        }
+
+        new FileChangeSet(file);
+    }
+
+    private static void assertSameChanges(Iterator<Change> expected, Iterator<Change> actual) {
+        while (expected.hasNext()) {
+            BlockChange a = (BlockChange) expected.next();
+            BlockChange b = (BlockChange) actual.next();
+            assertThat(b.getPosition(), equalTo(a.getPosition()));
+            assertThat(b.getCurrent(), equalTo(a.getCurrent()));
+            assertThat(b.getCurrent().getNbtId(), equalTo(a.getCurrent().getNbtId()));
+            assertThat(String.valueOf(b.getCurrent().getNbtData()), equalTo(String.valueOf(a.getCurrent().getNbtData())));
+        }
+        assertFalse(actual.hasNext());
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+public class PackedBlockHistoryTest {
+
+    private static final BlockVector[] POSITIONS = {
+            new BlockVector(0, 0, 0),
+            new BlockVector(-1, 255, -1),
+            new BlockVector(33554431, -2048, -33554432),
+            new BlockVector(-33554432, 2047, 33554431),
+            new BlockVector(100000000, 64, 0), // Cannot be packed
+    };
+
+    @Test
+    public void testIterators() throws Exception {
+        PackedBlockHistory history = new PackedBlockHistory();
+        List<BlockChange> changes = new ArrayList<BlockChange>();
+        for (int i = 0; i < POSITIONS.length; i++) {
+            BlockChange change = new BlockChange(POSITIONS[i], new BaseBlock(BlockID.AIR), new BaseBlock(BaseBlock.MAX_ID - i, i));
+            changes.add(change);
+            history.add(change);
+        }
+
+        assertThat(history.size(), equalTo(POSITIONS.length));
+
+        Iterator<Change> it = history.forwardIterator();
+        assertThat(((BlockChange) it.next()).getPosition(), equalTo(POSITIONS[4]));
+        for (int i = 0; i < 4; i++) {
+            BlockChange change = (BlockChange) it.next();
+            assertThat(change.getPosition(), equalTo(changes.get(i).getPosition()));
+            assertThat(change.getCurrent(), equalTo(changes.get(i).getCurrent()));
+        }
+        assertFalse(it.hasNext());
+
+        it = history.backwardIterator();
+        assertThat(((BlockChange) it.next()).getPosition(), equalTo(POSITIONS[4]));
+        for (int i = 3; i >= 0; i--) {
+            BlockChange change = (BlockChange) it.next();
+            assertThat(change.getPosition(), equalTo(changes.get(i).getPosition()));
+            assertThat(change.getPrevious(), equalTo(changes.get(i).getPrevious()));
+        }
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testNbtData() throws Exception {
+        PackedBlockHistory history = new PackedBlockHistory();
+        CompoundTag tag = new CompoundTag(new HashMap<String, Tag>());
+        history.add(new BlockChange(new BlockVector(1, 2, 3), new BaseBlock(BlockID.SIGN_POST, 4, tag), new BaseBlock(BlockID.STONE)));
+
+        BlockChange change = (BlockChange) history.backwardIterator().next();
+        assertThat(change.getPrevious(), equalTo(new BaseBlock(BlockID.SIGN_POST, 4)));
+        assertThat(change.getPrevious().getNbtData(), sameInstance(tag));
+
+        change = (BlockChange) history.forwardIterator().next();
+        assertThat(change.getCurrent().getNbtData(), nullValue());
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import com.sk89q.worldedit.util.Benchmark;
+
+/**
+ * Compares the speed of the expression interpreter with that of compiled
+ * expressions, evaluating expressions once per voxel the way
+ * {@code //generate} does. See {@link Benchmark} for how to run it; the
+ * argument is the size of the cube to evaluate over.
+ */
+public final class ExpressionBenchmark {
+
+    private static final String[] EXPRESSIONS = {
+            "(x * x + y * y + z * z) < 0.8",
+            "sin(x * 5) * cos(z * 5) > y",
+            "a = abs(x) + abs(y) + abs(z); a < 0.9 && (x > 0 || a > 0.5)",
+            "perlin(0, x, y, z, 1, 4, 0.5) > 0"
+    };
+
+    private ExpressionBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int size = Benchmark.getSize(args, 100);
+        Benchmark benchmark = new Benchmark(3);
+        for (String source : EXPRESSIONS) {
+            benchmark.add(source + " interpreted", (long) size * size * size, new EvaluateCase(source, false, size));
+            benchmark.add(source + " compiled", (long) size * size * size, new EvaluateCase(source, true, size));
+        }
+        benchmark.run();
+    }
+
+    private static class EvaluateCase implements Benchmark.Case {
+        private final String source;
+        private final boolean compile;
+        private final int size;
+
+        private EvaluateCase(String source, boolean compile, int size) {
+            this.source = source;
+            this.compile = compile;
+            this.size = size;
+        }
+
+        @Override
+        public long run() throws ExpressionException {
+            Expression expression = Expression.compile(source, "x", "y", "z");
+            expression.optimize(compile);
+            if (compile && !expression.isCompiled()) {
+                throw new IllegalStateException("Failed to compile " + source);
+            }
+
+            double scale = 2.0 / size;
+            double sum = 0;
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    for (int z = 0; z < size; z++) {
+                        sum += expression.evaluate(x * scale - 1, y * scale - 1, z * scale - 1);
+                    }
+                }
+            }
+            return (long) sum;
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExpressionCompilerTest {
+
+    private static final double[][] INPUTS = {
+            { 0, 0, 0 }, { 1, 2, 3 }, { -1.5, 0.25, 7 }, { 3, -3, 0.5 },
+            { Double.NaN, 1, -1 }, { 1e9, -1e-9, 42 }, { 64, 3, -0.0 }
+    };
+
+    @Test
+    public void testOperators() throws Exception {
+        assertSameResults("x + y * z - x / (y + 1) % 3 ^ 2");
+        assertSameResults("-x + ~y");
+        assertSameResults("x < y");
+        assertSameResults("x > y");
+        assertSameResults("x <= y");
+        assertSameResults("x >= y");
+        assertSameResults("x == y");
+        assertSameResults("x != y");
+        assertSameResults("x ~= y");
+        assertSameResults("x && y || !z");
+        assertSameResults("x || y && z");
+        assertSameResults("x << 2 + (y >> 1)");
+        assertSameResults("x!");
+    }
+
+    @Test
+    public void testFunctions() throws Exception {
+        assertSameResults("sin(x) + cos(y) + tan(z) + asin(x / 1e10) + acos(y / 1e10) + atan(z)");
+        assertSameResults("sinh(x) + cosh(y) + tanh(z) + sqrt(x) + cbrt(y) + abs(z)");
+        assertSameResults("ceil(x) + floor(y) + rint(z) + round(x) + exp(y) + ln(z) + log(x) + log10(y)");
+        assertSameResults("atan2(x, y) + min(x, y) + max(y, z) + min(x, y, z) + max(x, y, z)");
+        assertSameResults("perlin(1, x, y, z, 1, 2, 0.5)");
+    }
+
+    @Test
+    public void testStatements() throws Exception {
+        assertSameResults("a = x; a += y; a -= z; a *= 2; a /= 3; a %= 5; a");
+        assertSameResults("a = x; b = a++; c = a--; d = ++a; f = --a; a * 10000 + b * 1000 + c * 100 + d * 10 + f");
+        assertSameResults("if (x > y) { z } else { x + y }");
+        assertSameResults("if (x) z; y");
+        assertSameResults("x > y ? x : y");
+        assertSameResults("a = 0; for (i = 0; i < 5; ++i) { a += x; } a");
+        assertSameResults("a = 0; while (a < 10) { if (a > 5) break; ++a; } a");
+        assertSameResults("rotate(x, y, z); x + y");
+        assertSameResults("if (x > 2) return y; z");
+    }
+
+    @Test
+    public void testCompiled() throws Exception {
+        Expression expression = Expression.compile("x * y + sin(z)", "x", "y", "z");
+        expression.optimize(true);
+        assertTrue(expression.isCompiled());
+        assertEquals(6 + Math.sin(1), expression.evaluate(2, 3, 1), 0);
+        assertEquals(2, expression.getVariable("x", false).getValue(), 0);
+        assertEquals(0, expression.evaluate(0, 0, 0), 0);
+    }
+
+    @Test
+    public void testRuntimeExceptionIsWrapped() throws Exception {
+        Expression expression = Expression.compile("query(x, y, z, 1, 2)", "x", "y", "z");
+        expression.optimize(true);
+        try {
+            // no environment is set
+            expression.evaluate(1, 2, 3);
+            fail("Error expected");
+        } catch (EvaluationException ignored) {
+        }
+    }
+
+    private static void assertSameResults(String source) throws Exception {
+        for (double[] input : INPUTS) {
+            Expression interpreted = Expression.compile(source, "x", "y", "z");
+            interpreted.optimize(false);
+            Expression compiled = Expression.compile(source, "x", "y", "z");
+            compiled.optimize(true);
+
+            assertTrue(source, compiled.isCompiled());
+            double expected = interpreted.evaluate(input);
+            double actual = compiled.evaluate(input);
+            assertEquals(source, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+            for (String name : new String[] { "x", "y", "z" }) {
+                assertEquals(source, interpreted.getVariable(name, false).getValue(), compiled.getVariable(name, false).getValue(), 0);
+            }
+        }
+    }
+
+}
@@ -28,6 +28,8 @@
 import static java.lang.Math.atan2;
 import static java.lang.Math.sin;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class ExpressionTest {
@@ -162,6 +164,16 @@ public void testQuery() throws Exception {
         assertEquals(1, simpleEval("!queryRel(3,4,5,100,200)"), 0);
     }
 
+    @Test
+    public void testStateless() throws Exception {
+        assertTrue(compile("x*x + y*y + z*z < 1", "x", "y", "z").isStateless());
+        assertTrue(compile("type = 35; data = x % 16; perlin(1, x, y, z, 0.1, 2, 0.5) > 0", "x", "y", "z", "type", "data").isStateless());
+        assertFalse(compile("x < megabuf(0)", "x").isStateless());
+        assertFalse(compile("random() < x", "x").isStateless());
+        assertFalse(compile("query(x, 0, 0, 1, 0)", "x").isStateless());
+        assertFalse(compile("n = n + 1; x < n", "x").isStateless());
+    }
+
     private double simpleEval(String expressionString) throws ExpressionException {
         final Expression expression = compile(expressionString);
 
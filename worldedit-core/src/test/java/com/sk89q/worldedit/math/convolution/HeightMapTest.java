@@ -0,0 +1,184 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.math.convolution;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.cache.ColumnCache;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.MapWorld;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HeightMapTest {
+
+    private static final Region REGION = new CuboidRegion(new Vector(0, 10, 0), new Vector(23, 40, 19));
+
+    @Test
+    public void testSeparableFilter() {
+        Random random = new Random(3);
+        int[] heights = new int[30 * 20];
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = 10 + random.nextInt(30);
+        }
+
+        GaussianKernel kernel = new GaussianKernel(5, 1.0);
+        int[] separable = new HeightMapFilter(kernel).filter(heights, 30, 20);
+
+        // A copy that is not exactly separable uses the 2D convolution
+        float[] matrix = kernel.getKernelData(null);
+        matrix[0] += 1e-3f;
+        int[] full = new HeightMapFilter(kernel.getWidth(), kernel.getHeight(), matrix).filter(heights, 30, 20);
+
+        int differences = 0;
+        for (int i = 0; i < heights.length; i++) {
+            assertTrue(Math.abs(separable[i] - full[i]) <= 1);
+            if (separable[i] != full[i]) {
+                differences++;
+            }
+        }
+        assertTrue(differences < heights.length / 20);
+    }
+
+    @Test
+    public void testApply() throws Exception {
+        MapWorld expected = createTerrain();
+        MapWorld actual = createTerrain();
+
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(actual, -1);
+        HeightMap heightMap = new HeightMap(editSession, REGION);
+        HeightMapFilter filter = new HeightMapFilter(new GaussianKernel(5, 1.0));
+        int[] heights = new int[REGION.getWidth() * REGION.getLength()];
+        for (int z = 0; z < REGION.getLength(); z++) {
+            for (int x = 0; x < REGION.getWidth(); x++) {
+                heights[z * REGION.getWidth() + x] = editSession.getHighestTerrainBlock(x, z, 10, 40, false);
+            }
+        }
+        int[] newHeights = filter.filter(filter.filter(heights, REGION.getWidth(), REGION.getLength()), REGION.getWidth(), REGION.getLength());
+        int changed = heightMap.applyFilter(filter, 2);
+        editSession.flushQueue();
+
+        applyNaively(expected, heights, newHeights);
+        assertEquals(expected.getBlocks(), actual.getBlocks());
+        assertTrue(changed > 0);
+        assertTrue(changed < expected.getWrites());
+    }
+
+    @Test
+    public void testColumnCache() throws Exception {
+        MapWorld world = createTerrain();
+        ColumnCache cache = new ColumnCache(1, TimeUnit.MINUTES, 100);
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+
+        int[] column = new int[5];
+        cache.getBlockColumn(editSession, 3, 4, 0, 4, column);
+        assertArrayEquals(new int[] { BlockID.COAL_ORE << 4, BlockID.STONE << 4, BlockID.STONE << 4, BlockID.STONE << 4, BlockID.STONE << 4 }, column);
+
+        // Changes that are not made through an edit session are not seen
+        world.getBlocks().put(new BlockVector(3, 2, 4), new BaseBlock(BlockID.GOLD_BLOCK));
+        cache.getBlockColumn(editSession, 3, 4, 0, 4, column);
+        assertEquals(BlockID.STONE << 4, column[2]);
+
+        editSession.setBlock(new Vector(3, 1, 4), new BaseBlock(BlockID.CLOTH, 5));
+        editSession.flushQueue();
+        cache.getBlockColumn(editSession, 3, 4, 0, 4, column);
+        assertEquals(BlockID.CLOTH << 4 | 5, column[1]);
+        assertEquals(BlockID.GOLD_BLOCK << 4, column[2]);
+
+        // A queued change is only seen once it reaches the world
+        editSession.enableQueue();
+        editSession.setBlock(new Vector(3, 4, 4), new BaseBlock(BlockID.TORCH, 5));
+        cache.getBlockColumn(editSession, 3, 4, 0, 4, column);
+        assertEquals(BlockID.STONE << 4, column[4]);
+        editSession.flushQueue();
+        cache.getBlockColumn(editSession, 3, 4, 0, 4, column);
+        assertEquals(BlockID.TORCH << 4 | 5, column[4]);
+    }
+
+    /**
+     * Apply a height map the way that it was applied before only changed
+     * blocks were set.
+     */
+    private static void applyNaively(MapWorld world, int[] heights, int[] newHeights) {
+        int originY = REGION.getMinimumPoint().getBlockY();
+        int maxY = REGION.getMaximumPoint().getBlockY();
+        for (int z = 0; z < REGION.getLength(); z++) {
+            for (int x = 0; x < REGION.getWidth(); x++) {
+                int index = z * REGION.getWidth() + x;
+                int curHeight = heights[index];
+                int newHeight = Math.min(maxY, newHeights[index]);
+                double scale = (double) (curHeight - originY) / (double) (newHeight - originY);
+
+                if (newHeight > curHeight) {
+                    BaseBlock existing = world.getBlock(new Vector(x, curHeight, z));
+                    if (existing.getType() != BlockID.WATER && existing.getType() != BlockID.STATIONARY_WATER) {
+                        put(world, x, newHeight, z, existing);
+                        for (int y = newHeight - 1 - originY; y >= 0; --y) {
+                            put(world, x, originY + y, z, world.getBlock(new Vector(x, originY + (int) (y * scale), z)));
+                        }
+                    }
+                } else if (curHeight > newHeight) {
+                    for (int y = 0; y < newHeight - originY; ++y) {
+                        put(world, x, originY + y, z, world.getBlock(new Vector(x, originY + (int) (y * scale), z)));
+                    }
+                    put(world, x, newHeight, z, world.getBlock(new Vector(x, curHeight, z)));
+                    for (int y = newHeight + 1; y <= curHeight; ++y) {
+                        put(world, x, y, z, new BaseBlock(BlockID.AIR));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void put(MapWorld world, int x, int y, int z, BaseBlock block) {
+        world.setBlock(new Vector(x, y, z), block, false);
+    }
+
+    private static MapWorld createTerrain() {
+        Random random = new Random(7);
+        MapWorld world = new MapWorld();
+        for (int x = -2; x < 26; x++) {
+            for (int z = -2; z < 22; z++) {
+                int height = 15 + random.nextInt(4) + (x * z) % 13;
+                for (int y = 0; y <= height; y++) {
+                    int type = y == height ? BlockID.GRASS : y > height - 3 ? BlockID.DIRT : y % 5 == 0 ? BlockID.COAL_ORE : BlockID.STONE;
+                    world.getBlocks().put(new BlockVector(x, y, z), new BaseBlock(type));
+                }
+                if (random.nextInt(10) == 0) {
+                    world.getBlocks().put(new BlockVector(x, height + 1, z), new BaseBlock(BlockID.WATER));
+                }
+            }
+        }
+        world.resetWrites();
+        return world;
+    }
+
+}
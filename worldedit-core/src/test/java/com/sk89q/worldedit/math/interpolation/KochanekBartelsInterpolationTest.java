@@ -0,0 +1,54 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.math.interpolation;
+
+import com.sk89q.worldedit.Vector;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class KochanekBartelsInterpolationTest {
+
+    @Test
+    public void testArcLengthOfWholeSegments() {
+        List<Node> nodes = new ArrayList<Node>();
+        for (int i = 0; i < 12; i++) {
+            nodes.add(new Node(new Vector(i * 5, (i % 3) * 4, i * i)));
+        }
+        KochanekBartelsInterpolation interpolation = new KochanekBartelsInterpolation();
+        interpolation.setNodes(nodes);
+
+        double total = interpolation.arcLength(0, 1);
+        double sum = 0;
+        for (int i = 0; i < 11; i++) {
+            sum += interpolation.arcLength(i / 11.0, (i + 1) / 11.0);
+        }
+        assertEquals(total, sum, total * 1e-9);
+
+        // Partial segments at both ends and whole segments in between
+        double partial = interpolation.arcLength(1.5 / 11, 2 / 11.0) + interpolation.arcLength(2 / 11.0, 7 / 11.0) + interpolation.arcLength(7 / 11.0, 7.25 / 11);
+        assertEquals(partial, interpolation.arcLength(1.5 / 11, 7.25 / 11), total * 1e-9);
+        assertEquals(partial, interpolation.arcLength(7.25 / 11, 1.5 / 11), total * 1e-9);
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.world.World;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RegionSpansTest {
+
+    @Test
+    public void testCuboid() {
+        assertMatchesContains(new CuboidRegion(new Vector(-3, 2, 5), new Vector(4, 6, 9)));
+    }
+
+    @Test
+    public void testEllipsoid() {
+        assertMatchesContains(new EllipsoidRegion((World) null, new Vector(0, 64, 0), new Vector(7, 5, 9)));
+        assertMatchesContains(new EllipsoidRegion((World) null, new Vector(3.5, 10, -2), new Vector(4.5, 3, 2)));
+        assertMatchesContains(new EllipsoidRegion((World) null, new Vector(0, 0, 0), new Vector(0, 0, 0)));
+    }
+
+    @Test
+    public void testCylinder() {
+        assertMatchesContains(new CylinderRegion((World) null, new Vector(5, 0, -5), new Vector2D(6, 11), 0, 3));
+        assertMatchesContains(new CylinderRegion((World) null, new Vector(0.5, 0, 0.5), new Vector2D(3.5, 3.5), -2, 2));
+    }
+
+    @Test
+    public void testPolygon() {
+        assertMatchesContains(new Polygonal2DRegion((World) null, Arrays.asList(
+                new BlockVector2D(0, 0), new BlockVector2D(12, 3), new BlockVector2D(5, 15)), 0, 2));
+
+        // Concave, so that some rows have several spans
+        assertMatchesContains(new Polygonal2DRegion((World) null, Arrays.asList(
+                new BlockVector2D(0, 0), new BlockVector2D(20, 0), new BlockVector2D(20, 14),
+                new BlockVector2D(14, 14), new BlockVector2D(10, 4), new BlockVector2D(6, 14),
+                new BlockVector2D(0, 14)), 5, 6));
+    }
+
+    @Test
+    public void testConvexPolyhedron() {
+        ConvexPolyhedralRegion region = new ConvexPolyhedralRegion((World) null);
+        region.addVertex(new Vector(0, 0, 0));
+        region.addVertex(new Vector(13, 2, 1));
+        region.addVertex(new Vector(4, 11, 3));
+        region.addVertex(new Vector(2, 3, 12));
+        region.addVertex(new Vector(9, 9, 9));
+        assertMatchesContains(region);
+    }
+
+    @Test
+    public void testNullRegion() {
+        assertEquals(0, Regions.getSpans(new NullRegion(), 0, 0).length);
+        assertFalse(new NullRegion().iterator().hasNext());
+    }
+
+    private static void assertMatchesContains(Region region) {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        Set<BlockVector> expected = new HashSet<BlockVector>();
+
+        for (int y = min.getBlockY() - 1; y <= max.getBlockY() + 1; ++y) {
+            for (int z = min.getBlockZ() - 1; z <= max.getBlockZ() + 1; ++z) {
+                int[] spans = Regions.getSpans(region, y, z);
+                assertEquals(0, spans.length % 2);
+                List<Integer> inside = new ArrayList<Integer>();
+                for (int x = min.getBlockX() - 1; x <= max.getBlockX() + 1; ++x) {
+                    if (region.contains(new Vector(x, y, z))) {
+                        inside.add(x);
+                        expected.add(new BlockVector(x, y, z));
+                    }
+                }
+
+                List<Integer> actual = new ArrayList<Integer>();
+                for (int i = 0; i < spans.length; i += 2) {
+                    assertTrue(spans[i] <= spans[i + 1]);
+                    if (i > 0) {
+                        // Spans are sorted and do not touch
+                        assertTrue(spans[i] > spans[i - 1] + 1);
+                    }
+                    for (int x = spans[i]; x <= spans[i + 1]; ++x) {
+                        actual.add(x);
+                    }
+                }
+                assertEquals("row " + y + ", " + z, inside, actual);
+            }
+        }
+
+        Set<BlockVector> iterated = new HashSet<BlockVector>();
+        for (BlockVector position : region) {
+            assertTrue(iterated.add(position));
+        }
+        assertEquals(expected, iterated);
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.shape;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.patterns.Pattern;
+import com.sk89q.worldedit.patterns.SingleBlockPattern;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.NullWorld;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArbitraryShapeTest {
+
+    private static final BaseBlock DEFAULT = new BaseBlock(1, 2);
+
+    @Test
+    public void testSolid() throws Exception {
+        Region region = new CuboidRegion(new Vector(-20, 3, -7), new Vector(27, 30, 18));
+        for (boolean concurrent : new boolean[] { false, true }) {
+            assertMatchesNaive(region, concurrent, false);
+        }
+    }
+
+    @Test
+    public void testHollow() throws Exception {
+        Region region = new CuboidRegion(new Vector(-20, 3, -7), new Vector(27, 30, 18));
+        for (boolean concurrent : new boolean[] { false, true }) {
+            assertMatchesNaive(region, concurrent, true);
+        }
+    }
+
+    @Test
+    public void testHollowInCylinder() throws Exception {
+        // Neighbours outside of the region are evaluated too
+        Region region = new CylinderRegion(null, new Vector(3, 0, 5), new Vector2D(19, 13), 5, 25);
+        for (boolean concurrent : new boolean[] { false, true }) {
+            assertMatchesNaive(region, concurrent, true);
+        }
+    }
+
+    @Test
+    public void testPatternOnCallingThread() throws Exception {
+        Region region = new CylinderRegion(null, new Vector(3, 0, 5), new Vector2D(19, 13), 5, 25);
+        final Thread thread = Thread.currentThread();
+        Pattern pattern = new Pattern() {
+            @Override
+            public BaseBlock next(Vector position) {
+                return next(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+            }
+
+            @Override
+            public BaseBlock next(int x, int y, int z) {
+                assertEquals(thread, Thread.currentThread());
+                return new BaseBlock(y, x & 15);
+            }
+        };
+
+        for (boolean hollow : new boolean[] { false, true }) {
+            TestWorld world = new TestWorld();
+            EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+            int affected = new RegionShape(region).generate(editSession, pattern, hollow);
+            editSession.flushQueue();
+
+            Map<BlockVector, BaseBlock> expected = new HashMap<BlockVector, BaseBlock>();
+            for (BlockVector position : region) {
+                if (hollow && region.contains(position.add(1, 0, 0)) && region.contains(position.add(-1, 0, 0))
+                        && region.contains(position.add(0, 1, 0)) && region.contains(position.add(0, -1, 0))
+                        && region.contains(position.add(0, 0, 1)) && region.contains(position.add(0, 0, -1))) {
+                    continue;
+                }
+                expected.put(position, pattern.next(position));
+            }
+
+            assertEquals(expected.size(), affected);
+            assertEquals(expected, world.blocks);
+        }
+    }
+
+    @Test
+    public void testExpression() throws Exception {
+        Region region = new CuboidRegion(new Vector(-10, 0, -10), new Vector(20, 20, 20));
+        String stateless = "type = 300 + y; data = x; x*x + y*y + z*z < 0.8";
+        String stateful = "r = x*x + y*y + z*z; type = 300 + y; data = x; r < 0.8";
+
+        for (boolean hollow : new boolean[] { false, true }) {
+            TestWorld first = new TestWorld();
+            EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(first, -1);
+            int affected = editSession.makeShape(region, new Vector(5, 10, 5), new Vector(15, 10, 15), new SingleBlockPattern(DEFAULT), stateless, hollow);
+            editSession.flushQueue();
+
+            TestWorld second = new TestWorld();
+            editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(second, -1);
+            assertEquals(affected, editSession.makeShape(region, new Vector(5, 10, 5), new Vector(15, 10, 15), new SingleBlockPattern(DEFAULT), stateful, hollow));
+            editSession.flushQueue();
+
+            assertTrue(affected > 0);
+            assertEquals(first.blocks, second.blocks);
+        }
+    }
+
+    private static void assertMatchesNaive(Region region, boolean concurrent, boolean hollow) throws Exception {
+        TestWorld world = new TestWorld();
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+        int affected = new TestShape(region, concurrent).generate(editSession, new SingleBlockPattern(DEFAULT), hollow);
+        editSession.flushQueue();
+
+        Map<BlockVector, BaseBlock> expected = new HashMap<BlockVector, BaseBlock>();
+        for (BlockVector position : region) {
+            int x = position.getBlockX();
+            int y = position.getBlockY();
+            int z = position.getBlockZ();
+            BaseBlock material = getMaterial(x, y, z);
+            if (material == null) {
+                continue;
+            }
+            if (hollow && getMaterial(x + 1, y, z) != null && getMaterial(x - 1, y, z) != null
+                    && getMaterial(x, y + 1, z) != null && getMaterial(x, y - 1, z) != null
+                    && getMaterial(x, y, z + 1) != null && getMaterial(x, y, z - 1) != null) {
+                continue;
+            }
+            expected.put(position, material);
+        }
+
+        assertTrue(!expected.isEmpty());
+        assertEquals(expected.size(), affected);
+        assertEquals(expected, world.blocks);
+    }
+
+    /**
+     * A lumpy ball whose material depends on the position, including IDs
+     * above 255.
+     */
+    private static BaseBlock getMaterial(int x, int y, int z) {
+        int dx = x - 3;
+        int dy = y - 15;
+        int dz = z - 5;
+        if (dx * dx + 2 * dy * dy + dz * dz + (x * 7 + z * 3) % 17 > 330) {
+            return null;
+        }
+        return new BaseBlock((x * 31 + y * 17 + z * 11 & 0x7fffffff) % 4096, (x + y) & 15);
+    }
+
+    private static class TestShape extends ArbitraryShape {
+        private final boolean concurrent;
+
+        private TestShape(Region extent, boolean concurrent) {
+            super(extent);
+            this.concurrent = concurrent;
+        }
+
+        @Override
+        protected BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial) {
+            assertEquals(DEFAULT, defaultMaterial);
+            return ArbitraryShapeTest.getMaterial(x, y, z);
+        }
+
+        @Override
+        protected boolean isConcurrent() {
+            return concurrent;
+        }
+    }
+
+    private static class TestWorld extends NullWorld {
+        private final Map<BlockVector, BaseBlock> blocks = new HashMap<BlockVector, BaseBlock>();
+
+        @Override
+        public boolean isValidBlockType(int type) {
+            // Allow IDs that are not known to WorldEdit
+            return true;
+        }
+
+        @Override
+        public synchronized boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight) {
+            assertTrue(blocks.put(position.toBlockVector(), new BaseBlock(block.getType(), block.getData())) == null);
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.shape;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.function.pattern.BlockPattern;
+import com.sk89q.worldedit.patterns.SingleBlockPattern;
+import com.sk89q.worldedit.world.NullWorld;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PathRasterizerTest {
+
+    private static final BaseBlock BLOCK = new BaseBlock(1);
+
+    @Test
+    public void testSinglePoint() throws Exception {
+        List<BlockVector> points = Arrays.asList(new BlockVector(5, 64, -3));
+        for (double radius : new double[] { 0, 1, 1.5, 4 }) {
+            assertMatchesNaive(points, radius, false);
+            assertMatchesNaive(points, radius, true);
+        }
+    }
+
+    @Test
+    public void testPathAcrossChunks() throws Exception {
+        List<BlockVector> points = new ArrayList<BlockVector>();
+        for (int i = -40; i <= 40; i++) {
+            points.add(new BlockVector(i, 30 + i / 3, i * i / 50 - 7));
+        }
+        for (double radius : new double[] { 0, 2, 3.5 }) {
+            assertMatchesNaive(points, radius, false);
+            assertMatchesNaive(points, radius, true);
+        }
+    }
+
+    @Test
+    public void testNegativeRadius() throws Exception {
+        assertEquals(0, generate(Arrays.asList(new BlockVector(0, 0, 0)), -1, false).size());
+    }
+
+    @Test
+    public void testDrawLine() throws Exception {
+        TestWorld world = new TestWorld();
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+        int affected = editSession.drawLine(new SingleBlockPattern(BLOCK), new Vector(-20, 10, 3), new Vector(20, 10, 3), 2, false);
+        editSession.flushQueue();
+
+        List<BlockVector> points = new ArrayList<BlockVector>();
+        for (int x = -20; x <= 20; x++) {
+            points.add(new BlockVector(x, 10, 3));
+        }
+        assertEquals(naive(points, 2, true), world.blocks);
+        assertEquals(world.blocks.size(), affected);
+    }
+
+    private static void assertMatchesNaive(List<BlockVector> points, double radius, boolean hollow) throws Exception {
+        Set<BlockVector> expected = naive(points, radius, hollow);
+        assertTrue(!expected.isEmpty());
+        assertEquals(expected, generate(points, radius, hollow));
+    }
+
+    private static Set<BlockVector> generate(List<BlockVector> points, double radius, boolean hollow) throws Exception {
+        TestWorld world = new TestWorld();
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+        PathRasterizer rasterizer = new PathRasterizer(radius);
+        for (BlockVector point : points) {
+            rasterizer.addPoint(point);
+        }
+        int affected = rasterizer.generate(editSession, new BlockPattern(BLOCK), hollow);
+        editSession.flushQueue();
+        assertEquals(world.blocks.size(), affected);
+        return world.blocks;
+    }
+
+    /**
+     * The union of balls around each point, as lines and splines used to
+     * be drawn.
+     */
+    private static Set<BlockVector> naive(List<BlockVector> points, double radius, boolean hollow) {
+        Set<BlockVector> ballooned = new HashSet<BlockVector>();
+        int ceilRadius = (int) Math.ceil(radius);
+        for (BlockVector point : points) {
+            for (int x = -ceilRadius; x <= ceilRadius; x++) {
+                for (int y = -ceilRadius; y <= ceilRadius; y++) {
+                    for (int z = -ceilRadius; z <= ceilRadius; z++) {
+                        if (Math.sqrt(x * x + y * y + z * z) <= radius) {
+                            ballooned.add(point.add(x, y, z).toBlockVector());
+                        }
+                    }
+                }
+            }
+        }
+
+        if (!hollow) {
+            return ballooned;
+        }
+
+        Set<BlockVector> hollowed = new HashSet<BlockVector>();
+        for (BlockVector v : ballooned) {
+            if (!(ballooned.contains(v.add(1, 0, 0).toBlockVector()) && ballooned.contains(v.add(-1, 0, 0).toBlockVector())
+                    && ballooned.contains(v.add(0, 1, 0).toBlockVector()) && ballooned.contains(v.add(0, -1, 0).toBlockVector())
+                    && ballooned.contains(v.add(0, 0, 1).toBlockVector()) && ballooned.contains(v.add(0, 0, -1).toBlockVector()))) {
+                hollowed.add(v);
+            }
+        }
+        return hollowed;
+    }
+
+    private static class TestWorld extends NullWorld {
+        private final Set<BlockVector> blocks = new HashSet<BlockVector>();
+
+        @Override
+        public boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight) {
+            assertTrue(blocks.add(position.toBlockVector()));
+            return true;
+        }
+    }
+
+}
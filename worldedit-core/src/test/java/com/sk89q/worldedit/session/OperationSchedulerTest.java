@@ -0,0 +1,197 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class OperationSchedulerTest {
+
+    private OperationScheduler scheduler;
+    private Actor actor;
+    private LocalSession session;
+
+    @Before
+    public void setUp() {
+        scheduler = new OperationScheduler(WorldEdit.getInstance());
+        actor = mock(Actor.class);
+        session = mock(LocalSession.class);
+    }
+
+    @After
+    public void tearDown() {
+        WorldEdit.getInstance().getEventBus().unregister(scheduler);
+    }
+
+    @Test
+    public void testCompletesImmediatelyWhenDisabled() throws Exception {
+        EditSession editSession = mock(EditSession.class);
+        StepOperation operation = new StepOperation(100);
+
+        assertFalse(scheduler.submit(actor, session, editSession, operation, "test"));
+        assertEquals(100, operation.steps);
+        assertFalse(scheduler.isScheduled(editSession));
+    }
+
+    @Test
+    public void testResumesOnTicks() throws Exception {
+        enable();
+        EditSession editSession = mock(EditSession.class);
+        StepOperation operation = new StepOperation(5);
+
+        assertTrue(scheduler.submit(actor, session, editSession, operation, "test"));
+        assertEquals(1, operation.steps);
+        assertTrue(scheduler.isScheduled(editSession));
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.tick();
+        }
+        assertEquals(4, operation.steps);
+        verify(session, never()).remember(editSession);
+
+        scheduler.tick();
+        assertEquals(5, operation.steps);
+        assertFalse(scheduler.isScheduled(editSession));
+        verify(session).remember(editSession);
+    }
+
+    @Test
+    public void testRefusesSecondEdit() throws Exception {
+        enable();
+        EditSession first = mock(EditSession.class);
+        EditSession second = mock(EditSession.class);
+        StepOperation firstOperation = new StepOperation(3);
+        StepOperation secondOperation = new StepOperation(1);
+
+        assertTrue(scheduler.submit(actor, session, first, firstOperation, "first"));
+        try {
+            scheduler.submit(actor, session, second, secondOperation, "second");
+            fail();
+        } catch (EditsQueuedException ignored) {
+        }
+        assertEquals(0, secondOperation.steps);
+        assertFalse(scheduler.isScheduled(second));
+
+        scheduler.tick();
+        scheduler.tick();
+        assertEquals(3, firstOperation.steps);
+        assertFalse(scheduler.isScheduled(first));
+        assertFalse(scheduler.submit(actor, session, second, secondOperation, "second"));
+    }
+
+    @Test
+    public void testSessionsTakeTurns() throws Exception {
+        enable();
+        LocalSession other = mock(LocalSession.class);
+        StepOperation operation = new StepOperation(10);
+        StepOperation otherOperation = new StepOperation(10);
+
+        scheduler.submit(actor, session, mock(EditSession.class), operation, "test");
+        scheduler.submit(actor, other, mock(EditSession.class), otherOperation, "other");
+
+        for (int i = 0; i < 4; i++) {
+            scheduler.tick();
+        }
+        assertEquals(3, operation.steps);
+        assertEquals(3, otherOperation.steps);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        enable();
+        EditSession editSession = mock(EditSession.class);
+        StepOperation operation = new StepOperation(10);
+
+        scheduler.submit(actor, session, editSession, operation, "test");
+        assertEquals(1, scheduler.cancel(session));
+        assertTrue(operation.cancelled);
+        assertFalse(scheduler.isScheduled(editSession));
+        verify(editSession).flushQueue();
+        verify(session).remember(editSession);
+        assertEquals(0, scheduler.cancel(session));
+
+        scheduler.tick();
+        assertEquals(1, operation.steps);
+    }
+
+    @Test
+    public void testCheckIdle() throws Exception {
+        enable();
+        scheduler.checkIdle(session);
+
+        scheduler.submit(actor, session, mock(EditSession.class), new StepOperation(2), "test");
+        try {
+            scheduler.checkIdle(session);
+            fail();
+        } catch (EditsQueuedException ignored) {
+        }
+        scheduler.checkIdle(mock(LocalSession.class));
+
+        scheduler.tick();
+        scheduler.checkIdle(session);
+    }
+
+    private void enable() {
+        // Resume operations only once per tick
+        scheduler.setTickBudget(0);
+        scheduler.setTicking(true);
+    }
+
+    /**
+     * Takes one step each time it is resumed.
+     */
+    private static class StepOperation implements Operation {
+        private final int total;
+        private int steps;
+        private boolean cancelled;
+
+        private StepOperation(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public Operation resume(RunContext run) throws WorldEditException {
+            steps++;
+            return steps < total ? this : null;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.registry.LegacyWorldData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class SchematicServiceTest {
+
+    private SchematicService service;
+    private Actor actor;
+    private LocalSession session;
+    private File dir;
+
+    @Before
+    public void setUp() {
+        service = new SchematicService(WorldEdit.getInstance());
+        actor = mock(Actor.class);
+        session = mock(LocalSession.class);
+        dir = Files.createTempDir();
+    }
+
+    @After
+    public void tearDown() {
+        WorldEdit.getInstance().getEventBus().unregister(service);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File file = new File(dir, "test.schematic");
+        BlockArrayClipboard clipboard = createClipboard();
+
+        assertEquals(file, save(clipboard, file).get(10, TimeUnit.SECONDS));
+        assertArrayEquals(new String[] { "test.schematic" }, dir.list());
+        verify(actor).print("test saved.");
+
+        Clipboard loaded = load(file).get(10, TimeUnit.SECONDS);
+        ArgumentCaptor<ClipboardHolder> holder = ArgumentCaptor.forClass(ClipboardHolder.class);
+        verify(session).setClipboard(holder.capture());
+        assertTrue(holder.getValue().getClipboard() == loaded);
+        assertEquals(clipboard.getDimensions(), loaded.getDimensions());
+        assertEquals(35, loaded.getBlock(new Vector(1, 2, 3)).getType());
+        assertEquals(4, loaded.getBlock(new Vector(1, 2, 3)).getData());
+        assertEquals(0, loaded.getBlock(new Vector(0, 0, 0)).getType());
+    }
+
+    @Test
+    public void testSaveReplacesFile() throws Exception {
+        File file = new File(dir, "test.schematic");
+        Files.write(new byte[] { 1, 2, 3 }, file);
+
+        save(createClipboard(), file).get(10, TimeUnit.SECONDS);
+        assertEquals(ClipboardFormat.SCHEMATIC, ClipboardFormat.findByFile(file));
+        assertArrayEquals(new String[] { "test.schematic" }, dir.list());
+    }
+
+    @Test
+    public void testFailedLoadLeavesSession() throws Exception {
+        File file = new File(dir, "broken.schematic");
+        Files.write(new byte[] { 1, 2, 3 }, file);
+
+        try {
+            load(file).get(10, TimeUnit.SECONDS);
+            fail("Expected the load to fail");
+        } catch (ExecutionException e) {
+            // Expected
+        }
+        verify(session, never()).setClipboard(any(ClipboardHolder.class));
+        assertFalse(service.isBusy(session));
+    }
+
+    @Test
+    public void testFailedSaveOnError() throws Exception {
+        File file = new File(dir, "test.schematic");
+        Clipboard clipboard = mock(Clipboard.class, new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                throw new AssertionError("Not readable");
+            }
+        });
+
+        try {
+            save(clipboard, file).get(10, TimeUnit.SECONDS);
+            fail("Expected the save to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+        }
+        assertFalse(service.isBusy(session));
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void testDeliversOnTick() throws Exception {
+        service.setTicking(true);
+        File file = new File(dir, "test.schematic");
+
+        ListenableFuture<File> future = save(createClipboard(), file);
+        assertTrue(service.isBusy(session));
+
+        // A second job of the same session is turned down
+        ListenableFuture<File> second = save(createClipboard(), new File(dir, "second.schematic"));
+        try {
+            second.get();
+            fail("Expected the second save to be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!future.isDone() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            if (file.exists()) {
+                service.tick();
+            }
+        }
+        assertTrue(future.isDone());
+        assertFalse(service.isBusy(session));
+        assertFalse(new File(dir, "second.schematic").exists());
+    }
+
+    @Test
+    public void testCompressionLevel() throws Exception {
+        File fast = new File(dir, "fast.schematic");
+        File small = new File(dir, "small.schematic");
+
+        service.setCompressionLevel(0);
+        save(createClipboard(), fast).get(10, TimeUnit.SECONDS);
+        service.setCompressionLevel(9);
+        save(createClipboard(), small).get(10, TimeUnit.SECONDS);
+        assertTrue(small.length() < fast.length());
+
+        try {
+            service.setCompressionLevel(10);
+            fail("Expected the level to be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private ListenableFuture<File> save(Clipboard clipboard, File file) {
+        return service.save(actor, session, clipboard, LegacyWorldData.getInstance(), ClipboardFormat.SCHEMATIC, file, "test");
+    }
+
+    private ListenableFuture<Clipboard> load(File file) {
+        return service.load(actor, session, ClipboardFormat.SCHEMATIC, file, LegacyWorldData.getInstance(), "test");
+    }
+
+    private static BlockArrayClipboard createClipboard() throws Exception {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(new Vector(0, 0, 0), new Vector(15, 15, 15)));
+        clipboard.setBlock(new Vector(1, 2, 3), new BaseBlock(35, 4));
+        return clipboard;
+    }
+
+}
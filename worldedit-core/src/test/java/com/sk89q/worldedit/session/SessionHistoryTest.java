@@ -0,0 +1,96 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.entity.Player;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.world.NullWorld;
+import com.sk89q.worldedit.world.World;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.mockito.Mockito.mock;
+
+public class SessionHistoryTest {
+
+    private static final World WORLD = new NullWorld() {
+        @Override
+        public String getName() {
+            return "world";
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSpillsInBackground() throws Exception {
+        File dir = folder.newFolder("history");
+        SessionHistory history = new SessionHistory();
+        history.setDirectory(dir);
+        history.setMemoryBudget(0);
+
+        history.remember(createEdit());
+        history.remember(createEdit());
+        history.flush().get(10, TimeUnit.SECONDS);
+
+        String[] files = dir.list();
+        Arrays.sort(files);
+        assertArrayEquals(new String[] { "0.done", "1.done" }, files);
+
+        // Written edits are picked up on the next access
+        history.remember(createEdit());
+        history.flush().get(10, TimeUnit.SECONDS);
+        history.remember(createEdit());
+        assertEquals(4, history.size());
+        assertEquals(1, history.getPendingWrites());
+    }
+
+    @Test
+    public void testUndoReturnsNewEditSession() throws Exception {
+        SessionHistory history = new SessionHistory();
+        EditSession edit = createEdit();
+        history.remember(edit);
+
+        EditSession undone = history.undo(null, mock(Player.class), false);
+        assertNotSame(edit, undone);
+        assertEquals(WORLD, undone.getWorld());
+    }
+
+    private static EditSession createEdit() {
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(WORLD, -1);
+        editSession.getChangeSet().add(new BlockChange(new BlockVector(1, 2, 3), new BaseBlock(BlockID.AIR), new BaseBlock(BlockID.STONE)));
+        return editSession;
+    }
+
+}
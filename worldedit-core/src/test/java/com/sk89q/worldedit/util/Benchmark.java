@@ -0,0 +1,158 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Times a few cases that do the same work in different ways.
+ *
+ * <p>Benchmarks are not run as part of the tests, because their timings
+ * depend on the machine. Each benchmark is a class with a {@code main}
+ * method that adds its cases to a {@code Benchmark} and runs it. Its class
+ * documentation says what is compared and which arguments it accepts.
+ * Run it with a fixed heap size (such as {@code -Xmx2G}) so that results
+ * can be compared between runs.</p>
+ *
+ * <p>Every case is first run once to warm up. It is then run for a number
+ * of rounds, and the fastest round is reported along with the most heap
+ * that any round used above what was in use before it started.</p>
+ */
+public final class Benchmark {
+
+    private final int rounds;
+    private final Map<String, Case> cases = new LinkedHashMap<String, Case>();
+    private final Map<String, Long> operations = new LinkedHashMap<String, Long>();
+    private long sink;
+
+    /**
+     * Create a new benchmark.
+     *
+     * @param rounds the number of rounds to time each case for
+     */
+    public Benchmark(int rounds) {
+        checkArgument(rounds > 0, "rounds > 0 required");
+        this.rounds = rounds;
+    }
+
+    /**
+     * Add a case.
+     *
+     * @param name the name to report the case with
+     * @param operations the number of operations that one run performs
+     * @param task the case
+     * @return this object
+     */
+    public Benchmark add(String name, long operations, Case task) {
+        checkNotNull(name);
+        checkArgument(operations > 0, "operations > 0 required");
+        checkNotNull(task);
+        cases.put(name, task);
+        this.operations.put(name, operations);
+        return this;
+    }
+
+    /**
+     * Run every case and print the results.
+     *
+     * @throws Exception thrown by a case
+     */
+    public void run() throws Exception {
+        for (Case task : cases.values()) {
+            sink += task.run();
+        }
+
+        for (Map.Entry<String, Case> entry : cases.entrySet()) {
+            long best = Long.MAX_VALUE;
+            long peak = 0;
+            for (int round = 0; round < rounds; round++) {
+                long baseline = resetPeakHeap();
+                long start = System.nanoTime();
+                sink += entry.getValue().run();
+                best = Math.min(best, System.nanoTime() - start);
+                peak = Math.max(peak, getPeakHeap() - baseline);
+            }
+
+            long count = operations.get(entry.getKey());
+            System.out.println(String.format("%-72s %8d ms %10.2f ns/op  peak heap %6d MB",
+                    entry.getKey(), best / 1000000, best / (double) count, peak / (1024 * 1024)));
+        }
+
+        if (sink == Long.MIN_VALUE) {
+            System.out.println(sink); // keep the results alive
+        }
+    }
+
+    /**
+     * Get the first argument that was passed to a benchmark as a number.
+     *
+     * @param args the arguments of the {@code main} method
+     * @param def the value to use if there are no arguments
+     * @return the number
+     */
+    public static int getSize(String[] args, int def) {
+        return args.length > 0 ? Integer.parseInt(args[0]) : def;
+    }
+
+    private static long resetPeakHeap() {
+        System.gc();
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * One way of doing the work that is compared.
+     */
+    public interface Case {
+
+        /**
+         * Do the work once.
+         *
+         * @return a value computed from the result, so that the work cannot be skipped
+         * @throws Exception thrown on error
+         */
+        long run() throws Exception;
+
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.eventbus;
+
+import com.sk89q.worldedit.util.Benchmark;
+import com.sk89q.worldedit.util.eventbus.EventHandler.Priority;
+
+import java.lang.reflect.Method;
+
+/**
+ * Measures the throughput of posting events to a bus with a few handlers,
+ * and of calling the same handler method through reflection. See
+ * {@link Benchmark} for how to run it; the argument is the number of
+ * events to post.
+ */
+public final class EventBusBenchmark {
+
+    private EventBusBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int count = Benchmark.getSize(args, 10000000);
+
+        final EventBus bus = new EventBus();
+        final Listener listener = new Listener();
+        bus.register(listener);
+        bus.register(new Listener());
+
+        final Method method = Listener.class.getMethod("onEvent", Event.class);
+        method.setAccessible(true);
+        final Event event = new Event();
+
+        new Benchmark(5)
+                .add("post", count, new Benchmark.Case() {
+                    @Override
+                    public long run() {
+                        for (int i = 0; i < count; i++) {
+                            bus.post(event);
+                        }
+                        return event.value;
+                    }
+                })
+                .add("reflection only", count, new Benchmark.Case() {
+                    @Override
+                    public long run() throws Exception {
+                        for (int i = 0; i < count; i++) {
+                            method.invoke(listener, event);
+                            method.invoke(listener, event);
+                            method.invoke(listener, event);
+                            method.invoke(listener, event);
+                        }
+                        return event.value;
+                    }
+                })
+                .run();
+    }
+
+    public static class Event {
+        long value;
+    }
+
+    public static class Listener {
+        @Subscribe
+        public void onEvent(Event event) {
+            event.value++;
+        }
+
+        @Subscribe(priority = Priority.LATE)
+        public void onLateEvent(Object event) {
+            ((Event) event).value ^= 1;
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.eventbus;
+
+import com.sk89q.worldedit.util.eventbus.EventHandler.Priority;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventBusTest {
+
+    @Test
+    public void testPriorityOrder() {
+        EventBus bus = new EventBus();
+        Listener listener = new Listener();
+        bus.register(listener);
+        bus.post("event");
+        assertEquals(Arrays.asList("early:event", "normal:event", "late:event"), listener.received);
+    }
+
+    @Test
+    public void testSupertypeHandlers() {
+        EventBus bus = new EventBus();
+        Listener listener = new Listener();
+        bus.register(listener);
+        bus.post(3);
+        assertEquals(Arrays.asList("number:3"), listener.received);
+    }
+
+    @Test
+    public void testSubscribeAfterPost() {
+        EventBus bus = new EventBus();
+        Listener first = new Listener();
+        bus.register(first);
+        bus.post("a");
+
+        Listener second = new Listener();
+        bus.register(second);
+        bus.post("b");
+        assertEquals(6, first.received.size());
+        assertEquals(3, second.received.size());
+
+        bus.unregister(first);
+        bus.post("c");
+        assertEquals(6, first.received.size());
+        assertEquals(6, second.received.size());
+    }
+
+    @Test
+    public void testUnsubscribe() {
+        EventBus bus = new EventBus();
+        final List<Object> received = new ArrayList<Object>();
+        EventHandler handler = new EventHandler(Priority.NORMAL) {
+            @Override
+            public void dispatch(Object event) throws Exception {
+                received.add(event);
+            }
+
+            @Override
+            public int hashCode() {
+                return System.identityHashCode(this);
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj == this;
+            }
+        };
+        bus.subscribe(String.class, handler);
+        bus.post("a");
+        bus.unsubscribe(String.class, handler);
+        bus.post("b");
+        assertEquals(Arrays.<Object>asList("a"), received);
+    }
+
+    @Test
+    public void testExceptionDoesNotStopDispatch() {
+        EventBus bus = new EventBus();
+        FailingListener failing = new FailingListener();
+        Listener listener = new Listener();
+        bus.register(failing);
+        bus.register(listener);
+        bus.post("event");
+        assertEquals(1, failing.calls);
+        assertEquals(3, listener.received.size());
+    }
+
+    @Test
+    public void testNonPublicListener() {
+        EventBus bus = new EventBus();
+        HiddenListener listener = new HiddenListener();
+        bus.register(listener);
+        bus.post("event");
+        assertEquals(Arrays.asList("hidden:event"), listener.received);
+    }
+
+    @Test
+    public void testInvokerCompiler() throws Exception {
+        Listener listener = new Listener();
+        EventInvoker invoker = InvokerCompiler.compile(Listener.class.getMethod("onNormal", String.class));
+        assertNotNull(invoker);
+        invoker.invoke(listener, "direct");
+        assertEquals(Arrays.asList("normal:direct"), listener.received);
+
+        EventInvoker counting = InvokerCompiler.compile(Listener.class.getMethod("onNumber", Number.class));
+        assertNotNull(counting);
+        counting.invoke(listener, 1.5);
+        assertEquals("number:1.5", listener.received.get(1));
+
+        assertNull(InvokerCompiler.compile(HiddenListener.class.getDeclaredMethod("onEvent", String.class)));
+    }
+
+    @Test
+    public void testInvokerPropagatesException() throws Exception {
+        EventInvoker invoker = InvokerCompiler.compile(FailingListener.class.getMethod("onEvent", String.class));
+        assertNotNull(invoker);
+        try {
+            invoker.invoke(new FailingListener(), "event");
+        } catch (IllegalStateException e) {
+            assertEquals("event", e.getMessage());
+            return;
+        }
+        assertTrue("Expected an exception", false);
+    }
+
+    public static class Listener {
+        final List<String> received = new ArrayList<String>();
+
+        @Subscribe(priority = Priority.LATE)
+        public void onLate(String event) {
+            received.add("late:" + event);
+        }
+
+        @Subscribe
+        public void onNormal(String event) {
+            received.add("normal:" + event);
+        }
+
+        @Subscribe(priority = Priority.EARLY)
+        public boolean onEarly(CharSequence event) {
+            return received.add("early:" + event);
+        }
+
+        @Subscribe
+        public int onNumber(Number event) {
+            received.add("number:" + event);
+            return received.size();
+        }
+    }
+
+    public static class FailingListener {
+        int calls;
+
+        @Subscribe(priority = Priority.VERY_EARLY)
+        public void onEvent(String event) {
+            calls++;
+            throw new IllegalStateException(event);
+        }
+    }
+
+    private static class HiddenListener {
+        final List<String> received = new ArrayList<String>();
+
+        @Subscribe
+        public void onEvent(String event) {
+            received.add("hidden:" + event);
+        }
+    }
+
+}
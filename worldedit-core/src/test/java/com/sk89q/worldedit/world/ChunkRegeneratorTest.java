@@ -0,0 +1,207 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkRegeneratorTest {
+
+    private static final Region REGION = new CuboidRegion(new Vector(4, 1, 4), new Vector(20, 6, 10));
+    private static final Vector CHEST = new Vector(25, 3, 12);
+    // Inside of the region, but left as it is by regeneration
+    private static final Vector KEPT_CHEST = new Vector(6, 5, 6);
+
+    @Test
+    public void testRegenerate() throws Exception {
+        MapWorld world = createWorld();
+        Map<BlockVector, BaseBlock> original = new HashMap<BlockVector, BaseBlock>(world.getBlocks());
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+
+        TestRegenerator regenerator = new TestRegenerator(world, editSession);
+        regenerator.setBatchSize(1);
+        assertEquals(2, regenerator.getChunkCount());
+
+        // One batch is always regenerated, even if there is no time left
+        assertSame(regenerator, regenerator.resume(new RunContext(0, TimeUnit.MILLISECONDS)));
+        assertEquals(1, regenerator.getRegeneratedCount());
+        Operations.completeBlindly(regenerator);
+        assertEquals(2, regenerator.batches);
+        assertFalse(regenerator.hasFailed());
+        editSession.flushQueue();
+
+        int changed = 0;
+        for (int x = 0; x < 32; x++) {
+            for (int y = 0; y < 10; y++) {
+                for (int z = 0; z < 16; z++) {
+                    BlockVector position = new BlockVector(x, y, z);
+                    BaseBlock block = world.getBlock(position);
+                    if (position.equals(KEPT_CHEST)) {
+                        assertEquals(getOrAir(original, position), block);
+                    } else if (REGION.contains(position)) {
+                        assertEquals(generate(y), block);
+                        if (!block.equals(getOrAir(original, position))) {
+                            changed++;
+                        }
+                    } else {
+                        assertEquals(getOrAir(original, position), block);
+                    }
+                }
+            }
+        }
+
+        // The chest outside of the region is restored with its contents
+        assertNotNull(world.getBlock(CHEST).getNbtData());
+        assertEquals("Chest", world.getBlock(CHEST).getNbtData().getString("id"));
+
+        // Only blocks that were changed inside of the region are remembered,
+        // which excludes the kept chest
+        assertTrue(changed > 0);
+        assertEquals(changed, editSession.getBlockChangeCount());
+
+        EditSession undo = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+        editSession.undo(undo);
+        undo.flushQueue();
+        for (BlockVector position : REGION) {
+            assertEquals(getOrAir(original, position), world.getBlock(position));
+        }
+    }
+
+    @Test
+    public void testBatchFitsTimeLeft() throws Exception {
+        MapWorld world = createWorld();
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+
+        // Without a time limit, every chunk fits into one batch
+        TestRegenerator regenerator = new TestRegenerator(world, editSession);
+        assertNull(regenerator.resume(new RunContext()));
+        assertEquals(1, regenerator.batches);
+
+        // With a time limit, the first chunk is regenerated alone to see how long it takes
+        regenerator = new TestRegenerator(world, editSession);
+        assertSame(regenerator, regenerator.resume(new RunContext(0, TimeUnit.MILLISECONDS)));
+        assertEquals(1, regenerator.getRegeneratedCount());
+        assertNull(regenerator.resume(new RunContext(1, TimeUnit.MINUTES)));
+        assertEquals(2, regenerator.batches);
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        MapWorld world = createWorld();
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1);
+
+        TestRegenerator regenerator = new TestRegenerator(world, editSession);
+        regenerator.setBatchSize(1);
+        regenerator.fail = true;
+        assertNull(regenerator.resume(new RunContext()));
+        assertTrue(regenerator.hasFailed());
+        assertEquals(1, regenerator.batches);
+    }
+
+    private static BaseBlock getOrAir(Map<BlockVector, BaseBlock> blocks, BlockVector position) {
+        BaseBlock block = blocks.get(position);
+        return block != null ? block : new BaseBlock(BlockID.AIR);
+    }
+
+    private static BaseBlock generate(int y) {
+        return y < 4 ? new BaseBlock(BlockID.STONE) : new BaseBlock(BlockID.AIR);
+    }
+
+    private static MapWorld createWorld() {
+        Random random = new Random(5);
+        MapWorld world = new MapWorld(15);
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 16; z++) {
+                int height = 2 + random.nextInt(6);
+                for (int y = 0; y <= height; y++) {
+                    world.getBlocks().put(new BlockVector(x, y, z), new BaseBlock(y == height ? BlockID.GRASS : BlockID.DIRT));
+                }
+            }
+        }
+
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        values.put("id", new StringTag("Chest"));
+        world.getBlocks().put(CHEST.toBlockVector(), new BaseBlock(BlockID.CHEST, 2, new CompoundTag(values)));
+        world.getBlocks().put(KEPT_CHEST.toBlockVector(), new BaseBlock(BlockID.CHEST, 3, new CompoundTag(values)));
+        return world;
+    }
+
+    private static class TestRegenerator extends ChunkRegenerator {
+        private final MapWorld world;
+        private int batches;
+        private boolean fail;
+
+        private TestRegenerator(MapWorld world, EditSession editSession) {
+            super(world, REGION, editSession);
+            this.world = world;
+        }
+
+        @Override
+        protected boolean regenerateChunks(List<Vector2D> chunks) {
+            batches++;
+            for (Vector2D chunk : chunks) {
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        for (int y = 0; y <= world.getMaxY(); y++) {
+                            BlockVector position = new BlockVector(chunk.getBlockX() * 16 + x, y, chunk.getBlockZ() * 16 + z);
+                            if (position.equals(KEPT_CHEST)) {
+                                continue;
+                            }
+                            BaseBlock block = generate(y);
+                            if (block.isAir()) {
+                                world.getBlocks().remove(position);
+                            } else {
+                                world.getBlocks().put(position, block);
+                            }
+                        }
+                    }
+                }
+            }
+            return !fail;
+        }
+    }
+
+}
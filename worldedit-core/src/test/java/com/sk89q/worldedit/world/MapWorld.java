@@ -0,0 +1,126 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A world for tests that keeps its blocks in a map. Positions that are not
+ * in the map are air.
+ */
+public class MapWorld extends NullWorld {
+
+    private final Map<BlockVector, BaseBlock> blocks = new HashMap<BlockVector, BaseBlock>();
+    private final Set<BlockVector> changed = new HashSet<BlockVector>();
+    private final int maxY;
+    private int writes;
+
+    /**
+     * Create a new world with the default height.
+     */
+    public MapWorld() {
+        this(255);
+    }
+
+    /**
+     * Create a new world.
+     *
+     * @param maxY the maximum Y coordinate
+     */
+    public MapWorld(int maxY) {
+        this.maxY = maxY;
+    }
+
+    /**
+     * Get the map of blocks, which can be changed directly to set up the
+     * world without counting as writes.
+     *
+     * @return the blocks, by position
+     */
+    public Map<BlockVector, BaseBlock> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Get the positions that were set through {@link #setBlock(Vector, BaseBlock, boolean)}
+     * since the last {@link #resetWrites()}.
+     *
+     * @return the changed positions
+     */
+    public Set<BlockVector> getChanged() {
+        return changed;
+    }
+
+    /**
+     * Get the number of blocks that were set since the last {@link #resetWrites()}.
+     *
+     * @return the number of writes
+     */
+    public int getWrites() {
+        return writes;
+    }
+
+    /**
+     * Forget the blocks that were set so far.
+     */
+    public void resetWrites() {
+        changed.clear();
+        writes = 0;
+    }
+
+    @Override
+    public int getMaxY() {
+        return maxY;
+    }
+
+    @Override
+    public boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight) {
+        BlockVector blockPosition = position.toBlockVector();
+        if (block.getType() == BlockID.AIR) {
+            blocks.remove(blockPosition);
+        } else {
+            blocks.put(blockPosition, new BaseBlock(block));
+        }
+        changed.add(blockPosition);
+        writes++;
+        return true;
+    }
+
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        BaseBlock block = blocks.get(position.toBlockVector());
+        return block != null ? new BaseBlock(block) : new BaseBlock(BlockID.AIR);
+    }
+
+    @Override
+    public BaseBlock getLazyBlock(Vector position) {
+        BaseBlock block = getBlock(position);
+        return new BaseBlock(block.getType(), block.getData());
+    }
+
+}
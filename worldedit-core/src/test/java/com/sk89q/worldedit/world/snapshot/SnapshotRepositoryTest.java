@@ -0,0 +1,160 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.snapshot;
+
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotRepositoryTest {
+
+    private File dir;
+    private SnapshotRepository repository;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDir();
+        addFolder("world/2014-01-05-00-00-00");
+        addFolder("world/2014-01-01-00-00-00");
+        assertTrue(new File(dir, "world/not-a-snapshot").mkdirs());
+        addFolder("other/2014-01-02-00-00-00");
+        addZip("backup.zip", "world/level.dat");
+        assertTrue(new File(dir, "backup.zip").setLastModified(date(3).getTimeInMillis()));
+        addZip("latest.zip", "other/level.dat");
+        repository = new SnapshotRepository(dir);
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void testGetSnapshots() throws Exception {
+        assertThat(names(repository.getSnapshots(false, "world")), equalTo(names(
+                "world/2014-01-01-00-00-00", "backup.zip", "world/2014-01-05-00-00-00")));
+        assertThat(names(repository.getSnapshots(true, "world")), equalTo(names(
+                "world/2014-01-05-00-00-00", "backup.zip", "world/2014-01-01-00-00-00")));
+        assertThat(names(repository.getSnapshots(true, "other")), equalTo(names(
+                "latest.zip", "other/2014-01-02-00-00-00")));
+        assertThat(repository.getDefaultSnapshot("world").getName(), equalTo("world/2014-01-05-00-00-00"));
+    }
+
+    @Test
+    public void testDateQueries() throws Exception {
+        assertThat(repository.getSnapshotBefore(date(2), "world").getName(), equalTo("world/2014-01-01-00-00-00"));
+        assertThat(repository.getSnapshotBefore(date(4), "world").getName(), equalTo("backup.zip"));
+        assertThat(repository.getSnapshotBefore(date(9), "world").getName(), equalTo("world/2014-01-05-00-00-00"));
+        assertNull(repository.getSnapshotBefore(date(0), "world"));
+
+        assertThat(repository.getSnapshotAfter(date(0), "world").getName(), equalTo("world/2014-01-01-00-00-00"));
+        assertThat(repository.getSnapshotAfter(date(2), "world").getName(), equalTo("backup.zip"));
+        assertThat(repository.getSnapshotAfter(date(4), "world").getName(), equalTo("world/2014-01-05-00-00-00"));
+        assertNull(repository.getSnapshotAfter(date(6), "world"));
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        repository.setCheckInterval(0);
+        assertThat(repository.getSnapshots(false, "world").size(), equalTo(3));
+
+        // A change that does not change the modification time is still seen
+        // while the folder was modified too recently to tell
+        File world = new File(dir, "world");
+        long modified = world.lastModified();
+        addFolder("world/2014-01-06-00-00-00");
+        assertTrue(world.setLastModified(modified));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (repository.getSnapshots(false, "world").size() == 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(repository.getDefaultSnapshot("world").getName(), equalTo("world/2014-01-06-00-00-00"));
+    }
+
+    private void addFolder(String name) throws IOException {
+        File folder = new File(dir, name);
+        assertTrue(folder.mkdirs());
+        Files.touch(new File(folder, "level.dat"));
+    }
+
+    private void addZip(String name, String entry) throws IOException {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(new File(dir, name)));
+        try {
+            out.putNextEntry(new ZipEntry(entry));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Get a date as {@link YYMMDDHHIISSParser} would detect it from a name.
+     */
+    private static Calendar date(int day) {
+        Calendar calendar = new GregorianCalendar();
+        calendar.clear();
+        calendar.set(2014, 1, day, 12, 0, 0);
+        return calendar;
+    }
+
+    private static List<String> names(String... names) {
+        List<String> list = new ArrayList<String>();
+        for (String name : names) {
+            list.add(name);
+        }
+        return list;
+    }
+
+    private static List<String> names(List<Snapshot> snapshots) {
+        List<String> list = new ArrayList<String>();
+        for (Snapshot snapshot : snapshots) {
+            list.add(snapshot.getName());
+        }
+        return list;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.ByteTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.LongTag;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.world.chunk.AnvilChunk;
+import com.sk89q.worldedit.world.chunk.Chunk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class MappedMcRegionChunkStoreTest {
+
+    private File world;
+
+    @Before
+    public void setUp() throws IOException {
+        world = File.createTempFile("world", "");
+        assertTrue(world.delete());
+        assertTrue(new File(world, "region").mkdirs());
+
+        // chunks 0,0 and 1,2 of region 0,0
+        writeRegion(new File(world, "region/r.0.0.mca"), new int[][] { { 0, 0 }, { 1, 2 } });
+    }
+
+    @After
+    public void tearDown() {
+        File region = new File(world, "region");
+        File[] files = region.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        region.delete();
+        world.delete();
+    }
+
+    @Test
+    public void testGetChunk() throws Exception {
+        MappedMcRegionChunkStore store = new MappedMcRegionChunkStore(world);
+        assertTrue(store.isValid());
+
+        Chunk chunk = store.getChunk(new BlockVector2D(1, 2), null);
+        assertThat(chunk, instanceOf(AnvilChunk.class));
+        assertBlocks(chunk, 1, 2);
+        store.close();
+    }
+
+    @Test
+    public void testSkipsUnusedTags() throws Exception {
+        MappedMcRegionChunkStore store = new MappedMcRegionChunkStore(world);
+        CompoundTag tag = store.getChunkTag(new BlockVector2D(0, 0), null);
+        assertTrue(tag.getValue().containsKey("Sections"));
+        assertTrue(!tag.getValue().containsKey("LastUpdate"));
+        assertTrue(!tag.getValue().containsKey("HeightMap"));
+        store.close();
+    }
+
+    @Test(expected = MissingChunkException.class)
+    public void testMissingChunk() throws Exception {
+        new MappedMcRegionChunkStore(world).getChunk(new BlockVector2D(2, 2), null);
+    }
+
+    @Test(expected = MissingChunkException.class)
+    public void testMissingRegion() throws Exception {
+        new MappedMcRegionChunkStore(world).getChunk(new BlockVector2D(40, 0), null);
+    }
+
+    @Test(expected = ChunkStoreException.class)
+    public void testCorruptOffset() throws Exception {
+        // An offset with the highest bit set is negative as an int
+        RandomAccessFile raf = new RandomAccessFile(new File(world, "region/r.0.0.mca"), "rw");
+        try {
+            raf.seek((2 + 2 * 32) * 4);
+            raf.writeInt(0xFFFFFF01);
+        } finally {
+            raf.close();
+        }
+
+        new MappedMcRegionChunkStore(world).getChunk(new BlockVector2D(2, 2), null);
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final MappedMcRegionChunkStore store = new MappedMcRegionChunkStore(world);
+        assertTrue(store.isConcurrent());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>();
+            for (int i = 0; i < 32; i++) {
+                final BlockVector2D position = i % 2 == 0 ? new BlockVector2D(0, 0) : new BlockVector2D(1, 2);
+                futures.add(executor.submit(new Callable<Chunk>() {
+                    @Override
+                    public Chunk call() throws Exception {
+                        return store.getChunk(position, null);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                if (i % 2 == 0) {
+                    assertBlocks(futures.get(i).get(), 0, 0);
+                } else {
+                    assertBlocks(futures.get(i).get(), 1, 2);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        store.close();
+    }
+
+    static void assertBlocks(Chunk chunk, int chunkX, int chunkZ) throws Exception {
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                Vector position = new Vector(chunkX * 16 + x, 3, chunkZ * 16 + z);
+                assertThat(chunk.getBlock(position), equalTo(new BaseBlock(blockId(x, z), 0)));
+            }
+        }
+        assertThat(chunk.getBlock(new Vector(chunkX * 16, 20, chunkZ * 16)).getType(), equalTo(0));
+    }
+
+    private static int blockId(int x, int z) {
+        return 1 + (x + z) % 5;
+    }
+
+    static void writeRegion(File file, int[][] chunks) throws IOException {
+        int[] header = new int[1024];
+        ByteArrayOutputStream sectors = new ByteArrayOutputStream();
+        int sector = 2;
+
+        for (int[] chunk : chunks) {
+            byte[] data = compress(createChunk(chunk[0], chunk[1]));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(data.length + 1);
+            out.writeByte(2); // deflate
+            out.write(data);
+            int count = (bytes.size() + 4095) / 4096;
+            out.write(new byte[count * 4096 - bytes.size()]);
+            out.close();
+
+            header[(chunk[0] & 31) + (chunk[1] & 31) * 32] = sector << 8 | count;
+            sectors.write(bytes.toByteArray());
+            sector += count;
+        }
+
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            for (int offset : header) {
+                out.writeInt(offset);
+            }
+            out.write(new byte[4096]); // timestamps
+            sectors.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] compress(CompoundTag tag) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NBTOutputStream out = new NBTOutputStream(new DeflaterOutputStream(bytes));
+        Map<String, Tag> root = new HashMap<String, Tag>();
+        root.put("Level", tag);
+        out.writeNamedTag("", new CompoundTag(root));
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static CompoundTag createChunk(int chunkX, int chunkZ) {
+        byte[] blocks = new byte[4096];
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                blocks[3 * 256 + z * 16 + x] = (byte) blockId(x, z);
+            }
+        }
+
+        Map<String, Tag> section = new HashMap<String, Tag>();
+        section.put("Y", new ByteTag((byte) 0));
+        section.put("Blocks", new ByteArrayTag(blocks));
+        section.put("Data", new ByteArrayTag(new byte[2048]));
+        section.put("BlockLight", new ByteArrayTag(new byte[2048]));
+        section.put("SkyLight", new ByteArrayTag(new byte[2048]));
+
+        Map<String, Tag> level = new HashMap<String, Tag>();
+        level.put("xPos", new IntTag(chunkX));
+        level.put("zPos", new IntTag(chunkZ));
+        level.put("LastUpdate", new LongTag(1234));
+        level.put("HeightMap", new ByteArrayTag(new byte[256]));
+        level.put("Sections", new ListTag(CompoundTag.class, Arrays.<Tag>asList(new CompoundTag(section))));
+        level.put("TileEntities", new ListTag(CompoundTag.class, new ArrayList<Tag>()));
+        level.put("Entities", new ListTag(CompoundTag.class, new ArrayList<Tag>()));
+        return new CompoundTag(level);
+    }
+
+}
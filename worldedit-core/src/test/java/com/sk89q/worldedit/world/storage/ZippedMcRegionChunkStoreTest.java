@@ -0,0 +1,135 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import com.google.common.io.Files;
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.world.NullWorld;
+import com.sk89q.worldedit.world.World;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ZippedMcRegionChunkStoreTest {
+
+    private static final World WORLD = new NullWorld() {
+        @Override
+        public String getName() {
+            return "world";
+        }
+    };
+
+    private File zipFile;
+
+    @Before
+    public void setUp() throws IOException {
+        zipFile = File.createTempFile("snapshot", ".zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            addEntry(out, "world/level.dat", null);
+            addEntry(out, "world/region/r.0.0.mca", new int[][] { { 0, 0 }, { 1, 2 } });
+            addEntry(out, "world\\region\\r.1.0.mca", new int[][] { { 32, 0 } });
+        } finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        zipFile.delete();
+    }
+
+    @Test
+    public void testZipped() throws Exception {
+        McRegionChunkStore store = new ZippedMcRegionChunkStore(zipFile);
+        assertReadsRegionsOnce(store);
+    }
+
+    @Test
+    public void testTrueZip() throws Exception {
+        McRegionChunkStore store = new TrueZipMcRegionChunkStore(zipFile);
+        assertReadsRegionsOnce(store);
+    }
+
+    @Test
+    public void testCacheSize() throws Exception {
+        McRegionChunkStore store = new ZippedMcRegionChunkStore(zipFile, "world/region");
+        store.setCacheSize(0);
+        for (int i = 0; i < 3; i++) {
+            MappedMcRegionChunkStoreTest.assertBlocks(store.getChunk(new BlockVector2D(1, 2), WORLD), 1, 2);
+            MappedMcRegionChunkStoreTest.assertBlocks(store.getChunk(new BlockVector2D(32, 0), WORLD), 32, 0);
+        }
+        // The last region is always kept
+        MappedMcRegionChunkStoreTest.assertBlocks(store.getChunk(new BlockVector2D(32, 0), WORLD), 32, 0);
+        assertThat(store.getRegionsRead(), equalTo(6));
+        store.close();
+    }
+
+    @Test(expected = MissingChunkException.class)
+    public void testMissingRegion() throws Exception {
+        new ZippedMcRegionChunkStore(zipFile).getChunk(new BlockVector2D(0, 40), WORLD);
+    }
+
+    @Test(expected = MissingWorldException.class)
+    public void testMissingWorld() throws Exception {
+        new ZippedMcRegionChunkStore(zipFile).getChunk(new BlockVector2D(0, 0), new NullWorld() {
+            @Override
+            public String getName() {
+                return "other";
+            }
+        });
+    }
+
+    private static void assertReadsRegionsOnce(McRegionChunkStore store) throws Exception {
+        assertTrue(store.isValid());
+        for (int i = 0; i < 3; i++) {
+            MappedMcRegionChunkStoreTest.assertBlocks(store.getChunk(new BlockVector2D(1, 2), WORLD), 1, 2);
+            MappedMcRegionChunkStoreTest.assertBlocks(store.getChunk(new BlockVector2D(32, 0), WORLD), 32, 0);
+            MappedMcRegionChunkStoreTest.assertBlocks(store.getChunk(new BlockVector2D(0, 0), WORLD), 0, 0);
+        }
+        assertThat(store.getRegionsRead(), equalTo(2));
+        store.close();
+    }
+
+    private static void addEntry(ZipOutputStream out, String name, int[][] chunks) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        if (chunks != null) {
+            File region = File.createTempFile("region", ".mca");
+            try {
+                MappedMcRegionChunkStoreTest.writeRegion(region, chunks);
+                Files.copy(region, out);
+            } finally {
+                region.delete();
+            }
+        }
+        out.closeEntry();
+    }
+
+}
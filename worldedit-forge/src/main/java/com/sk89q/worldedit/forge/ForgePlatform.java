@@ -101,7 +101,7 @@ public void reload() {
 
     @Override
     public int schedule(long delay, long period, Runnable task) {
-        return -1;
+        return mod.getScheduler().schedule(delay, period, task);
     }
 
     @Override
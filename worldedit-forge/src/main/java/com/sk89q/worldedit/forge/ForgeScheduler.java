@@ -0,0 +1,113 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.forge;
+
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import cpw.mods.fml.common.gameevent.TickEvent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Runs tasks on the server thread at the start of server ticks.
+ */
+class ForgeScheduler {
+
+    private static final Logger log = Logger.getLogger(ForgeScheduler.class.getCanonicalName());
+    private final List<ScheduledTask> tasks = new ArrayList<ScheduledTask>();
+    private int nextId = 0;
+
+    /**
+     * Schedule a task.
+     *
+     * @param delay the number of ticks to wait before the first run
+     * @param period the number of ticks between runs, or 0 to run once
+     * @param task the task
+     * @return the ID of the task
+     */
+    synchronized int schedule(long delay, long period, Runnable task) {
+        checkArgument(delay >= 0, "delay >= 0 required");
+        checkArgument(period >= 0, "period >= 0 required");
+        checkNotNull(task);
+        tasks.add(new ScheduledTask(delay, period, task));
+        return nextId++;
+    }
+
+    /**
+     * Remove all scheduled tasks.
+     */
+    synchronized void clear() {
+        tasks.clear();
+    }
+
+    @SubscribeEvent
+    public void tickStart(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.START) {
+            return;
+        }
+
+        List<ScheduledTask> due = new ArrayList<ScheduledTask>();
+        synchronized (this) {
+            Iterator<ScheduledTask> it = tasks.iterator();
+            while (it.hasNext()) {
+                ScheduledTask task = it.next();
+                if (task.remaining > 0) {
+                    task.remaining--;
+                    continue;
+                }
+
+                due.add(task);
+                if (task.period > 0) {
+                    task.remaining = task.period - 1;
+                } else {
+                    it.remove();
+                }
+            }
+        }
+
+        // Tasks may schedule other tasks, so they are run outside of the lock
+        for (ScheduledTask task : due) {
+            try {
+                task.task.run();
+            } catch (Throwable t) {
+                log.log(Level.WARNING, "A scheduled WorldEdit task threw an exception", t);
+            }
+        }
+    }
+
+    private static class ScheduledTask {
+        private final long period;
+        private final Runnable task;
+        private long remaining;
+
+        private ScheduledTask(long delay, long period, Runnable task) {
+            this.period = period;
+            this.task = task;
+            this.remaining = delay;
+        }
+    }
+
+}
@@ -30,11 +30,13 @@
 import com.sk89q.worldedit.blocks.LazyBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.internal.Constants;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.util.TreeGenerator.TreeType;
 import com.sk89q.worldedit.world.AbstractWorld;
+import com.sk89q.worldedit.world.ChunkRegenerator;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import com.sk89q.worldedit.world.registry.WorldData;
 import net.minecraft.block.Block;
@@ -215,99 +217,90 @@ public void dropItem(Vector position, BaseItemStack item) {
 
     @Override
     public boolean regenerate(Region region, EditSession editSession) {
-        BaseBlock[] history = new BaseBlock[256 * (getMaxY() + 1)];
-
-        for (Vector2D chunk : region.getChunks()) {
-            Vector min = new Vector(chunk.getBlockX() * 16, 0, chunk.getBlockZ() * 16);
-
-            for (int x = 0; x < 16; x++) {
-                for (int y = 0; y < getMaxY() + 1; y++) {
-                    for (int z = 0; z < 16; z++) {
-                        Vector pt = min.add(x, y, z);
-                        int index = y * 16 * 16 + z * 16 + x;
-                        history[index] = editSession.getBlock(pt);
-                    }
-                }
+        ChunkRegenerator regenerator = createRegeneration(region, editSession);
+        Operations.completeBlindly(regenerator);
+        return !regenerator.hasFailed();
+    }
+
+    @Override
+    public ChunkRegenerator createRegeneration(Region region, EditSession editSession) {
+        return new ChunkRegenerator(this, region, editSession) {
+            @Override
+            protected boolean regenerateChunks(List<Vector2D> chunks) {
+                return replaceChunks(chunks);
             }
-            try {
-                Set<Vector2D> chunks = region.getChunks();
-                IChunkProvider provider = getWorld().getChunkProvider();
-                if (!(provider instanceof ChunkProviderServer)) {
-                    return false;
-                }
-                ChunkProviderServer chunkServer = (ChunkProviderServer) provider;
-                Field u;
-                try {
-                    u = ChunkProviderServer.class.getDeclaredField("field_73248_b"); // chunksToUnload
-                } catch(NoSuchFieldException e) {
-                    u = ChunkProviderServer.class.getDeclaredField("chunksToUnload");
-                }
-                u.setAccessible(true);
-                Set<?> unloadQueue = (Set<?>) u.get(chunkServer);
-                Field m;
-                try {
-                    m = ChunkProviderServer.class.getDeclaredField("field_73244_f"); // loadedChunkHashMap
-                } catch(NoSuchFieldException e) {
-                    m = ChunkProviderServer.class.getDeclaredField("loadedChunkHashMap");
-                }
-                m.setAccessible(true);
-                LongHashMap loadedMap = (LongHashMap) m.get(chunkServer);
-                Field lc;
-                try {
-                    lc = ChunkProviderServer.class.getDeclaredField("field_73245_g"); // loadedChunkHashMap
-                } catch(NoSuchFieldException e) {
-                    lc = ChunkProviderServer.class.getDeclaredField("loadedChunks");
-                }
-                lc.setAccessible(true);
-                @SuppressWarnings("unchecked") List<Chunk> loaded = (List<Chunk>) lc.get(chunkServer);
-                Field p;
-                try {
-                    p = ChunkProviderServer.class.getDeclaredField("field_73246_d"); // currentChunkProvider
-                } catch(NoSuchFieldException e) {
-                    p = ChunkProviderServer.class.getDeclaredField("currentChunkProvider");
-                }
-                p.setAccessible(true);
-                IChunkProvider chunkProvider = (IChunkProvider) p.get(chunkServer);
-
-                for (Vector2D coord : chunks) {
-                    long pos = ChunkCoordIntPair.chunkXZ2Int(coord.getBlockX(), coord.getBlockZ());
-                    Chunk mcChunk;
-                    if (chunkServer.chunkExists(coord.getBlockX(), coord.getBlockZ())) {
-                        mcChunk = chunkServer.loadChunk(coord.getBlockX(), coord.getBlockZ());
-                        mcChunk.onChunkUnload();
-                    }
-                    unloadQueue.remove(pos);
-                    loadedMap.remove(pos);
-                    mcChunk = chunkProvider.provideChunk(coord.getBlockX(), coord.getBlockZ());
-                    loadedMap.add(pos, mcChunk);
-                    loaded.add(mcChunk);
-                    if (mcChunk != null) {
-                        mcChunk.onChunkLoad();
-                        mcChunk.populateChunk(chunkProvider, chunkProvider, coord.getBlockX(), coord.getBlockZ());
-                    }
-                }
-            } catch (Throwable t) {
-                logger.log(Level.WARNING, "Failed to generate chunk", t);
+        };
+    }
+
+    /**
+     * Replace the given chunks with newly generated ones.
+     *
+     * @param chunks the chunks
+     * @return true if successful
+     */
+    private boolean replaceChunks(List<Vector2D> chunks) {
+        try {
+            IChunkProvider provider = getWorld().getChunkProvider();
+            if (!(provider instanceof ChunkProviderServer)) {
                 return false;
             }
-
-            for (int x = 0; x < 16; x++) {
-                for (int y = 0; y < getMaxY() + 1; y++) {
-                    for (int z = 0; z < 16; z++) {
-                        Vector pt = min.add(x, y, z);
-                        int index = y * 16 * 16 + z * 16 + x;
-
-                        if (!region.contains(pt))
-                            editSession.smartSetBlock(pt, history[index]);
-                        else {
-                            editSession.rememberChange(pt, history[index], editSession.rawGetBlock(pt));
-                        }
-                    }
+            ChunkProviderServer chunkServer = (ChunkProviderServer) provider;
+            Field u;
+            try {
+                u = ChunkProviderServer.class.getDeclaredField("field_73248_b"); // chunksToUnload
+            } catch(NoSuchFieldException e) {
+                u = ChunkProviderServer.class.getDeclaredField("chunksToUnload");
+            }
+            u.setAccessible(true);
+            Set<?> unloadQueue = (Set<?>) u.get(chunkServer);
+            Field m;
+            try {
+                m = ChunkProviderServer.class.getDeclaredField("field_73244_f"); // loadedChunkHashMap
+            } catch(NoSuchFieldException e) {
+                m = ChunkProviderServer.class.getDeclaredField("loadedChunkHashMap");
+            }
+            m.setAccessible(true);
+            LongHashMap loadedMap = (LongHashMap) m.get(chunkServer);
+            Field lc;
+            try {
+                lc = ChunkProviderServer.class.getDeclaredField("field_73245_g"); // loadedChunkHashMap
+            } catch(NoSuchFieldException e) {
+                lc = ChunkProviderServer.class.getDeclaredField("loadedChunks");
+            }
+            lc.setAccessible(true);
+            @SuppressWarnings("unchecked") List<Chunk> loaded = (List<Chunk>) lc.get(chunkServer);
+            Field p;
+            try {
+                p = ChunkProviderServer.class.getDeclaredField("field_73246_d"); // currentChunkProvider
+            } catch(NoSuchFieldException e) {
+                p = ChunkProviderServer.class.getDeclaredField("currentChunkProvider");
+            }
+            p.setAccessible(true);
+            IChunkProvider chunkProvider = (IChunkProvider) p.get(chunkServer);
+
+            for (Vector2D coord : chunks) {
+                long pos = ChunkCoordIntPair.chunkXZ2Int(coord.getBlockX(), coord.getBlockZ());
+                Chunk mcChunk;
+                if (chunkServer.chunkExists(coord.getBlockX(), coord.getBlockZ())) {
+                    mcChunk = chunkServer.loadChunk(coord.getBlockX(), coord.getBlockZ());
+                    mcChunk.onChunkUnload();
+                }
+                unloadQueue.remove(pos);
+                loadedMap.remove(pos);
+                mcChunk = chunkProvider.provideChunk(coord.getBlockX(), coord.getBlockZ());
+                loadedMap.add(pos, mcChunk);
+                loaded.add(mcChunk);
+                if (mcChunk != null) {
+                    mcChunk.onChunkLoad();
+                    mcChunk.populateChunk(chunkProvider, chunkProvider, coord.getBlockX(), coord.getBlockZ());
                 }
             }
+        } catch (Throwable t) {
+            logger.log(Level.WARNING, "Failed to generate chunk", t);
+            return false;
         }
 
-        return false;
+        return true;
     }
 
     @Override
@@ -347,6 +340,21 @@ public BaseBlock getLazyBlock(Vector position) {
         return new LazyBlock(id, data, this, position);
     }
 
+    @Override
+    public void getBlockColumn(int x, int z, int minY, int maxY, int[] blocks) {
+        World world = getWorld();
+        Chunk chunk = world.getChunkFromBlockCoords(x, z);
+        int height = world.getHeight();
+        for (int y = minY; y <= maxY; ++y) {
+            if (y < 0 || y >= height) {
+                blocks[y - minY] = 0;
+            } else {
+                int id = Block.getIdFromBlock(chunk.getBlock(x & 15, y, z & 15));
+                blocks[y - minY] = (id << 4) | chunk.getBlockMetadata(x & 15, y, z & 15);
+            }
+        }
+    }
+
     @Override
     public int hashCode() {
         return getWorld().hashCode();
@@ -73,6 +73,7 @@ public class ForgeWorldEdit {
     @SidedProxy(serverSide = "com.sk89q.worldedit.forge.CommonProxy", clientSide = "com.sk89q.worldedit.forge.ClientProxy")
     public static CommonProxy proxy;
 
+    private final ForgeScheduler scheduler = new ForgeScheduler();
     private ForgePlatform platform;
     private ForgeConfiguration config;
     private File workingDir;
@@ -88,6 +89,7 @@ public void preInit(FMLPreInitializationEvent event) {
         config.load();
 
         FMLCommonHandler.instance().bus().register(ThreadSafeCache.getInstance());
+        FMLCommonHandler.instance().bus().register(scheduler);
     }
 
     @EventHandler
@@ -119,6 +121,7 @@ public void serverAboutToStart(FMLServerAboutToStartEvent event) {
     @EventHandler
     public void serverStopping(FMLServerStoppingEvent event) {
         WorldEdit.getInstance().getPlatformManager().unregister(platform);
+        scheduler.clear();
     }
 
     @EventHandler
@@ -209,6 +212,15 @@ ForgeConfiguration getConfig() {
         return this.config;
     }
 
+    /**
+     * Get the scheduler that runs tasks on server ticks.
+     *
+     * @return the scheduler
+     */
+    ForgeScheduler getScheduler() {
+        return this.scheduler;
+    }
+
     /**
      * Get the WorldEdit proxy for the given player.
      *